@@ -239,12 +239,15 @@ public class TcpClientChannelManager<O, I> {
    * Encodes and sends a telegram to the peer, if connected.
    *
    * @param telegram The telegram.
+   * @return <code>true</code> if, and only if, the telegram has been written to the channel, i.e.
+   * a connection existed.
    */
-  public void send(O telegram) {
+  public boolean send(O telegram) {
     if (!isConnected()) {
-      return;
+      return false;
     }
     channelFuture.channel().writeAndFlush(telegram);
+    return true;
   }
 
   /**
@@ -7,7 +7,14 @@
  */
 package com.sxj.commadapter.vehicle;
 
+import com.google.inject.Singleton;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
+import com.google.inject.multibindings.Multibinder;
+import com.sxj.commadapter.vehicle.comm.ResponseType;
+import com.sxj.commadapter.vehicle.comm.ResponseTypeRegistry;
+import com.sxj.commadapter.vehicle.comm.StandardResponseType;
+import com.sxj.common.telegrams.RequestTimeoutPolicy;
+import io.netty.util.Timer;
 import org.opentcs.customizations.kernel.KernelInjectionModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +36,37 @@ public class SimpleKernelInjectionModule
       return;
     }
 
+    bind(SimpleCommAdapterConfiguration.class)
+        .toInstance(configuration);
+    // A single timer wheel tracks the response deadlines for all vehicles. It is started and
+    // stopped along with the comm adapter factory, which may be re-initialized on a model reload.
+    bind(SharedTimerProvider.class)
+        .in(Singleton.class);
+    bind(Timer.class)
+        .toProvider(SharedTimerProvider.class)
+        .in(Singleton.class);
+    bind(RequestTimeoutPolicy.class)
+        .toInstance(new RequestTimeoutPolicy(configuration.responseTimeout(),
+                                             configuration.maxRetransmissions(),
+                                             configuration.retransmissionBackoffFactor(),
+                                             configuration.maxResponseTimeout(),
+                                             configuration.stallThreshold()));
+
+    // Further response types may be added to this binder by other modules.
+    Multibinder<ResponseType> responseTypesBinder
+        = Multibinder.newSetBinder(binder(), ResponseType.class);
+    for (StandardResponseType responseType : StandardResponseType.values()) {
+      responseTypesBinder.addBinding().toInstance(responseType);
+    }
+    bind(ResponseTypeRegistry.class)
+        .in(Singleton.class);
+    // A single scheduler spreads the periodic state requests of all vehicles across the interval.
+    bind(FleetPollScheduler.class)
+        .in(Singleton.class);
+    // ...and a single dispatcher applies the states received from all vehicles in batches.
+    bind(StateUpdateDispatcher.class)
+        .in(Singleton.class);
+
     install(new FactoryModuleBuilder().build(SimpleAdapterComponentsFactory.class));
     vehicleCommAdaptersBinder().addBinding().to(SimpleCommAdapterFactory.class);
   }
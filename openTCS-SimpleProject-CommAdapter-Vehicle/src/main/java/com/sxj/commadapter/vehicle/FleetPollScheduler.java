@@ -0,0 +1,381 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import static java.util.Objects.requireNonNull;
+import javax.inject.Inject;
+import org.opentcs.customizations.kernel.KernelExecutor;
+import static org.opentcs.util.Assertions.checkArgument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the periodic state requests of all vehicles on a single timer wheel.
+ * <p>
+ * Every vehicle gets a {@link Poller}, which polls on a grid of time slots spaced at the vehicle's
+ * interval and shifted by a phase of its own.
+ * The phases of consecutively created pollers are a fraction of the golden ratio apart, which
+ * spreads any number of vehicles evenly across the interval, so vehicles connecting at the same
+ * time do not poll in bursts.
+ * As the slots are derived from the phase rather than from the time of the previous poll, late
+ * polls do not shift the following ones, and a poll that is so late that the next one is due
+ * already is skipped rather than run twice in a row.
+ * </p>
+ * <p>
+ * The timer's thread only hands due polls over to an executor (the kernel executor, by default)
+ * and never runs them itself, so a poll that blocks cannot delay other pollers or the response
+ * timeouts tracked with the same timer.
+ * A poll that is due while the previous one of the same poller has not been run, yet, is skipped,
+ * so polls do not pile up in the executor.
+ * </p>
+ */
+public class FleetPollScheduler {
+
+  /**
+   * This class's Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(FleetPollScheduler.class);
+  /**
+   * The fraction of the interval the phases of consecutively created pollers are apart.
+   */
+  private static final double PHASE_STEP = (Math.sqrt(5.0) - 1.0) / 2.0;
+  /**
+   * The weight of the latest time between two polls in the moving average of the achieved rate.
+   */
+  private static final double RATE_SMOOTHING = 0.2;
+  /**
+   * The timer the polls are scheduled with.
+   */
+  private final Timer timer;
+  /**
+   * The executor the polls are run on.
+   */
+  private final Executor pollExecutor;
+  /**
+   * Provides the current time (in ns).
+   */
+  private final LongSupplier nanoClock;
+  /**
+   * The time (in ns) the grids of all pollers' slots are aligned to.
+   */
+  private final long epochNanos;
+  /**
+   * The number of pollers created, which determines the next poller's phase.
+   */
+  private final AtomicLong pollerCount = new AtomicLong();
+  /**
+   * The pollers that are currently running.
+   */
+  private final Set<Poller> runningPollers = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Creates a new instance.
+   *
+   * @param timer The timer the polls are scheduled with.
+   * @param kernelExecutor The kernel's executor service, which the polls are run on.
+   */
+  @Inject
+  public FleetPollScheduler(Timer timer,
+                            @KernelExecutor ScheduledExecutorService kernelExecutor) {
+    this(timer, kernelExecutor, System::nanoTime);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param timer The timer the polls are scheduled with.
+   * @param pollExecutor The executor the polls are run on.
+   * @param nanoClock Provides the current time (in ns).
+   */
+  FleetPollScheduler(Timer timer, Executor pollExecutor, LongSupplier nanoClock) {
+    this.timer = requireNonNull(timer, "timer");
+    this.pollExecutor = requireNonNull(pollExecutor, "pollExecutor");
+    this.nanoClock = requireNonNull(nanoClock, "nanoClock");
+    this.epochNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * Creates a new poller, which is not running, yet.
+   *
+   * @param name The poller's name, e.g. the name of the vehicle polled.
+   * @param pollTask The task to run with every poll. Runs on the poll executor, so it should be
+   * short.
+   * @return The new poller.
+   */
+  public Poller createPoller(String name, Runnable pollTask) {
+    double phase = (pollerCount.getAndIncrement() * PHASE_STEP) % 1.0;
+    return new Poller(requireNonNull(name, "name"), requireNonNull(pollTask, "pollTask"), phase);
+  }
+
+  /**
+   * Stops all pollers that are currently running, e.g. before the timer is stopped.
+   */
+  public void stopAll() {
+    for (Poller poller : new ArrayList<>(runningPollers)) {
+      poller.stop();
+    }
+  }
+
+  /**
+   * Returns the first slot after the given time on the grid with the given interval and phase.
+   *
+   * @param now The time (in ns).
+   * @param intervalNanos The interval (in ns).
+   * @param phase The phase, as a fraction of the interval.
+   * @return The time (in ns) of the slot.
+   */
+  private long nextSlot(long now, long intervalNanos, double phase) {
+    long phaseOffset = (long) (phase * intervalNanos);
+    long elapsed = now - epochNanos - phaseOffset;
+    return epochNanos + phaseOffset + (Math.floorDiv(elapsed, intervalNanos) + 1) * intervalNanos;
+  }
+
+  /**
+   * Periodically runs a task, e.g. the state requests for a single vehicle.
+   */
+  public class Poller
+      implements PollerMXBean {
+
+    /**
+     * The poller's name.
+     */
+    private final String name;
+    /**
+     * The task to run with every poll.
+     */
+    private final Runnable pollTask;
+    /**
+     * The poller's phase, as a fraction of its interval.
+     */
+    private final double phase;
+    /**
+     * The time (in ms) between two polls.
+     */
+    private int interval;
+    /**
+     * The timeout of the next poll, or {@code null}, if the poller is not running.
+     */
+    private Timeout timeout;
+    /**
+     * The time (in ns) the next poll is due at.
+     */
+    private long deadline;
+    /**
+     * The time (in ns) of the latest poll since the poller was started, or 0, if it has not polled
+     * since.
+     */
+    private long lastPollNanos;
+    /**
+     * The moving average of the times (in ns) between two polls, or 0, if there is none, yet.
+     */
+    private double averageGapNanos;
+    /**
+     * The number of polls.
+     */
+    private long pollCount;
+    /**
+     * The number of polls skipped.
+     */
+    private long skippedPollCount;
+    /**
+     * Whether a poll has been handed over to the executor and has not been run, yet.
+     */
+    private boolean pollQueued;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name The poller's name.
+     * @param pollTask The task to run with every poll.
+     * @param phase The poller's phase, as a fraction of its interval.
+     */
+    private Poller(String name, Runnable pollTask, double phase) {
+      this.name = name;
+      this.pollTask = pollTask;
+      this.phase = phase;
+    }
+
+    /**
+     * Starts polling at the given interval, beginning with the poller's next slot.
+     * Does nothing if the poller is running already.
+     *
+     * @param interval The time (in ms) between two polls.
+     */
+    public synchronized void start(int interval) {
+      checkArgument(interval > 0, "interval must be positive: %s", interval);
+      if (timeout != null) {
+        return;
+      }
+      this.interval = interval;
+      lastPollNanos = 0;
+      averageGapNanos = 0;
+      long now = nanoClock.getAsLong();
+      schedule(now, nextSlot(now, intervalNanos(), phase));
+      runningPollers.add(this);
+    }
+
+    /**
+     * Stops polling. A poll already running is completed.
+     */
+    public synchronized void stop() {
+      if (timeout == null) {
+        return;
+      }
+      timeout.cancel();
+      timeout = null;
+      runningPollers.remove(this);
+    }
+
+    /**
+     * Sets the time between two polls.
+     * If the poller is running and the first slot with the given interval comes before the poll
+     * scheduled, the poll is moved to that slot. Otherwise, the poll scheduled is kept, and the
+     * given interval applies from then on.
+     *
+     * @param interval The time (in ms) between two polls.
+     */
+    public synchronized void setInterval(int interval) {
+      checkArgument(interval > 0, "interval must be positive: %s", interval);
+      if (interval == this.interval) {
+        return;
+      }
+      LOG.debug("{}: Polling every {} ms now.", name, interval);
+      this.interval = interval;
+      if (timeout == null) {
+        return;
+      }
+      long now = nanoClock.getAsLong();
+      long slot = nextSlot(now, intervalNanos(), phase);
+      if (slot < deadline) {
+        timeout.cancel();
+        schedule(now, slot);
+      }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+      return timeout != null;
+    }
+
+    @Override
+    public synchronized int getInterval() {
+      return interval;
+    }
+
+    @Override
+    public synchronized double getTargetRate() {
+      return timeout == null ? 0 : 1000.0 / interval;
+    }
+
+    @Override
+    public synchronized double getAchievedRate() {
+      return averageGapNanos == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / averageGapNanos;
+    }
+
+    @Override
+    public synchronized long getPollCount() {
+      return pollCount;
+    }
+
+    @Override
+    public synchronized long getSkippedPollCount() {
+      return skippedPollCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return "Poller{"
+          + "name=" + name + ", "
+          + "phase=" + phase + ", "
+          + "interval=" + interval + ", "
+          + "running=" + (timeout != null) + '}';
+    }
+
+    private long intervalNanos() {
+      return TimeUnit.MILLISECONDS.toNanos(interval);
+    }
+
+    private void schedule(long now, long slot) {
+      deadline = slot;
+      timeout = timer.newTimeout(this::poll, slot - now, TimeUnit.NANOSECONDS);
+    }
+
+    private void poll(Timeout expired) {
+      synchronized (this) {
+        if (expired != timeout) {
+          // Stopped or moved to another slot in the meantime.
+          return;
+        }
+        long now = nanoClock.getAsLong();
+        boolean handOver = !pollQueued;
+        if (handOver) {
+          recordPoll(now);
+          pollQueued = true;
+        }
+        else {
+          // The previous poll is still waiting for the executor.
+          skippedPollCount++;
+        }
+        // The timer may fire a little early, so never pick the slot just polled again.
+        schedule(now, nextSlot(Math.max(now, deadline), intervalNanos(), phase));
+        if (!handOver) {
+          return;
+        }
+      }
+
+      try {
+        pollExecutor.execute(this::runPollTask);
+      }
+      catch (RejectedExecutionException exc) {
+        LOG.warn("{}: Poll rejected", name, exc);
+        synchronized (this) {
+          pollQueued = false;
+        }
+      }
+    }
+
+    private void runPollTask() {
+      try {
+        pollTask.run();
+      }
+      catch (RuntimeException exc) {
+        LOG.warn("{}: Poll failed", name, exc);
+      }
+      finally {
+        synchronized (this) {
+          pollQueued = false;
+        }
+      }
+    }
+
+    private void recordPoll(long now) {
+      pollCount++;
+      if (now > deadline) {
+        skippedPollCount += (now - deadline) / intervalNanos();
+      }
+      if (lastPollNanos != 0) {
+        long gap = now - lastPollNanos;
+        averageGapNanos = averageGapNanos == 0
+            ? gap
+            : averageGapNanos + RATE_SMOOTHING * (gap - averageGapNanos);
+      }
+      lastPollNanos = now;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+/**
+ * Exposes the target and achieved rate of a poller of a {@link FleetPollScheduler} via JMX.
+ */
+public interface PollerMXBean {
+
+  /**
+   * Returns whether the poller is running.
+   *
+   * @return Whether the poller is running.
+   */
+  boolean isRunning();
+
+  /**
+   * Returns the time between two polls the poller is set to.
+   *
+   * @return The time (in ms) between two polls.
+   */
+  int getInterval();
+
+  /**
+   * Returns the rate the poller is set to poll at, i.e. the inverse of its interval.
+   *
+   * @return The target rate (in polls per second), or 0, if the poller is not running.
+   */
+  double getTargetRate();
+
+  /**
+   * Returns the rate the poller actually polled at recently, as an exponentially weighted moving
+   * average of the times between its polls.
+   *
+   * @return The achieved rate (in polls per second), or 0, if the poller has not polled twice since
+   * it was started.
+   */
+  double getAchievedRate();
+
+  /**
+   * Returns the number of polls since the poller was created.
+   *
+   * @return The number of polls.
+   */
+  long getPollCount();
+
+  /**
+   * Returns the number of polls skipped since the poller was created because a poll ran so late
+   * that the next one was due already.
+   *
+   * @return The number of polls skipped.
+   */
+  long getSkippedPollCount();
+}
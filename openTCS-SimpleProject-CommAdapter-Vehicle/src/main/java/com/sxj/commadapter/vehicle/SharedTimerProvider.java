@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides the single timer wheel shared by the comm adapters of all vehicles, which tracks their
+ * response deadlines and schedules their state requests.
+ * <p>
+ * The timer provided is a facade that stays valid for the whole lifetime of the kernel, while the
+ * timer wheel behind it is created via {@link #start()} and stopped via {@link #stop()}. The
+ * {@link SimpleCommAdapterFactory} does this whenever it is initialized and terminated, i.e.
+ * whenever the kernel enters and leaves its operating mode, since a stopped timer wheel cannot be
+ * restarted. While the timer wheel is stopped, scheduling a timeout fails with an
+ * {@link IllegalStateException}, just as it does for a stopped timer wheel.
+ * </p>
+ */
+public class SharedTimerProvider
+    implements Provider<Timer> {
+
+  /**
+   * This class's Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(SharedTimerProvider.class);
+  /**
+   * The duration (in ms) of a tick of the timer wheel.
+   */
+  private static final long TICK_DURATION = 10;
+  /**
+   * The timer provided, which delegates to the current timer wheel.
+   */
+  private final Timer timer = new SharedTimer();
+  /**
+   * The current timer wheel, or {@code null}, if it is stopped.
+   */
+  private volatile HashedWheelTimer timerWheel;
+
+  /**
+   * Creates a new instance.
+   */
+  @Inject
+  public SharedTimerProvider() {
+  }
+
+  @Override
+  public Timer get() {
+    return timer;
+  }
+
+  /**
+   * Creates a new timer wheel, unless one is running already.
+   * Its thread is started with the first timeout.
+   */
+  public synchronized void start() {
+    if (timerWheel != null) {
+      return;
+    }
+    timerWheel = new HashedWheelTimer(new DefaultThreadFactory("simpleCommAdapterTimer", true),
+                                      TICK_DURATION,
+                                      TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the current timer wheel and its thread. Timeouts that have not expired, yet, are
+   * dropped.
+   * The timer cannot be used until a new timer wheel has been created via {@link #start()}.
+   */
+  public synchronized void stop() {
+    if (timerWheel == null) {
+      return;
+    }
+    Set<Timeout> unexpired = timerWheel.stop();
+    timerWheel = null;
+    LOG.debug("Timer stopped, dropping {} unexpired timeout(s).", unexpired.size());
+  }
+
+  /**
+   * Delegates to the current timer wheel.
+   */
+  private class SharedTimer
+      implements Timer {
+
+    @Override
+    public Timeout newTimeout(@Nonnull TimerTask task, long delay, @Nonnull TimeUnit unit) {
+      requireNonNull(task, "task");
+      requireNonNull(unit, "unit");
+      HashedWheelTimer wheel = timerWheel;
+      if (wheel == null) {
+        throw new IllegalStateException("Shared timer is stopped.");
+      }
+      return wheel.newTimeout(task, delay, unit);
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+      throw new UnsupportedOperationException(
+          "The shared timer is stopped along with the comm adapter factory."
+      );
+    }
+  }
+}
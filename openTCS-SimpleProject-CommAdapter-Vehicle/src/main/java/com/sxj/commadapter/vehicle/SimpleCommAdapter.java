@@ -7,28 +7,45 @@
  */
 package com.sxj.commadapter.vehicle;
 
+import com.sxj.commadapter.vehicle.comm.BatchFrames;
+import com.sxj.commadapter.vehicle.comm.DecoderStatistics;
+import com.sxj.commadapter.vehicle.comm.ResponseTypeRegistry;
+import com.sxj.commadapter.vehicle.comm.VehicleClock;
 import com.sxj.commadapter.vehicle.comm.VehicleTelegramDecoder;
 import com.sxj.commadapter.vehicle.comm.VehicleTelegramEncoder;
 import com.sxj.commadapter.vehicle.exchange.SimpleProcessModelTO;
+import com.sxj.commadapter.vehicle.telegrams.CancelRequest;
+import com.sxj.commadapter.vehicle.telegrams.CancelResponse;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeRequest;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeResponse;
 import com.sxj.commadapter.vehicle.telegrams.OrderRequest;
 import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
+import com.sxj.commadapter.vehicle.telegrams.OrderResponseView;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolCapabilities;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolFeature;
+import com.sxj.commadapter.vehicle.telegrams.RouteSegmentRequest;
+import com.sxj.commadapter.vehicle.telegrams.StateDeltaResponse;
 import com.sxj.commadapter.vehicle.telegrams.StateRequest;
 import com.sxj.commadapter.vehicle.telegrams.StateResponse;
 import com.sxj.commadapter.vehicle.telegrams.StateResponse.LoadState;
+import com.sxj.commadapter.vehicle.telegrams.StateResponseView;
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncRequest;
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncResponse;
 import com.sxj.common.dispatching.LoadAction;
 import com.sxj.common.telegrams.BoundedCounter;
-import static com.sxj.common.telegrams.BoundedCounter.UINT16_MAX_VALUE;
 import com.sxj.common.telegrams.Request;
 import com.sxj.common.telegrams.RequestResponseMatcher;
 import com.sxj.common.telegrams.Response;
 import com.sxj.common.telegrams.Telegram;
 import com.sxj.common.telegrams.TelegramSender;
-import com.google.common.primitives.Ints;
 import com.google.inject.assistedinject.Assisted;
 import io.netty.channel.ChannelHandler;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import java.beans.PropertyChangeEvent;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +58,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import org.opentcs.contrib.communication.tcp.ConnectionEventListener;
 import org.opentcs.contrib.communication.tcp.TcpClientChannelManager;
 import org.opentcs.customizations.kernel.KernelExecutor;
@@ -52,6 +71,7 @@ import org.opentcs.drivers.vehicle.MovementCommand;
 import org.opentcs.drivers.vehicle.VehicleProcessModel;
 import org.opentcs.drivers.vehicle.management.VehicleProcessModelTO;
 import org.opentcs.util.ExplainedBoolean;
+import static org.opentcs.util.Assertions.checkArgument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +89,51 @@ public class SimpleCommAdapter
    * This class's logger.
    */
   private static final Logger LOG = LoggerFactory.getLogger(SimpleCommAdapter.class);
+  /**
+   * The protocol capabilities of this comm adapter, announced to the vehicle in the handshake.
+   */
+  private static final ProtocolCapabilities SUPPORTED_CAPABILITIES
+      = new ProtocolCapabilities(2,
+                                 8,
+                                 BatchFrames.MAX_FRAME_LENGTH,
+                                 EnumSet.of(ProtocolFeature.BATCH_FRAMES,
+                                            ProtocolFeature.STATE_DELTAS,
+                                            ProtocolFeature.STATE_PUSH,
+                                            ProtocolFeature.ROUTE_SEGMENTS,
+                                            ProtocolFeature.CLOCK_SYNC,
+                                            ProtocolFeature.ORDER_CANCELLATION,
+                                            ProtocolFeature.CUMULATIVE_ACKNOWLEDGEMENTS));
+  /**
+   * The number of movement commands the kernel may hand over that have not been sent, yet.
+   * <p>
+   * The capacities are fixed when the comm adapter is created, i.e. before the vehicle's
+   * capabilities are known, so they are sized for route segments. As with single orders, the
+   * command queue holds one command more than the vehicle accepts, so the first command of the next
+   * route segment is available as soon as the vehicle has room for it.
+   * </p>
+   */
+  private static final int COMMAND_QUEUE_CAPACITY = RouteSegmentRequest.MAX_WAYPOINTS + 1;
+  /**
+   * The number of movement commands sent to a vehicle with route segments that it has not
+   * finished, yet: a whole route segment.
+   */
+  private static final int SENT_QUEUE_CAPACITY = RouteSegmentRequest.MAX_WAYPOINTS;
+  /**
+   * The number of orders a vehicle without route segments accepts: the current one and one
+   * buffered order.
+   * {@link #canSendNextCommand()} limits the sent queue to this capacity unless route segments
+   * have been agreed on.
+   */
+  private static final int SINGLE_ORDER_SENT_QUEUE_CAPACITY = 2;
+  /**
+   * The interval (in ms) in which the vehicle's clock is synchronized.
+   */
+  private static final long CLOCK_SYNC_INTERVAL = 10000;
+  /**
+   * The time (in ms) to wait for a time synchronization response.
+   * A late response is useless for estimating the offset anyway.
+   */
+  private static final long CLOCK_SYNC_TIMEOUT = 1000;
   /**
    * Maps movement commands from openTCS to the telegrams sent to the attached vehicle.
    */
@@ -81,14 +146,41 @@ public class SimpleCommAdapter
    * The kernel's executor service.
    */
   private final ScheduledExecutorService kernelExecutor;
+  /**
+   * The types of responses the vehicle may send.
+   */
+  private final ResponseTypeRegistry responseTypeRegistry;
+  /**
+   * The time (in ms) to wait for a handshake response, including retransmissions, before assuming
+   * the vehicle only supports protocol version 1.
+   */
+  private final long handshakeTimeout;
+  /**
+   * Decides how often the vehicle's state is requested.
+   */
+  private final StatePollingPolicy statePollingPolicy;
+  /**
+   * Runs the periodic state requests of all vehicles.
+   */
+  private final FleetPollScheduler pollScheduler;
+  /**
+   * Hands the states received over to the kernel executor.
+   */
+  private final StateUpdateDispatcher stateUpdateDispatcher;
   /**
    * Manages counting the ids for all {@link Request} telegrams.
+   * The id of pushed state responses is left out.
    */
-  private final BoundedCounter globalRequestCounter = new BoundedCounter(0, UINT16_MAX_VALUE);
+  private final BoundedCounter globalRequestCounter
+      = new BoundedCounter(0, StateResponse.PUSH_ID - 1);
   /**
    * Maps commands to order IDs so we know which command to report as finished.
    */
   private final Map<MovementCommand, Integer> orderIds = new ConcurrentHashMap<>();
+  /**
+   * The orders of commands sent, but not yet packed into a route segment request.
+   */
+  private final List<OrderRequest> pendingRouteSegment = new ArrayList<>();
   /**
    * Manages the channel to the vehicle.
    */
@@ -98,13 +190,69 @@ public class SimpleCommAdapter
    */
   private RequestResponseMatcher requestResponseMatcher;
   /**
-   * A future for the periodic state requester task.
+   * Periodically requests the vehicle's state.
    */
-  private ScheduledFuture<?> stateRequestFuture;
+  private FleetPollScheduler.Poller statePoller;
   /**
-   * Whether we have sent a state request and are still waiting for a response.
+   * The name the state poller is registered with via JMX, or {@code null}, if it is not
+   * registered.
    */
-  private volatile boolean expectingStateResponse;
+  private ObjectName statePollerObjectName;
+  /**
+   * Holds the latest state update received until it is applied.
+   */
+  private StateUpdateDispatcher.Mailbox stateMailbox;
+  /**
+   * The name the request/response matcher is registered with via JMX, or {@code null}, if it is
+   * not registered.
+   */
+  private ObjectName matcherObjectName;
+  /**
+   * The statistics of the decoders of all connections to the vehicle.
+   */
+  private final DecoderStatistics decoderStatistics = new DecoderStatistics();
+  /**
+   * The name the decoder statistics are registered with via JMX, or {@code null}, if they are not
+   * registered.
+   */
+  private ObjectName decoderStatisticsObjectName;
+  /**
+   * The estimates of the offset and drift of the vehicle's clock.
+   */
+  private final VehicleClock vehicleClock = new VehicleClock();
+  /**
+   * The name the vehicle clock is registered with via JMX, or {@code null}, if it is not
+   * registered.
+   */
+  private ObjectName vehicleClockObjectName;
+  /**
+   * A future for the periodic clock synchronization task, or {@code null}, if the vehicle's clock
+   * is not being synchronized.
+   */
+  private ScheduledFuture<?> clockSyncFuture;
+  /**
+   * The encoder of the current connection to the vehicle.
+   */
+  private volatile VehicleTelegramEncoder telegramEncoder;
+  /**
+   * Whether the vehicle pushes its state instead of being polled, as agreed on in the handshake.
+   */
+  private volatile boolean statePushEnabled;
+  /**
+   * Whether consecutive orders are packed into route segment requests, as agreed on in the
+   * handshake.
+   */
+  private volatile boolean routeSegmentsEnabled;
+  /**
+   * Whether orders sent before may be revoked with a cancel request, as agreed on in the
+   * handshake.
+   */
+  private volatile boolean orderCancellationEnabled;
+  /**
+   * Whether order responses also acknowledge the orders sent before, as agreed on in the
+   * handshake.
+   */
+  private volatile boolean cumulativeAcknowledgementsEnabled;
 
   /**
    * Creates a new instance.
@@ -113,22 +261,63 @@ public class SimpleCommAdapter
    * @param orderMapper The order mapper for movement commands.
    * @param componentsFactory The components factory.
    * @param kernelExecutor The kernel's executor service.
+   * @param responseTypeRegistry The types of responses the vehicle may send.
+   * @param statePollingPolicy Decides how often the vehicle's state is requested.
+   * @param pollScheduler Runs the periodic state requests of all vehicles.
+   * @param stateUpdateDispatcher Hands the states received over to the kernel executor.
+   * @param configuration This comm adapter's configuration.
    */
   @Inject
   public SimpleCommAdapter(@Assisted Vehicle vehicle,
                             OrderMapper orderMapper,
                             SimpleAdapterComponentsFactory componentsFactory,
-                            @KernelExecutor ScheduledExecutorService kernelExecutor) {
-    super(new SimpleProcessModel(vehicle), 3, 2, LoadAction.CHARGE, kernelExecutor);
+                            @KernelExecutor ScheduledExecutorService kernelExecutor,
+                            ResponseTypeRegistry responseTypeRegistry,
+                            StatePollingPolicy statePollingPolicy,
+                            FleetPollScheduler pollScheduler,
+                            StateUpdateDispatcher stateUpdateDispatcher,
+                            SimpleCommAdapterConfiguration configuration) {
+    super(new SimpleProcessModel(vehicle),
+          COMMAND_QUEUE_CAPACITY,
+          SENT_QUEUE_CAPACITY,
+          LoadAction.CHARGE,
+          kernelExecutor);
     this.orderMapper = requireNonNull(orderMapper, "orderMapper");
     this.componentsFactory = requireNonNull(componentsFactory, "componentsFactory");
     this.kernelExecutor = requireNonNull(kernelExecutor, "kernelExecutor");
+    this.responseTypeRegistry = requireNonNull(responseTypeRegistry, "responseTypeRegistry");
+    this.statePollingPolicy = requireNonNull(statePollingPolicy, "statePollingPolicy");
+    this.pollScheduler = requireNonNull(pollScheduler, "pollScheduler");
+    this.stateUpdateDispatcher = requireNonNull(stateUpdateDispatcher, "stateUpdateDispatcher");
+    this.handshakeTimeout = requireNonNull(configuration, "configuration").handshakeTimeout();
+    checkArgument(handshakeTimeout > 0, "handshakeTimeout must be positive: %s", handshakeTimeout);
   }
 
   @Override
   public void initialize() {
     super.initialize();
     this.requestResponseMatcher = componentsFactory.createRequestResponseMatcher(this);
+    matcherObjectName = registerMBean(requestResponseMatcher, "RequestResponseMatcher");
+    decoderStatisticsObjectName = registerMBean(decoderStatistics, "VehicleTelegramDecoder");
+    vehicleClockObjectName = registerMBean(vehicleClock, "VehicleClock");
+    this.statePoller = pollScheduler.createPoller(getName(), this::requestStateFromVehicle);
+    statePollerObjectName = registerMBean(statePoller, "StatePoller");
+    this.stateMailbox = stateUpdateDispatcher.createMailbox(getName(), this::applyStateUpdate);
+  }
+
+  @Override
+  public void terminate() {
+    unregisterMBean(matcherObjectName);
+    matcherObjectName = null;
+    unregisterMBean(decoderStatisticsObjectName);
+    decoderStatisticsObjectName = null;
+    unregisterMBean(vehicleClockObjectName);
+    vehicleClockObjectName = null;
+    statePoller.stop();
+    unregisterMBean(statePollerObjectName);
+    statePollerObjectName = null;
+    stateMailbox.clear();
+    super.terminate();
   }
 
   @Override
@@ -160,8 +349,23 @@ public class SimpleCommAdapter
 
   @Override
   public synchronized void clearCommandQueue() {
+    // The oldest command sent is the first one the vehicle may not have finished, yet.
+    MovementCommand firstSentCommand = getSentQueue().peek();
+    Integer firstOrderId = firstSentCommand == null ? null : orderIds.get(firstSentCommand);
+
     super.clearCommandQueue();
     orderIds.clear();
+    pendingRouteSegment.clear();
+
+    if (firstOrderId != null && orderCancellationEnabled) {
+      LOG.debug("{}: Revoking orders from order ID {} on.", getName(), firstOrderId);
+      // Enqueued before the orders are withdrawn, so it takes the first slot withdrawing frees.
+      requestResponseMatcher.enqueueRequest(new CancelRequest(Telegram.ID_DEFAULT, firstOrderId));
+    }
+    // Orders not sent, yet, or not acknowledged, yet, are not to be sent (again).
+    requestResponseMatcher.withdrawRequests(
+        request -> request instanceof OrderRequest || request instanceof RouteSegmentRequest
+    );
   }
 
   @Override
@@ -210,17 +414,11 @@ public class SimpleCommAdapter
                        VehicleProcessModel.Attribute.COMM_ADAPTER_CONNECTED.name())
         || Objects.equals(evt.getPropertyName(),
                           SimpleProcessModel.Attribute.PERIODIC_STATE_REQUESTS_ENABLED.name())) {
-      if (getProcessModel().isCommAdapterConnected()
-          && getProcessModel().isPeriodicStateRequestEnabled()) {
-        startPeriodicStateRequesting();
-      }
-      else {
-        stopPeriodicStateRequesting();
-      }
+      updatePeriodicStateRequesting();
     }
     if (Objects.equals(evt.getPropertyName(),
                        SimpleProcessModel.Attribute.PERIOD_STATE_REQUESTS_INTERVAL.name())) {
-      if (getProcessModel().isPeriodicStateRequestEnabled()) {
+      if (statePoller.isRunning()) {
         stopPeriodicStateRequesting();
         startPeriodicStateRequesting();
       }
@@ -238,8 +436,9 @@ public class SimpleCommAdapter
     //plant overview
     return new SimpleProcessModelTO()
         .setVehicleRef(getProcessModel().getVehicleReference())
-        .setCurrentState(getProcessModel().getCurrentState())
-        .setPreviousState(getProcessModel().getPreviousState())
+        // Copies, as the process model's state responses are recycled when replaced
+        .setCurrentState(new StateResponse(getProcessModel().getCurrentState().getRawContent()))
+        .setPreviousState(new StateResponse(getProcessModel().getPreviousState().getRawContent()))
         .setLastOrderSent(getProcessModel().getLastOrderSent())
         .setDisconnectingOnVehicleIdle(getProcessModel().isDisconnectingOnVehicleIdle())
         .setLoggingEnabled(getProcessModel().isLoggingEnabled())
@@ -266,16 +465,45 @@ public class SimpleCommAdapter
                 telegram.getOrderId(),
                 telegram.getDestinationId(),
                 telegram.getDestinationAction());
+      // The vehicle is about to get busy, so its state is needed more often now.
+      statePoller.setInterval(getProcessModel().getStateRequestInterval());
+
+      if (!routeSegmentsEnabled) {
+        // Add the telegram to the queue. Telegram will be send later when its the first telegram
+        // in the queue. This ensures that we always wait for a response until we send a new
+        // request.
+        requestResponseMatcher.enqueueRequest(telegram);
+        return;
+      }
 
-      // Add the telegram to the queue. Telegram will be send later when its the first telegram in 
-      // the queue. This ensures that we always wait for a response until we send a new request.
-      requestResponseMatcher.enqueueRequest(telegram);
+      // Pack the order with the ones of the commands sent along with it (which the kernel
+      // executor is busy with now) into a single route segment request.
+      pendingRouteSegment.add(telegram);
+      if (pendingRouteSegment.size() == 1) {
+        kernelExecutor.execute(this::enqueueRouteSegment);
+      }
+      else if (pendingRouteSegment.size() == RouteSegmentRequest.MAX_WAYPOINTS) {
+        enqueueRouteSegment();
+      }
     }
     catch (IllegalArgumentException exc) {
       LOG.error("{}: Failed to enqueue command {}", getName(), cmd, exc);
     }
   }
 
+  /**
+   * Checks whether the next movement command may be sent to the vehicle.
+   * The sent queue's capacity is that of a whole route segment, so unless route segments have been
+   * agreed on, only as many commands are sent as a vehicle accepting single orders can buffer.
+   *
+   * @return Whether the next movement command may be sent to the vehicle.
+   */
+  @Override
+  protected synchronized boolean canSendNextCommand() {
+    return super.canSendNextCommand()
+        && (routeSegmentsEnabled || getSentQueue().size() < SINGLE_ORDER_SENT_QUEUE_CAPACITY);
+  }
+
   @Override
   public ExplainedBoolean canProcess(@Nonnull TransportOrder order) {
     return canProcessOperations(
@@ -297,10 +525,17 @@ public class SimpleCommAdapter
     }
     LOG.debug("{}: connected", getName());
     getProcessModel().setCommAdapterConnected(true);
+    // The vehicle may be running different firmware after reconnecting.
+    applyProtocolCapabilities(ProtocolCapabilities.VERSION_1, telegramEncoder);
+    // ...and its clock may have been reset.
+    vehicleClock.reset();
+    // Resend the last request, which may have been lost with the previous connection
+    requestResponseMatcher.retransmitCurrentRequest();
+    // With one request in flight and the handshake being a control request, the handshake is
+    // sent before the state request.
+    negotiateProtocolCapabilities();
     // Request the vehicle's current state (preparation for the state requester task)
-    requestResponseMatcher.enqueueRequest(new StateRequest(Telegram.ID_DEFAULT));
-    // Check for resending last request
-    requestResponseMatcher.checkForSendingNextRequest();
+    requestResponseMatcher.enqueueRequest(StateRequest.newInstance(Telegram.ID_DEFAULT));
   }
 
   @Override
@@ -319,6 +554,7 @@ public class SimpleCommAdapter
   @Override
   public void onDisconnect() {
     LOG.debug("{}: disconnected", getName());
+    stopClockSync();
     getProcessModel().setCommAdapterConnected(false);
     getProcessModel().setVehicleIdle(true);
     getProcessModel().setVehicleState(Vehicle.State.UNKNOWN);
@@ -347,15 +583,42 @@ public class SimpleCommAdapter
     // Remember that we have received a sign of life from the vehicle
     getProcessModel().setVehicleIdle(false);
 
+    // A state pushed by the vehicle is not an answer to any request.
+    boolean pushed = statePushEnabled && response.getId() == StateResponse.PUSH_ID;
+    // Without cumulative acknowledgements agreed on, every order is answered on its own.
+    boolean cumulative = cumulativeAcknowledgementsEnabled;
+    if (response instanceof OrderResponseView) {
+      ((OrderResponseView) response).setCumulativeAcknowledgement(cumulative);
+    }
+    else if (response instanceof OrderResponse) {
+      ((OrderResponse) response).setCumulativeAcknowledgement(cumulative);
+    }
     //Check if the response matches the current request
-    if (!requestResponseMatcher.tryMatchWithCurrentRequest(response)) {
+    if (!pushed && !requestResponseMatcher.tryMatchWithCurrentRequest(response)) {
       // XXX Either ignore the message or close the connection
+      response.recycle();
       return;
     }
 
-    if (response instanceof StateResponse) {
+    if (response instanceof StateResponseView) {
+      // The view is only valid during this call, but the state is processed later.
+      onStateResponse(((StateResponseView) response).copy());
+    }
+    else if (response instanceof StateResponse) {
       onStateResponse((StateResponse) response);
     }
+    else if (response instanceof StateDeltaResponse) {
+      onStateDeltaResponse((StateDeltaResponse) response);
+    }
+    else if (response instanceof CancelResponse) {
+      int firstOrderId = ((CancelResponse) response).getFirstOrderId();
+      if (firstOrderId == 0) {
+        LOG.debug("{}: Vehicle had no orders left to revoke.", getName());
+      }
+      else {
+        LOG.debug("{}: Vehicle revoked orders from order ID {} on.", getName(), firstOrderId);
+      }
+    }
     else {
       LOG.debug("{}: Receiving response: {}", getName(), response);
     }
@@ -377,12 +640,133 @@ public class SimpleCommAdapter
     // Update the request's id
     telegram.updateRequestContent(globalRequestCounter.getAndIncrement());
 
-    vehicleChannelManager.send(telegram);
+    // Released by the encoder, as the matcher may recycle the request before it is written.
+    telegram.retain();
+    if (!vehicleChannelManager.send(telegram)) {
+      // The connection was lost in the meantime, so the request never reaches the encoder.
+      LOG.debug("{}: Connection lost - not sending request '{}'", getName(), telegram);
+      telegram.recycle();
+      return;
+    }
 
     // If the telegram is an order, remember it.
     if (telegram instanceof OrderRequest) {
       getProcessModel().setLastOrderSent((OrderRequest) telegram);
     }
+    else if (telegram instanceof RouteSegmentRequest) {
+      getProcessModel().setLastOrderSent(((RouteSegmentRequest) telegram).getLastOrder());
+    }
+  }
+
+  @Override
+  public void onRequestFailed(Request request) {
+    requireNonNull(request, "request");
+    LOG.warn("{}: Vehicle did not respond to request '{}'.", getName(), request);
+
+    if (request instanceof OrderRequest) {
+      int orderId = ((OrderRequest) request).getOrderId();
+      kernelExecutor.submit(() -> onOrderFailed(orderId));
+    }
+    else if (request instanceof RouteSegmentRequest) {
+      for (OrderRequest order : ((RouteSegmentRequest) request).getOrders()) {
+        int orderId = order.getOrderId();
+        kernelExecutor.submit(() -> onOrderFailed(orderId));
+      }
+    }
+  }
+
+  @Override
+  public void onRequestStalled(Request request, long outstandingMillis) {
+    requireNonNull(request, "request");
+    LOG.warn("{}: Vehicle has not responded to request '{}' for {} ms.",
+             getName(),
+             request,
+             outstandingMillis);
+  }
+
+  /**
+   * Announces this comm adapter's protocol capabilities to the vehicle and applies the
+   * capabilities both sides support once the vehicle has answered.
+   * Like any other request, the handshake request is retransmitted if a response does not arrive
+   * in time, so a single lost response does not cost the optional features for the rest of the
+   * connection.
+   * If the vehicle does not answer within the configured handshake timeout, it is assumed to
+   * support protocol version 1 only.
+   */
+  private void negotiateProtocolCapabilities() {
+    VehicleTelegramEncoder encoder = telegramEncoder;
+    requestResponseMatcher
+        .request(new HandshakeRequest(Telegram.ID_DEFAULT, SUPPORTED_CAPABILITIES),
+                 HandshakeResponse.class,
+                 handshakeTimeout,
+                 TimeUnit.MILLISECONDS)
+        .whenComplete((response, exc) -> {
+          if (exc != null) {
+            LOG.info("{}: No handshake response, assuming protocol version 1: {}",
+                     getName(),
+                     exc.getMessage());
+            return;
+          }
+          ProtocolCapabilities agreed
+              = SUPPORTED_CAPABILITIES.negotiate(response.getCapabilities());
+          LOG.info("{}: Agreed on protocol capabilities: {}", getName(), agreed);
+          applyProtocolCapabilities(agreed, encoder);
+        });
+  }
+
+  private void applyProtocolCapabilities(ProtocolCapabilities capabilities,
+                                         VehicleTelegramEncoder encoder) {
+    if (encoder != null) {
+      encoder.setMaxFrameLength(capabilities.getMaxFrameLength());
+      encoder.setBatchFramesEnabled(capabilities.supports(ProtocolFeature.BATCH_FRAMES));
+    }
+    requestResponseMatcher.setMaxRequestsInFlight(capabilities.getMaxWindow());
+    statePushEnabled = capabilities.supports(ProtocolFeature.STATE_PUSH);
+    // A vehicle pushing its state is not polled, until the connection falls back to version 1.
+    updatePeriodicStateRequesting();
+    routeSegmentsEnabled = capabilities.supports(ProtocolFeature.ROUTE_SEGMENTS);
+    orderCancellationEnabled = capabilities.supports(ProtocolFeature.ORDER_CANCELLATION);
+    cumulativeAcknowledgementsEnabled
+        = capabilities.supports(ProtocolFeature.CUMULATIVE_ACKNOWLEDGEMENTS);
+    if (capabilities.supports(ProtocolFeature.CLOCK_SYNC)) {
+      startClockSync();
+    }
+    else {
+      stopClockSync();
+    }
+    kernelExecutor.submit(() -> getProcessModel().setProtocolCapabilities(capabilities));
+  }
+
+  /**
+   * Enqueues the orders of the commands sent since the last call, as a single order request if
+   * there is only one, or as a route segment request.
+   */
+  private synchronized void enqueueRouteSegment() {
+    if (pendingRouteSegment.isEmpty()) {
+      return;
+    }
+    if (pendingRouteSegment.size() == 1) {
+      requestResponseMatcher.enqueueRequest(pendingRouteSegment.get(0));
+    }
+    else {
+      requestResponseMatcher.enqueueRequest(new RouteSegmentRequest(Telegram.ID_DEFAULT,
+                                                                    pendingRouteSegment));
+    }
+    pendingRouteSegment.clear();
+  }
+
+  private void onOrderFailed(int orderId) {
+    for (Map.Entry<MovementCommand, Integer> entry : orderIds.entrySet()) {
+      if (entry.getValue() == orderId) {
+        LOG.debug("{}: Reporting command with order ID {} as failed: {}",
+                  getName(),
+                  orderId,
+                  entry.getKey());
+        orderIds.remove(entry.getKey());
+        getProcessModel().commandFailed(entry.getKey());
+        return;
+      }
+    }
   }
 
   private ExplainedBoolean canProcessOperations(List<String> operations) {
@@ -440,63 +824,183 @@ public class SimpleCommAdapter
     return requestResponseMatcher;
   }
 
+  /**
+   * Returns the estimates of the offset and drift of the vehicle's clock, which allow converting
+   * the vehicle's timestamps to the control system's clock.
+   *
+   * @return The estimates of the offset and drift of the vehicle's clock.
+   */
+  public VehicleClock getVehicleClock() {
+    return vehicleClock;
+  }
+
+  private synchronized void startClockSync() {
+    if (clockSyncFuture != null) {
+      return;
+    }
+
+    LOG.debug("{}: Starting clock synchronization...", getName());
+
+    clockSyncFuture = kernelExecutor.scheduleAtFixedRate(() -> synchronizeClock(),
+                                                         0,
+                                                         CLOCK_SYNC_INTERVAL,
+                                                         TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void stopClockSync() {
+    if (clockSyncFuture == null) {
+      return;
+    }
+
+    LOG.debug("{}: Stopping clock synchronization...", getName());
+
+    clockSyncFuture.cancel(false);
+    clockSyncFuture = null;
+  }
+
+  private void synchronizeClock() {
+    requestResponseMatcher
+        .request(new TimeSyncRequest(Telegram.ID_DEFAULT),
+                 TimeSyncResponse.class,
+                 CLOCK_SYNC_TIMEOUT,
+                 TimeUnit.MILLISECONDS)
+        .whenComplete((response, exc) -> {
+          if (exc != null) {
+            LOG.debug("{}: No time synchronization response: {}", getName(), exc.getMessage());
+            return;
+          }
+          vehicleClock.addSample(response);
+          LOG.debug("{}: Synchronized vehicle clock: {}", getName(), vehicleClock);
+        });
+  }
+
+  /**
+   * Starts or stops the periodic state requests, depending on whether the vehicle is connected,
+   * periodic state requests are enabled and the vehicle's state has to be requested at all, i.e.
+   * it does not push its state.
+   */
+  private synchronized void updatePeriodicStateRequesting() {
+    boolean requesting = getProcessModel().isCommAdapterConnected()
+        && getProcessModel().isPeriodicStateRequestEnabled()
+        && !statePushEnabled;
+    if (requesting && !statePoller.isRunning()) {
+      startPeriodicStateRequesting();
+    }
+    else if (!requesting && statePoller.isRunning()) {
+      stopPeriodicStateRequesting();
+    }
+  }
+
   private void startPeriodicStateRequesting() {
-    if (stateRequestFuture != null) {
+    if (statePoller.isRunning()) {
       LOG.warn("Periodic state requesting already running - not started again.");
       return;
     }
 
     LOG.debug("Starting periodic state requests...");
 
-    stateRequestFuture = kernelExecutor.scheduleAtFixedRate(
-        () -> requestStateFromVehicle(),
-        getProcessModel().getStateRequestInterval(),
-        getProcessModel().getStateRequestInterval(),
-        TimeUnit.MILLISECONDS
-    );
+    statePoller.start(getStateRequestInterval());
   }
 
   private void stopPeriodicStateRequesting() {
-    if (stateRequestFuture == null) {
+    if (!statePoller.isRunning()) {
       LOG.warn("Periodic state requesting not running - not stopped.");
       return;
     }
 
     LOG.debug("Stopping periodic state requests...");
 
-    stateRequestFuture.cancel(false);
-    stateRequestFuture = null;
+    statePoller.stop();
+  }
+
+  /**
+   * Returns the time to wait before the vehicle's state is requested next, depending on what the
+   * vehicle is doing.
+   *
+   * @return The time (in ms) to wait before the vehicle's state is requested next.
+   */
+  private int getStateRequestInterval() {
+    return statePollingPolicy.getInterval(getProcessModel().getStateRequestInterval(),
+                                          getProcessModel().getCurrentState().getOperationState(),
+                                          !getSentQueue().isEmpty());
   }
 
+  /**
+   * Requests the vehicle's state.
+   * Runs on the kernel executor, handed over by the state poller.
+   */
   private void requestStateFromVehicle() {
-    if (expectingStateResponse) {
-      LOG.warn("No response to previous state request, yet - not sending another one.");
-    }
-    else {
-      requestResponseMatcher.enqueueRequest(new StateRequest(Telegram.ID_DEFAULT));
-      expectingStateResponse = true;
+    if (statePushEnabled) {
+      // A poll handed over just before state push was agreed on. The vehicle pushes its state
+      // whenever it changes, and its heartbeats keep the connection from being considered idle.
+      return;
     }
+    // The matcher drops the request if another state request is still pending.
+    requestResponseMatcher.enqueueRequest(StateRequest.newInstance(Telegram.ID_DEFAULT));
   }
 
   private void onStateResponse(StateResponse stateResponse) {
     requireNonNull(stateResponse, "stateResponse");
 
-    expectingStateResponse = false;
+    // Replaces any state not applied, yet.
+    stateMailbox.offer(stateResponse);
+  }
+
+  private void onStateDeltaResponse(StateDeltaResponse delta) {
+    requireNonNull(delta, "delta");
+
+    // Folded into any state not applied, yet.
+    stateMailbox.offer(delta);
+  }
+
+  /**
+   * Applies the latest state update received.
+   * Called on the kernel executor.
+   *
+   * @param update The update, either a full state or a delta relative to the current state.
+   */
+  private void applyStateUpdate(Response update) {
+    if (update instanceof StateResponse) {
+      updateVehicleState((StateResponse) update);
+      return;
+    }
+
+    // The delta is applied on the kernel executor, where its base has been processed, too.
+    StateDeltaResponse delta = (StateDeltaResponse) update;
+    StateResponse base = getProcessModel().getCurrentState();
+    if (base.getId() != delta.getBaseId()) {
+      LOG.debug("{}: Ignoring state delta relative to {}, current state is {}. "
+          + "Waiting for the next full state.",
+                getName(),
+                delta.getBaseId(),
+                base.getId());
+      return;
+    }
+    updateVehicleState(delta.applyTo(base));
+  }
 
+  /**
+   * Updates the vehicle's current state and remembers the old one.
+   * Must be called on the kernel executor.
+   *
+   * @param currentState The vehicle's current state.
+   */
+  private void updateVehicleState(StateResponse currentState) {
     final StateResponse previousState = getProcessModel().getCurrentState();
-    final StateResponse currentState = stateResponse;
+    final StateResponse outdatedState = getProcessModel().getPreviousState();
+    getProcessModel().setPreviousState(previousState);
+    getProcessModel().setCurrentState(currentState);
 
-    kernelExecutor.submit(() -> {
-      // Update the vehicle's current state and remember the old one.
-      getProcessModel().setPreviousState(previousState);
-      getProcessModel().setCurrentState(currentState);
+    checkForVehiclePositionUpdate(previousState, currentState);
+    checkForVehicleStateUpdate(previousState, currentState);
+    checkOrderFinished(previousState, currentState);
+    // The vehicle may have become busy or idle, or have finished its orders.
+    statePoller.setInterval(getStateRequestInterval());
 
-      checkForVehiclePositionUpdate(previousState, currentState);
-      checkForVehicleStateUpdate(previousState, currentState);
-      checkOrderFinished(previousState, currentState);
+    // XXX Process further state updates extracted from the telegram here.
 
-      // XXX Process further state updates extracted from the telegram here.
-    });
+    // The state response received before the previous one is not referenced any more.
+    outdatedState.recycle();
   }
 
   private void checkForVehiclePositionUpdate(StateResponse previousState,
@@ -574,19 +1078,54 @@ public class SimpleCommAdapter
     }
   }
 
+  /**
+   * Registers the given MBean via JMX.
+   *
+   * @param mbean The MBean.
+   * @param type The MBean's type.
+   * @return The name the MBean has been registered with, or {@code null}, if it could not be
+   * registered.
+   */
+  private ObjectName registerMBean(Object mbean, String type) {
+    try {
+      ObjectName objectName = new ObjectName("com.sxj.commadapter.vehicle:"
+          + "type=" + type + ","
+          + "vehicle=" + ObjectName.quote(getName()));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+      return objectName;
+    }
+    catch (JMException exc) {
+      LOG.warn("{}: Could not register {} via JMX.", getName(), type, exc);
+      return null;
+    }
+  }
+
+  private void unregisterMBean(ObjectName objectName) {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+    catch (JMException exc) {
+      LOG.warn("{}: Could not unregister {} via JMX.", getName(), objectName, exc);
+    }
+  }
+
   /**
    * Returns the channel handlers responsible for writing and reading from the byte stream.
    *
    * @return The channel handlers responsible for writing and reading from the byte stream
    */
   private List<ChannelHandler> getChannelHandlers() {
-    return Arrays.asList(new LengthFieldBasedFrameDecoder(getMaxTelegramLength(), 1, 1, 2, 0),
-                         new VehicleTelegramDecoder(this),
-                         new VehicleTelegramEncoder());
-  }
-
-  private int getMaxTelegramLength() {
-    return Ints.max(OrderResponse.TELEGRAM_LENGTH,
-                    StateResponse.TELEGRAM_LENGTH);
+    telegramEncoder = new VehicleTelegramEncoder();
+    return Arrays.asList(new VehicleTelegramDecoder(this,
+                                                    decoderStatistics,
+                                                    responseTypeRegistry),
+                         telegramEncoder,
+                         new FlushConsolidationHandler(
+                             FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES,
+                             true
+                         ));
   }
 }
@@ -29,4 +29,64 @@ public interface SimpleCommAdapterConfiguration {
       orderKey = "0_enable")
   boolean enable();
 
+  @ConfigurationEntry(
+      type = "Integer",
+      description = "The time (in ms) to wait for a response before a request is retransmitted.",
+      orderKey = "1_requests_0")
+  int responseTimeout();
+
+  @ConfigurationEntry(
+      type = "Integer",
+      description = "The maximum number of retransmissions before a request is given up on.",
+      orderKey = "1_requests_1")
+  int maxRetransmissions();
+
+  @ConfigurationEntry(
+      type = "Double",
+      description = "The factor by which the response timeout grows with every retransmission.",
+      orderKey = "1_requests_2")
+  double retransmissionBackoffFactor();
+
+  @ConfigurationEntry(
+      type = "Integer",
+      description = "The upper bound (in ms) for the response timeout.",
+      orderKey = "1_requests_3")
+  int maxResponseTimeout();
+
+  @ConfigurationEntry(
+      type = "Integer",
+      description = {"The time (in ms) after which an unanswered request is reported as stalled.",
+                     "0 disables stall detection."},
+      orderKey = "1_requests_4")
+  int stallThreshold();
+
+  @ConfigurationEntry(
+      type = "Integer",
+      description = {"The time (in ms) to wait for the vehicle's handshake response, including "
+          + "retransmissions, before assuming protocol version 1.",
+                     "Requests are only sent once the handshake has been answered or given up on."},
+      orderKey = "1_requests_5")
+  int handshakeTimeout();
+
+  @ConfigurationEntry(
+      type = "Integer",
+      description = {"The time (in ms) between state requests while a vehicle is idle.",
+                     "Never shorter than the vehicle's own state request interval."},
+      orderKey = "2_polling_0")
+  int idleStateRequestInterval();
+
+  @ConfigurationEntry(
+      type = "Integer",
+      description = {"The time (in ms) between state requests while a vehicle is charging.",
+                     "Never shorter than the vehicle's own state request interval."},
+      orderKey = "2_polling_1")
+  int chargingStateRequestInterval();
+
+  @ConfigurationEntry(
+      type = "Integer",
+      description = {"The time (in ms) between state requests while a vehicle reports an error.",
+                     "Never shorter than the vehicle's own state request interval."},
+      orderKey = "2_polling_2")
+  int errorStateRequestInterval();
+
 }
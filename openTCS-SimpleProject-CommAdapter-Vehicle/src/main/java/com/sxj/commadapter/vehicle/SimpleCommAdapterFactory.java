@@ -33,6 +33,14 @@ public class SimpleCommAdapterFactory
    * The factory to create components specific to the comm adapter.
    */
   private final SimpleAdapterComponentsFactory componentsFactory;
+  /**
+   * Provides the timer shared by all comm adapters.
+   */
+  private final SharedTimerProvider timerProvider;
+  /**
+   * Schedules the state requests of all comm adapters.
+   */
+  private final FleetPollScheduler pollScheduler;
   /**
    * This component's initialized flag.
    */
@@ -42,10 +50,16 @@ public class SimpleCommAdapterFactory
    * Creates a new instance.
    *
    * @param componentsFactory The factory to create components specific to the comm adapter.
+   * @param timerProvider Provides the timer shared by all comm adapters.
+   * @param pollScheduler Schedules the state requests of all comm adapters.
    */
   @Inject
-  public SimpleCommAdapterFactory(SimpleAdapterComponentsFactory componentsFactory) {
+  public SimpleCommAdapterFactory(SimpleAdapterComponentsFactory componentsFactory,
+                                  SharedTimerProvider timerProvider,
+                                  FleetPollScheduler pollScheduler) {
     this.componentsFactory = requireNonNull(componentsFactory, "componentsFactory");
+    this.timerProvider = requireNonNull(timerProvider, "timerProvider");
+    this.pollScheduler = requireNonNull(pollScheduler, "pollScheduler");
   }
 
   @Override
@@ -54,6 +68,8 @@ public class SimpleCommAdapterFactory
       LOG.debug("Already initialized.");
       return;
     }
+    // The timer wheel is stopped whenever the factory is terminated, so a new one is needed.
+    timerProvider.start();
     initialized = true;
   }
 
@@ -68,6 +84,10 @@ public class SimpleCommAdapterFactory
       LOG.debug("Not initialized.");
       return;
     }
+    // The factory is terminated whenever the kernel leaves its operating mode, e.g. for a model
+    // upload, and initialized again afterwards, which creates a new timer wheel.
+    pollScheduler.stopAll();
+    timerProvider.stop();
     initialized = false;
   }
 
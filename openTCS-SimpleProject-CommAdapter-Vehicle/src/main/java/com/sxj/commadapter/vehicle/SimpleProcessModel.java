@@ -8,6 +8,7 @@
 package com.sxj.commadapter.vehicle;
 
 import com.sxj.commadapter.vehicle.telegrams.OrderRequest;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolCapabilities;
 import com.sxj.commadapter.vehicle.telegrams.StateRequest;
 import com.sxj.commadapter.vehicle.telegrams.StateResponse;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -80,6 +81,10 @@ public class SimpleProcessModel
    * Whether logging should be enabled or not.
    */
   private boolean loggingEnabled = false;
+  /**
+   * The protocol capabilities agreed on with the vehicle.
+   */
+  private ProtocolCapabilities protocolCapabilities = ProtocolCapabilities.VERSION_1;
 
   /**
    * Creates a new instance.
@@ -386,6 +391,33 @@ public class SimpleProcessModel
                                                   loggingEnabled);
   }
 
+  /**
+   * Returns the protocol capabilities agreed on with the vehicle.
+   * Until a handshake with the vehicle has been completed, these are the capabilities of protocol
+   * version 1.
+   *
+   * @return The protocol capabilities agreed on with the vehicle.
+   */
+  @Nonnull
+  public synchronized ProtocolCapabilities getProtocolCapabilities() {
+    return protocolCapabilities;
+  }
+
+  /**
+   * Sets the protocol capabilities agreed on with the vehicle.
+   *
+   * @param protocolCapabilities The protocol capabilities agreed on with the vehicle.
+   */
+  public synchronized void setProtocolCapabilities(
+      @Nonnull ProtocolCapabilities protocolCapabilities) {
+    ProtocolCapabilities oldValue = this.protocolCapabilities;
+    this.protocolCapabilities = requireNonNull(protocolCapabilities, "protocolCapabilities");
+
+    getPropertyChangeSupport().firePropertyChange(Attribute.PROTOCOL_CAPABILITIES.name(),
+                                                  oldValue,
+                                                  protocolCapabilities);
+  }
+
   /**
    * Model attributes specific to this implementation.
    */
@@ -402,6 +434,7 @@ public class SimpleProcessModel
     DISCONNECTING_ON_IDLE,
     RECONNECTING_ON_CONNECTION_LOSS,
     LOGGING_ENABLED,
-    RECONNECT_DELAY;
+    RECONNECT_DELAY,
+    PROTOCOL_CAPABILITIES;
   }
 }
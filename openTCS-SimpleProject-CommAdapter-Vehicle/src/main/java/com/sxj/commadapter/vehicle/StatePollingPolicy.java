@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.OperationState;
+import static java.util.Objects.requireNonNull;
+import javax.inject.Inject;
+import static org.opentcs.util.Assertions.checkArgument;
+
+/**
+ * Decides how often a vehicle's state is requested, depending on what the vehicle is doing.
+ * <p>
+ * While the vehicle is moving or acting, or has orders it has not finished, yet, its state is
+ * requested at the interval set for it, so finished orders and position changes are noticed
+ * quickly.
+ * While it is idle, charging or in an error state, its state is requested at the longer intervals
+ * configured for these states.
+ * </p>
+ */
+public class StatePollingPolicy {
+
+  /**
+   * The time (in ms) between state requests while the vehicle is idle.
+   */
+  private final int idleInterval;
+  /**
+   * The time (in ms) between state requests while the vehicle is charging.
+   */
+  private final int chargingInterval;
+  /**
+   * The time (in ms) between state requests while the vehicle is in an error state.
+   */
+  private final int errorInterval;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param configuration The comm adapter's configuration.
+   */
+  @Inject
+  public StatePollingPolicy(SimpleCommAdapterConfiguration configuration) {
+    this(requireNonNull(configuration, "configuration").idleStateRequestInterval(),
+         configuration.chargingStateRequestInterval(),
+         configuration.errorStateRequestInterval());
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param idleInterval The time (in ms) between state requests while the vehicle is idle.
+   * @param chargingInterval The time (in ms) between state requests while the vehicle is charging.
+   * @param errorInterval The time (in ms) between state requests while the vehicle is in an error
+   * state.
+   */
+  public StatePollingPolicy(int idleInterval, int chargingInterval, int errorInterval) {
+    checkArgument(idleInterval > 0, "idleInterval must be positive: %s", idleInterval);
+    checkArgument(chargingInterval > 0, "chargingInterval must be positive: %s", chargingInterval);
+    checkArgument(errorInterval > 0, "errorInterval must be positive: %s", errorInterval);
+    this.idleInterval = idleInterval;
+    this.chargingInterval = chargingInterval;
+    this.errorInterval = errorInterval;
+  }
+
+  /**
+   * Returns the time to wait before the vehicle's state is requested next.
+   * The result is never shorter than the given active interval.
+   *
+   * @param activeInterval The time (in ms) between state requests while the vehicle is busy.
+   * @param operationState The vehicle's last reported operation state.
+   * @param ordersOutstanding Whether orders have been sent to the vehicle that it has not
+   * finished, yet.
+   * @return The time (in ms) to wait before the vehicle's state is requested next.
+   */
+  public int getInterval(int activeInterval,
+                         OperationState operationState,
+                         boolean ordersOutstanding) {
+    requireNonNull(operationState, "operationState");
+
+    if (ordersOutstanding) {
+      return activeInterval;
+    }
+    switch (operationState) {
+      case IDLE:
+        return Math.max(activeInterval, idleInterval);
+      case CHARGING:
+        return Math.max(activeInterval, chargingInterval);
+      case ERROR:
+        return Math.max(activeInterval, errorInterval);
+      default:
+        return activeInterval;
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+import com.sxj.commadapter.vehicle.telegrams.StateDeltaResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse;
+import com.sxj.common.telegrams.Response;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import static java.util.Objects.requireNonNull;
+import javax.inject.Inject;
+import org.opentcs.customizations.kernel.KernelExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the states received from all vehicles over to the kernel executor, applying only the
+ * latest state of every vehicle.
+ * <p>
+ * Every vehicle gets a {@link Mailbox}, which holds at most one pending state update: a newer state
+ * response replaces the pending one, and a state delta is folded into it.
+ * Whenever a mailbox receives an update while it has none pending, it is queued for the next drain
+ * task, which delivers the pending updates of up to {@link #MAX_DRAIN_BATCH_SIZE} vehicles in a
+ * single run on the kernel executor.
+ * If the kernel executor falls behind, stale states are thus dropped instead of piling up.
+ * </p>
+ * <p>
+ * Dropping intermediate states is safe for the transitions derived from them, as long as these
+ * are derived from the latest state alone: the last finished order ID, for instance, implies that
+ * all orders sent before are finished, too.
+ * </p>
+ */
+public class StateUpdateDispatcher {
+
+  /**
+   * The maximum number of mailboxes drained in a single run on the kernel executor.
+   * Any further mailboxes are drained in another run, so other tasks are not held up for long.
+   */
+  public static final int MAX_DRAIN_BATCH_SIZE = 64;
+  /**
+   * This class's Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(StateUpdateDispatcher.class);
+  /**
+   * The executor the updates are delivered on.
+   */
+  private final Executor kernelExecutor;
+  /**
+   * The mailboxes with pending updates, in the order they received them.
+   */
+  private final Queue<Mailbox> readyMailboxes = new ConcurrentLinkedQueue<>();
+  /**
+   * Whether a drain task has been submitted to the kernel executor and not started, yet.
+   */
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+  /**
+   * Creates a new instance.
+   *
+   * @param kernelExecutor The kernel's executor service.
+   */
+  @Inject
+  public StateUpdateDispatcher(@KernelExecutor ScheduledExecutorService kernelExecutor) {
+    this((Executor) kernelExecutor);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param kernelExecutor The executor the updates are delivered on.
+   */
+  StateUpdateDispatcher(Executor kernelExecutor) {
+    this.kernelExecutor = requireNonNull(kernelExecutor, "kernelExecutor");
+  }
+
+  /**
+   * Creates a new, empty mailbox.
+   *
+   * @param name The mailbox's name, e.g. the name of the vehicle.
+   * @param updateHandler Applies the updates delivered on the kernel executor, which are either
+   * {@link StateResponse}s or {@link StateDeltaResponse}s.
+   * @return The new mailbox.
+   */
+  public Mailbox createMailbox(String name, Consumer<Response> updateHandler) {
+    return new Mailbox(requireNonNull(name, "name"),
+                       requireNonNull(updateHandler, "updateHandler"));
+  }
+
+  private void scheduleDrain(Mailbox mailbox) {
+    readyMailboxes.add(mailbox);
+    if (drainScheduled.compareAndSet(false, true)) {
+      kernelExecutor.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    // Updates arriving from now on need another run unless they are still taken by this one.
+    drainScheduled.set(false);
+    for (int i = 0; i < MAX_DRAIN_BATCH_SIZE; i++) {
+      Mailbox mailbox = readyMailboxes.poll();
+      if (mailbox == null) {
+        return;
+      }
+      mailbox.deliver();
+    }
+    if (!readyMailboxes.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+      kernelExecutor.execute(this::drain);
+    }
+  }
+
+  /**
+   * Holds the latest state update of a single vehicle until it is delivered.
+   */
+  public class Mailbox {
+
+    /**
+     * The mailbox's name.
+     */
+    private final String name;
+    /**
+     * Applies the updates delivered.
+     */
+    private final Consumer<Response> updateHandler;
+    /**
+     * The pending update, or {@code null}, if there is none.
+     */
+    private Response pending;
+    /**
+     * The number of updates replaced or folded before they were delivered.
+     */
+    private long conflatedCount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name The mailbox's name.
+     * @param updateHandler Applies the updates delivered.
+     */
+    private Mailbox(String name, Consumer<Response> updateHandler) {
+      this.name = name;
+      this.updateHandler = updateHandler;
+    }
+
+    /**
+     * Puts the given state into the mailbox, replacing any pending update.
+     * The mailbox takes over the state and recycles it if it is replaced before being delivered.
+     *
+     * @param state The state.
+     */
+    public void offer(StateResponse state) {
+      requireNonNull(state, "state");
+
+      Response replaced;
+      synchronized (this) {
+        replaced = pending;
+        pending = state;
+        if (replaced != null) {
+          conflatedCount++;
+        }
+      }
+      if (replaced == null) {
+        scheduleDrain(this);
+      }
+      else {
+        replaced.recycle();
+      }
+    }
+
+    /**
+     * Puts the given delta into the mailbox, folding it into the pending update, if any.
+     * A delta not relative to the pending update is dropped, as it cannot be applied any more.
+     *
+     * @param delta The delta.
+     */
+    public void offer(StateDeltaResponse delta) {
+      requireNonNull(delta, "delta");
+
+      Response folded;
+      synchronized (this) {
+        folded = pending;
+        if (folded == null) {
+          pending = delta;
+        }
+        else if (folded.getId() != delta.getBaseId()) {
+          LOG.debug("{}: Dropping state delta relative to {}, pending update is {}.",
+                    name,
+                    delta.getBaseId(),
+                    folded.getId());
+          return;
+        }
+        else if (folded instanceof StateResponse) {
+          pending = delta.applyTo((StateResponse) folded);
+          conflatedCount++;
+        }
+        else {
+          pending = ((StateDeltaResponse) folded).followedBy(delta);
+          conflatedCount++;
+        }
+      }
+      if (folded == null) {
+        scheduleDrain(this);
+      }
+      else {
+        folded.recycle();
+      }
+    }
+
+    /**
+     * Discards the pending update, if any.
+     */
+    public void clear() {
+      Response discarded;
+      synchronized (this) {
+        discarded = pending;
+        pending = null;
+      }
+      if (discarded != null) {
+        discarded.recycle();
+      }
+    }
+
+    /**
+     * Returns the number of updates replaced or folded before they were delivered.
+     *
+     * @return The number of updates replaced or folded.
+     */
+    public synchronized long getConflatedCount() {
+      return conflatedCount;
+    }
+
+    /**
+     * Delivers the pending update, if any.
+     * Must be called on the kernel executor.
+     */
+    private void deliver() {
+      Response update;
+      synchronized (this) {
+        update = pending;
+        pending = null;
+      }
+      if (update == null) {
+        // Cleared after it was queued.
+        return;
+      }
+      try {
+        updateHandler.accept(update);
+      }
+      catch (RuntimeException exc) {
+        LOG.warn("{}: Failed to apply state update {}", name, update, exc);
+      }
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+/**
+ * Defines batch frames (protocol version 2), which carry several telegrams in one frame.
+ * <p>
+ * A batch frame is framed like any other telegram (STX, SIZE, TYPE, ..., CHECKSUM, ETX), with
+ * {@link #TYPE} as its type and without an id of its own.
+ * Its payload is a sequence of entries, each consisting of a telegram's SIZE, TYPE, id and fields,
+ * i.e. the telegram without its STX, CHECKSUM and ETX.
+ * The checksum of the batch frame covers all entries, so the telegrams in it have no checksums of
+ * their own.
+ * </p>
+ */
+public final class BatchFrames {
+
+  /**
+   * The type of batch frames.
+   */
+  public static final byte TYPE = 0x10;
+  /**
+   * The maximum size of a batch frame's payload (the type and the entries).
+   */
+  public static final int MAX_PAYLOAD_LENGTH = 0xFF;
+  /**
+   * The maximum length of a batch frame.
+   */
+  public static final int MAX_FRAME_LENGTH = MAX_PAYLOAD_LENGTH + 4;
+
+  /**
+   * Prevents instantiation.
+   */
+  private BatchFrames() {
+  }
+}
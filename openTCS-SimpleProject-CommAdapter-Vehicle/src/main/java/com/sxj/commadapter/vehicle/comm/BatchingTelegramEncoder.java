@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.common.telegrams.TelegramLayout;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.PromiseNotifier;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+import static org.opentcs.util.Assertions.checkArgument;
+
+/**
+ * Encodes outgoing telegrams, optionally packing the telegrams written between two flushes into
+ * {@link BatchFrames batch frames}.
+ * <p>
+ * Without batch frames, every telegram is written to a buffer of its exact length as soon as it is
+ * written to the channel.
+ * With batch frames, telegrams are collected until the channel is flushed or the batch frame is
+ * full.
+ * A single collected telegram is still written as a plain telegram, so a batch frame is only used
+ * when it actually saves something.
+ * To have several telegrams written between two flushes while every telegram is written and
+ * flushed on its own, a {@link io.netty.handler.flush.FlushConsolidationHandler} should
+ * follow this handler in the pipeline.
+ * </p>
+ *
+ * @param <T> The type of telegrams encoded.
+ */
+public abstract class BatchingTelegramEncoder<T>
+    extends ChannelOutboundHandlerAdapter {
+
+  /**
+   * The type of telegrams encoded. Any other messages are passed on unchanged.
+   */
+  private final Class<T> telegramType;
+  /**
+   * The buffer every telegram is encoded to before being added to a batch frame.
+   */
+  private final ByteBuf telegramBuffer = Unpooled.buffer(BatchFrames.MAX_FRAME_LENGTH);
+  /**
+   * The entries of the batch frame being collected.
+   */
+  private final ByteBuf pendingEntries = Unpooled.buffer(BatchFrames.MAX_PAYLOAD_LENGTH);
+  /**
+   * The promises of the telegrams in the batch frame being collected.
+   */
+  private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+  /**
+   * Whether telegrams are packed into batch frames.
+   */
+  private volatile boolean batchFramesEnabled;
+  /**
+   * The maximum length of a batch frame.
+   */
+  private volatile int maxFrameLength = BatchFrames.MAX_FRAME_LENGTH;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param telegramType The type of telegrams encoded.
+   */
+  protected BatchingTelegramEncoder(Class<T> telegramType) {
+    this.telegramType = requireNonNull(telegramType, "telegramType");
+  }
+
+  /**
+   * Returns whether telegrams are packed into batch frames.
+   *
+   * @return Whether telegrams are packed into batch frames.
+   */
+  public boolean isBatchFramesEnabled() {
+    return batchFramesEnabled;
+  }
+
+  /**
+   * Sets whether telegrams are packed into batch frames.
+   * Should only be enabled if the receiver supports batch frames.
+   *
+   * @param batchFramesEnabled Whether telegrams are packed into batch frames.
+   */
+  public void setBatchFramesEnabled(boolean batchFramesEnabled) {
+    this.batchFramesEnabled = batchFramesEnabled;
+  }
+
+  /**
+   * Returns the maximum length of a batch frame.
+   *
+   * @return The maximum length of a batch frame.
+   */
+  public int getMaxFrameLength() {
+    return maxFrameLength;
+  }
+
+  /**
+   * Sets the maximum length of a batch frame, e.g. as agreed on with the receiver.
+   * Lengths beyond {@link BatchFrames#MAX_FRAME_LENGTH} are capped.
+   * Telegrams longer than this are still sent, as plain telegrams.
+   *
+   * @param maxFrameLength The maximum length of a batch frame.
+   */
+  public void setMaxFrameLength(int maxFrameLength) {
+    checkArgument(maxFrameLength > 0, "maxFrameLength must be positive: %s", maxFrameLength);
+    this.maxFrameLength = Math.min(maxFrameLength, BatchFrames.MAX_FRAME_LENGTH);
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (!telegramType.isInstance(msg)) {
+      ctx.write(msg, promise);
+      return;
+    }
+    T telegram = telegramType.cast(msg);
+
+    if (!batchFramesEnabled && pendingPromises.isEmpty()) {
+      ByteBuf out = ctx.alloc().ioBuffer(getTelegramLength(telegram));
+      try {
+        encodeTelegram(telegram, out);
+      }
+      catch (RuntimeException exc) {
+        out.release();
+        throw exc;
+      }
+      ctx.write(out, promise);
+      return;
+    }
+
+    telegramBuffer.clear();
+    encodeTelegram(telegram, telegramBuffer);
+    // The entry is the telegram without its STX, CHECKSUM and ETX.
+    int entryLength = telegramBuffer.readableBytes() - 3;
+    // The batch frame's STX, SIZE, TYPE, CHECKSUM and ETX around the entries
+    if (pendingEntries.readableBytes() + entryLength + 5 > maxFrameLength) {
+      writePending(ctx);
+    }
+    pendingEntries.writeBytes(telegramBuffer, 1, entryLength);
+    pendingPromises.add(promise);
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx)
+      throws Exception {
+    writePending(ctx);
+    ctx.flush();
+  }
+
+  @Override
+  public void close(ChannelHandlerContext ctx, ChannelPromise promise)
+      throws Exception {
+    discardPending();
+    ctx.close(promise);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx)
+      throws Exception {
+    discardPending();
+    telegramBuffer.release();
+    pendingEntries.release();
+  }
+
+  /**
+   * Returns the length of the given telegram.
+   *
+   * @param telegram The telegram.
+   * @return The length of the given telegram.
+   */
+  protected abstract int getTelegramLength(T telegram);
+
+  /**
+   * Writes the given telegram, including STX, SIZE, CHECKSUM and ETX, to the given buffer.
+   *
+   * @param telegram The telegram.
+   * @param out The buffer to write to.
+   */
+  protected abstract void encodeTelegram(T telegram, ByteBuf out);
+
+  private void writePending(ChannelHandlerContext ctx) {
+    if (pendingPromises.isEmpty()) {
+      return;
+    }
+
+    ByteBuf out;
+    ChannelPromise promise;
+    if (pendingPromises.size() == 1) {
+      // STX, CHECKSUM and ETX around the single entry
+      out = ctx.alloc().ioBuffer(pendingEntries.readableBytes() + 3);
+      out.writeByte(TelegramLayout.STX);
+      out.writeBytes(pendingEntries);
+      promise = pendingPromises.get(0);
+    }
+    else {
+      // STX, SIZE, TYPE, CHECKSUM and ETX around the entries
+      out = ctx.alloc().ioBuffer(pendingEntries.readableBytes() + 5);
+      out.writeByte(TelegramLayout.STX);
+      out.writeByte(1 + pendingEntries.readableBytes());
+      out.writeByte(BatchFrames.TYPE);
+      out.writeBytes(pendingEntries);
+      promise = ctx.newPromise();
+      promise.addListener(new PromiseNotifier<>(
+          false,
+          pendingPromises.toArray(new ChannelPromise[pendingPromises.size()])
+      ));
+    }
+    // The checksum covers all bytes between SIZE and CHECKSUM.
+    int checkSum = 0;
+    for (int i = TelegramLayout.TYPE_POS; i < out.writerIndex(); i++) {
+      checkSum ^= out.getByte(i);
+    }
+    out.writeByte(checkSum);
+    out.writeByte(TelegramLayout.ETX);
+
+    pendingEntries.clear();
+    pendingPromises.clear();
+    ctx.write(out, promise);
+  }
+
+  private void discardPending() {
+    for (ChannelPromise promise : pendingPromises) {
+      promise.tryFailure(new ClosedChannelException());
+    }
+    pendingEntries.clear();
+    pendingPromises.clear();
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the telegrams decoded and the data discarded by a {@link ResynchronizingTelegramDecoder}.
+ * <p>
+ * An instance may outlive a connection and be shared by the decoders of consecutive connections.
+ * </p>
+ */
+public class DecoderStatistics
+    implements DecoderStatisticsMXBean {
+
+  /**
+   * The number of telegrams decoded.
+   */
+  private final AtomicLong decodedTelegramCount = new AtomicLong();
+  /**
+   * The number of bytes discarded.
+   */
+  private final AtomicLong skippedByteCount = new AtomicLong();
+  /**
+   * The number of telegrams discarded because of a bad checksum.
+   */
+  private final AtomicLong badCheckSumCount = new AtomicLong();
+  /**
+   * The number of telegrams discarded because of an unknown type.
+   */
+  private final AtomicLong unknownTypeCount = new AtomicLong();
+  /**
+   * The number of batch frames unpacked.
+   */
+  private final AtomicLong batchFrameCount = new AtomicLong();
+
+  /**
+   * Creates a new instance.
+   */
+  public DecoderStatistics() {
+  }
+
+  @Override
+  public long getDecodedTelegramCount() {
+    return decodedTelegramCount.get();
+  }
+
+  @Override
+  public long getSkippedByteCount() {
+    return skippedByteCount.get();
+  }
+
+  @Override
+  public long getBadCheckSumCount() {
+    return badCheckSumCount.get();
+  }
+
+  @Override
+  public long getUnknownTypeCount() {
+    return unknownTypeCount.get();
+  }
+
+  @Override
+  public long getBatchFrameCount() {
+    return batchFrameCount.get();
+  }
+
+  @Override
+  public void resetStatistics() {
+    decodedTelegramCount.set(0);
+    skippedByteCount.set(0);
+    badCheckSumCount.set(0);
+    unknownTypeCount.set(0);
+    batchFrameCount.set(0);
+  }
+
+  /**
+   * Records a decoded telegram.
+   */
+  void recordDecodedTelegram() {
+    decodedTelegramCount.incrementAndGet();
+  }
+
+  /**
+   * Records the given number of discarded bytes.
+   *
+   * @param count The number of discarded bytes.
+   */
+  void recordSkippedBytes(int count) {
+    skippedByteCount.addAndGet(count);
+  }
+
+  /**
+   * Records a telegram with a bad checksum.
+   */
+  void recordBadCheckSum() {
+    badCheckSumCount.incrementAndGet();
+  }
+
+  /**
+   * Records a telegram of an unknown type.
+   */
+  void recordUnknownType() {
+    unknownTypeCount.incrementAndGet();
+  }
+
+  /**
+   * Records an unpacked batch frame.
+   */
+  void recordBatchFrame() {
+    batchFrameCount.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+    return "DecoderStatistics{"
+        + "decodedTelegramCount=" + getDecodedTelegramCount() + ", "
+        + "skippedByteCount=" + getSkippedByteCount() + ", "
+        + "badCheckSumCount=" + getBadCheckSumCount() + ", "
+        + "unknownTypeCount=" + getUnknownTypeCount() + ", "
+        + "batchFrameCount=" + getBatchFrameCount() + '}';
+  }
+}
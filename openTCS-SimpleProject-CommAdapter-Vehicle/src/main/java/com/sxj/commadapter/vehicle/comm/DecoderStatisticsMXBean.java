@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+/**
+ * Exposes the statistics of a {@link ResynchronizingTelegramDecoder} via JMX.
+ */
+public interface DecoderStatisticsMXBean {
+
+  /**
+   * Returns the number of telegrams decoded.
+   *
+   * @return The number of telegrams decoded.
+   */
+  long getDecodedTelegramCount();
+
+  /**
+   * Returns the number of bytes discarded because they did not belong to a valid telegram of a
+   * known type.
+   *
+   * @return The number of bytes discarded.
+   */
+  long getSkippedByteCount();
+
+  /**
+   * Returns the number of telegrams discarded because of a bad checksum.
+   *
+   * @return The number of telegrams discarded because of a bad checksum.
+   */
+  long getBadCheckSumCount();
+
+  /**
+   * Returns the number of telegrams discarded because of an unknown type.
+   *
+   * @return The number of telegrams discarded because of an unknown type.
+   */
+  long getUnknownTypeCount();
+
+  /**
+   * Returns the number of batch frames unpacked.
+   * The telegrams in them are counted as decoded telegrams, too.
+   *
+   * @return The number of batch frames unpacked.
+   */
+  long getBatchFrameCount();
+
+  /**
+   * Resets all counts to 0.
+   */
+  void resetStatistics();
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.common.telegrams.Response;
+import io.netty.buffer.ByteBuf;
+import org.opentcs.contrib.communication.tcp.ConnectionEventListener;
+
+/**
+ * Describes a type of response the vehicle may send, allowing the {@link VehicleTelegramDecoder}
+ * to find, validate and decode telegrams of this type.
+ * <p>
+ * Response types are registered with Guice via a multibinder and collected in a
+ * {@link ResponseTypeRegistry}.
+ * </p>
+ */
+public interface ResponseType {
+
+  /**
+   * Returned by {@link #getTelegramLength()} for types of telegrams whose length varies.
+   */
+  int VARIABLE_LENGTH = 0;
+
+  /**
+   * Returns the type byte of telegrams of this type.
+   *
+   * @return The type byte of telegrams of this type.
+   */
+  byte getType();
+
+  /**
+   * Returns the length of telegrams of this type.
+   *
+   * @return The length of telegrams of this type, or {@link #VARIABLE_LENGTH}, if their length
+   * varies.
+   */
+  int getTelegramLength();
+
+  /**
+   * Returns the length of the longest telegram of this type.
+   *
+   * @return The length of the longest telegram of this type.
+   */
+  int getMaxTelegramLength();
+
+  /**
+   * Checks whether a valid telegram of this type has a length consistent with its content,
+   * without reading from the buffer.
+   * Only called for types of variable length.
+   *
+   * @param in The buffer containing the telegram.
+   * @param start The index of the telegram's first byte.
+   * @param telegramLength The telegram's length.
+   * @return {@code true} if, and only if, the telegram's length is consistent with its content.
+   */
+  boolean hasConsistentLength(ByteBuf in, int start, int telegramLength);
+
+  /**
+   * Creates a decoder for telegrams of this type.
+   * Every {@link VehicleTelegramDecoder} creates its own decoders, so decoders may keep state,
+   * e.g. reusable views, without being thread-safe.
+   *
+   * @return A new decoder for telegrams of this type.
+   */
+  Decoder createDecoder();
+
+  /**
+   * Decodes telegrams of a specific type.
+   */
+  interface Decoder {
+
+    /**
+     * Decodes a valid telegram, without reading from the buffer, and passes the response to the
+     * given handler.
+     *
+     * @param in The buffer containing the telegram.
+     * @param start The index of the telegram's first byte.
+     * @param telegramLength The telegram's length.
+     * @param responseHandler The handler to pass the response to.
+     */
+    void decode(ByteBuf in,
+                int start,
+                int telegramLength,
+                ConnectionEventListener<Response> responseHandler);
+  }
+}
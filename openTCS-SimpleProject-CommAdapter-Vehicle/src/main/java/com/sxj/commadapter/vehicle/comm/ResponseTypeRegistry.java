@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static java.util.Objects.requireNonNull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import static org.opentcs.util.Assertions.checkArgument;
+
+/**
+ * The types of responses the vehicle may send, indexed by their type byte.
+ * <p>
+ * Looking up a type is a single array access, so the cost of decoding a telegram does not depend
+ * on the number of types registered.
+ * Instances are immutable and may be shared by any number of decoders.
+ * </p>
+ */
+public class ResponseTypeRegistry {
+
+  /**
+   * The number of distinct type bytes.
+   */
+  public static final int TYPE_COUNT = 256;
+  /**
+   * The registered types, indexed by their type byte (as an unsigned value).
+   */
+  private final ResponseType[] types = new ResponseType[TYPE_COUNT];
+  /**
+   * The registered types, in no particular order.
+   */
+  private final List<ResponseType> typeList;
+  /**
+   * The length of the longest telegram of any registered type.
+   */
+  private final int maxTelegramLength;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param responseTypes The types of responses to register.
+   * @throws IllegalArgumentException If two of the given types have the same type byte or a type
+   * has the type byte reserved for batch frames.
+   */
+  @Inject
+  public ResponseTypeRegistry(Set<ResponseType> responseTypes)
+      throws IllegalArgumentException {
+    requireNonNull(responseTypes, "responseTypes");
+
+    int maxLength = 0;
+    for (ResponseType responseType : responseTypes) {
+      checkArgument(responseType.getType() != BatchFrames.TYPE,
+                    "Type %s is reserved for batch frames: %s",
+                    responseType.getType(),
+                    responseType);
+      int index = toIndex(responseType.getType());
+      checkArgument(types[index] == null,
+                    "Type %s registered twice: %s and %s",
+                    responseType.getType(),
+                    types[index],
+                    responseType);
+      types[index] = responseType;
+      maxLength = Math.max(maxLength, responseType.getMaxTelegramLength());
+    }
+    this.typeList = Collections.unmodifiableList(new ArrayList<>(responseTypes));
+    this.maxTelegramLength = maxLength;
+  }
+
+  /**
+   * Creates a registry containing the {@link StandardResponseType standard response types}.
+   *
+   * @return A registry containing the standard response types.
+   */
+  public static ResponseTypeRegistry standardTypes() {
+    return new ResponseTypeRegistry(new HashSet<>(Arrays.asList(StandardResponseType.values())));
+  }
+
+  /**
+   * Returns the type registered for the given type byte.
+   *
+   * @param type The type byte.
+   * @return The type registered for the given type byte, or {@code null}, if there is none.
+   */
+  @Nullable
+  public ResponseType getType(byte type) {
+    return types[toIndex(type)];
+  }
+
+  /**
+   * Returns the registered types, in no particular order.
+   *
+   * @return The registered types.
+   */
+  public List<ResponseType> getTypes() {
+    return typeList;
+  }
+
+  /**
+   * Returns the length of the longest telegram of any registered type.
+   *
+   * @return The length of the longest telegram of any registered type.
+   */
+  public int getMaxTelegramLength() {
+    return maxTelegramLength;
+  }
+
+  /**
+   * Returns the index of the given type byte in lookup tables with {@link #TYPE_COUNT} entries.
+   *
+   * @param type The type byte.
+   * @return The index of the given type byte.
+   */
+  public static int toIndex(byte type) {
+    return type & 0xFF;
+  }
+}
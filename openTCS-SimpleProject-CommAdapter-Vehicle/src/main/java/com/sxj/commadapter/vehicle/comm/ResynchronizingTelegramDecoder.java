@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import static com.google.common.base.Ascii.ETX;
+import static com.google.common.base.Ascii.STX;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds telegrams in a byte stream and resynchronizes with the stream after corrupted data.
+ * <p>
+ * A telegram is only accepted if it starts with STX, its size matches the length expected for its
+ * type (or, for types of variable length, its content), and its ETX and checksum are in place.
+ * Whenever a candidate telegram does not pass these checks, only its first byte is discarded and
+ * the stream is scanned for the next STX, so a valid telegram following corrupted data is never
+ * lost with it.
+ * Well-formed telegrams of unknown types are discarded as a whole.
+ * </p>
+ * <p>
+ * {@link BatchFrames Batch frames} are validated like any other telegram and then unpacked, with
+ * every entry being decoded as if it had been received as a plain telegram.
+ * </p>
+ * <p>
+ * The bytes discarded, corrupted telegrams and telegrams of unknown types are counted in the
+ * given {@link DecoderStatistics}.
+ * </p>
+ */
+public abstract class ResynchronizingTelegramDecoder
+    extends ByteToMessageDecoder {
+
+  /**
+   * Returned by {@link #getExpectedLength(byte)} for types of telegrams whose length varies.
+   * The length of such telegrams is only checked against the length of the longest telegram
+   * expected and by {@link #hasConsistentLength(ByteBuf, int, int)}.
+   */
+  protected static final int VARIABLE_LENGTH = 0;
+  /**
+   * This class's Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(ResynchronizingTelegramDecoder.class);
+  /**
+   * The number of bytes in a telegram in addition to its payload (STX, SIZE, CHECKSUM and ETX).
+   */
+  private static final int FRAME_OVERHEAD = 4;
+  /**
+   * The number of bytes needed to determine a telegram's length and type (STX, SIZE and TYPE).
+   */
+  private static final int HEADER_LENGTH = 3;
+  /**
+   * The offset of the type byte.
+   */
+  private static final int TYPE_POS = 2;
+  /**
+   * The statistics to record the decoding in.
+   */
+  private final DecoderStatistics statistics;
+  /**
+   * The length of the longest telegram expected. Longer candidates are not waited for.
+   */
+  private final int maxTelegramLength;
+  /**
+   * The buffer the entries of batch frames are restored to plain telegrams in.
+   */
+  private final ByteBuf entryBuffer = Unpooled.buffer(BatchFrames.MAX_FRAME_LENGTH);
+
+  /**
+   * Creates a new instance.
+   *
+   * @param statistics The statistics to record the decoding in.
+   * @param maxTelegramLength The length of the longest telegram expected.
+   */
+  protected ResynchronizingTelegramDecoder(DecoderStatistics statistics, int maxTelegramLength) {
+    this.statistics = requireNonNull(statistics, "statistics");
+    this.maxTelegramLength = maxTelegramLength;
+  }
+
+  /**
+   * Returns the statistics the decoding is recorded in.
+   *
+   * @return The statistics the decoding is recorded in.
+   */
+  public DecoderStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Decodes the next telegram in the given buffer, discarding any corrupted data in front of it.
+   * Returns without decoding anything if the buffer does not contain a complete telegram, yet.
+   *
+   * @param ctx The channel handler context.
+   * @param in The buffer to read from.
+   * @param out The list to add decoded messages to.
+   */
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+    while (in.isReadable()) {
+      int start = in.readerIndex();
+      if (in.getByte(start) != STX) {
+        // Resynchronize with the next potential start of a telegram.
+        int nextStx = in.indexOf(start + 1, in.writerIndex(), STX);
+        int skipped = (nextStx < 0 ? in.writerIndex() : nextStx) - start;
+        LOG.warn("Discarding {} bytes not belonging to a telegram: {}",
+                 skipped,
+                 ByteBufUtil.hexDump(in, start, skipped));
+        discard(in, skipped);
+        continue;
+      }
+
+      // Wait for the rest of the header.
+      if (in.readableBytes() < HEADER_LENGTH) {
+        return;
+      }
+      int telegramLength = in.getUnsignedByte(start + 1) + FRAME_OVERHEAD;
+      boolean batchFrame = in.getByte(start + 2) == BatchFrames.TYPE;
+      int expectedLength = batchFrame ? VARIABLE_LENGTH : getExpectedLength(in.getByte(start + 2));
+      if ((!batchFrame && telegramLength > maxTelegramLength)
+          || (expectedLength != VARIABLE_LENGTH && expectedLength >= 0
+              && telegramLength != expectedLength)) {
+        // The STX was a payload byte of a corrupted telegram, not the start of a telegram.
+        discard(in, 1);
+        continue;
+      }
+      // Wait for the rest of the telegram.
+      if (in.readableBytes() < telegramLength) {
+        return;
+      }
+
+      if (in.getByte(start + telegramLength - 1) != ETX) {
+        discard(in, 1);
+        continue;
+      }
+      if (!hasValidCheckSum(in, start, telegramLength)) {
+        LOG.warn("Discarding telegram with bad checksum: {}",
+                 ByteBufUtil.hexDump(in, start, telegramLength));
+        statistics.recordBadCheckSum();
+        discard(in, 1);
+        continue;
+      }
+      if (expectedLength < 0) {
+        LOG.warn("Discarding telegram of unknown type: {}",
+                 ByteBufUtil.hexDump(in, start, telegramLength));
+        statistics.recordUnknownType();
+        discard(in, telegramLength);
+        continue;
+      }
+      if (!batchFrame && expectedLength == VARIABLE_LENGTH
+          && !hasConsistentLength(in, start, telegramLength)) {
+        LOG.warn("Discarding telegram with inconsistent length: {}",
+                 ByteBufUtil.hexDump(in, start, telegramLength));
+        discard(in, 1);
+        continue;
+      }
+
+      logTelegramData(in, start, telegramLength);
+      try {
+        if (batchFrame) {
+          onBatchFrame(ctx);
+          decodeBatchFrame(in, start, telegramLength, out);
+          return;
+        }
+        decodeTelegram(in, start, telegramLength, out);
+      }
+      finally {
+        in.skipBytes(telegramLength);
+      }
+      statistics.recordDecodedTelegram();
+      return;
+    }
+  }
+
+  /**
+   * Returns the length of telegrams of the given type.
+   *
+   * @param type The telegram type.
+   * @return The length of telegrams of the given type, {@link #VARIABLE_LENGTH}, if their length
+   * varies, or -1, if the type is unknown.
+   */
+  protected abstract int getExpectedLength(byte type);
+
+  /**
+   * Checks whether a valid telegram of a type with variable length has a length consistent with
+   * its content, without reading from the buffer.
+   * Telegrams failing this check are treated like corrupted data.
+   * This default implementation returns {@code true}.
+   *
+   * @param in The buffer containing the telegram.
+   * @param start The index of the telegram's first byte.
+   * @param telegramLength The telegram's length.
+   * @return {@code true} if, and only if, the telegram's length is consistent with its content.
+   */
+  protected boolean hasConsistentLength(ByteBuf in, int start, int telegramLength) {
+    return true;
+  }
+
+  /**
+   * Decodes a valid telegram of a known type, without reading from the buffer.
+   *
+   * @param in The buffer containing the telegram.
+   * @param start The index of the telegram's first byte.
+   * @param telegramLength The telegram's length.
+   * @param out The list to add decoded messages to.
+   */
+  protected abstract void decodeTelegram(ByteBuf in,
+                                         int start,
+                                         int telegramLength,
+                                         List<Object> out);
+
+  /**
+   * Called before the entries of a valid batch frame are decoded.
+   * This default implementation does nothing.
+   *
+   * @param ctx The channel handler context.
+   */
+  protected void onBatchFrame(ChannelHandlerContext ctx) {
+  }
+
+  @Override
+  protected void handlerRemoved0(ChannelHandlerContext ctx)
+      throws Exception {
+    entryBuffer.release();
+  }
+
+  /**
+   * Decodes the entries of a valid batch frame, without reading from the buffer.
+   *
+   * @param in The buffer containing the batch frame.
+   * @param start The index of the batch frame's first byte.
+   * @param frameLength The batch frame's length.
+   * @param out The list to add decoded messages to.
+   */
+  private void decodeBatchFrame(ByteBuf in, int start, int frameLength, List<Object> out) {
+    statistics.recordBatchFrame();
+    int entryIndex = start + TYPE_POS + 1;
+    int entriesEnd = start + frameLength - 2;
+    while (entryIndex < entriesEnd) {
+      // An entry consists of SIZE, TYPE, id and payload of a telegram.
+      int entryLength = in.getUnsignedByte(entryIndex) + 1;
+      if (entryIndex + entryLength > entriesEnd) {
+        LOG.warn("Discarding truncated batch frame entry: {}",
+                 ByteBufUtil.hexDump(in, entryIndex, entriesEnd - entryIndex));
+        statistics.recordSkippedBytes(entriesEnd - entryIndex);
+        return;
+      }
+      int telegramLength = entryLength + 3;
+      int expectedLength = getExpectedLength(in.getByte(entryIndex + 1));
+      if (expectedLength == VARIABLE_LENGTH
+          ? telegramLength > maxTelegramLength
+          : expectedLength != telegramLength) {
+        LOG.warn("Discarding batch frame entry of unknown type: {}",
+                 ByteBufUtil.hexDump(in, entryIndex, entryLength));
+        statistics.recordUnknownType();
+        entryIndex += entryLength;
+        continue;
+      }
+
+      entryBuffer.clear();
+      entryBuffer.writeByte(STX);
+      entryBuffer.writeBytes(in, entryIndex, entryLength);
+      entryBuffer.writeZero(1);
+      entryBuffer.writeByte(ETX);
+      entryBuffer.setByte(telegramLength - 2, computeCheckSum(entryBuffer, 0, telegramLength));
+      if (expectedLength == VARIABLE_LENGTH
+          && !hasConsistentLength(entryBuffer, 0, telegramLength)) {
+        LOG.warn("Discarding batch frame entry with inconsistent length: {}",
+                 ByteBufUtil.hexDump(in, entryIndex, entryLength));
+        statistics.recordSkippedBytes(entryLength);
+        entryIndex += entryLength;
+        continue;
+      }
+      decodeTelegram(entryBuffer, 0, telegramLength, out);
+      statistics.recordDecodedTelegram();
+      entryIndex += entryLength;
+    }
+  }
+
+  private void discard(ByteBuf in, int length) {
+    in.skipBytes(length);
+    statistics.recordSkippedBytes(length);
+  }
+
+  /**
+   * Checks whether the telegram at the given index of the given buffer has a correct checksum,
+   * without reading from the buffer.
+   *
+   * @param in The buffer.
+   * @param start The index of the telegram's first byte.
+   * @param telegramLength The telegram's length.
+   * @return {@code true} if, and only if, the telegram's checksum is correct.
+   */
+  private static boolean hasValidCheckSum(ByteBuf in, int start, int telegramLength) {
+    return computeCheckSum(in, start, telegramLength) == in.getByte(start + telegramLength - 2);
+  }
+
+  private static byte computeCheckSum(ByteBuf in, int start, int telegramLength) {
+    // The checksum covers the type, id and payload, i.e. all bytes between SIZE and CHECKSUM.
+    int checkSumPos = start + telegramLength - 2;
+    int checkSum = 0;
+    for (int i = start + TYPE_POS; i < checkSumPos; i++) {
+      checkSum ^= in.getByte(i);
+    }
+    return (byte) checkSum;
+  }
+
+  private void logTelegramData(ByteBuf in, int start, int telegramLength) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Telegram data: {}", ByteBufUtil.hexDump(in, start, telegramLength));
+    }
+  }
+}
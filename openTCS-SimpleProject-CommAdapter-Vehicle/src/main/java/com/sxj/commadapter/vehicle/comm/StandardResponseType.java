@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.commadapter.vehicle.telegrams.CancelResponse;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeResponse;
+import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
+import com.sxj.commadapter.vehicle.telegrams.OrderResponseView;
+import com.sxj.commadapter.vehicle.telegrams.StateDeltaResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateResponseView;
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncResponse;
+import com.sxj.common.telegrams.Response;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * The types of responses defined by the protocol.
+ * <p>
+ * Order and state responses are passed to the response handler as an {@link OrderResponseView} or
+ * a {@link StateResponseView}, which are reused for every telegram and only valid while the
+ * response handler is being called.
+ * A response handler that needs to keep a response must copy it.
+ * The request/response matcher completes futures with such a copy (see
+ * {@link Response#toOwned()}), so the views never leave the decoding of their telegram.
+ * All other responses are passed on as new instances.
+ * </p>
+ */
+public enum StandardResponseType
+    implements ResponseType {
+
+  /**
+   * Order responses.
+   */
+  ORDER(OrderResponse.TYPE, OrderResponse.TELEGRAM_LENGTH) {
+    @Override
+    public Decoder createDecoder() {
+      OrderResponseView view = new OrderResponseView();
+      return (in, start, telegramLength, responseHandler) -> {
+        try {
+          responseHandler.onIncomingTelegram(view.wrap(in, start));
+        }
+        finally {
+          view.clear();
+        }
+      };
+    }
+  },
+  /**
+   * State responses.
+   */
+  STATE(StateResponse.TYPE, StateResponse.TELEGRAM_LENGTH) {
+    @Override
+    public Decoder createDecoder() {
+      StateResponseView view = new StateResponseView();
+      return (in, start, telegramLength, responseHandler) -> {
+        try {
+          responseHandler.onIncomingTelegram(view.wrap(in, start));
+        }
+        finally {
+          view.clear();
+        }
+      };
+    }
+  },
+  /**
+   * Handshake responses.
+   */
+  HANDSHAKE(HandshakeResponse.TYPE, HandshakeResponse.TELEGRAM_LENGTH) {
+    @Override
+    public Decoder createDecoder() {
+      // Handshakes are rare, so they are not worth a reusable view.
+      return (in, start, telegramLength, responseHandler)
+          -> responseHandler.onIncomingTelegram(new HandshakeResponse(in, start));
+    }
+  },
+  /**
+   * State delta responses.
+   */
+  STATE_DELTA(StateDeltaResponse.TYPE, VARIABLE_LENGTH, StateDeltaResponse.MAX_TELEGRAM_LENGTH) {
+    @Override
+    public boolean hasConsistentLength(ByteBuf in, int start, int telegramLength) {
+      return StateDeltaResponse.hasConsistentLength(in, start, telegramLength);
+    }
+
+    @Override
+    public Decoder createDecoder() {
+      // The delta is applied later, so it is copied right away.
+      return (in, start, telegramLength, responseHandler)
+          -> responseHandler.onIncomingTelegram(new StateDeltaResponse(in, start, telegramLength));
+    }
+  },
+  /**
+   * Time synchronization responses.
+   * A response is created as soon as it has been found, as the time of its creation is taken as
+   * the time it was received.
+   */
+  TIME_SYNC(TimeSyncResponse.TYPE, TimeSyncResponse.TELEGRAM_LENGTH) {
+    @Override
+    public Decoder createDecoder() {
+      return (in, start, telegramLength, responseHandler)
+          -> responseHandler.onIncomingTelegram(new TimeSyncResponse(in, start));
+    }
+  },
+  /**
+   * Cancel responses.
+   */
+  CANCEL(CancelResponse.TYPE, CancelResponse.TELEGRAM_LENGTH) {
+    @Override
+    public Decoder createDecoder() {
+      return (in, start, telegramLength, responseHandler)
+          -> responseHandler.onIncomingTelegram(new CancelResponse(in, start));
+    }
+  };
+
+  /**
+   * The type byte of telegrams of this type.
+   */
+  private final byte type;
+  /**
+   * The length of telegrams of this type, or {@link #VARIABLE_LENGTH}.
+   */
+  private final int telegramLength;
+  /**
+   * The length of the longest telegram of this type.
+   */
+  private final int maxTelegramLength;
+
+  /**
+   * Creates a new response type of fixed length.
+   *
+   * @param type The type byte of telegrams of this type.
+   * @param telegramLength The length of telegrams of this type.
+   */
+  StandardResponseType(byte type, int telegramLength) {
+    this(type, telegramLength, telegramLength);
+  }
+
+  /**
+   * Creates a new response type.
+   *
+   * @param type The type byte of telegrams of this type.
+   * @param telegramLength The length of telegrams of this type, or {@link #VARIABLE_LENGTH}.
+   * @param maxTelegramLength The length of the longest telegram of this type.
+   */
+  StandardResponseType(byte type, int telegramLength, int maxTelegramLength) {
+    this.type = type;
+    this.telegramLength = telegramLength;
+    this.maxTelegramLength = maxTelegramLength;
+  }
+
+  @Override
+  public byte getType() {
+    return type;
+  }
+
+  @Override
+  public int getTelegramLength() {
+    return telegramLength;
+  }
+
+  @Override
+  public int getMaxTelegramLength() {
+    return maxTelegramLength;
+  }
+
+  @Override
+  public boolean hasConsistentLength(ByteBuf in, int start, int telegramLength) {
+    return true;
+  }
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncRequest;
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncResponse;
+import static java.util.Objects.requireNonNull;
+import static org.opentcs.util.Assertions.checkState;
+
+/**
+ * Estimates the offset and drift of a vehicle's clock relative to the control system's clock from
+ * the timestamps of time synchronization exchanges, like NTP does.
+ * <p>
+ * For every exchange, the offset is estimated assuming that the request and the response took
+ * equally long to be delivered.
+ * As this assumption holds best for the exchanges that were delivered fastest, the estimates are
+ * based on the sample with the shortest round trip delay among the last few ones.
+ * The drift is derived from the change of the offset between the first and the current sample
+ * the estimates are based on.
+ * </p>
+ * <p>
+ * As timestamps only carry 32 bits, the offset is only known modulo 2^32.
+ * This is sufficient for converting the timestamps of recent events, as the result is chosen to
+ * be close to the current time.
+ * </p>
+ */
+public class VehicleClock
+    implements VehicleClockMXBean {
+
+  /**
+   * The number of recent samples the one with the shortest round trip delay is chosen from.
+   */
+  private static final int FILTER_LENGTH = 8;
+  /**
+   * The minimum time (in microseconds) between two samples to derive the drift from.
+   */
+  private static final long MIN_DRIFT_INTERVAL = 10_000_000;
+  /**
+   * The recent samples, as a ring buffer.
+   */
+  private final Sample[] samples = new Sample[FILTER_LENGTH];
+  /**
+   * The number of samples taken since the clock was last reset.
+   */
+  private long sampleCount;
+  /**
+   * The sample the estimates are based on, or {@code null}, if there is none, yet.
+   */
+  private Sample selectedSample;
+  /**
+   * The first sample the estimates were based on, which the drift is derived from.
+   */
+  private Sample referenceSample;
+  /**
+   * The estimated drift, in parts per million.
+   */
+  private double driftPpm;
+  /**
+   * The last sample taken.
+   */
+  private Sample lastSample;
+
+  /**
+   * Creates a new instance.
+   */
+  public VehicleClock() {
+  }
+
+  /**
+   * Adds a sample from the given time synchronization response.
+   *
+   * @param response The response.
+   */
+  public void addSample(TimeSyncResponse response) {
+    requireNonNull(response, "response");
+
+    addSample(response.getOriginateTimestamp(),
+              response.getReceiveTimestamp(),
+              response.getTransmitTimestamp(),
+              response.getDestinationMicros());
+  }
+
+  /**
+   * Adds a sample from the timestamps of a time synchronization exchange.
+   *
+   * @param originateTimestamp The time at which the request was sent, according to the control
+   * system's clock.
+   * @param receiveTimestamp The time at which the request was received, according to the
+   * vehicle's clock.
+   * @param transmitTimestamp The time at which the response was sent, according to the vehicle's
+   * clock.
+   * @param destinationMicros The time at which the response was received, according to the control
+   * system's clock.
+   */
+  public synchronized void addSample(int originateTimestamp,
+                                     int receiveTimestamp,
+                                     int transmitTimestamp,
+                                     long destinationMicros) {
+    // Differences of timestamps are computed modulo 2^32, which is exact for short intervals.
+    int elapsed = (int) destinationMicros - originateTimestamp;
+    int processing = transmitTimestamp - receiveTimestamp;
+    int delay = Math.max(0, elapsed - processing);
+    int offset = receiveTimestamp - originateTimestamp - delay / 2;
+    Sample sample = new Sample(destinationMicros - elapsed / 2, offset, delay, processing);
+
+    samples[(int) (sampleCount % FILTER_LENGTH)] = sample;
+    sampleCount++;
+    lastSample = sample;
+
+    Sample fastest = sample;
+    for (Sample candidate : samples) {
+      if (candidate != null && candidate.delay < fastest.delay) {
+        fastest = candidate;
+      }
+    }
+    selectedSample = fastest;
+    if (referenceSample == null) {
+      referenceSample = fastest;
+    }
+    long interval = fastest.localMicros - referenceSample.localMicros;
+    if (interval >= MIN_DRIFT_INTERVAL) {
+      driftPpm = (fastest.offset - referenceSample.offset) * 1_000_000.0 / interval;
+    }
+  }
+
+  /**
+   * Converts the given recent timestamp of the vehicle's clock to the control system's clock (see
+   * {@link TimeSyncRequest#currentMicros()}).
+   *
+   * @param vehicleTimestamp The lowest 32 bits of a time according to the vehicle's clock, no more
+   * than about 35 minutes before or after the current time.
+   * @return The time according to the control system's clock, in microseconds.
+   * @throws IllegalStateException If the vehicle's clock has not been synchronized, yet.
+   */
+  public synchronized long toLocalMicros(int vehicleTimestamp)
+      throws IllegalStateException {
+    checkState(selectedSample != null, "Vehicle clock not synchronized, yet");
+
+    long now = TimeSyncRequest.currentMicros();
+    int localTimestamp = vehicleTimestamp - predictOffset(now);
+    return now - ((int) now - localTimestamp);
+  }
+
+  @Override
+  public synchronized boolean isSynchronized() {
+    return selectedSample != null;
+  }
+
+  @Override
+  public synchronized long getSampleCount() {
+    return sampleCount;
+  }
+
+  @Override
+  public synchronized long getOffsetMicros() {
+    return selectedSample == null ? 0 : predictOffset(TimeSyncRequest.currentMicros());
+  }
+
+  @Override
+  public synchronized double getDriftPpm() {
+    return driftPpm;
+  }
+
+  @Override
+  public synchronized long getRoundTripMicros() {
+    return selectedSample == null ? 0 : selectedSample.delay;
+  }
+
+  @Override
+  public synchronized long getLastUplinkMicros() {
+    if (lastSample == null) {
+      return 0;
+    }
+    // The request's share of the round trip, according to the current offset estimate
+    return lastSample.offset - predictOffset(lastSample.localMicros) + lastSample.delay / 2;
+  }
+
+  @Override
+  public synchronized long getLastProcessingMicros() {
+    return lastSample == null ? 0 : lastSample.processing;
+  }
+
+  @Override
+  public synchronized long getLastDownlinkMicros() {
+    return lastSample == null ? 0 : lastSample.delay - getLastUplinkMicros();
+  }
+
+  @Override
+  public synchronized void reset() {
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = null;
+    }
+    sampleCount = 0;
+    selectedSample = null;
+    referenceSample = null;
+    lastSample = null;
+    driftPpm = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "VehicleClock{"
+        + "sampleCount=" + sampleCount + ", "
+        + "offsetMicros=" + getOffsetMicros() + ", "
+        + "driftPpm=" + driftPpm + ", "
+        + "roundTripMicros=" + getRoundTripMicros() + '}';
+  }
+
+  private int predictOffset(long localMicros) {
+    return selectedSample.offset
+        + (int) Math.round(driftPpm * (localMicros - selectedSample.localMicros) / 1_000_000);
+  }
+
+  /**
+   * The result of a single time synchronization exchange.
+   */
+  private static final class Sample {
+
+    /**
+     * The time (according to the control system's clock) the sample refers to, i.e. the middle of
+     * the exchange.
+     */
+    private final long localMicros;
+    /**
+     * The offset of the vehicle's clock.
+     */
+    private final int offset;
+    /**
+     * The round trip delay, excluding the time the vehicle took to respond.
+     */
+    private final int delay;
+    /**
+     * The time the vehicle took to respond.
+     */
+    private final int processing;
+
+    private Sample(long localMicros, int offset, int delay, int processing) {
+      this.localMicros = localMicros;
+      this.offset = offset;
+      this.delay = delay;
+      this.processing = processing;
+    }
+  }
+}
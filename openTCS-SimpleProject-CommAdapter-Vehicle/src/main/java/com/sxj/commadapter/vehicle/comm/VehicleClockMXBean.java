@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+/**
+ * Exposes the estimates of a {@link VehicleClock} via JMX.
+ */
+public interface VehicleClockMXBean {
+
+  /**
+   * Returns whether the vehicle's clock has been synchronized, i.e. whether the estimates are
+   * available.
+   *
+   * @return Whether the vehicle's clock has been synchronized.
+   */
+  boolean isSynchronized();
+
+  /**
+   * Returns the number of samples taken since the clock was last reset.
+   *
+   * @return The number of samples taken.
+   */
+  long getSampleCount();
+
+  /**
+   * Returns the estimated offset of the vehicle's clock, i.e. the vehicle's time minus the
+   * control system's time, modulo 2^32 (as a signed 32 bit value).
+   *
+   * @return The estimated offset, in microseconds.
+   */
+  long getOffsetMicros();
+
+  /**
+   * Returns the estimated drift of the vehicle's clock relative to the control system's.
+   *
+   * @return The estimated drift, in parts per million.
+   */
+  double getDriftPpm();
+
+  /**
+   * Returns the round trip delay of the sample the estimates are based on, excluding the time
+   * the vehicle took to respond.
+   *
+   * @return The round trip delay, in microseconds.
+   */
+  long getRoundTripMicros();
+
+  /**
+   * Returns the time the last request took to get to the vehicle.
+   *
+   * @return The time the last request took to get to the vehicle, in microseconds.
+   */
+  long getLastUplinkMicros();
+
+  /**
+   * Returns the time the vehicle took to process the last request.
+   *
+   * @return The time the vehicle took to process the last request, in microseconds.
+   */
+  long getLastProcessingMicros();
+
+  /**
+   * Returns the time the last response took to get to the control system.
+   *
+   * @return The time the last response took to get to the control system, in microseconds.
+   */
+  long getLastDownlinkMicros();
+
+  /**
+   * Discards all samples and estimates, e.g. because the vehicle's clock may have been reset.
+   */
+  void reset();
+}
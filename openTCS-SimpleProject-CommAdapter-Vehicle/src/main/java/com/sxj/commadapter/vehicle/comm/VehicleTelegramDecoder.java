@@ -7,88 +7,107 @@
  */
 package com.sxj.commadapter.vehicle.comm;
 
-import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
-import com.sxj.commadapter.vehicle.telegrams.StateResponse;
 import com.sxj.common.telegrams.Response;
-import com.google.common.primitives.Ints;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
+import java.util.Arrays;
 import java.util.List;
 import static java.util.Objects.requireNonNull;
-import org.apache.commons.codec.binary.Hex;
 import org.opentcs.contrib.communication.tcp.ConnectionEventListener;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
- * Decodes incoming bytes into {@link StateResponse} instances.
+ * Decodes incoming bytes into the responses of the types registered with a
+ * {@link ResponseTypeRegistry}.
+ * <p>
+ * Telegrams are found and validated (STX, size, ETX and checksum) directly in the buffer, as
+ * described for {@link ResynchronizingTelegramDecoder}.
+ * Valid telegrams are then decoded by the {@link ResponseType.Decoder} of their type and passed
+ * to the response handler.
+ * Lengths and decoders are looked up in tables indexed by the type byte, so the cost of decoding a
+ * telegram does not depend on the number of types registered.
+ * </p>
  *
  * @author Stefan Walter (Fraunhofer IML)
  */
 public class VehicleTelegramDecoder
-    extends ByteToMessageDecoder {
+    extends ResynchronizingTelegramDecoder {
 
-  /**
-   * This class's Logger.
-   */
-  private static final Logger LOG = LoggerFactory.getLogger(VehicleTelegramDecoder.class);
   /**
    * The handler decoded responses are sent to.
    */
   private final ConnectionEventListener<Response> responseHandler;
   /**
-   * The minimum bytes required to even try decoding (size of the smallest telegram).
+   * The registered types, indexed by their type byte.
+   */
+  private final ResponseType[] types = new ResponseType[ResponseTypeRegistry.TYPE_COUNT];
+  /**
+   * The expected lengths of the registered types, indexed by their type byte, with -1 for types
+   * not registered.
    */
-  private final long minimumBytesRequired;
+  private final int[] expectedLengths = new int[ResponseTypeRegistry.TYPE_COUNT];
+  /**
+   * The decoders of the registered types, indexed by their type byte.
+   */
+  private final ResponseType.Decoder[] decoders
+      = new ResponseType.Decoder[ResponseTypeRegistry.TYPE_COUNT];
 
   /**
-   * Creates a new instance.
+   * Creates a new instance for the {@link StandardResponseType standard response types}.
    *
    * @param responseHandler The handler decoded responses are sent to.
    */
   public VehicleTelegramDecoder(ConnectionEventListener<Response> responseHandler) {
-    this.responseHandler = requireNonNull(responseHandler, "responseHandler");
-    this.minimumBytesRequired = Ints.min(OrderResponse.TELEGRAM_LENGTH,
-                                         StateResponse.TELEGRAM_LENGTH);
+    this(responseHandler, new DecoderStatistics());
   }
 
-  @Override
-  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-    // Don't do anything if we don't have enough bytes.
-    if (in.readableBytes() < minimumBytesRequired) {
-      return;
-    }
+  /**
+   * Creates a new instance for the {@link StandardResponseType standard response types}.
+   *
+   * @param responseHandler The handler decoded responses are sent to.
+   * @param statistics The statistics to record the decoding in.
+   */
+  public VehicleTelegramDecoder(ConnectionEventListener<Response> responseHandler,
+                                DecoderStatistics statistics) {
+    this(responseHandler, statistics, ResponseTypeRegistry.standardTypes());
+  }
 
-    byte[] telegramData;
-    in.markReaderIndex();
+  /**
+   * Creates a new instance.
+   *
+   * @param responseHandler The handler decoded responses are sent to.
+   * @param statistics The statistics to record the decoding in.
+   * @param registry The types of responses to decode.
+   */
+  public VehicleTelegramDecoder(ConnectionEventListener<Response> responseHandler,
+                                DecoderStatistics statistics,
+                                ResponseTypeRegistry registry) {
+    super(statistics, requireNonNull(registry, "registry").getMaxTelegramLength());
+    this.responseHandler = requireNonNull(responseHandler, "responseHandler");
 
-    if (in.readableBytes() >= OrderResponse.TELEGRAM_LENGTH) {
-      LOG.debug("Checking if it's an order response...");
-      telegramData = new byte[OrderResponse.TELEGRAM_LENGTH];
-      in.readBytes(telegramData);
-      LOG.debug("Telegram data: {}", Hex.encodeHexString(telegramData));
-      if (OrderResponse.isOrderResponse(telegramData)) {
-        responseHandler.onIncomingTelegram(new OrderResponse(telegramData));
-        return;
-      }
-      else {
-        in.resetReaderIndex();
-      }
+    Arrays.fill(expectedLengths, -1);
+    for (ResponseType responseType : registry.getTypes()) {
+      int index = ResponseTypeRegistry.toIndex(responseType.getType());
+      types[index] = responseType;
+      expectedLengths[index] = responseType.getTelegramLength() == ResponseType.VARIABLE_LENGTH
+          ? VARIABLE_LENGTH
+          : responseType.getTelegramLength();
+      decoders[index] = responseType.createDecoder();
     }
+  }
 
-    if (in.readableBytes() >= StateResponse.TELEGRAM_LENGTH) {
-      LOG.debug("Checking if it's a state response...");
-      telegramData = new byte[StateResponse.TELEGRAM_LENGTH];
-      in.readBytes(telegramData);
-      LOG.debug("Telegram data: {}", Hex.encodeHexString(telegramData));
-      if (StateResponse.isStateResponse(telegramData)) {
-        responseHandler.onIncomingTelegram(new StateResponse(telegramData));
-      }
-      else {
-        // Don't reset reader index and discard bytes
-        LOG.warn("Not a valid telegram: {}", Hex.encodeHexString(telegramData));
-      }
-    }
+  @Override
+  protected int getExpectedLength(byte type) {
+    return expectedLengths[ResponseTypeRegistry.toIndex(type)];
+  }
+
+  @Override
+  protected void decodeTelegram(ByteBuf in, int start, int telegramLength, List<Object> out) {
+    decoders[ResponseTypeRegistry.toIndex(in.getByte(start + 2))]
+        .decode(in, start, telegramLength, responseHandler);
+  }
+
+  @Override
+  protected boolean hasConsistentLength(ByteBuf in, int start, int telegramLength) {
+    return types[ResponseTypeRegistry.toIndex(in.getByte(start + 2))]
+        .hasConsistentLength(in, start, telegramLength);
   }
 }
@@ -7,38 +7,57 @@
  */
 package com.sxj.commadapter.vehicle.comm;
 
-import com.sxj.commadapter.vehicle.telegrams.OrderRequest;
-import com.sxj.commadapter.vehicle.telegrams.StateRequest;
 import com.sxj.common.telegrams.Request;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Encodes outgoing {@link StateRequest} instances.
+ * Encodes outgoing {@link Request} instances.
+ * <p>
+ * Requests are written directly into a buffer taken from the channel's (pooled) allocator, so
+ * encoding a request does not allocate any intermediate arrays.
+ * With batch frames enabled, requests written between two flushes are packed into batch frames,
+ * as described for {@link BatchingTelegramEncoder}.
+ * </p>
+ * <p>
+ * Every request written to the channel is expected to come with a reference
+ * {@link Request#retain() retained} for the write, which is released once the request has been
+ * encoded. This way, a pooled request answered or withdrawn while its write is still pending is
+ * not reused before it is encoded.
+ * </p>
  *
  * @author Stefan Walter (Fraunhofer IML)
  */
 public class VehicleTelegramEncoder
-    extends MessageToByteEncoder<Request> {
+    extends BatchingTelegramEncoder<Request> {
 
   /**
    * This class's Logger.
    */
   private static final Logger LOG = LoggerFactory.getLogger(VehicleTelegramEncoder.class);
 
+  /**
+   * Creates a new instance.
+   */
+  public VehicleTelegramEncoder() {
+    super(Request.class);
+  }
+
   @Override
-  protected void encode(ChannelHandlerContext ctx, Request msg, ByteBuf out)
-      throws Exception {
-    LOG.debug("Encoding request of class {}", msg.getClass().getName());
+  protected int getTelegramLength(Request telegram) {
+    return telegram.getTelegramLength();
+  }
 
-    if (msg instanceof OrderRequest) {
-      OrderRequest order = (OrderRequest) msg;
-      LOG.debug("Encoding order telegram: {}", order.toString());
-    }
+  @Override
+  protected void encodeTelegram(Request telegram, ByteBuf out) {
+    LOG.debug("Encoding request: {}", telegram);
 
-    out.writeBytes(msg.getRawContent());
+    try {
+      telegram.encode(out);
+    }
+    finally {
+      telegram.recycle();
+    }
   }
 }
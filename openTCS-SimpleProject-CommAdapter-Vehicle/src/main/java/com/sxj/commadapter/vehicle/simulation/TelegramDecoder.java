@@ -7,75 +7,88 @@
  */
 package com.sxj.commadapter.vehicle.simulation;
 
+import com.sxj.commadapter.vehicle.comm.DecoderStatistics;
+import com.sxj.commadapter.vehicle.comm.ResynchronizingTelegramDecoder;
+import com.sxj.commadapter.vehicle.telegrams.CancelRequest;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeRequest;
 import com.sxj.commadapter.vehicle.telegrams.OrderRequest;
+import com.sxj.commadapter.vehicle.telegrams.RouteSegmentRequest;
 import com.sxj.commadapter.vehicle.telegrams.StateRequest;
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncRequest;
 import com.google.common.primitives.Ints;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
 import java.util.List;
-import org.apache.commons.codec.binary.Hex;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Checks if the incoming data was sent by the comm adapter.
+ * <p>
+ * Valid state, order, handshake, route segment, time synchronization and cancel requests are
+ * passed on as byte arrays.
+ * Corrupted data is discarded as described for {@link ResynchronizingTelegramDecoder}.
+ * </p>
+ * <p>
+ * Once the comm adapter has sent a batch frame, the responses are sent in batch frames, too.
+ * </p>
  *
  * @author Martin Grzenia (Fraunhofer IML)
  */
 public class TelegramDecoder
-    extends ByteToMessageDecoder {
+    extends ResynchronizingTelegramDecoder {
 
   /**
-   * This class's Logger.
+   * Creates a new instance.
+   *
+   * @param statistics The statistics to record the decoding in.
    */
-  private static final Logger LOG = LoggerFactory.getLogger(TelegramDecoder.class);
-  /**
-   * The minimum bytes required to even try decoding (size of the smallest telegram).
-   */
-  private final long minimumBytesRequired;
-
-  public TelegramDecoder() {
-    minimumBytesRequired = Ints.min(StateRequest.TELEGRAM_LENGTH,
-                                    OrderRequest.TELEGRAM_LENGTH);
+  public TelegramDecoder(DecoderStatistics statistics) {
+    super(statistics,
+          Ints.max(StateRequest.TELEGRAM_LENGTH,
+                   OrderRequest.TELEGRAM_LENGTH,
+                   HandshakeRequest.TELEGRAM_LENGTH,
+                   RouteSegmentRequest.MAX_TELEGRAM_LENGTH,
+                   TimeSyncRequest.TELEGRAM_LENGTH,
+                   CancelRequest.TELEGRAM_LENGTH));
   }
 
   @Override
-  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-    // Don't do anything if we don't have enough bytes.
-    if (in.readableBytes() < minimumBytesRequired) {
-      return;
+  protected int getExpectedLength(byte type) {
+    switch (type) {
+      case StateRequest.TYPE:
+        return StateRequest.TELEGRAM_LENGTH;
+      case OrderRequest.TYPE:
+        return OrderRequest.TELEGRAM_LENGTH;
+      case HandshakeRequest.TYPE:
+        return HandshakeRequest.TELEGRAM_LENGTH;
+      case RouteSegmentRequest.TYPE:
+        return VARIABLE_LENGTH;
+      case TimeSyncRequest.TYPE:
+        return TimeSyncRequest.TELEGRAM_LENGTH;
+      case CancelRequest.TYPE:
+        return CancelRequest.TELEGRAM_LENGTH;
+      default:
+        return -1;
     }
+  }
 
-    LOG.debug("Trying to decode incoming bytes: {}", in);
-    byte[] telegramData;
-    in.markReaderIndex();
+  @Override
+  protected boolean hasConsistentLength(ByteBuf in, int start, int telegramLength) {
+    return in.getByte(start + 2) != RouteSegmentRequest.TYPE
+        || RouteSegmentRequest.hasConsistentLength(in, start, telegramLength);
+  }
 
-    if (in.readableBytes() >= StateRequest.TELEGRAM_LENGTH) {
-      LOG.debug("Checking if it's an state request");
-      telegramData = new byte[StateRequest.TELEGRAM_LENGTH];
-      in.readBytes(telegramData);
-      LOG.debug("TelegramData: " + Hex.encodeHexString(telegramData));
-      if (telegramData[2] == StateRequest.TYPE) {
-        out.add(telegramData);
-        return;
-      }
-      else {
-        in.resetReaderIndex();
-      }
+  @Override
+  protected void onBatchFrame(ChannelHandlerContext ctx) {
+    TelegramEncoder encoder = ctx.pipeline().get(TelegramEncoder.class);
+    if (encoder != null && !encoder.isBatchFramesEnabled()) {
+      encoder.setBatchFramesEnabled(true);
     }
+  }
 
-    if (in.readableBytes() >= OrderRequest.TELEGRAM_LENGTH) {
-      LOG.debug("Checking if it's a order request");
-      telegramData = new byte[OrderRequest.TELEGRAM_LENGTH];
-      in.readBytes(telegramData);
-      LOG.debug("TelegramData: " + Hex.encodeHexString(telegramData));
-      if (telegramData[2] == OrderRequest.TYPE) {
-        out.add(telegramData);
-      }
-      else {
-        in.resetReaderIndex();
-      }
-    }
+  @Override
+  protected void decodeTelegram(ByteBuf in, int start, int telegramLength, List<Object> out) {
+    byte[] telegramData = new byte[telegramLength];
+    in.getBytes(start, telegramData);
+    out.add(telegramData);
   }
 }
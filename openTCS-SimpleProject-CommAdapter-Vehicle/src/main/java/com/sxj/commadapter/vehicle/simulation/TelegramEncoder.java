@@ -7,29 +7,43 @@
  */
 package com.sxj.commadapter.vehicle.simulation;
 
+import com.sxj.commadapter.vehicle.comm.BatchingTelegramEncoder;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Encodes outgoing data.
+ * <p>
+ * With batch frames enabled, responses written between two flushes are packed into batch frames,
+ * as described for {@link BatchingTelegramEncoder}.
+ * </p>
  *
  * @author Martin Grzenia (Fraunhofer IML)
  */
 public class TelegramEncoder
-    extends MessageToByteEncoder<byte[]> {
+    extends BatchingTelegramEncoder<byte[]> {
 
   /**
    * This class's Logger.
    */
   private static final Logger LOG = LoggerFactory.getLogger(TelegramEncoder.class);
 
+  /**
+   * Creates a new instance.
+   */
+  public TelegramEncoder() {
+    super(byte[].class);
+  }
+
+  @Override
+  protected int getTelegramLength(byte[] telegram) {
+    return telegram.length;
+  }
+
   @Override
-  protected void encode(ChannelHandlerContext ctx, byte[] msg, ByteBuf out)
-      throws Exception {
-    LOG.debug("Encoding bytes: {}", msg);
-    out.writeBytes(msg);
+  protected void encodeTelegram(byte[] telegram, ByteBuf out) {
+    LOG.debug("Encoding bytes: {}", telegram);
+    out.writeBytes(telegram);
   }
 }
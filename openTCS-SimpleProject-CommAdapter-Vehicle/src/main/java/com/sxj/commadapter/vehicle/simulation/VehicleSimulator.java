@@ -8,20 +8,35 @@
 package com.sxj.commadapter.vehicle.simulation;
 
 import com.sxj.commadapter.vehicle.SimpleCommAdapter;
+import com.sxj.commadapter.vehicle.comm.BatchFrames;
+import com.sxj.commadapter.vehicle.comm.DecoderStatistics;
+import com.sxj.commadapter.vehicle.telegrams.CancelRequest;
+import com.sxj.commadapter.vehicle.telegrams.CancelResponse;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeRequest;
 import com.sxj.commadapter.vehicle.telegrams.OrderRequest;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolCapabilities;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolFeature;
+import com.sxj.commadapter.vehicle.telegrams.RouteSegmentRequest;
+import com.sxj.commadapter.vehicle.telegrams.StateDeltaResponse;
 import com.sxj.commadapter.vehicle.telegrams.StateRequest;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse;
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncRequest;
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncResponse;
 import com.google.common.base.Strings;
-import com.google.common.primitives.Ints;
 import io.netty.channel.ChannelHandler;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import static java.util.Objects.requireNonNull;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.opentcs.contrib.communication.tcp.ClientEntry;
 import org.opentcs.contrib.communication.tcp.ConnectionEventListener;
 import org.opentcs.contrib.communication.tcp.TcpServerChannelManager;
@@ -45,6 +60,40 @@ public class VehicleSimulator
    * An idendifier for the client that connects to this vehicle.
    */
   public static final Object CLIENT_OBJECT = new Object();
+  /**
+   * The protocol capabilities of the simulated vehicle.
+   */
+  private static final ProtocolCapabilities CAPABILITIES
+      = new ProtocolCapabilities(2,
+                                 4,
+                                 BatchFrames.MAX_FRAME_LENGTH,
+                                 EnumSet.of(ProtocolFeature.BATCH_FRAMES,
+                                            ProtocolFeature.STATE_DELTAS,
+                                            ProtocolFeature.STATE_PUSH,
+                                            ProtocolFeature.ROUTE_SEGMENTS,
+                                            ProtocolFeature.CLOCK_SYNC,
+                                            ProtocolFeature.ORDER_CANCELLATION,
+                                            ProtocolFeature.CUMULATIVE_ACKNOWLEDGEMENTS));
+  /**
+   * The number of state deltas sent before a full state response is sent again, allowing the
+   * comm adapter to resynchronize if it missed the base of a delta.
+   */
+  private static final int DELTAS_PER_FULL_STATE = 10;
+  /**
+   * The interval (in ms) in which the state is pushed even if it has not changed, well within the
+   * comm adapter's idle timeout.
+   */
+  private static final long HEARTBEAT_INTERVAL = 2000;
+  /**
+   * The offset (in microseconds) of the simulated vehicle's clock from the comm adapter's, as if
+   * the vehicle's clock had been started at a different time.
+   */
+  private static final long CLOCK_OFFSET = 1_234_567_890;
+  /**
+   * The time (in ms) order responses are held back if cumulative acknowledgements have been agreed
+   * on, so only the last of several orders received at once is answered.
+   */
+  private static final long ORDER_ACKNOWLEDGEMENT_DELAY = 20;
   /**
    * The pool of clients to connect to this vehicle.
    * Here it's only one client.
@@ -68,17 +117,69 @@ public class VehicleSimulator
   /**
    * The internal state of the simulated vehicle.
    */
-  private final VehicleState vehicleState = new VehicleState();
+  private final VehicleState vehicleState;
+  /**
+   * Sends telegrams to the {@link SimpleCommAdapter}.
+   */
+  private final Consumer<byte[]> telegramSender;
+  /**
+   * The statistics of the decoders of all connections to the {@link SimpleCommAdapter}.
+   */
+  private final DecoderStatistics decoderStatistics = new DecoderStatistics();
+  /**
+   * The protocol capabilities agreed on with the comm adapter.
+   */
+  private volatile ProtocolCapabilities agreedCapabilities = ProtocolCapabilities.VERSION_1;
+  /**
+   * The last state response sent, which the next state delta is relative to, or {@code null}, if
+   * the next state response is to be sent in full.
+   */
+  private byte[] lastStateResponse;
+  /**
+   * The number of state deltas sent since the last full state response.
+   */
+  private int deltasSinceFullState;
+  /**
+   * The last state response pushed, or {@code null}, if none has been pushed, yet.
+   */
+  private byte[] lastPushedState;
+  /**
+   * A future for the heartbeat task, or {@code null}, if the state is not being pushed.
+   */
+  private ScheduledFuture<?> heartbeatFuture;
+  /**
+   * The order response held back to acknowledge the orders received since it was created, or
+   * {@code null}, if there is none.
+   */
+  private byte[] pendingOrderResponse;
 
   /**
    * Creates a new instance.
    */
   public VehicleSimulator() {
-    vehicleServer = new TcpServerChannelManager<>(2000,
-                                                  client,
-                                                  this::getChannelHandlers,
-                                                  5000,
-                                                  true);
+    vehicleServer = createVehicleServer();
+    vehicleState = new VehicleState();
+    telegramSender = telegram -> vehicleServer.send(CLIENT_OBJECT, telegram);
+  }
+
+  /**
+   * Creates a new instance that sends telegrams via the given consumer instead of a connection.
+   *
+   * @param vehicleState The internal state of the simulated vehicle.
+   * @param telegramSender Sends telegrams to the comm adapter.
+   */
+  VehicleSimulator(VehicleState vehicleState, Consumer<byte[]> telegramSender) {
+    vehicleServer = createVehicleServer();
+    this.vehicleState = requireNonNull(vehicleState, "vehicleState");
+    this.telegramSender = requireNonNull(telegramSender, "telegramSender");
+  }
+
+  private TcpServerChannelManager<byte[], byte[]> createVehicleServer() {
+    return new TcpServerChannelManager<>(2000,
+                                         client,
+                                         this::getChannelHandlers,
+                                         5000,
+                                         true);
   }
 
   private void initialize() {
@@ -94,32 +195,74 @@ public class VehicleSimulator
       return;
     }
     vehicleServer.terminate();
+    LOG.info("Decoder statistics: {}", decoderStatistics);
   }
 
   @Override
   public void onIncomingTelegram(byte[] request) {
+    int receiveTimestamp = (int) currentVehicleMicros();
     LOG.info("Incoming request: {}", request);
     if (request[2] == StateRequest.TYPE) {
-      int telegramCounter = Ints.fromBytes((byte) 0, (byte) 0, request[3], request[4]);
-      vehicleState.setTelegramCounter(telegramCounter);
-      byte[] response = createStateResponse();
+      vehicleState.setTelegramCounter(StateRequest.LAYOUT.getId(request));
+      byte[] response = createStateResponseOrDelta();
       LOG.info("Sending response: {}", response);
-      vehicleServer.send(CLIENT_OBJECT, response);
+      telegramSender.accept(response);
     }
     else if (request[2] == OrderRequest.TYPE) {
-      int telegramCounter = Ints.fromBytes((byte) 0, (byte) 0, request[3], request[4]);
-      vehicleState.setTelegramCounter(telegramCounter);
-      int orderID = Ints.fromBytes((byte) 0, (byte) 0, request[5], request[6]);
+      vehicleState.setTelegramCounter(OrderRequest.LAYOUT.getId(request));
+      int orderID = OrderRequest.LAYOUT.get(request, OrderRequest.Field.ORDER_ID);
       vehicleState.setLastReceivedOrderId(orderID);
-      byte[] response = createOrderResponse();
+      acknowledgeOrder();
+      pushState(false);
+    }
+    else if (request[2] == RouteSegmentRequest.TYPE) {
+      vehicleState.setTelegramCounter(RouteSegmentRequest.LAYOUT.getId(request));
+      // The vehicle acknowledges the whole segment with the order id of its last waypoint.
+      vehicleState.setLastReceivedOrderId(RouteSegmentRequest.readLastOrderId(request));
+      acknowledgeOrder();
+      pushState(false);
+    }
+    else if (request[2] == TimeSyncRequest.TYPE) {
+      byte[] response
+          = TimeSyncResponse.createTelegram(TimeSyncRequest.LAYOUT.getId(request),
+                                            TimeSyncRequest.readOriginateTimestamp(request),
+                                            receiveTimestamp,
+                                            (int) currentVehicleMicros());
+      LOG.info("Sending response: {}", response);
+      telegramSender.accept(response);
+    }
+    else if (request[2] == CancelRequest.TYPE) {
+      vehicleState.setTelegramCounter(CancelRequest.LAYOUT.getId(request));
+      int revokedOrderId = revokeOrders(CancelRequest.readFirstOrderId(request));
+      byte[] response = CancelResponse.createTelegram(CancelRequest.LAYOUT.getId(request),
+                                                      revokedOrderId);
+      LOG.info("Sending response: {}", response);
+      telegramSender.accept(response);
+      pushState(false);
+    }
+    else if (request[2] == HandshakeRequest.TYPE) {
+      vehicleState.setTelegramCounter(HandshakeRequest.LAYOUT.getId(request));
+      agreedCapabilities = CAPABILITIES.negotiate(HandshakeRequest.readCapabilities(request));
+      LOG.info("Agreed on protocol capabilities: {}", agreedCapabilities);
+      byte[] response = vehicleState.toHandshakeResponse(CAPABILITIES).getRawContent();
       LOG.info("Sending response: {}", response);
-      vehicleServer.send(CLIENT_OBJECT, response);
+      telegramSender.accept(response);
+      if (agreedCapabilities.supports(ProtocolFeature.STATE_PUSH)) {
+        startHeartbeat();
+      }
     }
   }
 
   @Override
   public void onConnect() {
     LOG.info("Communication adapter connected to vehicle.");
+    agreedCapabilities = ProtocolCapabilities.VERSION_1;
+    stopHeartbeat();
+    synchronized (this) {
+      lastStateResponse = null;
+      lastPushedState = null;
+      pendingOrderResponse = null;
+    }
     configureVehicleBehaviour();
   }
 
@@ -130,6 +273,7 @@ public class VehicleSimulator
   @Override
   public void onDisconnect() {
     LOG.info("Communication adapter disconnected from vehicle.");
+    stopHeartbeat();
     terminate();
     initialize();
   }
@@ -175,6 +319,94 @@ public class VehicleSimulator
     return vehicleState.toStateResponse().getRawContent();
   }
 
+  /**
+   * Creates a state delta relative to the last state response sent or, if state deltas are not
+   * supported or a full state response is due, a full state response.
+   *
+   * @return The byte representation of a state response or state delta
+   */
+  private synchronized byte[] createStateResponseOrDelta() {
+    int id = vehicleState.getTelegramCounter();
+    byte[] stateResponse = createStateResponse();
+    byte[] base = lastStateResponse;
+    lastStateResponse = stateResponse;
+    if (base == null
+        || !agreedCapabilities.supports(ProtocolFeature.STATE_DELTAS)
+        || deltasSinceFullState >= DELTAS_PER_FULL_STATE) {
+      deltasSinceFullState = 0;
+      return stateResponse;
+    }
+    deltasSinceFullState++;
+    return StateDeltaResponse.createTelegram(id, base, stateResponse);
+  }
+
+  /**
+   * Pushes the simulated vehicle state to the comm adapter, if this has been agreed on.
+   *
+   * @param heartbeat Whether to push the state even if it has not changed since it was last pushed.
+   */
+  private synchronized void pushState(boolean heartbeat) {
+    if (!agreedCapabilities.supports(ProtocolFeature.STATE_PUSH)) {
+      return;
+    }
+    byte[] state = vehicleState.toStateResponse(StateResponse.PUSH_ID).getRawContent();
+    if (!heartbeat && Arrays.equals(state, lastPushedState)) {
+      return;
+    }
+    lastPushedState = state;
+    // The comm adapter's current state is the pushed one now, so a delta relative to the last
+    // state response would not apply.
+    lastStateResponse = null;
+    LOG.info("Pushing state: {}", state);
+    telegramSender.accept(state);
+  }
+
+  private synchronized void startHeartbeat() {
+    if (heartbeatFuture != null) {
+      return;
+    }
+    heartbeatFuture = taskExecutor.scheduleAtFixedRate(() -> pushState(true),
+                                                       0,
+                                                       HEARTBEAT_INTERVAL,
+                                                       TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void stopHeartbeat() {
+    if (heartbeatFuture == null) {
+      return;
+    }
+    heartbeatFuture.cancel(false);
+    heartbeatFuture = null;
+  }
+
+  /**
+   * Revokes the orders from the given order id on.
+   * The simulated vehicle does not queue orders, so only the current one is dropped - and only if
+   * it is one of the revoked ones, i.e. not if the order revoked first has been finished already.
+   *
+   * @param firstOrderId The id of the first order to revoke.
+   * @return The id of the first order actually revoked, or 0, if none was.
+   */
+  private int revokeOrders(int firstOrderId) {
+    int currOrderId = vehicleState.getCurrOrderId();
+    if (currOrderId == 0 || currOrderId < firstOrderId) {
+      LOG.info("No order to revoke from order {} on.", firstOrderId);
+      return 0;
+    }
+    LOG.info("Revoking order {}", currOrderId);
+    vehicleState.setCurrOrderId(0);
+    return currOrderId;
+  }
+
+  /**
+   * Returns the current time of the simulated vehicle's clock.
+   *
+   * @return The current time, in microseconds.
+   */
+  private static long currentVehicleMicros() {
+    return TimeSyncRequest.currentMicros() + CLOCK_OFFSET;
+  }
+
   /**
    * Creates an order response from the simulated vehicle state.
    *
@@ -185,25 +417,54 @@ public class VehicleSimulator
   }
 
   /**
-   * Returns the channel handlers for the nio pipeline.
-   *
-   * @return The channel handlers for the nio pipeline
+   * Acknowledges the order last received, right away or, if cumulative acknowledgements have been
+   * agreed on, along with any further orders received within a short delay.
    */
-  private List<ChannelHandler> getChannelHandlers() {
-    return Arrays.asList(new LengthFieldBasedFrameDecoder(getMaxTelegramLength(), 1, 1, 2, 0),
-                         new TelegramDecoder(),
-                         new TelegramEncoder(),
-                         new ConnectionAssociator(client));
+  private void acknowledgeOrder() {
+    byte[] response = createOrderResponse();
+    if (!agreedCapabilities.supports(ProtocolFeature.CUMULATIVE_ACKNOWLEDGEMENTS)) {
+      LOG.info("Sending response: {}", response);
+      telegramSender.accept(response);
+      return;
+    }
+    synchronized (this) {
+      boolean scheduled = pendingOrderResponse != null;
+      pendingOrderResponse = response;
+      if (scheduled) {
+        return;
+      }
+    }
+    taskExecutor.schedule(this::sendPendingOrderResponse,
+                          ORDER_ACKNOWLEDGEMENT_DELAY,
+                          TimeUnit.MILLISECONDS);
+  }
+
+  private void sendPendingOrderResponse() {
+    byte[] response;
+    synchronized (this) {
+      response = pendingOrderResponse;
+      pendingOrderResponse = null;
+    }
+    if (response == null) {
+      return;
+    }
+    LOG.info("Sending cumulative response: {}", response);
+    telegramSender.accept(response);
   }
 
   /**
-   * Returns the maximum telegram length.
+   * Returns the channel handlers for the nio pipeline.
    *
-   * @return The maximum telegram length
+   * @return The channel handlers for the nio pipeline
    */
-  private int getMaxTelegramLength() {
-    return Ints.max(StateRequest.TELEGRAM_LENGTH,
-                    OrderRequest.TELEGRAM_LENGTH);
+  private List<ChannelHandler> getChannelHandlers() {
+    return Arrays.asList(new TelegramDecoder(decoderStatistics),
+                         new TelegramEncoder(),
+                         new ConnectionAssociator(client),
+                         new FlushConsolidationHandler(
+                             FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES,
+                             true
+                         ));
   }
 
   /**
@@ -218,10 +479,16 @@ public class VehicleSimulator
   }
 
   private Runnable setPositionId(int positionId) {
-    return () -> vehicleState.setPositionId(positionId);
+    return () -> {
+      vehicleState.setPositionId(positionId);
+      pushState(false);
+    };
   }
 
   private Runnable setOperationState(char operationState) {
-    return () -> vehicleState.setOperationState(operationState);
+    return () -> {
+      vehicleState.setOperationState(operationState);
+      pushState(false);
+    };
   }
 }
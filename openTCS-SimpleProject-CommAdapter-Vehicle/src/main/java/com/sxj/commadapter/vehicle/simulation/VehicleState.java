@@ -7,12 +7,11 @@
  */
 package com.sxj.commadapter.vehicle.simulation;
 
+import com.sxj.commadapter.vehicle.telegrams.HandshakeRequest;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeResponse;
 import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolCapabilities;
 import com.sxj.commadapter.vehicle.telegrams.StateResponse;
-import com.sxj.common.telegrams.Telegram;
-import static com.google.common.base.Ascii.ETX;
-import static com.google.common.base.Ascii.STX;
-import com.google.common.primitives.Ints;
 
 /**
  * Represents the state of a physical vehicle.
@@ -115,41 +114,38 @@ public class VehicleState {
    * @return A state response
    */
   public StateResponse toStateResponse() {
-    byte[] telegramData = new byte[StateResponse.TELEGRAM_LENGTH];
-
-    telegramData[0] = STX;
-    telegramData[1] = StateResponse.PAYLOAD_LENGTH;
-    telegramData[2] = StateResponse.TYPE;
-    // set telegram counter
-    byte[] tmp = Ints.toByteArray(getTelegramCounter());
-    telegramData[3] = tmp[2];
-    telegramData[4] = tmp[3];
-    // set pos id
-    tmp = Ints.toByteArray(getPositionId());
-    telegramData[5] = tmp[2];
-    telegramData[6] = tmp[3];
-    // set op mode
-    telegramData[7] = (byte) getOperationState();
-    // set load state
-    telegramData[8] = (byte) getLoadState();
-    // set last received order id
-    tmp = Ints.toByteArray(getLastReceivedOrderId());
-    telegramData[9] = tmp[2];
-    telegramData[10] = tmp[3];
-    // set current order id
-    tmp = Ints.toByteArray(getCurrOrderId());
-    telegramData[11] = tmp[2];
-    telegramData[12] = tmp[3];
-    // set last finished order id
-    tmp = Ints.toByteArray(getLastFinishedOrderId());
-    telegramData[13] = tmp[2];
-    telegramData[14] = tmp[3];
-    // set checksum
-    telegramData[StateResponse.CHECKSUM_POS] = Telegram.getCheckSum(telegramData);
-    telegramData[StateResponse.TELEGRAM_LENGTH - 1] = ETX;
+    StateResponse response = toStateResponse(getTelegramCounter());
 
     telegramCounter++;
 
+    return response;
+  }
+
+  /**
+   * Creates a state response with the given id for the current vehicle state, leaving the
+   * telegram counter unchanged.
+   *
+   * @param id The state response's id.
+   * @return A state response
+   */
+  public StateResponse toStateResponse(int id) {
+    byte[] telegramData = new byte[StateResponse.TELEGRAM_LENGTH];
+
+    StateResponse.LAYOUT.writeFrame(telegramData, id);
+    StateResponse.LAYOUT.set(telegramData, StateResponse.Field.POSITION_ID, getPositionId());
+    StateResponse.LAYOUT.set(telegramData,
+                             StateResponse.Field.OPERATION_STATE,
+                             getOperationState());
+    StateResponse.LAYOUT.set(telegramData, StateResponse.Field.LOAD_STATE, getLoadState());
+    StateResponse.LAYOUT.set(telegramData,
+                             StateResponse.Field.LAST_RECEIVED_ORDER_ID,
+                             getLastReceivedOrderId());
+    StateResponse.LAYOUT.set(telegramData, StateResponse.Field.CURRENT_ORDER_ID, getCurrOrderId());
+    StateResponse.LAYOUT.set(telegramData,
+                             StateResponse.Field.LAST_FINISHED_ORDER_ID,
+                             getLastFinishedOrderId());
+    StateResponse.LAYOUT.seal(telegramData);
+
     return new StateResponse(telegramData);
   }
 
@@ -161,23 +157,43 @@ public class VehicleState {
   public OrderResponse toOrderResponse() {
     byte[] telegramData = new byte[OrderResponse.TELEGRAM_LENGTH];
 
-    telegramData[0] = STX;
-    telegramData[1] = OrderResponse.PAYLOAD_LENGTH;
-    telegramData[2] = OrderResponse.TYPE;
-    // set telegram counter
-    byte[] tmp = Ints.toByteArray(getTelegramCounter());
-    telegramData[3] = tmp[2];
-    telegramData[4] = tmp[3];
-    // set last received order id
-    tmp = Ints.toByteArray(getLastReceivedOrderId());
-    telegramData[5] = tmp[2];
-    telegramData[6] = tmp[3];
-    // set checksum
-    telegramData[OrderResponse.CHECKSUM_POS] = Telegram.getCheckSum(telegramData);
-    telegramData[OrderResponse.TELEGRAM_LENGTH - 1] = ETX;
+    OrderResponse.LAYOUT.writeFrame(telegramData, getTelegramCounter());
+    OrderResponse.LAYOUT.set(telegramData,
+                             OrderResponse.Field.ORDER_ID,
+                             getLastReceivedOrderId());
+    OrderResponse.LAYOUT.seal(telegramData);
 
     telegramCounter++;
 
     return new OrderResponse(telegramData);
   }
+
+  /**
+   * Creates a handshake response announcing the given capabilities.
+   *
+   * @param capabilities The capabilities of the simulated vehicle.
+   * @return A handshake response.
+   */
+  public HandshakeResponse toHandshakeResponse(ProtocolCapabilities capabilities) {
+    byte[] telegramData = new byte[HandshakeResponse.TELEGRAM_LENGTH];
+
+    HandshakeResponse.LAYOUT.writeFrame(telegramData, getTelegramCounter());
+    HandshakeResponse.LAYOUT.set(telegramData,
+                                 HandshakeRequest.Field.PROTOCOL_VERSION,
+                                 capabilities.getProtocolVersion());
+    HandshakeResponse.LAYOUT.set(telegramData,
+                                 HandshakeRequest.Field.MAX_WINDOW,
+                                 capabilities.getMaxWindow());
+    HandshakeResponse.LAYOUT.set(telegramData,
+                                 HandshakeRequest.Field.MAX_FRAME_LENGTH,
+                                 capabilities.getMaxFrameLength());
+    HandshakeResponse.LAYOUT.set(telegramData,
+                                 HandshakeRequest.Field.FEATURES,
+                                 capabilities.getFeatureBits());
+    HandshakeResponse.LAYOUT.seal(telegramData);
+
+    telegramCounter++;
+
+    return new HandshakeResponse(telegramData);
+  }
 }
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.common.telegrams.Request;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents a request addressed to the vehicle that revokes orders sent before, e.g. because the
+ * vehicle is to be rerouted.
+ * <p>
+ * The vehicle discards the order with the given id, unless it has already finished it, and every
+ * order it received after it, and acknowledges this with a {@link CancelResponse}.
+ * Cancel requests have {@link Priority#URGENT urgent} priority, so they are sent ahead of any
+ * other pending request.
+ * </p>
+ */
+public class CancelRequest
+    extends Request {
+
+  /**
+   * The request type.
+   */
+  public static final byte TYPE = 6;
+  /**
+   * The layout of telegrams of this type.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
+  /**
+   * The expected length of a telegram of this type.
+   */
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
+  /**
+   * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
+   */
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
+  /**
+   * The position of the checksum byte.
+   */
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
+  /**
+   * The id of the first order to revoke.
+   */
+  private final int firstOrderId;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param requestId The request's id.
+   * @param firstOrderId The id of the first order to revoke.
+   */
+  public CancelRequest(int requestId, int firstOrderId) {
+    super(TELEGRAM_LENGTH);
+    this.id = requestId;
+    this.firstOrderId = firstOrderId;
+  }
+
+  /**
+   * Returns the id of the first order to revoke.
+   *
+   * @return The id of the first order to revoke.
+   */
+  public int getFirstOrderId() {
+    return firstOrderId;
+  }
+
+  /**
+   * Reads the id of the first order to revoke from the given cancel request.
+   *
+   * @param telegramData The telegram's raw content.
+   * @return The id of the first order to revoke.
+   */
+  public static int readFirstOrderId(byte[] telegramData) {
+    requireNonNull(telegramData, "telegramData");
+
+    return LAYOUT.get(telegramData, Field.FIRST_ORDER_ID);
+  }
+
+  @Override
+  public void updateRequestContent(int requestId) {
+    // The id is only written when the request is encoded.
+    id = requestId;
+  }
+
+  @Override
+  public byte[] getRawContent() {
+    checkNotRecycled();
+    return encodeToArray();
+  }
+
+  @Override
+  public void encode(ByteBuf out) {
+    int index = LAYOUT.writeFrame(out, id);
+    LAYOUT.set(out, index, Field.FIRST_ORDER_ID, firstOrderId);
+    LAYOUT.seal(out, index);
+  }
+
+  @Override
+  public Priority getPriority() {
+    return Priority.URGENT;
+  }
+
+  @Override
+  public String toString() {
+    return "CancelRequest{"
+        + "requestId=" + id + ", "
+        + "firstOrderId=" + firstOrderId + '}';
+  }
+
+  /**
+   * The fields of a cancel request, in the order in which they appear in the telegram.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The id of the first order to revoke.
+     */
+    FIRST_ORDER_ID(UINT16);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.common.telegrams.Response;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import static com.google.common.base.Preconditions.checkArgument;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents the vehicle's acknowledgement of a {@link CancelRequest}, echoing the id of the first
+ * order actually revoked, or 0, if the vehicle had finished all of them already.
+ */
+public class CancelResponse
+    extends Response {
+
+  /**
+   * The response type.
+   */
+  public static final byte TYPE = 6;
+  /**
+   * The layout of telegrams of this type.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
+  /**
+   * The expected length of a telegram of this type.
+   */
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
+  /**
+   * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
+   */
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
+  /**
+   * The position of the checksum byte.
+   */
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
+  /**
+   * The id of the first order revoked.
+   */
+  private int firstOrderId;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param telegramData This telegram's raw content.
+   */
+  public CancelResponse(byte[] telegramData) {
+    super(TELEGRAM_LENGTH);
+    requireNonNull(telegramData, "telegramData");
+    checkArgument(telegramData.length == TELEGRAM_LENGTH);
+
+    System.arraycopy(telegramData, 0, rawContent, 0, TELEGRAM_LENGTH);
+    decodeTelegramContent();
+  }
+
+  /**
+   * Creates a new instance with the telegram at the given index of the given buffer as its raw
+   * content.
+   * The telegram is not validated, and the buffer's reader index is not modified.
+   *
+   * @param buffer The buffer to copy the telegram's raw content from.
+   * @param index The index of the telegram's first byte in the buffer.
+   */
+  public CancelResponse(ByteBuf buffer, int index) {
+    super(TELEGRAM_LENGTH);
+    requireNonNull(buffer, "buffer");
+
+    buffer.getBytes(index, rawContent, 0, TELEGRAM_LENGTH);
+    decodeTelegramContent();
+  }
+
+  /**
+   * Returns the id of the first order actually revoked, or 0, if none was.
+   *
+   * @return The id of the first order actually revoked, or 0, if none was.
+   */
+  public int getFirstOrderId() {
+    return firstOrderId;
+  }
+
+  @Override
+  public String toString() {
+    return "CancelResponse{"
+        + "id=" + id + ", "
+        + "firstOrderId=" + firstOrderId + '}';
+  }
+
+  /**
+   * Creates the raw content of a cancel response.
+   *
+   * @param id The response's id, i.e. the id of the cancel request answered.
+   * @param firstOrderId The id of the first order actually revoked, or 0, if none was.
+   * @return The raw content of the cancel response.
+   */
+  public static byte[] createTelegram(int id, int firstOrderId) {
+    byte[] telegramData = new byte[TELEGRAM_LENGTH];
+    LAYOUT.writeFrame(telegramData, id);
+    LAYOUT.set(telegramData, Field.FIRST_ORDER_ID, firstOrderId);
+    LAYOUT.seal(telegramData);
+    return telegramData;
+  }
+
+  private void decodeTelegramContent() {
+    this.id = LAYOUT.getId(rawContent);
+    firstOrderId = LAYOUT.get(rawContent, Field.FIRST_ORDER_ID);
+  }
+
+  /**
+   * The fields of a cancel response, in the order in which they appear in the telegram.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The id of the first order actually revoked, or 0, if none was.
+     */
+    FIRST_ORDER_ID(UINT16);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+}
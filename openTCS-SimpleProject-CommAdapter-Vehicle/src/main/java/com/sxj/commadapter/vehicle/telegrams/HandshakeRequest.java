@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.common.telegrams.Request;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents a handshake request addressed to the vehicle, announcing the protocol capabilities
+ * of the control system.
+ * <p>
+ * The vehicle replies with a {@link HandshakeResponse} announcing its own capabilities.
+ * A vehicle supporting only protocol version 1 does not know this telegram and does not reply.
+ * </p>
+ */
+public class HandshakeRequest
+    extends Request {
+
+  /**
+   * The request type.
+   */
+  public static final byte TYPE = 3;
+  /**
+   * The layout of telegrams of this type.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
+  /**
+   * The expected length of a telegram of this type.
+   */
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
+  /**
+   * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
+   */
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
+  /**
+   * The position of the checksum byte.
+   */
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
+  /**
+   * The capabilities of the control system.
+   */
+  private final ProtocolCapabilities capabilities;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param requestId The request's id.
+   * @param capabilities The capabilities of the control system.
+   */
+  public HandshakeRequest(int requestId, ProtocolCapabilities capabilities) {
+    super(TELEGRAM_LENGTH);
+    this.id = requestId;
+    this.capabilities = requireNonNull(capabilities, "capabilities");
+  }
+
+  /**
+   * Returns the capabilities of the control system.
+   *
+   * @return The capabilities of the control system.
+   */
+  public ProtocolCapabilities getCapabilities() {
+    return capabilities;
+  }
+
+  /**
+   * Reads the capabilities from the given handshake request telegram.
+   *
+   * @param telegramData The telegram's raw content.
+   * @return The capabilities.
+   */
+  public static ProtocolCapabilities readCapabilities(byte[] telegramData) {
+    requireNonNull(telegramData, "telegramData");
+
+    return ProtocolCapabilities.fromTelegramFields(
+        LAYOUT.get(telegramData, Field.PROTOCOL_VERSION),
+        LAYOUT.get(telegramData, Field.MAX_WINDOW),
+        LAYOUT.get(telegramData, Field.MAX_FRAME_LENGTH),
+        LAYOUT.get(telegramData, Field.FEATURES)
+    );
+  }
+
+  @Override
+  public void updateRequestContent(int requestId) {
+    // The id is only written when the request is encoded.
+    id = requestId;
+  }
+
+  @Override
+  public byte[] getRawContent() {
+    checkNotRecycled();
+    return encodeToArray();
+  }
+
+  @Override
+  public void encode(ByteBuf out) {
+    int index = LAYOUT.writeFrame(out, id);
+    LAYOUT.set(out, index, Field.PROTOCOL_VERSION, capabilities.getProtocolVersion());
+    LAYOUT.set(out, index, Field.MAX_WINDOW, capabilities.getMaxWindow());
+    LAYOUT.set(out, index, Field.MAX_FRAME_LENGTH, capabilities.getMaxFrameLength());
+    LAYOUT.set(out, index, Field.FEATURES, capabilities.getFeatureBits());
+    LAYOUT.seal(out, index);
+  }
+
+  @Override
+  public String toString() {
+    return "HandshakeRequest{"
+        + "requestId=" + id + ", "
+        + "capabilities=" + capabilities + '}';
+  }
+
+  /**
+   * The fields of a handshake telegram, in the order in which they appear in the telegram.
+   * Handshake requests and responses share this layout.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The highest protocol version supported.
+     */
+    PROTOCOL_VERSION(UINT8),
+    /**
+     * The maximum number of requests waiting for a response at the same time.
+     */
+    MAX_WINDOW(UINT8),
+    /**
+     * The maximum length of a frame, including its STX, SIZE, CHECKSUM and ETX.
+     */
+    MAX_FRAME_LENGTH(UINT16),
+    /**
+     * The bits of the optional features supported (see {@link ProtocolFeature#getBit()}).
+     */
+    FEATURES(UINT16);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.commadapter.vehicle.telegrams.HandshakeRequest.Field;
+import com.sxj.common.telegrams.Response;
+import com.sxj.common.telegrams.TelegramLayout;
+import static com.google.common.base.Preconditions.checkArgument;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents a handshake response sent from the vehicle, announcing the vehicle's protocol
+ * capabilities.
+ */
+public class HandshakeResponse
+    extends Response {
+
+  /**
+   * The response type.
+   */
+  public static final byte TYPE = 3;
+  /**
+   * The layout of telegrams of this type, which is the same as the handshake request's.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
+  /**
+   * The expected length of a telegram of this type.
+   */
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
+  /**
+   * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
+   */
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
+  /**
+   * The position of the checksum byte.
+   */
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
+  /**
+   * The vehicle's capabilities.
+   */
+  private ProtocolCapabilities capabilities;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param telegramData This telegram's raw content.
+   */
+  public HandshakeResponse(byte[] telegramData) {
+    super(TELEGRAM_LENGTH);
+    requireNonNull(telegramData, "telegramData");
+    checkArgument(telegramData.length == TELEGRAM_LENGTH);
+
+    System.arraycopy(telegramData, 0, rawContent, 0, TELEGRAM_LENGTH);
+    decodeTelegramContent();
+  }
+
+  /**
+   * Creates a new instance with the telegram at the given index of the given buffer as its raw
+   * content.
+   * The telegram is not validated, and the buffer's reader index is not modified.
+   *
+   * @param buffer The buffer to copy the telegram's raw content from.
+   * @param index The index of the telegram's first byte in the buffer.
+   */
+  public HandshakeResponse(ByteBuf buffer, int index) {
+    super(TELEGRAM_LENGTH);
+    requireNonNull(buffer, "buffer");
+
+    buffer.getBytes(index, rawContent, 0, TELEGRAM_LENGTH);
+    decodeTelegramContent();
+  }
+
+  /**
+   * Returns the vehicle's capabilities.
+   *
+   * @return The vehicle's capabilities.
+   */
+  public ProtocolCapabilities getCapabilities() {
+    return capabilities;
+  }
+
+  @Override
+  public String toString() {
+    return "HandshakeResponse{"
+        + "id=" + id + ", "
+        + "capabilities=" + capabilities + '}';
+  }
+
+  private void decodeTelegramContent() {
+    this.id = LAYOUT.getId(rawContent);
+    capabilities = ProtocolCapabilities.fromTelegramFields(
+        LAYOUT.get(rawContent, Field.PROTOCOL_VERSION),
+        LAYOUT.get(rawContent, Field.MAX_WINDOW),
+        LAYOUT.get(rawContent, Field.MAX_FRAME_LENGTH),
+        LAYOUT.get(rawContent, Field.FEATURES)
+    );
+  }
+}
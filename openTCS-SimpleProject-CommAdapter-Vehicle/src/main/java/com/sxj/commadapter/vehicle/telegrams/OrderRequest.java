@@ -9,13 +9,19 @@ package com.sxj.commadapter.vehicle.telegrams;
 
 import com.sxj.common.dispatching.LoadAction;
 import com.sxj.common.telegrams.Request;
-import static com.google.common.base.Ascii.ETX;
-import static com.google.common.base.Ascii.STX;
-import com.google.common.primitives.Ints;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import io.netty.buffer.ByteBuf;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Represents an order request addressed to the vehicle.
+ * <p>
+ * Instances are serialized in a compact form containing only the raw content.
+ * </p>
  *
  * @author Mats Wilhelm (Fraunhofer IML)
  */
@@ -26,18 +32,22 @@ public class OrderRequest
    * The request type.
    */
   public static final byte TYPE = 2;
+  /**
+   * The layout of telegrams of this type.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
   /**
    * The expected length of a telegram of this type.
    */
-  public static final int TELEGRAM_LENGTH = 12;
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
   /**
    * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
    */
-  public static final int PAYLOAD_LENGTH = TELEGRAM_LENGTH - 4;
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
   /**
    * The position of the checksum byte.
    */
-  public static final int CHECKSUM_POS = TELEGRAM_LENGTH - 2;
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
   /**
    * The transport order orderId.
    */
@@ -50,6 +60,11 @@ public class OrderRequest
    * The action to execute at the destination point.
    */
   private final OrderAction destinationAction;
+  /**
+   * The raw content as encoded by the latest call to {@link #getRawContent()}, or {@code null}, if
+   * it has not been called, yet. Only encoded again once the request's id has changed.
+   */
+  private transient volatile byte[] encodedContent;
 
   /**
    * Creates a new instance.
@@ -63,13 +78,10 @@ public class OrderRequest
                       int orderId,
                       int destinationId,
                       OrderAction destinationAction) {
-    super(TELEGRAM_LENGTH);
     this.id = requestId;
     this.orderId = orderId;
     this.destinationId = destinationId;
     this.destinationAction = requireNonNull(destinationAction, "destinationAction");
-
-    encodeTelegramContent(orderId, destinationId, destinationAction);
   }
 
   /**
@@ -110,44 +122,121 @@ public class OrderRequest
 
   @Override
   public void updateRequestContent(int requestId) {
+    // The id is only written when the request is encoded.
     id = requestId;
-    encodeTelegramContent(orderId, destinationId, destinationAction);
+  }
+
+  @Override
+  public int getTelegramLength() {
+    return TELEGRAM_LENGTH;
+  }
+
+  @Override
+  public byte[] getRawContent() {
+    checkNotRecycled();
+    byte[] content = encodedContent;
+    if (content == null || LAYOUT.getId(content) != id) {
+      content = encodeToArray();
+      encodedContent = content;
+    }
+    return content;
+  }
+
+  @Override
+  public void encode(ByteBuf out) {
+    int index = LAYOUT.writeFrame(out, id);
+    LAYOUT.set(out, index, Field.ORDER_ID, orderId);
+    LAYOUT.set(out, index, Field.DESTINATION_ID, destinationId);
+    LAYOUT.set(out, index, Field.DESTINATION_ACTION, destinationAction.getActionByte());
+    LAYOUT.seal(out, index);
+  }
+
+  private Object writeReplace() {
+    return new SerializedForm(getRawContent());
+  }
+
+  private void readObject(ObjectInputStream in)
+      throws InvalidObjectException {
+    throw new InvalidObjectException("Serialized form required");
   }
 
   /**
-   * Encodes this telegram's content into the raw content byte array.
-   *
-   * @param orderId The order id
-   * @param destinationId The destination name
-   * @param destinationAction The destination action
+   * The serialized form of an order request, containing only its raw content.
    */
-  private void encodeTelegramContent(int orderId,
-                                     int destinationId,
-                                     OrderAction destinationAction) {
-    // Start of each telegram
-    rawContent[0] = STX;
-    rawContent[1] = PAYLOAD_LENGTH;
+  private static class SerializedForm
+      implements Serializable {
 
-    // Payload of the telegram
-    rawContent[2] = TYPE;
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * The order request's raw content.
+     */
+    private final byte[] rawContent;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rawContent The order request's raw content.
+     */
+    SerializedForm(byte[] rawContent) {
+      this.rawContent = rawContent;
+    }
 
-    byte[] tmpWord = Ints.toByteArray(id);
-    rawContent[3] = tmpWord[2];
-    rawContent[4] = tmpWord[3];
+    private Object readResolve()
+        throws InvalidObjectException {
+      if (rawContent == null || rawContent.length != TELEGRAM_LENGTH) {
+        throw new InvalidObjectException("Invalid raw content of order request");
+      }
+      OrderAction destinationAction
+          = OrderAction.byteToAction((byte) LAYOUT.get(rawContent, Field.DESTINATION_ACTION));
+      if (destinationAction == null) {
+        throw new InvalidObjectException("Invalid destination action of order request");
+      }
+      return new OrderRequest(LAYOUT.getId(rawContent),
+                              LAYOUT.get(rawContent, Field.ORDER_ID),
+                              LAYOUT.get(rawContent, Field.DESTINATION_ID),
+                              destinationAction);
+    }
+  }
 
-    tmpWord = Ints.toByteArray(orderId);
-    rawContent[5] = tmpWord[2];
-    rawContent[6] = tmpWord[3];
+  /**
+   * The fields of an order request, in the order in which they appear in the telegram.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The transport order id.
+     */
+    ORDER_ID(UINT16),
+    /**
+     * The id of the destination point.
+     */
+    DESTINATION_ID(UINT16),
+    /**
+     * The action to execute at the destination point.
+     */
+    DESTINATION_ACTION(UINT8);
 
-    tmpWord = Ints.toByteArray(destinationId);
-    rawContent[7] = tmpWord[2];
-    rawContent[8] = tmpWord[3];
+    /**
+     * The field's width.
+     */
+    private final int width;
 
-    rawContent[9] = destinationAction.getActionByte();
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
 
-    // End of each telegram
-    rawContent[CHECKSUM_POS] = getCheckSum(rawContent);
-    rawContent[TELEGRAM_LENGTH - 1] = ETX;
+    @Override
+    public int getWidth() {
+      return width;
+    }
   }
 
   /**
@@ -214,6 +303,21 @@ public class OrderRequest
       }
       return action;
     }
+
+    /**
+     * Maps the given byte, as put into the telegram to the vehicle, to an order action.
+     *
+     * @param actionByte The byte to map.
+     * @return The action associated with the given byte, or {@code null}, if there is none.
+     */
+    public static OrderAction byteToAction(byte actionByte) {
+      for (OrderAction action : values()) {
+        if (action.actionByte == actionByte) {
+          return action;
+        }
+      }
+      return null;
+    }
   }
 
 }
@@ -7,12 +7,12 @@
  */
 package com.sxj.commadapter.vehicle.telegrams;
 
+import com.sxj.common.telegrams.Request;
 import com.sxj.common.telegrams.Response;
-import static com.sxj.common.telegrams.Telegram.getCheckSum;
-import static com.google.common.base.Ascii.ETX;
-import static com.google.common.base.Ascii.STX;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
 import static com.google.common.base.Preconditions.checkArgument;
-import com.google.common.primitives.Ints;
+import io.netty.buffer.ByteBuf;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -27,22 +27,30 @@ public class OrderResponse
    * The response type.
    */
   public static final byte TYPE = 2;
+  /**
+   * The layout of telegrams of this type.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
   /**
    * The expected length of a telegram of this type.
    */
-  public static final int TELEGRAM_LENGTH = 9;
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
   /**
    * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
    */
-  public static final int PAYLOAD_LENGTH = TELEGRAM_LENGTH - 4;
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
   /**
    * The position of the checksum byte.
    */
-  public static final int CHECKSUM_POS = TELEGRAM_LENGTH - 2;
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
   /**
    * The order id received by the vehicle.
    */
   private int orderId;
+  /**
+   * Whether this response also acknowledges the orders sent before the one it is a response to.
+   */
+  private boolean cumulativeAcknowledgement;
 
   /**
    * Creates a new instance.
@@ -58,6 +66,22 @@ public class OrderResponse
     decodeTelegramContent();
   }
 
+  /**
+   * Creates a new instance with the telegram at the given index of the given buffer as its raw
+   * content.
+   * The telegram is not validated, and the buffer's reader index is not modified.
+   *
+   * @param buffer The buffer to copy the telegram's raw content from.
+   * @param index The index of the telegram's first byte in the buffer.
+   */
+  public OrderResponse(ByteBuf buffer, int index) {
+    super(TELEGRAM_LENGTH);
+    requireNonNull(buffer, "buffer");
+
+    buffer.getBytes(index, rawContent, 0, TELEGRAM_LENGTH);
+    decodeTelegramContent();
+  }
+
   /**
    * Returns the order id received by the vehicle.
    *
@@ -67,6 +91,37 @@ public class OrderResponse
     return orderId;
   }
 
+  /**
+   * Sets whether this response also acknowledges the orders sent before the one it is a response
+   * to, as agreed on in the handshake (see {@link ProtocolFeature#CUMULATIVE_ACKNOWLEDGEMENTS}).
+   *
+   * @param cumulativeAcknowledgement Whether this response also acknowledges the orders sent
+   * before.
+   */
+  public void setCumulativeAcknowledgement(boolean cumulativeAcknowledgement) {
+    this.cumulativeAcknowledgement = cumulativeAcknowledgement;
+  }
+
+  @Override
+  public boolean isCumulativeAcknowledgement() {
+    return cumulativeAcknowledgement;
+  }
+
+  /**
+   * Checks whether this response, being a cumulative acknowledgement, also answers the given
+   * request.
+   * Only order and route segment requests are acknowledged cumulatively, as the vehicle answers
+   * any other request on its own.
+   *
+   * @param request The request sent before the request this response is a response to.
+   * @return {@code true} if, and only if, this response also answers the given request.
+   */
+  @Override
+  public boolean isCumulativeAcknowledgementOf(Request request) {
+    requireNonNull(request, "request");
+    return cumulativeAcknowledgement && carriesOrders(request);
+  }
+
   @Override
   public String toString() {
     return "OrderResponse{" + "id=" + id + '}';
@@ -81,30 +136,51 @@ public class OrderResponse
   public static boolean isOrderResponse(byte[] telegramData) {
     requireNonNull(telegramData, "telegramData");
 
-    boolean result = true;
-    if (telegramData.length != TELEGRAM_LENGTH) {
-      result = false;
-    }
-    else if (telegramData[0] != STX) {
-      result = false;
-    }
-    else if (telegramData[TELEGRAM_LENGTH - 1] != ETX) {
-      result = false;
-    }
-    else if (telegramData[1] != PAYLOAD_LENGTH) {
-      result = false;
-    }
-    else if (telegramData[2] != TYPE) {
-      result = false;
-    }
-    else if (getCheckSum(telegramData) != telegramData[CHECKSUM_POS]) {
-      result = false;
-    }
-    return result;
+    return LAYOUT.isValid(telegramData);
+  }
+
+  /**
+   * Checks whether the given request carries orders, i.e. is answered with an order response.
+   *
+   * @param request The request.
+   * @return {@code true} if, and only if, the given request carries orders.
+   */
+  static boolean carriesOrders(Request request) {
+    return request instanceof OrderRequest || request instanceof RouteSegmentRequest;
   }
 
   private void decodeTelegramContent() {
-    this.id = Ints.fromBytes((byte) 0, (byte) 0, rawContent[3], rawContent[4]);
-    orderId = Ints.fromBytes((byte) 0, (byte) 0, rawContent[5], rawContent[6]);
+    this.id = LAYOUT.getId(rawContent);
+    orderId = LAYOUT.get(rawContent, Field.ORDER_ID);
+  }
+
+  /**
+   * The fields of an order response, in the order in which they appear in the telegram.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The order id received by the vehicle.
+     */
+    ORDER_ID(UINT16);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
   }
 }
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.common.telegrams.Request;
+import com.sxj.common.telegrams.Response;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A read-only view of an order response in a buffer, decoding the response's fields only when
+ * they are accessed.
+ * <p>
+ * Like a {@link StateResponseView}, a view is only valid until it is pointed at another telegram
+ * or the buffer is modified, and users that need to keep the response must {@link #copy()} it.
+ * </p>
+ */
+public class OrderResponseView
+    extends Response {
+
+  /**
+   * The buffer containing the telegram, or {@code null}, if the view is not pointed at any.
+   */
+  private transient ByteBuf buffer;
+  /**
+   * The index of the telegram's first byte in the buffer.
+   */
+  private int index;
+  /**
+   * Whether the response also acknowledges the orders sent before the one it is a response to.
+   */
+  private boolean cumulativeAcknowledgement;
+
+  /**
+   * Creates a new instance that is not pointed at any telegram.
+   */
+  public OrderResponseView() {
+    super(0);
+  }
+
+  /**
+   * Points this view at the telegram at the given index of the given buffer.
+   * The telegram is expected to be a valid order response.
+   *
+   * @param buffer The buffer containing the telegram.
+   * @param index The index of the telegram's first byte in the buffer.
+   * @return This view.
+   */
+  public OrderResponseView wrap(ByteBuf buffer, int index) {
+    this.buffer = requireNonNull(buffer, "buffer");
+    this.index = index;
+    return this;
+  }
+
+  /**
+   * Detaches this view from the telegram it is pointed at, so any further access fails.
+   */
+  public void clear() {
+    this.buffer = null;
+  }
+
+  /**
+   * Returns a copy of the telegram this view is pointed at.
+   *
+   * @return A copy of the telegram this view is pointed at.
+   */
+  public OrderResponse copy() {
+    OrderResponse copy = new OrderResponse(checkedBuffer(), index);
+    copy.setCumulativeAcknowledgement(cumulativeAcknowledgement);
+    return copy;
+  }
+
+  /**
+   * Returns a copy of the telegram this view is pointed at (see {@link #copy()}), as a view is only
+   * valid while it is pointed at the telegram.
+   *
+   * @return A copy of the telegram this view is pointed at.
+   */
+  @Override
+  public OrderResponse toOwned() {
+    return copy();
+  }
+
+  /**
+   * Sets whether the response also acknowledges the orders sent before the one it is a response
+   * to (see {@link OrderResponse#setCumulativeAcknowledgement(boolean)}).
+   *
+   * @param cumulativeAcknowledgement Whether the response also acknowledges the orders sent
+   * before.
+   */
+  public void setCumulativeAcknowledgement(boolean cumulativeAcknowledgement) {
+    this.cumulativeAcknowledgement = cumulativeAcknowledgement;
+  }
+
+  @Override
+  public boolean isCumulativeAcknowledgement() {
+    return cumulativeAcknowledgement;
+  }
+
+  @Override
+  public boolean isCumulativeAcknowledgementOf(Request request) {
+    requireNonNull(request, "request");
+    return cumulativeAcknowledgement && OrderResponse.carriesOrders(request);
+  }
+
+  /**
+   * Returns a copy of the telegram's raw content.
+   *
+   * @return A copy of the telegram's raw content.
+   */
+  @Override
+  public byte[] getRawContent() {
+    byte[] rawContent = new byte[OrderResponse.TELEGRAM_LENGTH];
+    checkedBuffer().getBytes(index, rawContent);
+    return rawContent;
+  }
+
+  @Override
+  public int getId() {
+    return OrderResponse.LAYOUT.getId(checkedBuffer(), index);
+  }
+
+  /**
+   * Returns the order id received by the vehicle.
+   *
+   * @return The order id received by the vehicle.
+   */
+  public int getOrderId() {
+    return OrderResponse.LAYOUT.get(checkedBuffer(), index, OrderResponse.Field.ORDER_ID);
+  }
+
+  @Override
+  public String toString() {
+    if (buffer == null) {
+      return "OrderResponseView{}";
+    }
+    return "OrderResponseView{" + "id=" + getId() + ", " + "orderId=" + getOrderId() + '}';
+  }
+
+  private ByteBuf checkedBuffer() {
+    if (buffer == null) {
+      throw new IllegalStateException("View not pointed at a telegram.");
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import static java.util.Objects.requireNonNull;
+import static org.opentcs.util.Assertions.checkInRange;
+
+/**
+ * Describes what one side of a connection supports of the protocol, or what both sides agreed on.
+ * <p>
+ * Instances are immutable.
+ * </p>
+ */
+public final class ProtocolCapabilities
+    implements Serializable {
+
+  /**
+   * The capabilities of a vehicle that does not support the handshake, i.e. protocol version 1:
+   * One request at a time, plain telegrams only and no optional features.
+   */
+  public static final ProtocolCapabilities VERSION_1
+      = new ProtocolCapabilities(1,
+                                 1,
+                                 Math.max(StateResponse.TELEGRAM_LENGTH,
+                                          OrderRequest.TELEGRAM_LENGTH),
+                                 EnumSet.noneOf(ProtocolFeature.class));
+  /**
+   * The protocol version.
+   */
+  private final int protocolVersion;
+  /**
+   * The maximum number of requests waiting for a response at the same time.
+   */
+  private final int maxWindow;
+  /**
+   * The maximum length of a frame, including its STX, SIZE, CHECKSUM and ETX.
+   */
+  private final int maxFrameLength;
+  /**
+   * The optional features supported.
+   */
+  private final Set<ProtocolFeature> features;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param protocolVersion The protocol version.
+   * @param maxWindow The maximum number of requests waiting for a response at the same time.
+   * @param maxFrameLength The maximum length of a frame, including its STX, SIZE, CHECKSUM and
+   * ETX.
+   * @param features The optional features supported.
+   */
+  public ProtocolCapabilities(int protocolVersion,
+                              int maxWindow,
+                              int maxFrameLength,
+                              Set<ProtocolFeature> features) {
+    this.protocolVersion = checkInRange(protocolVersion, 1, 0xFF, "protocolVersion");
+    this.maxWindow = checkInRange(maxWindow, 1, 0xFF, "maxWindow");
+    this.maxFrameLength = checkInRange(maxFrameLength, 1, 0xFFFF, "maxFrameLength");
+    requireNonNull(features, "features");
+    this.features = features.isEmpty()
+        ? Collections.emptySet()
+        : Collections.unmodifiableSet(EnumSet.copyOf(features));
+  }
+
+  /**
+   * Creates a new instance from the fields of a handshake telegram.
+   *
+   * @param protocolVersion The protocol version.
+   * @param maxWindow The maximum number of requests waiting for a response at the same time.
+   * @param maxFrameLength The maximum length of a frame.
+   * @param featureBits The bits of the optional features supported.
+   * Bits of features unknown to this implementation are ignored.
+   * @return The capabilities.
+   */
+  public static ProtocolCapabilities fromTelegramFields(int protocolVersion,
+                                                        int maxWindow,
+                                                        int maxFrameLength,
+                                                        int featureBits) {
+    Set<ProtocolFeature> features = EnumSet.noneOf(ProtocolFeature.class);
+    for (ProtocolFeature feature : ProtocolFeature.values()) {
+      if ((featureBits & feature.getBit()) != 0) {
+        features.add(feature);
+      }
+    }
+    return new ProtocolCapabilities(Math.max(protocolVersion, 1),
+                                    Math.max(maxWindow, 1),
+                                    Math.max(maxFrameLength, 1),
+                                    features);
+  }
+
+  /**
+   * Returns the protocol version.
+   *
+   * @return The protocol version.
+   */
+  public int getProtocolVersion() {
+    return protocolVersion;
+  }
+
+  /**
+   * Returns the maximum number of requests waiting for a response at the same time.
+   *
+   * @return The maximum number of requests waiting for a response at the same time.
+   */
+  public int getMaxWindow() {
+    return maxWindow;
+  }
+
+  /**
+   * Returns the maximum length of a frame, including its STX, SIZE, CHECKSUM and ETX.
+   *
+   * @return The maximum length of a frame.
+   */
+  public int getMaxFrameLength() {
+    return maxFrameLength;
+  }
+
+  /**
+   * Returns the optional features supported.
+   *
+   * @return The optional features supported.
+   */
+  public Set<ProtocolFeature> getFeatures() {
+    return features;
+  }
+
+  /**
+   * Returns the bits of the optional features supported, as sent in a handshake telegram.
+   *
+   * @return The bits of the optional features supported.
+   */
+  public int getFeatureBits() {
+    int featureBits = 0;
+    for (ProtocolFeature feature : features) {
+      featureBits |= feature.getBit();
+    }
+    return featureBits;
+  }
+
+  /**
+   * Checks whether the given optional feature is supported.
+   *
+   * @param feature The feature.
+   * @return {@code true} if, and only if, the given feature is supported.
+   */
+  public boolean supports(ProtocolFeature feature) {
+    return features.contains(feature);
+  }
+
+  /**
+   * Returns the capabilities both this and the given side support, i.e. the lower protocol
+   * version, window and frame length, and the features supported by both sides.
+   *
+   * @param other The capabilities of the other side.
+   * @return The capabilities both sides support.
+   */
+  public ProtocolCapabilities negotiate(ProtocolCapabilities other) {
+    requireNonNull(other, "other");
+
+    Set<ProtocolFeature> commonFeatures = EnumSet.noneOf(ProtocolFeature.class);
+    commonFeatures.addAll(features);
+    commonFeatures.retainAll(other.features);
+    return new ProtocolCapabilities(Math.min(protocolVersion, other.protocolVersion),
+                                    Math.min(maxWindow, other.maxWindow),
+                                    Math.min(maxFrameLength, other.maxFrameLength),
+                                    commonFeatures);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ProtocolCapabilities)) {
+      return false;
+    }
+    ProtocolCapabilities other = (ProtocolCapabilities) obj;
+    return protocolVersion == other.protocolVersion
+        && maxWindow == other.maxWindow
+        && maxFrameLength == other.maxFrameLength
+        && features.equals(other.features);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(protocolVersion, maxWindow, maxFrameLength, features);
+  }
+
+  @Override
+  public String toString() {
+    return "ProtocolCapabilities{"
+        + "protocolVersion=" + protocolVersion + ", "
+        + "maxWindow=" + maxWindow + ", "
+        + "maxFrameLength=" + maxFrameLength + ", "
+        + "features=" + features + '}';
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+/**
+ * Defines the optional protocol features a vehicle may support, as announced in a handshake.
+ */
+public enum ProtocolFeature {
+  /**
+   * Several telegrams may be packed into a single batch frame.
+   */
+  BATCH_FRAMES(0x0001),
+  /**
+   * State requests may be answered with state deltas carrying only the fields changed.
+   */
+  STATE_DELTAS(0x0002),
+  /**
+   * The vehicle pushes its state whenever it changes, and periodically as a heartbeat, instead of
+   * being polled.
+   */
+  STATE_PUSH(0x0004),
+  /**
+   * Several consecutive orders may be sent at once, in a route segment request.
+   */
+  ROUTE_SEGMENTS(0x0008),
+  /**
+   * The vehicle answers time synchronization requests, allowing the offset between its clock and
+   * the control system's to be estimated.
+   */
+  CLOCK_SYNC(0x0010),
+  /**
+   * Orders sent before may be revoked with a cancel request.
+   */
+  ORDER_CANCELLATION(0x0020),
+  /**
+   * An order response also acknowledges all orders sent before the one it is a response to, so
+   * the vehicle may answer only the last of several orders received at once.
+   */
+  CUMULATIVE_ACKNOWLEDGEMENTS(0x0040);
+
+  /**
+   * The bit representing the feature in a handshake telegram.
+   */
+  private final int bit;
+
+  /**
+   * Creates a new feature.
+   *
+   * @param bit The bit representing the feature in a handshake telegram.
+   */
+  ProtocolFeature(int bit) {
+    this.bit = bit;
+  }
+
+  /**
+   * Returns the bit representing the feature in a handshake telegram.
+   *
+   * @return The bit representing the feature in a handshake telegram.
+   */
+  public int getBit() {
+    return bit;
+  }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.common.telegrams.Request;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import static com.google.common.base.Preconditions.checkArgument;
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents a request addressed to the vehicle that carries several consecutive orders at once,
+ * one for every waypoint of a route segment.
+ * <p>
+ * Following the id, the telegram contains the number of waypoints and, for every waypoint, the
+ * fields of an {@link OrderRequest} (order id, destination id and destination action).
+ * Every waypoint keeps its own order id, so the vehicle reports the completion of every waypoint
+ * just as it does for single orders.
+ * The vehicle acknowledges the request with an {@link OrderResponse} carrying the order id of the
+ * last waypoint.
+ * </p>
+ */
+public class RouteSegmentRequest
+    extends Request {
+
+  /**
+   * The request type.
+   */
+  public static final byte TYPE = 4;
+  /**
+   * The maximum number of waypoints in a route segment.
+   */
+  public static final int MAX_WAYPOINTS = 4;
+  /**
+   * The layout of the fixed part of telegrams of this type, i.e. the header and the number of
+   * waypoints.
+   * The waypoints follow it, so its telegram length is that of a telegram without waypoints.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
+  /**
+   * The position of the number of waypoints.
+   */
+  public static final int WAYPOINT_COUNT_POS = LAYOUT.getOffset(Field.WAYPOINT_COUNT);
+  /**
+   * The position of the first waypoint.
+   */
+  public static final int WAYPOINTS_POS = WAYPOINT_COUNT_POS + 1;
+  /**
+   * The length of a single waypoint.
+   */
+  public static final int WAYPOINT_LENGTH
+      = OrderRequest.TELEGRAM_LENGTH - TelegramLayout.HEADER_LENGTH - 2;
+  /**
+   * The length of a telegram of this type with the maximum number of waypoints.
+   */
+  public static final int MAX_TELEGRAM_LENGTH = getTelegramLength(MAX_WAYPOINTS);
+  /**
+   * The orders for the waypoints, in the order in which they are to be executed.
+   */
+  private final List<OrderRequest> orders;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param requestId The request's id.
+   * @param orders The orders for the waypoints, in the order in which they are to be executed.
+   */
+  public RouteSegmentRequest(int requestId, List<OrderRequest> orders) {
+    super(getTelegramLength(requireNonNull(orders, "orders").size()));
+    checkArgument(!orders.isEmpty() && orders.size() <= MAX_WAYPOINTS,
+                  "Illegal number of waypoints: %s",
+                  orders.size());
+    this.id = requestId;
+    this.orders = Collections.unmodifiableList(new ArrayList<>(orders));
+  }
+
+  /**
+   * Returns the orders for the waypoints, in the order in which they are to be executed.
+   *
+   * @return The orders for the waypoints.
+   */
+  public List<OrderRequest> getOrders() {
+    return orders;
+  }
+
+  /**
+   * Returns the order for the last waypoint, whose order id the vehicle acknowledges.
+   *
+   * @return The order for the last waypoint.
+   */
+  public OrderRequest getLastOrder() {
+    return orders.get(orders.size() - 1);
+  }
+
+  @Override
+  public String toString() {
+    return "RouteSegmentRequest{"
+        + "requestId=" + id + ", "
+        + "orders=" + orders + '}';
+  }
+
+  @Override
+  public void updateRequestContent(int requestId) {
+    // The id is only written when the request is encoded.
+    id = requestId;
+  }
+
+  @Override
+  public byte[] getRawContent() {
+    checkNotRecycled();
+    return encodeToArray();
+  }
+
+  @Override
+  public void encode(ByteBuf out) {
+    int index = out.writerIndex();
+    out.writeByte(TelegramLayout.STX);
+    out.writeByte(rawContent.length - TelegramLayout.FRAME_OVERHEAD);
+    out.writeByte(TYPE);
+    out.writeShort(id);
+    out.writeByte(orders.size());
+    for (OrderRequest order : orders) {
+      out.writeShort(order.getOrderId());
+      out.writeShort(order.getDestinationId());
+      out.writeByte(order.getDestinationAction().getActionByte());
+    }
+    // The checksum covers all bytes between SIZE and CHECKSUM.
+    int checkSum = 0;
+    for (int i = index + TelegramLayout.TYPE_POS; i < out.writerIndex(); i++) {
+      checkSum ^= out.getByte(i);
+    }
+    out.writeByte(checkSum);
+    out.writeByte(TelegramLayout.ETX);
+  }
+
+  /**
+   * Returns the length of a telegram of this type with the given number of waypoints.
+   *
+   * @param waypointCount The number of waypoints.
+   * @return The length of the telegram.
+   */
+  public static int getTelegramLength(int waypointCount) {
+    return WAYPOINTS_POS + waypointCount * WAYPOINT_LENGTH + 2;
+  }
+
+  /**
+   * Checks whether the telegram at the given index of the given buffer has the length its number
+   * of waypoints requires.
+   *
+   * @param in The buffer.
+   * @param index The index of the telegram's first byte.
+   * @param telegramLength The telegram's length.
+   * @return {@code true} if, and only if, the telegram has the length its number of waypoints
+   * requires.
+   */
+  public static boolean hasConsistentLength(ByteBuf in, int index, int telegramLength) {
+    if (telegramLength <= WAYPOINTS_POS) {
+      return false;
+    }
+    int waypointCount = LAYOUT.get(in, index, Field.WAYPOINT_COUNT);
+    return waypointCount >= 1
+        && waypointCount <= MAX_WAYPOINTS
+        && getTelegramLength(waypointCount) == telegramLength;
+  }
+
+  /**
+   * Reads the order id of the last waypoint of the given telegram.
+   *
+   * @param telegramData The telegram's raw content.
+   * @return The order id of the last waypoint.
+   */
+  public static int readLastOrderId(byte[] telegramData) {
+    int waypointCount = LAYOUT.get(telegramData, Field.WAYPOINT_COUNT);
+    int offset = WAYPOINTS_POS + (waypointCount - 1) * WAYPOINT_LENGTH;
+    return (telegramData[offset] & 0xFF) << 8 | telegramData[offset + 1] & 0xFF;
+  }
+
+  /**
+   * The fields of the fixed part of a route segment request, in the order in which they appear in
+   * the telegram.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The number of waypoints following.
+     */
+    WAYPOINT_COUNT(UINT8);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.Field;
+import com.sxj.common.telegrams.Response;
+import com.sxj.common.telegrams.Telegram;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import static com.google.common.base.Preconditions.checkArgument;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents a state response sent from the vehicle that only carries the fields that changed
+ * since a previous state response, the base.
+ * <p>
+ * Following the id, the telegram contains the id of the base, a bitmap of the changed fields (with
+ * bit {@code n} representing the {@link Field} with ordinal {@code n}) and the values of the
+ * changed fields, in the order of their declaration.
+ * The telegram's length thus depends on the fields changed.
+ * </p>
+ * <p>
+ * A delta is applied to its base (see {@link #applyTo(StateResponse)}) to get the vehicle's
+ * current state.
+ * If the receiver does not have the base any more, e.g. because a response has been lost, the
+ * delta cannot be applied, and the receiver has to wait for the next full state response, which
+ * the vehicle sends periodically.
+ * Consecutive deltas can be folded into a single one (see {@link #followedBy(StateDeltaResponse)})
+ * before they are applied.
+ * </p>
+ */
+public class StateDeltaResponse
+    extends Response {
+
+  /**
+   * The response type.
+   */
+  public static final byte TYPE = 4;
+  /**
+   * The layout of the fixed part of telegrams of this type, i.e. the header, the base's id and the
+   * bitmap of changed fields.
+   * The changed fields follow it, so its telegram length is that of a delta without changes.
+   */
+  public static final TelegramLayout<HeaderField> LAYOUT
+      = TelegramLayout.of(TYPE, HeaderField.class);
+  /**
+   * The position of the base's id.
+   */
+  public static final int BASE_ID_POS = LAYOUT.getOffset(HeaderField.BASE_ID);
+  /**
+   * The position of the bitmap of changed fields.
+   */
+  public static final int BITMAP_POS = LAYOUT.getOffset(HeaderField.BITMAP);
+  /**
+   * The position of the first changed field.
+   */
+  public static final int FIELDS_POS = LAYOUT.getCheckSumPos();
+  /**
+   * The length of a telegram of this type without any changed fields.
+   */
+  public static final int MIN_TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
+  /**
+   * The length of a telegram of this type with all fields changed.
+   */
+  public static final int MAX_TELEGRAM_LENGTH = getTelegramLength(allFieldsBitmap());
+  /**
+   * The id of the state response this delta is relative to.
+   */
+  private int baseId;
+  /**
+   * The bitmap of changed fields.
+   */
+  private int bitmap;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param telegramData This telegram's raw content.
+   */
+  public StateDeltaResponse(byte[] telegramData) {
+    super(requireNonNull(telegramData, "telegramData").length);
+    checkArgument(telegramData.length >= MIN_TELEGRAM_LENGTH);
+
+    System.arraycopy(telegramData, 0, rawContent, 0, telegramData.length);
+    decodeTelegramContent();
+  }
+
+  /**
+   * Creates a new instance with the telegram at the given index of the given buffer as its raw
+   * content.
+   * The telegram is not validated, and the buffer's reader index is not modified.
+   *
+   * @param buffer The buffer to copy the telegram's raw content from.
+   * @param index The index of the telegram's first byte in the buffer.
+   * @param telegramLength The telegram's length.
+   */
+  public StateDeltaResponse(ByteBuf buffer, int index, int telegramLength) {
+    super(telegramLength);
+    requireNonNull(buffer, "buffer");
+    checkArgument(telegramLength >= MIN_TELEGRAM_LENGTH);
+
+    buffer.getBytes(index, rawContent, 0, telegramLength);
+    decodeTelegramContent();
+  }
+
+  /**
+   * Returns the id of the state response this delta is relative to.
+   *
+   * @return The id of the state response this delta is relative to.
+   */
+  public int getBaseId() {
+    return baseId;
+  }
+
+  /**
+   * Checks whether the given field has changed.
+   *
+   * @param field The field.
+   * @return {@code true} if, and only if, the given field has changed.
+   */
+  public boolean isChanged(Field field) {
+    return (bitmap & bitOf(field)) != 0;
+  }
+
+  /**
+   * Applies this delta to the given base.
+   *
+   * @param base The state response this delta is relative to.
+   * @return A new (pooled) state response with the fields of the given base, the changes of this
+   * delta and the id of this delta.
+   * @throws IllegalArgumentException If the given state response is not this delta's base.
+   */
+  public StateResponse applyTo(StateResponse base)
+      throws IllegalArgumentException {
+    requireNonNull(base, "base");
+    checkArgument(base.getId() == baseId,
+                  "Delta relative to %s cannot be applied to %s",
+                  baseId,
+                  base.getId());
+
+    byte[] telegramData = base.getRawContent().clone();
+    StateResponse.LAYOUT.writeFrame(telegramData, id);
+    copyChangesTo(telegramData);
+    StateResponse.LAYOUT.seal(telegramData);
+    return StateResponse.newInstance(telegramData);
+  }
+
+  /**
+   * Folds the given delta, which is relative to this one, into this delta.
+   *
+   * @param next The delta following this one.
+   * @return A new delta relative to this delta's base, with the id of the given delta, the fields
+   * changed by either delta and, for every field, the latest value.
+   * @throws IllegalArgumentException If the given delta is not relative to this one.
+   */
+  public StateDeltaResponse followedBy(StateDeltaResponse next)
+      throws IllegalArgumentException {
+    requireNonNull(next, "next");
+    checkArgument(next.getBaseId() == id,
+                  "Delta relative to %s cannot follow %s",
+                  next.getBaseId(),
+                  id);
+
+    // Collect the latest values in a state telegram, with the fields at their usual offsets.
+    byte[] values = new byte[StateResponse.TELEGRAM_LENGTH];
+    copyChangesTo(values);
+    next.copyChangesTo(values);
+    return new StateDeltaResponse(encode(next.getId(), baseId, bitmap | next.bitmap, values));
+  }
+
+  @Override
+  public String toString() {
+    return "StateDeltaResponse{"
+        + "id=" + id + ", "
+        + "baseId=" + baseId + ", "
+        + "bitmap=" + Integer.toBinaryString(bitmap) + '}';
+  }
+
+  /**
+   * Returns the length of a telegram of this type with the given fields changed.
+   *
+   * @param bitmap The bitmap of changed fields.
+   * @return The length of the telegram.
+   */
+  public static int getTelegramLength(int bitmap) {
+    int telegramLength = MIN_TELEGRAM_LENGTH;
+    for (Field field : Field.values()) {
+      if ((bitmap & bitOf(field)) != 0) {
+        telegramLength += field.getWidth();
+      }
+    }
+    return telegramLength;
+  }
+
+  /**
+   * Checks whether the telegram at the given index of the given buffer has the length its bitmap
+   * of changed fields requires.
+   *
+   * @param in The buffer.
+   * @param index The index of the telegram's first byte.
+   * @param telegramLength The telegram's length.
+   * @return {@code true} if, and only if, the telegram has the length its bitmap requires.
+   */
+  public static boolean hasConsistentLength(ByteBuf in, int index, int telegramLength) {
+    if (telegramLength < MIN_TELEGRAM_LENGTH) {
+      return false;
+    }
+    int bitmap = LAYOUT.get(in, index, HeaderField.BITMAP);
+    return (bitmap & ~allFieldsBitmap()) == 0 && getTelegramLength(bitmap) == telegramLength;
+  }
+
+  /**
+   * Creates the raw content of a delta between the given state responses.
+   *
+   * @param id The delta's id.
+   * @param base The raw content of the state response the delta is relative to.
+   * @param current The raw content of the current state response.
+   * @return The raw content of the delta.
+   */
+  public static byte[] createTelegram(int id, byte[] base, byte[] current) {
+    requireNonNull(base, "base");
+    requireNonNull(current, "current");
+
+    int bitmap = 0;
+    for (Field field : Field.values()) {
+      if (StateResponse.LAYOUT.get(base, field) != StateResponse.LAYOUT.get(current, field)) {
+        bitmap |= bitOf(field);
+      }
+    }
+    return encode(id, StateResponse.LAYOUT.getId(base), bitmap, current);
+  }
+
+  /**
+   * Creates the raw content of a delta with the given fields changed.
+   *
+   * @param id The delta's id.
+   * @param baseId The id of the state response the delta is relative to.
+   * @param bitmap The bitmap of changed fields.
+   * @param values A state telegram containing the values of the changed fields.
+   * @return The raw content of the delta.
+   */
+  private static byte[] encode(int id, int baseId, int bitmap, byte[] values) {
+    byte[] telegramData = new byte[getTelegramLength(bitmap)];
+    telegramData[0] = TelegramLayout.STX;
+    telegramData[1] = (byte) (telegramData.length - TelegramLayout.FRAME_OVERHEAD);
+    telegramData[TelegramLayout.TYPE_POS] = TYPE;
+    LAYOUT.setId(telegramData, id);
+    LAYOUT.set(telegramData, HeaderField.BASE_ID, baseId);
+    LAYOUT.set(telegramData, HeaderField.BITMAP, bitmap);
+    int offset = FIELDS_POS;
+    for (Field field : Field.values()) {
+      if ((bitmap & bitOf(field)) != 0) {
+        System.arraycopy(values,
+                         StateResponse.LAYOUT.getOffset(field),
+                         telegramData,
+                         offset,
+                         field.getWidth());
+        offset += field.getWidth();
+      }
+    }
+    telegramData[telegramData.length - 2] = Telegram.getCheckSum(telegramData);
+    telegramData[telegramData.length - 1] = TelegramLayout.ETX;
+    return telegramData;
+  }
+
+  /**
+   * Copies the values of the changed fields to their offsets in the given state telegram.
+   *
+   * @param telegramData The state telegram's raw content.
+   */
+  private void copyChangesTo(byte[] telegramData) {
+    int offset = FIELDS_POS;
+    for (Field field : Field.values()) {
+      if (isChanged(field)) {
+        System.arraycopy(rawContent,
+                         offset,
+                         telegramData,
+                         StateResponse.LAYOUT.getOffset(field),
+                         field.getWidth());
+        offset += field.getWidth();
+      }
+    }
+  }
+
+  private void decodeTelegramContent() {
+    id = LAYOUT.getId(rawContent);
+    baseId = LAYOUT.get(rawContent, HeaderField.BASE_ID);
+    bitmap = LAYOUT.get(rawContent, HeaderField.BITMAP);
+  }
+
+  private static int bitOf(Field field) {
+    return 1 << field.ordinal();
+  }
+
+  private static int allFieldsBitmap() {
+    return (1 << Field.values().length) - 1;
+  }
+
+  /**
+   * The fields of the fixed part of a state delta response, in the order in which they appear in
+   * the telegram.
+   */
+  public enum HeaderField
+      implements TelegramField {
+    /**
+     * The id of the state response the delta is relative to.
+     */
+    BASE_ID(UINT16),
+    /**
+     * The bitmap of changed fields.
+     */
+    BITMAP(UINT8);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    HeaderField(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+}
@@ -8,10 +8,10 @@
 package com.sxj.commadapter.vehicle.telegrams;
 
 import com.sxj.common.telegrams.Request;
-import static com.sxj.common.telegrams.Telegram.getCheckSum;
-import static com.google.common.base.Ascii.ETX;
-import static com.google.common.base.Ascii.STX;
-import com.google.common.primitives.Ints;
+import com.sxj.common.telegrams.TelegramLayout;
+import com.sxj.common.telegrams.TelegramLayout.NoFields;
+import com.sxj.common.telegrams.TelegramPool;
+import io.netty.buffer.ByteBuf;
 
 /**
  * Represents a state request addressed to the vehicle.
@@ -25,18 +25,27 @@ public class StateRequest
    * The request type.
    */
   public static final byte TYPE = 1;
+  /**
+   * The layout of telegrams of this type, which carry no payload besides the id.
+   */
+  public static final TelegramLayout<NoFields> LAYOUT = TelegramLayout.of(TYPE, NoFields.class);
   /**
    * The expected length of a telegram of this type.
    */
-  public static final int TELEGRAM_LENGTH = 7;
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
   /**
    * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
    */
-  public static final int PAYLOAD_LENGTH = TELEGRAM_LENGTH - 4;
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
   /**
    * The position of the checksum byte.
    */
-  public static final int CHECKSUM_POS = TELEGRAM_LENGTH - 2;
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
+  /**
+   * The pool of reusable instances.
+   */
+  private static final TelegramPool<StateRequest> POOL
+      = new TelegramPool<>(() -> new StateRequest(ID_DEFAULT));
 
   /**
    * Creates a new instance.
@@ -46,32 +55,50 @@ public class StateRequest
   public StateRequest(int requestId) {
     super(TELEGRAM_LENGTH);
     this.id = requestId;
+  }
 
-    encodeTelegramContent();
+  /**
+   * Returns a pooled instance, which is to be recycled once it is no longer used.
+   *
+   * @param requestId The request's id.
+   * @return A pooled instance.
+   */
+  public static StateRequest newInstance(int requestId) {
+    StateRequest request = POOL.get();
+    request.updateRequestContent(requestId);
+    return request;
   }
 
   @Override
   public void updateRequestContent(int requestId) {
+    // The id is only written when the request is encoded.
     id = requestId;
-    encodeTelegramContent();
   }
 
   @Override
-  public String toString() {
-    return "StateRequest{" + "requestId=" + id + '}';
+  public byte[] getRawContent() {
+    checkNotRecycled();
+    return encodeToArray();
   }
 
-  private void encodeTelegramContent() {
-    rawContent[0] = STX;
-    rawContent[1] = PAYLOAD_LENGTH;
+  @Override
+  public void encode(ByteBuf out) {
+    LAYOUT.seal(out, LAYOUT.writeFrame(out, id));
+  }
 
-    rawContent[2] = TYPE;
+  @Override
+  public Priority getPriority() {
+    return Priority.TELEMETRY;
+  }
 
-    byte[] tmpWord = Ints.toByteArray(id);
-    rawContent[3] = tmpWord[2];
-    rawContent[4] = tmpWord[3];
+  @Override
+  public boolean isCoalescableWith(Request request) {
+    // Any state request will provide the vehicle's current state.
+    return request instanceof StateRequest;
+  }
 
-    rawContent[CHECKSUM_POS] = getCheckSum(rawContent);
-    rawContent[TELEGRAM_LENGTH - 1] = ETX;
+  @Override
+  public String toString() {
+    return "StateRequest{" + "requestId=" + id + '}';
   }
 }
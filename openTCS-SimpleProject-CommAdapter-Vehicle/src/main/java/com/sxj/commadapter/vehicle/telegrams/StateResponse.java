@@ -8,14 +8,22 @@
 package com.sxj.commadapter.vehicle.telegrams;
 
 import com.sxj.common.telegrams.Response;
-import static com.google.common.base.Ascii.ETX;
-import static com.google.common.base.Ascii.STX;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import com.sxj.common.telegrams.TelegramPool;
 import static com.google.common.base.Preconditions.checkArgument;
-import com.google.common.primitives.Ints;
+import io.netty.buffer.ByteBuf;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Represents a vehicle status response sent from the vehicle.
+ * <p>
+ * Instances are serialized in a compact form containing only the raw content, which is decoded
+ * when one of the fields is first accessed after deserialization.
+ * </p>
  *
  * @author Mats Wilhelm (Fraunhofer IML)
  */
@@ -26,18 +34,31 @@ public class StateResponse
    * The response type.
    */
   public static final byte TYPE = 1;
+  /**
+   * The id of state responses the vehicle pushes without having been asked for them.
+   * Requests never use this id, so pushed state responses cannot be mistaken for answers.
+   */
+  public static final int PUSH_ID = 0xFFFF;
+  /**
+   * The layout of telegrams of this type.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
   /**
    * The expected length of a telegram of this type.
    */
-  public static final int TELEGRAM_LENGTH = 17;
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
   /**
    * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
    */
-  public static final int PAYLOAD_LENGTH = TELEGRAM_LENGTH - 4;
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
   /**
    * The position of the checksum byte.
    */
-  public static final int CHECKSUM_POS = TELEGRAM_LENGTH - 2;
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
+  /**
+   * The pool of reusable instances.
+   */
+  private static final TelegramPool<StateResponse> POOL = new TelegramPool<>(StateResponse::new);
   /**
    * The id of the point at the vehicle's current position.
    */
@@ -62,6 +83,10 @@ public class StateResponse
    * The id of the last finished order.
    */
   private int lastFinishedOrderId;
+  /**
+   * Whether the fields have been decoded from the raw content.
+   */
+  private volatile boolean decoded;
 
   /**
    * Creates a new instance.
@@ -77,12 +102,55 @@ public class StateResponse
     decodeTelegramContent();
   }
 
+  /**
+   * Creates a new instance to be filled by {@link #newInstance(byte[])}.
+   */
+  private StateResponse() {
+    super(TELEGRAM_LENGTH);
+  }
+
+  /**
+   * Returns a pooled instance, which is to be recycled once it is no longer used.
+   *
+   * @param telegramData The telegram's raw content.
+   * @return A pooled instance.
+   */
+  public static StateResponse newInstance(byte[] telegramData) {
+    requireNonNull(telegramData, "telegramData");
+    checkArgument(telegramData.length == TELEGRAM_LENGTH);
+
+    StateResponse response = POOL.get();
+    System.arraycopy(telegramData, 0, response.rawContent, 0, TELEGRAM_LENGTH);
+    response.decodeTelegramContent();
+    return response;
+  }
+
+  /**
+   * Returns a pooled instance, which is to be recycled once it is no longer used, with the
+   * telegram at the given index of the given buffer as its raw content.
+   * The telegram is not validated, and the buffer's reader index is not modified.
+   *
+   * @param buffer The buffer to copy the telegram's raw content from.
+   * @param index The index of the telegram's first byte in the buffer.
+   * @return A pooled instance.
+   */
+  public static StateResponse newInstance(ByteBuf buffer, int index) {
+    requireNonNull(buffer, "buffer");
+
+    StateResponse response = POOL.get();
+    buffer.getBytes(index, response.rawContent, 0, TELEGRAM_LENGTH);
+    response.decodeTelegramContent();
+    return response;
+  }
+
   /**
    * Returns the id of the point at the vehicle's current position.
    *
    * @return The id of the point at the vehicle's current position
    */
   public int getPositionId() {
+    checkNotRecycled();
+    ensureDecoded();
     return positionId;
   }
 
@@ -92,6 +160,8 @@ public class StateResponse
    * @return The vehicle's operation state.
    */
   public OperationState getOperationState() {
+    checkNotRecycled();
+    ensureDecoded();
     return operationState;
   }
 
@@ -101,6 +171,8 @@ public class StateResponse
    * @return The vehicle's load state.
    */
   public LoadState getLoadState() {
+    checkNotRecycled();
+    ensureDecoded();
     return loadState;
   }
 
@@ -110,6 +182,8 @@ public class StateResponse
    * @return The id of the last received order.
    */
   public int getLastReceivedOrderId() {
+    checkNotRecycled();
+    ensureDecoded();
     return lastReceivedOrderId;
   }
 
@@ -119,6 +193,8 @@ public class StateResponse
    * @return The id of the current order.
    */
   public int getCurrentOrderId() {
+    checkNotRecycled();
+    ensureDecoded();
     return currentOrderId;
   }
 
@@ -128,6 +204,8 @@ public class StateResponse
    * @return The id of the last finished order.
    */
   public int getLastFinishedOrderId() {
+    checkNotRecycled();
+    ensureDecoded();
     return lastFinishedOrderId;
   }
 
@@ -137,11 +215,24 @@ public class StateResponse
    * @return The telegram's checksum byte.
    */
   public byte getCheckSum() {
+    checkNotRecycled();
     return rawContent[CHECKSUM_POS];
   }
 
+  /**
+   * Returns this response or, if it is pooled and may thus be reused once recycled, an unpooled
+   * copy of it.
+   *
+   * @return This response or an unpooled copy of it.
+   */
+  @Override
+  public StateResponse toOwned() {
+    return isPooled() ? new StateResponse(getRawContent()) : this;
+  }
+
   @Override
   public String toString() {
+    ensureDecoded();
     return "StateResponse{"
         + "requestId=" + id + ", "
         + "positionId=" + positionId + ", "
@@ -161,39 +252,36 @@ public class StateResponse
   public static boolean isStateResponse(byte[] telegramData) {
     requireNonNull(telegramData, "data");
 
-    boolean result = true;
-    if (telegramData.length != TELEGRAM_LENGTH) {
-      result = false;
-    }
-    else if (telegramData[0] != STX) {
-      result = false;
-    }
-    else if (telegramData[TELEGRAM_LENGTH - 1] != ETX) {
-      result = false;
-    }
-    else if (telegramData[1] != PAYLOAD_LENGTH) {
-      result = false;
-    }
-    else if (telegramData[2] != TYPE) {
-      result = false;
-    }
-    else if (getCheckSum(telegramData) != telegramData[CHECKSUM_POS]) {
-      result = false;
-    }
-    return result;
+    return LAYOUT.isValid(telegramData);
   }
 
   private void decodeTelegramContent() {
-    id = Ints.fromBytes((byte) 0, (byte) 0, rawContent[3], rawContent[4]);
-    positionId = Ints.fromBytes((byte) 0, (byte) 0, rawContent[5], rawContent[6]);
-    operationState = decodeOperatingState((char) rawContent[7]);
-    loadState = decodeLoadState((char) rawContent[8]);
-    lastReceivedOrderId = Ints.fromBytes((byte) 0, (byte) 0, rawContent[9], rawContent[10]);
-    currentOrderId = Ints.fromBytes((byte) 0, (byte) 0, rawContent[11], rawContent[12]);
-    lastFinishedOrderId = Ints.fromBytes((byte) 0, (byte) 0, rawContent[13], rawContent[14]);
+    id = LAYOUT.getId(rawContent);
+    positionId = LAYOUT.get(rawContent, Field.POSITION_ID);
+    operationState = decodeOperatingState((char) LAYOUT.get(rawContent, Field.OPERATION_STATE));
+    loadState = decodeLoadState((char) LAYOUT.get(rawContent, Field.LOAD_STATE));
+    lastReceivedOrderId = LAYOUT.get(rawContent, Field.LAST_RECEIVED_ORDER_ID);
+    currentOrderId = LAYOUT.get(rawContent, Field.CURRENT_ORDER_ID);
+    lastFinishedOrderId = LAYOUT.get(rawContent, Field.LAST_FINISHED_ORDER_ID);
+    decoded = true;
+  }
+
+  private void ensureDecoded() {
+    if (!decoded) {
+      decodeTelegramContent();
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializedForm(getRawContent());
+  }
+
+  private void readObject(ObjectInputStream in)
+      throws InvalidObjectException {
+    throw new InvalidObjectException("Serialized form required");
   }
 
-  private OperationState decodeOperatingState(char operatingStateRaw) {
+  static OperationState decodeOperatingState(char operatingStateRaw) {
     switch (operatingStateRaw) {
       case 'A':
         return OperationState.ACTING;
@@ -210,7 +298,7 @@ public class StateResponse
     }
   }
 
-  private LoadState decodeLoadState(char loadStateRaw) {
+  static LoadState decodeLoadState(char loadStateRaw) {
     switch (loadStateRaw) {
       case 'E':
         return LoadState.EMPTY;
@@ -221,6 +309,93 @@ public class StateResponse
     }
   }
 
+  /**
+   * The serialized form of a state response, containing only its raw content.
+   */
+  private static class SerializedForm
+      implements Serializable {
+
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * The state response's raw content.
+     */
+    private final byte[] rawContent;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rawContent The state response's raw content.
+     */
+    SerializedForm(byte[] rawContent) {
+      this.rawContent = rawContent;
+    }
+
+    private Object readResolve()
+        throws InvalidObjectException {
+      if (rawContent == null || rawContent.length != TELEGRAM_LENGTH) {
+        throw new InvalidObjectException("Invalid raw content of state response");
+      }
+      StateResponse response = new StateResponse();
+      System.arraycopy(rawContent, 0, response.rawContent, 0, TELEGRAM_LENGTH);
+      // The id is not covered by ensureDecoded(), so it is decoded right away.
+      response.id = LAYOUT.getId(response.rawContent);
+      return response;
+    }
+  }
+
+  /**
+   * The fields of a state response, in the order in which they appear in the telegram.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The id of the point at the vehicle's current position.
+     */
+    POSITION_ID(UINT16),
+    /**
+     * The vehicle's operation state, as a character.
+     */
+    OPERATION_STATE(UINT8),
+    /**
+     * The vehicle's load state, as a character.
+     */
+    LOAD_STATE(UINT8),
+    /**
+     * The id of the last received order.
+     */
+    LAST_RECEIVED_ORDER_ID(UINT16),
+    /**
+     * The id of the current order.
+     */
+    CURRENT_ORDER_ID(UINT16),
+    /**
+     * The id of the last finished order.
+     */
+    LAST_FINISHED_ORDER_ID(UINT16);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+
   /**
    * The load handling state of a vehicle.
    */
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.Field;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.LoadState;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.OperationState;
+import com.sxj.common.telegrams.Response;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A read-only view of a state response in a buffer, decoding the response's fields only when
+ * they are accessed.
+ * <p>
+ * A view does not copy the telegram and can be pointed at another telegram at any time, so a
+ * single instance can be used for all state responses received via a connection.
+ * A view is thus only valid until it is pointed at another telegram or the buffer is modified,
+ * and users that need to keep the response must {@link #copy()} it.
+ * </p>
+ */
+public class StateResponseView
+    extends Response {
+
+  /**
+   * The buffer containing the telegram, or {@code null}, if the view is not pointed at any.
+   */
+  private transient ByteBuf buffer;
+  /**
+   * The index of the telegram's first byte in the buffer.
+   */
+  private int index;
+
+  /**
+   * Creates a new instance that is not pointed at any telegram.
+   */
+  public StateResponseView() {
+    super(0);
+  }
+
+  /**
+   * Points this view at the telegram at the given index of the given buffer.
+   * The telegram is expected to be a valid state response.
+   *
+   * @param buffer The buffer containing the telegram.
+   * @param index The index of the telegram's first byte in the buffer.
+   * @return This view.
+   */
+  public StateResponseView wrap(ByteBuf buffer, int index) {
+    this.buffer = requireNonNull(buffer, "buffer");
+    this.index = index;
+    return this;
+  }
+
+  /**
+   * Detaches this view from the telegram it is pointed at, so any further access fails.
+   */
+  public void clear() {
+    this.buffer = null;
+  }
+
+  /**
+   * Returns a copy of the telegram this view is pointed at.
+   *
+   * @return A pooled copy, which is to be recycled once it is no longer used.
+   */
+  public StateResponse copy() {
+    return StateResponse.newInstance(checkedBuffer(), index);
+  }
+
+  /**
+   * Returns an unpooled copy of the telegram this view is pointed at, as a view is only valid while
+   * it is pointed at the telegram.
+   *
+   * @return An unpooled copy of the telegram this view is pointed at.
+   */
+  @Override
+  public StateResponse toOwned() {
+    return new StateResponse(getRawContent());
+  }
+
+  /**
+   * Returns a copy of the telegram's raw content.
+   *
+   * @return A copy of the telegram's raw content.
+   */
+  @Override
+  public byte[] getRawContent() {
+    byte[] rawContent = new byte[StateResponse.TELEGRAM_LENGTH];
+    checkedBuffer().getBytes(index, rawContent);
+    return rawContent;
+  }
+
+  @Override
+  public int getId() {
+    return StateResponse.LAYOUT.getId(checkedBuffer(), index);
+  }
+
+  /**
+   * Returns the id of the point at the vehicle's current position.
+   *
+   * @return The id of the point at the vehicle's current position
+   */
+  public int getPositionId() {
+    return StateResponse.LAYOUT.get(checkedBuffer(), index, Field.POSITION_ID);
+  }
+
+  /**
+   * Returns the vehicle's operation state.
+   *
+   * @return The vehicle's operation state.
+   */
+  public OperationState getOperationState() {
+    return StateResponse.decodeOperatingState(
+        (char) StateResponse.LAYOUT.get(checkedBuffer(), index, Field.OPERATION_STATE)
+    );
+  }
+
+  /**
+   * Returns the vehicle's load state.
+   *
+   * @return The vehicle's load state.
+   */
+  public LoadState getLoadState() {
+    return StateResponse.decodeLoadState(
+        (char) StateResponse.LAYOUT.get(checkedBuffer(), index, Field.LOAD_STATE)
+    );
+  }
+
+  /**
+   * Returns the id of the last received order.
+   *
+   * @return The id of the last received order.
+   */
+  public int getLastReceivedOrderId() {
+    return StateResponse.LAYOUT.get(checkedBuffer(), index, Field.LAST_RECEIVED_ORDER_ID);
+  }
+
+  /**
+   * Returns the id of the current order.
+   *
+   * @return The id of the current order.
+   */
+  public int getCurrentOrderId() {
+    return StateResponse.LAYOUT.get(checkedBuffer(), index, Field.CURRENT_ORDER_ID);
+  }
+
+  /**
+   * Returns the id of the last finished order.
+   *
+   * @return The id of the last finished order.
+   */
+  public int getLastFinishedOrderId() {
+    return StateResponse.LAYOUT.get(checkedBuffer(), index, Field.LAST_FINISHED_ORDER_ID);
+  }
+
+  @Override
+  public String toString() {
+    if (buffer == null) {
+      return "StateResponseView{}";
+    }
+    return "StateResponseView{"
+        + "requestId=" + getId() + ", "
+        + "positionId=" + getPositionId() + ", "
+        + "operationState=" + getOperationState() + ", "
+        + "loadState=" + getLoadState() + ", "
+        + "lastReceivedOrderId=" + getLastReceivedOrderId() + ", "
+        + "currentOrderId=" + getCurrentOrderId() + ", "
+        + "lastFinishedOrderId=" + getLastFinishedOrderId() + '}';
+  }
+
+  private ByteBuf checkedBuffer() {
+    if (buffer == null) {
+      throw new IllegalStateException("View not pointed at a telegram.");
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.common.telegrams.Request;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a time synchronization request addressed to the vehicle, carrying the time at which
+ * it was sent.
+ * <p>
+ * The vehicle replies with a {@link TimeSyncResponse} reflecting this time and adding the times at
+ * which it received the request and sent the response, according to its own clock.
+ * Like in NTP, the four timestamps allow estimating the offset between the clocks and the round
+ * trip delay.
+ * </p>
+ * <p>
+ * Timestamps are microseconds of a monotonic clock, of which only the lowest 32 bits are sent.
+ * They wrap about every 71 minutes, so they are only compared to timestamps taken shortly before
+ * or after.
+ * </p>
+ */
+public class TimeSyncRequest
+    extends Request {
+
+  /**
+   * The request type.
+   */
+  public static final byte TYPE = 5;
+  /**
+   * The layout of telegrams of this type.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
+  /**
+   * The expected length of a telegram of this type.
+   */
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
+  /**
+   * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
+   */
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
+  /**
+   * The position of the checksum byte.
+   */
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
+
+  /**
+   * Creates a new instance.
+   *
+   * @param requestId The request's id.
+   */
+  public TimeSyncRequest(int requestId) {
+    super(TELEGRAM_LENGTH);
+    this.id = requestId;
+  }
+
+  /**
+   * Returns the current time of the control system's clock the timestamps are taken from.
+   *
+   * @return The current time, in microseconds.
+   */
+  public static long currentMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(System.nanoTime());
+  }
+
+  /**
+   * Reads the time at which the given time synchronization request was sent.
+   *
+   * @param telegramData The telegram's raw content.
+   * @return The lowest 32 bits of the time at which the request was sent.
+   */
+  public static int readOriginateTimestamp(byte[] telegramData) {
+    requireNonNull(telegramData, "telegramData");
+
+    return LAYOUT.get(telegramData, Field.ORIGINATE_TIMESTAMP);
+  }
+
+  @Override
+  public void updateRequestContent(int requestId) {
+    // The id is only written when the request is encoded.
+    id = requestId;
+  }
+
+  @Override
+  public byte[] getRawContent() {
+    checkNotRecycled();
+    return encodeToArray();
+  }
+
+  @Override
+  public void encode(ByteBuf out) {
+    int index = LAYOUT.writeFrame(out, id);
+    // Taken as late as possible, so the time spent waiting in the request queue is not included.
+    LAYOUT.set(out, index, Field.ORIGINATE_TIMESTAMP, (int) currentMicros());
+    LAYOUT.seal(out, index);
+  }
+
+  @Override
+  public Priority getPriority() {
+    return Priority.TELEMETRY;
+  }
+
+  @Override
+  public String toString() {
+    return "TimeSyncRequest{"
+        + "requestId=" + id + '}';
+  }
+
+  /**
+   * The fields of a time synchronization request, in the order in which they appear in the
+   * telegram.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The time at which the request was sent, according to the control system's clock.
+     */
+    ORIGINATE_TIMESTAMP(UINT32);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.common.telegrams.Response;
+import com.sxj.common.telegrams.TelegramField;
+import com.sxj.common.telegrams.TelegramLayout;
+import static com.google.common.base.Preconditions.checkArgument;
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents a time synchronization response sent from the vehicle.
+ * <p>
+ * Besides the time at which the {@link TimeSyncRequest} was sent, it carries the times at which
+ * the vehicle received the request and sent this response, according to the vehicle's clock.
+ * The time at which this response was received is taken when it is created.
+ * </p>
+ */
+public class TimeSyncResponse
+    extends Response {
+
+  /**
+   * The response type.
+   */
+  public static final byte TYPE = 5;
+  /**
+   * The layout of telegrams of this type.
+   */
+  public static final TelegramLayout<Field> LAYOUT = TelegramLayout.of(TYPE, Field.class);
+  /**
+   * The expected length of a telegram of this type.
+   */
+  public static final int TELEGRAM_LENGTH = LAYOUT.getTelegramLength();
+  /**
+   * The size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
+   */
+  public static final int PAYLOAD_LENGTH = LAYOUT.getPayloadLength();
+  /**
+   * The position of the checksum byte.
+   */
+  public static final int CHECKSUM_POS = LAYOUT.getCheckSumPos();
+  /**
+   * The time at which this response was received, according to the control system's clock.
+   */
+  private final long destinationMicros = TimeSyncRequest.currentMicros();
+  /**
+   * The time at which the request was sent, according to the control system's clock.
+   */
+  private int originateTimestamp;
+  /**
+   * The time at which the request was received, according to the vehicle's clock.
+   */
+  private int receiveTimestamp;
+  /**
+   * The time at which this response was sent, according to the vehicle's clock.
+   */
+  private int transmitTimestamp;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param telegramData This telegram's raw content.
+   */
+  public TimeSyncResponse(byte[] telegramData) {
+    super(TELEGRAM_LENGTH);
+    requireNonNull(telegramData, "telegramData");
+    checkArgument(telegramData.length == TELEGRAM_LENGTH);
+
+    System.arraycopy(telegramData, 0, rawContent, 0, TELEGRAM_LENGTH);
+    decodeTelegramContent();
+  }
+
+  /**
+   * Creates a new instance with the telegram at the given index of the given buffer as its raw
+   * content.
+   * The telegram is not validated, and the buffer's reader index is not modified.
+   *
+   * @param buffer The buffer to copy the telegram's raw content from.
+   * @param index The index of the telegram's first byte in the buffer.
+   */
+  public TimeSyncResponse(ByteBuf buffer, int index) {
+    super(TELEGRAM_LENGTH);
+    requireNonNull(buffer, "buffer");
+
+    buffer.getBytes(index, rawContent, 0, TELEGRAM_LENGTH);
+    decodeTelegramContent();
+  }
+
+  /**
+   * Returns the lowest 32 bits of the time at which the request was sent, according to the
+   * control system's clock.
+   *
+   * @return The time at which the request was sent, in microseconds.
+   */
+  public int getOriginateTimestamp() {
+    return originateTimestamp;
+  }
+
+  /**
+   * Returns the lowest 32 bits of the time at which the request was received, according to the
+   * vehicle's clock.
+   *
+   * @return The time at which the request was received, in microseconds.
+   */
+  public int getReceiveTimestamp() {
+    return receiveTimestamp;
+  }
+
+  /**
+   * Returns the lowest 32 bits of the time at which this response was sent, according to the
+   * vehicle's clock.
+   *
+   * @return The time at which this response was sent, in microseconds.
+   */
+  public int getTransmitTimestamp() {
+    return transmitTimestamp;
+  }
+
+  /**
+   * Returns the time at which this response was received, according to the control system's
+   * clock.
+   *
+   * @return The time at which this response was received, in microseconds.
+   */
+  public long getDestinationMicros() {
+    return destinationMicros;
+  }
+
+  @Override
+  public String toString() {
+    return "TimeSyncResponse{"
+        + "id=" + id + ", "
+        + "originateTimestamp=" + Integer.toUnsignedString(originateTimestamp) + ", "
+        + "receiveTimestamp=" + Integer.toUnsignedString(receiveTimestamp) + ", "
+        + "transmitTimestamp=" + Integer.toUnsignedString(transmitTimestamp) + '}';
+  }
+
+  /**
+   * Creates the raw content of a time synchronization response.
+   *
+   * @param id The response's id.
+   * @param originateTimestamp The time at which the request was sent.
+   * @param receiveTimestamp The time at which the request was received.
+   * @param transmitTimestamp The time at which the response is sent.
+   * @return The raw content of the response.
+   */
+  public static byte[] createTelegram(int id,
+                                      int originateTimestamp,
+                                      int receiveTimestamp,
+                                      int transmitTimestamp) {
+    byte[] telegramData = new byte[TELEGRAM_LENGTH];
+    LAYOUT.writeFrame(telegramData, id);
+    LAYOUT.set(telegramData, Field.ORIGINATE_TIMESTAMP, originateTimestamp);
+    LAYOUT.set(telegramData, Field.RECEIVE_TIMESTAMP, receiveTimestamp);
+    LAYOUT.set(telegramData, Field.TRANSMIT_TIMESTAMP, transmitTimestamp);
+    LAYOUT.seal(telegramData);
+    return telegramData;
+  }
+
+  private void decodeTelegramContent() {
+    this.id = LAYOUT.getId(rawContent);
+    originateTimestamp = LAYOUT.get(rawContent, Field.ORIGINATE_TIMESTAMP);
+    receiveTimestamp = LAYOUT.get(rawContent, Field.RECEIVE_TIMESTAMP);
+    transmitTimestamp = LAYOUT.get(rawContent, Field.TRANSMIT_TIMESTAMP);
+  }
+
+  /**
+   * The fields of a time synchronization response, in the order in which they appear in the
+   * telegram.
+   */
+  public enum Field
+      implements TelegramField {
+    /**
+     * The time at which the request was sent, according to the control system's clock.
+     */
+    ORIGINATE_TIMESTAMP(UINT32),
+    /**
+     * The time at which the request was received, according to the vehicle's clock.
+     */
+    RECEIVE_TIMESTAMP(UINT32),
+    /**
+     * The time at which the response was sent, according to the vehicle's clock.
+     */
+    TRANSMIT_TIMESTAMP(UINT32);
+
+    /**
+     * The field's width.
+     */
+    private final int width;
+
+    /**
+     * Creates a new field.
+     *
+     * @param width The field's width.
+     */
+    Field(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+}
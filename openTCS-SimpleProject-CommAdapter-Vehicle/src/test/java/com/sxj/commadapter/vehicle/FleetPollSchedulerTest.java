@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for the {@link FleetPollScheduler}.
+ */
+public class FleetPollSchedulerTest {
+
+  private Timer timer;
+
+  private List<Timeout> scheduledTimeouts;
+
+  private List<Long> scheduledDelays;
+
+  private AtomicLong nanoTime;
+
+  private Runnable pollTask;
+
+  private FleetPollScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    timer = mock(Timer.class);
+    scheduledTimeouts = new ArrayList<>();
+    scheduledDelays = new ArrayList<>();
+    when(timer.newTimeout(any(), anyLong(), any())).thenAnswer(invocation -> {
+      Timeout timeout = mock(Timeout.class);
+      when(timeout.task()).thenReturn(invocation.getArgument(0, TimerTask.class));
+      scheduledTimeouts.add(timeout);
+      scheduledDelays.add(invocation.getArgument(2, TimeUnit.class)
+          .toMillis(invocation.getArgument(1, Long.class)));
+      return timeout;
+    });
+    nanoTime = new AtomicLong();
+    pollTask = mock(Runnable.class);
+    scheduler = new FleetPollScheduler(timer, Runnable::run, nanoTime::get);
+  }
+
+  @Test
+  public void shouldSpreadPollersStartedTogetherAcrossInterval() {
+    for (int i = 0; i < 5; i++) {
+      scheduler.createPoller("vehicle-" + i, pollTask).start(1000);
+    }
+
+    List<Long> delays = new ArrayList<>(scheduledDelays);
+    Collections.sort(delays);
+    Assert.assertEquals(5, delays.size());
+    for (int i = 0; i < delays.size(); i++) {
+      Assert.assertTrue(delays.get(i) > 0 && delays.get(i) <= 1000);
+      if (i > 0) {
+        // Golden ratio phases keep five pollers at least a ninth of the interval apart.
+        Assert.assertTrue(delays.get(i) - delays.get(i - 1) >= 1000 / 9);
+      }
+    }
+  }
+
+  @Test
+  public void shouldKeepSlotsAndSkipPollsWhenLate() {
+    FleetPollScheduler.Poller poller = scheduler.createPoller("vehicle", pollTask);
+    poller.start(100);
+    Assert.assertEquals(100, (long) scheduledDelays.get(0));
+
+    advanceTo(130);
+    expireTimeout(1);
+    verify(pollTask).run();
+    Assert.assertEquals(70, (long) scheduledDelays.get(1));
+    Assert.assertEquals(0, poller.getSkippedPollCount());
+
+    advanceTo(450);
+    expireTimeout(2);
+    verify(pollTask, times(2)).run();
+    Assert.assertEquals(50, (long) scheduledDelays.get(2));
+    Assert.assertEquals(2, poller.getSkippedPollCount());
+    Assert.assertEquals(2, poller.getPollCount());
+  }
+
+  @Test
+  public void shouldMovePollForwardOnlyWhenIntervalShortened() {
+    FleetPollScheduler.Poller poller = scheduler.createPoller("vehicle", pollTask);
+    poller.start(2000);
+    advanceTo(300);
+
+    poller.setInterval(500);
+    verify(scheduledTimeouts.get(0)).cancel();
+    Assert.assertEquals(2, scheduledTimeouts.size());
+    Assert.assertEquals(200, (long) scheduledDelays.get(1));
+
+    poller.setInterval(3000);
+    Assert.assertEquals(2, scheduledTimeouts.size());
+    Assert.assertEquals(3000, poller.getInterval());
+
+    // The poll moved away from must not run any more.
+    expireTimeout(1);
+    verify(pollTask, times(0)).run();
+  }
+
+  @Test
+  public void shouldReportTargetAndAchievedRate() {
+    FleetPollScheduler.Poller poller = scheduler.createPoller("vehicle", pollTask);
+    Assert.assertEquals(0, poller.getTargetRate(), 0.001);
+    poller.start(100);
+
+    for (int i = 1; i <= 3; i++) {
+      advanceTo(i * 100);
+      expireTimeout(i);
+    }
+
+    Assert.assertEquals(10, poller.getTargetRate(), 0.001);
+    Assert.assertEquals(10, poller.getAchievedRate(), 0.001);
+  }
+
+  @Test
+  public void shouldNotPollAfterStop() {
+    FleetPollScheduler.Poller poller = scheduler.createPoller("vehicle", pollTask);
+    poller.start(100);
+
+    poller.stop();
+    verify(scheduledTimeouts.get(0)).cancel();
+    Assert.assertFalse(poller.isRunning());
+    advanceTo(100);
+    expireTimeout(1);
+
+    verify(pollTask, times(0)).run();
+    Assert.assertEquals(1, scheduledTimeouts.size());
+  }
+
+  @Test
+  public void shouldStopAllRunningPollers() {
+    FleetPollScheduler.Poller first = scheduler.createPoller("first", pollTask);
+    FleetPollScheduler.Poller second = scheduler.createPoller("second", pollTask);
+    first.start(100);
+    second.start(100);
+    second.stop();
+
+    scheduler.stopAll();
+
+    Assert.assertFalse(first.isRunning());
+    verify(scheduledTimeouts.get(0)).cancel();
+    Assert.assertEquals(2, scheduledTimeouts.size());
+  }
+
+  @Test
+  public void shouldOnlyHandPollsOverAndSkipWhilePreviousIsQueued() {
+    List<Runnable> queuedPolls = new ArrayList<>();
+    scheduler = new FleetPollScheduler(timer, queuedPolls::add, nanoTime::get);
+    FleetPollScheduler.Poller poller = scheduler.createPoller("vehicle", pollTask);
+    poller.start(100);
+
+    advanceTo(100);
+    expireTimeout(1);
+    verify(pollTask, times(0)).run();
+    Assert.assertEquals(1, queuedPolls.size());
+    Assert.assertEquals(2, scheduledTimeouts.size());
+
+    // The next slot comes while the executor still has not run the first poll.
+    advanceTo(200);
+    expireTimeout(2);
+    Assert.assertEquals(1, queuedPolls.size());
+    Assert.assertEquals(1, poller.getSkippedPollCount());
+    Assert.assertEquals(3, scheduledTimeouts.size());
+
+    queuedPolls.get(0).run();
+    verify(pollTask).run();
+    advanceTo(300);
+    expireTimeout(3);
+    Assert.assertEquals(2, queuedPolls.size());
+    Assert.assertEquals(2, poller.getPollCount());
+  }
+
+  @Test(timeout = 10000)
+  public void shouldNotDelayOtherPollersWhilePollBlocks()
+      throws InterruptedException {
+    HashedWheelTimer realTimer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+    ExecutorService executor = Executors.newCachedThreadPool();
+    CountDownLatch blockedPollStarted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch otherPolls = new CountDownLatch(5);
+    try {
+      scheduler = new FleetPollScheduler(realTimer, executor, System::nanoTime);
+      scheduler.createPoller("blocked", () -> {
+        blockedPollStarted.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException exc) {
+          Thread.currentThread().interrupt();
+        }
+      }).start(20);
+      FleetPollScheduler.Poller other = scheduler.createPoller("other", otherPolls::countDown);
+      other.start(20);
+
+      Assert.assertTrue(blockedPollStarted.await(5, TimeUnit.SECONDS));
+      // The other poller keeps polling while the first one's poll is stuck.
+      Assert.assertTrue(otherPolls.await(5, TimeUnit.SECONDS));
+    }
+    finally {
+      release.countDown();
+      realTimer.stop();
+      executor.shutdownNow();
+    }
+  }
+
+  private void advanceTo(long millis) {
+    nanoTime.set(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  private void expireTimeout(int scheduledTimeouts) {
+    Timeout timeout = this.scheduledTimeouts.get(scheduledTimeouts - 1);
+    try {
+      timeout.task().run(timeout);
+    }
+    catch (Exception exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+}
@@ -8,9 +8,13 @@
 package com.sxj.commadapter.vehicle;
 
 import com.sxj.common.VehicleProperties;
+import io.netty.util.Timer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.*;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import org.opentcs.data.model.Vehicle;
 
 /**
@@ -19,11 +23,56 @@ import org.opentcs.data.model.Vehicle;
  */
 public class SimpleCommAdapterFactoryTest {
 
+  private SharedTimerProvider timerProvider;
+
+  private FleetPollScheduler pollScheduler;
+
   private SimpleCommAdapterFactory commAdapterFactory;
 
   @Before
   public void setUp() {
-    commAdapterFactory = new SimpleCommAdapterFactory(mock(SimpleAdapterComponentsFactory.class));
+    timerProvider = new SharedTimerProvider();
+    pollScheduler = mock(FleetPollScheduler.class);
+    commAdapterFactory = new SimpleCommAdapterFactory(mock(SimpleAdapterComponentsFactory.class),
+                                                      timerProvider,
+                                                      pollScheduler);
+  }
+
+  @After
+  public void tearDown() {
+    commAdapterFactory.terminate();
+  }
+
+  @Test
+  public void stopPollersAndTimerWhenTerminated() {
+    Timer timer = timerProvider.get();
+    commAdapterFactory.initialize();
+    commAdapterFactory.terminate();
+
+    verify(pollScheduler).stopAll();
+    try {
+      timer.newTimeout(t -> { }, 10, TimeUnit.MILLISECONDS);
+      fail("Timer still running after the factory has been terminated");
+    }
+    catch (IllegalStateException exc) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void fireTimeoutsAgainWhenReinitialized()
+      throws InterruptedException {
+    // The timer is injected once and has to survive the factory's termination, e.g. on a model
+    // upload.
+    Timer timer = timerProvider.get();
+    commAdapterFactory.initialize();
+    commAdapterFactory.terminate();
+    commAdapterFactory.initialize();
+
+    CountDownLatch fired = new CountDownLatch(1);
+    timer.newTimeout(t -> fired.countDown(), 10, TimeUnit.MILLISECONDS);
+
+    assertTrue(fired.await(5, TimeUnit.SECONDS));
   }
 
   @Test
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+import com.sxj.commadapter.vehicle.comm.BatchFrames;
+import com.sxj.commadapter.vehicle.comm.ResponseTypeRegistry;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeRequest;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeResponse;
+import com.sxj.commadapter.vehicle.telegrams.OrderRequest;
+import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolCapabilities;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolFeature;
+import com.sxj.commadapter.vehicle.telegrams.StateRequest;
+import com.sxj.common.telegrams.Request;
+import com.sxj.common.telegrams.RequestResponseMatcher;
+import com.sxj.common.telegrams.RequestTimeoutPolicy;
+import com.sxj.common.telegrams.Telegram;
+import com.sxj.common.telegrams.TelegramSender;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.opentcs.data.model.Vehicle;
+import org.opentcs.drivers.vehicle.MovementCommand;
+
+/**
+ * Test cases for the {@link SimpleCommAdapter}.
+ */
+public class SimpleCommAdapterTest {
+
+  private List<Request> sentRequests;
+
+  private OrderMapper orderMapper;
+
+  private Timer timer;
+
+  private Timeout pollTimeout;
+
+  private RequestResponseMatcher matcher;
+
+  private SimpleCommAdapter adapter;
+
+  @Before
+  public void setUp() {
+    sentRequests = new ArrayList<>();
+    TelegramSender sender = mock(TelegramSender.class);
+    doAnswer(invocation -> {
+      // Assigns ids like the comm adapter does.
+      Request request = invocation.getArgument(0, Request.class);
+      request.updateRequestContent(sentRequests.size() + 1);
+      sentRequests.add(request);
+      return null;
+    }).when(sender).sendTelegram(any());
+    timer = mock(Timer.class);
+    when(timer.newTimeout(any(), anyLong(), any())).thenReturn(mock(Timeout.class));
+    // The state poller schedules its polls in ns.
+    pollTimeout = mock(Timeout.class);
+    when(timer.newTimeout(any(), anyLong(), eq(TimeUnit.NANOSECONDS))).thenReturn(pollTimeout);
+    matcher = new RequestResponseMatcher(sender,
+                                         timer,
+                                         new RequestTimeoutPolicy(1000, 2, 2.0, 5000));
+    SimpleAdapterComponentsFactory componentsFactory = mock(SimpleAdapterComponentsFactory.class);
+    when(componentsFactory.createRequestResponseMatcher(any())).thenReturn(matcher);
+    orderMapper = mock(OrderMapper.class);
+    ScheduledExecutorService kernelExecutor = mock(ScheduledExecutorService.class);
+    SimpleCommAdapterConfiguration configuration = mock(SimpleCommAdapterConfiguration.class);
+    when(configuration.handshakeTimeout()).thenReturn(2500);
+
+    adapter = new SimpleCommAdapter(new Vehicle("Vehicle"),
+                                    orderMapper,
+                                    componentsFactory,
+                                    kernelExecutor,
+                                    ResponseTypeRegistry.standardTypes(),
+                                    new StatePollingPolicy(2000, 5000, 2000),
+                                    new FleetPollScheduler(timer, kernelExecutor),
+                                    new StateUpdateDispatcher(kernelExecutor),
+                                    configuration);
+    adapter.initialize();
+    adapter.enable();
+    adapter.onConnect();
+  }
+
+  @After
+  public void tearDown() {
+    adapter.disable();
+    adapter.terminate();
+  }
+
+  @Test
+  public void shouldWaitForHandshakeForConfiguredTimeout() {
+    verify(timer).newTimeout(any(), eq(2500L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void shouldRetransmitHandshakeLikeAnyOtherRequest() throws Exception {
+    ArgumentCaptor<TimerTask> responseTimeout = ArgumentCaptor.forClass(TimerTask.class);
+    verify(timer).newTimeout(responseTimeout.capture(), eq(1000L), eq(TimeUnit.MILLISECONDS));
+
+    responseTimeout.getValue().run(mock(Timeout.class));
+
+    Assert.assertEquals(2, sentRequests.size());
+    Assert.assertTrue(sentRequests.get(0) instanceof HandshakeRequest);
+    Assert.assertTrue(sentRequests.get(1) instanceof HandshakeRequest);
+  }
+
+  @Test
+  public void shouldStopPollingWhileVehiclePushesItsState() {
+    verify(timer).newTimeout(any(), anyLong(), eq(TimeUnit.NANOSECONDS));
+
+    agreeOn(EnumSet.of(ProtocolFeature.STATE_PUSH));
+    verify(pollTimeout).cancel();
+
+    // The vehicle may not push its state after reconnecting.
+    adapter.onConnect();
+    verify(timer, times(2)).newTimeout(any(), anyLong(), eq(TimeUnit.NANOSECONDS));
+  }
+
+  @Test
+  public void shouldRetireEarlierOrdersOnCumulativeAcknowledgementIfAgreedOn() {
+    agreeOn(EnumSet.of(ProtocolFeature.CUMULATIVE_ACKNOWLEDGEMENTS));
+    sendOrder(1);
+    sendOrder(2);
+    Assert.assertEquals(3, matcher.getQueueDepth());
+
+    adapter.onIncomingTelegram(createOrderResponse(sentRequests.get(3).getId(), 2));
+
+    // The state request sent before the orders is still waiting for its own response.
+    Assert.assertEquals(1, matcher.getQueueDepth());
+    Assert.assertTrue(matcher.peekCurrentRequest().get() instanceof StateRequest);
+  }
+
+  @Test
+  public void shouldAcknowledgeOrdersOneByOneIfCumulativeAcknowledgementsNotAgreedOn() {
+    agreeOn(EnumSet.noneOf(ProtocolFeature.class));
+    sendOrder(1);
+    sendOrder(2);
+
+    adapter.onIncomingTelegram(createOrderResponse(sentRequests.get(3).getId(), 2));
+
+    Assert.assertEquals(2, matcher.getQueueDepth());
+    Assert.assertTrue(matcher.peekCurrentRequest().get() instanceof StateRequest);
+  }
+
+  /**
+   * Answers the handshake sent on connecting with the given features and a window of four.
+   *
+   * @param features The features the vehicle supports.
+   */
+  private void agreeOn(EnumSet<ProtocolFeature> features) {
+    Request handshake = sentRequests.get(0);
+    Assert.assertTrue(handshake instanceof HandshakeRequest);
+    ProtocolCapabilities capabilities
+        = new ProtocolCapabilities(2, 4, BatchFrames.MAX_FRAME_LENGTH, features);
+    byte[] telegramData = new byte[HandshakeResponse.TELEGRAM_LENGTH];
+    HandshakeResponse.LAYOUT.writeFrame(telegramData, handshake.getId());
+    HandshakeResponse.LAYOUT.set(telegramData,
+                                 HandshakeRequest.Field.PROTOCOL_VERSION,
+                                 capabilities.getProtocolVersion());
+    HandshakeResponse.LAYOUT.set(telegramData,
+                                 HandshakeRequest.Field.MAX_WINDOW,
+                                 capabilities.getMaxWindow());
+    HandshakeResponse.LAYOUT.set(telegramData,
+                                 HandshakeRequest.Field.MAX_FRAME_LENGTH,
+                                 capabilities.getMaxFrameLength());
+    HandshakeResponse.LAYOUT.set(telegramData,
+                                 HandshakeRequest.Field.FEATURES,
+                                 capabilities.getFeatureBits());
+    HandshakeResponse.LAYOUT.seal(telegramData);
+
+    adapter.onIncomingTelegram(new HandshakeResponse(telegramData));
+    // The state request enqueued on connecting has been sent after the handshake.
+    Assert.assertTrue(sentRequests.get(1) instanceof StateRequest);
+  }
+
+  private void sendOrder(int orderId) {
+    MovementCommand command = mock(MovementCommand.class);
+    when(orderMapper.mapToOrder(command))
+        .thenReturn(new OrderRequest(Telegram.ID_DEFAULT,
+                                     orderId,
+                                     7089,
+                                     OrderRequest.OrderAction.NONE));
+    adapter.sendCommand(command);
+  }
+
+  private static OrderResponse createOrderResponse(int id, int orderId) {
+    byte[] telegramData = new byte[OrderResponse.TELEGRAM_LENGTH];
+    OrderResponse.LAYOUT.writeFrame(telegramData, id);
+    OrderResponse.LAYOUT.set(telegramData, OrderResponse.Field.ORDER_ID, orderId);
+    OrderResponse.LAYOUT.seal(telegramData);
+    return new OrderResponse(telegramData);
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.OperationState;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link StatePollingPolicy}.
+ */
+public class StatePollingPolicyTest {
+
+  private StatePollingPolicy policy;
+
+  @Before
+  public void setUp() {
+    policy = new StatePollingPolicy(2000, 5000, 3000);
+  }
+
+  @Test
+  public void shouldPollBusyVehicleAtActiveInterval() {
+    Assert.assertEquals(500, policy.getInterval(500, OperationState.MOVING, false));
+    Assert.assertEquals(500, policy.getInterval(500, OperationState.ACTING, false));
+    Assert.assertEquals(500, policy.getInterval(500, OperationState.UNKNOWN, false));
+  }
+
+  @Test
+  public void shouldPollInactiveVehicleAtConfiguredInterval() {
+    Assert.assertEquals(2000, policy.getInterval(500, OperationState.IDLE, false));
+    Assert.assertEquals(5000, policy.getInterval(500, OperationState.CHARGING, false));
+    Assert.assertEquals(3000, policy.getInterval(500, OperationState.ERROR, false));
+  }
+
+  @Test
+  public void shouldPollAtActiveIntervalWhileOrdersAreOutstanding() {
+    Assert.assertEquals(500, policy.getInterval(500, OperationState.IDLE, true));
+    Assert.assertEquals(500, policy.getInterval(500, OperationState.CHARGING, true));
+  }
+
+  @Test
+  public void shouldNeverPollFasterThanActiveInterval() {
+    Assert.assertEquals(4000, policy.getInterval(4000, OperationState.IDLE, false));
+  }
+}
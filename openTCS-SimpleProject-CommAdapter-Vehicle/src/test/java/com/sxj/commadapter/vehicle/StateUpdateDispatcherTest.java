@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle;
+
+import com.sxj.commadapter.vehicle.telegrams.StateDeltaResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.Field;
+import com.sxj.common.telegrams.Response;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link StateUpdateDispatcher}.
+ */
+public class StateUpdateDispatcherTest {
+
+  private List<Runnable> submittedTasks;
+
+  private List<Response> deliveredUpdates;
+
+  private StateUpdateDispatcher dispatcher;
+
+  @Before
+  public void setUp() {
+    submittedTasks = new ArrayList<>();
+    deliveredUpdates = new ArrayList<>();
+    dispatcher = new StateUpdateDispatcher(submittedTasks::add);
+  }
+
+  @Test
+  public void shouldDeliverOnlyLatestState() {
+    StateUpdateDispatcher.Mailbox mailbox = dispatcher.createMailbox("vehicle",
+                                                                     deliveredUpdates::add);
+
+    mailbox.offer(new StateResponse(createStateResponse(1, 7089, 1)));
+    mailbox.offer(new StateResponse(createStateResponse(2, 7090, 1)));
+    mailbox.offer(new StateResponse(createStateResponse(3, 7091, 2)));
+    runSubmittedTasks();
+
+    Assert.assertEquals(1, deliveredUpdates.size());
+    Assert.assertEquals(3, deliveredUpdates.get(0).getId());
+    Assert.assertEquals(2, ((StateResponse) deliveredUpdates.get(0)).getLastFinishedOrderId());
+    Assert.assertEquals(2, mailbox.getConflatedCount());
+  }
+
+  @Test
+  public void shouldDrainManyMailboxesInSingleTask() {
+    for (int i = 0; i < 10; i++) {
+      dispatcher.createMailbox("vehicle-" + i, deliveredUpdates::add)
+          .offer(new StateResponse(createStateResponse(i, 7089, 1)));
+    }
+
+    Assert.assertEquals(1, submittedTasks.size());
+    runSubmittedTasks();
+    Assert.assertEquals(10, deliveredUpdates.size());
+  }
+
+  @Test
+  public void shouldSplitDrainingIntoBatches() {
+    for (int i = 0; i < StateUpdateDispatcher.MAX_DRAIN_BATCH_SIZE + 1; i++) {
+      dispatcher.createMailbox("vehicle-" + i, deliveredUpdates::add)
+          .offer(new StateResponse(createStateResponse(i, 7089, 1)));
+    }
+
+    submittedTasks.remove(0).run();
+    Assert.assertEquals(StateUpdateDispatcher.MAX_DRAIN_BATCH_SIZE, deliveredUpdates.size());
+    Assert.assertEquals(1, submittedTasks.size());
+    runSubmittedTasks();
+    Assert.assertEquals(StateUpdateDispatcher.MAX_DRAIN_BATCH_SIZE + 1, deliveredUpdates.size());
+  }
+
+  @Test
+  public void shouldFoldDeltasIntoPendingState() {
+    StateUpdateDispatcher.Mailbox mailbox = dispatcher.createMailbox("vehicle",
+                                                                     deliveredUpdates::add);
+    byte[] first = createStateResponse(1, 7089, 1);
+    byte[] second = createStateResponse(2, 7090, 1);
+    byte[] third = createStateResponse(3, 7090, 2);
+
+    mailbox.offer(new StateResponse(first));
+    mailbox.offer(new StateDeltaResponse(StateDeltaResponse.createTelegram(2, first, second)));
+    mailbox.offer(new StateDeltaResponse(StateDeltaResponse.createTelegram(3, second, third)));
+    runSubmittedTasks();
+
+    Assert.assertEquals(1, deliveredUpdates.size());
+    Assert.assertArrayEquals(third, deliveredUpdates.get(0).getRawContent());
+  }
+
+  @Test
+  public void shouldFoldDeltasWithoutPendingState() {
+    StateUpdateDispatcher.Mailbox mailbox = dispatcher.createMailbox("vehicle",
+                                                                     deliveredUpdates::add);
+    byte[] first = createStateResponse(1, 7089, 1);
+    byte[] second = createStateResponse(2, 7090, 1);
+    byte[] third = createStateResponse(3, 7090, 2);
+
+    mailbox.offer(new StateDeltaResponse(StateDeltaResponse.createTelegram(2, first, second)));
+    mailbox.offer(new StateDeltaResponse(StateDeltaResponse.createTelegram(3, second, third)));
+    // Not relative to the pending delta
+    mailbox.offer(new StateDeltaResponse(StateDeltaResponse.createTelegram(5, first, third)));
+    runSubmittedTasks();
+
+    Assert.assertEquals(1, deliveredUpdates.size());
+    StateDeltaResponse delta = (StateDeltaResponse) deliveredUpdates.get(0);
+    Assert.assertEquals(1, delta.getBaseId());
+    Assert.assertArrayEquals(third, delta.applyTo(new StateResponse(first)).getRawContent());
+  }
+
+  @Test
+  public void shouldScheduleAgainForUpdatesAfterDelivery() {
+    StateUpdateDispatcher.Mailbox mailbox = dispatcher.createMailbox("vehicle",
+                                                                     deliveredUpdates::add);
+
+    mailbox.offer(new StateResponse(createStateResponse(1, 7089, 1)));
+    runSubmittedTasks();
+    mailbox.offer(new StateResponse(createStateResponse(2, 7090, 1)));
+    runSubmittedTasks();
+
+    Assert.assertEquals(2, deliveredUpdates.size());
+    Assert.assertEquals(0, mailbox.getConflatedCount());
+  }
+
+  private void runSubmittedTasks() {
+    while (!submittedTasks.isEmpty()) {
+      submittedTasks.remove(0).run();
+    }
+  }
+
+  private static byte[] createStateResponse(int id, int positionId, int lastFinishedOrderId) {
+    byte[] telegramData = new byte[StateResponse.TELEGRAM_LENGTH];
+    StateResponse.LAYOUT.writeFrame(telegramData, id);
+    StateResponse.LAYOUT.set(telegramData, Field.POSITION_ID, positionId);
+    StateResponse.LAYOUT.set(telegramData, Field.OPERATION_STATE, 'M');
+    StateResponse.LAYOUT.set(telegramData, Field.LOAD_STATE, 'E');
+    StateResponse.LAYOUT.set(telegramData, Field.LAST_FINISHED_ORDER_ID, lastFinishedOrderId);
+    StateResponse.LAYOUT.seal(telegramData);
+    return telegramData;
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.commadapter.vehicle.telegrams.CancelResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateDeltaResponse;
+import com.sxj.common.telegrams.Response;
+import static com.google.common.base.Ascii.ETX;
+import static com.google.common.base.Ascii.STX;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import org.junit.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.opentcs.contrib.communication.tcp.ConnectionEventListener;
+
+/**
+ * Test cases for the {@link ResponseTypeRegistry}.
+ */
+public class ResponseTypeRegistryTest {
+
+  private static final byte CUSTOM_TYPE = 0x20;
+
+  private static final int CUSTOM_TELEGRAM_LENGTH = 7;
+
+  private List<Integer> decodedIds;
+
+  @Before
+  public void setUp() {
+    decodedIds = new ArrayList<>();
+  }
+
+  @Test
+  public void shouldLookUpStandardTypes() {
+    ResponseTypeRegistry registry = ResponseTypeRegistry.standardTypes();
+
+    Assert.assertSame(StandardResponseType.CANCEL, registry.getType(CancelResponse.TYPE));
+    Assert.assertNull(registry.getType(CUSTOM_TYPE));
+    Assert.assertEquals(StandardResponseType.values().length, registry.getTypes().size());
+    Assert.assertEquals(StateDeltaResponse.MAX_TELEGRAM_LENGTH, registry.getMaxTelegramLength());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectTypesWithSameTypeByte() {
+    Set<ResponseType> types = new HashSet<>(EnumSet.allOf(StandardResponseType.class));
+    types.add(createCustomType(CancelResponse.TYPE));
+
+    new ResponseTypeRegistry(types);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectTypeOfBatchFrames() {
+    Set<ResponseType> types = new HashSet<>();
+    types.add(createCustomType(BatchFrames.TYPE));
+
+    new ResponseTypeRegistry(types);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldDecodeCustomTypeWithDecoderOfRegisteredType() {
+    Set<ResponseType> types = new HashSet<>(EnumSet.allOf(StandardResponseType.class));
+    types.add(createCustomType(CUSTOM_TYPE));
+    ConnectionEventListener<Response> responseListener = mock(ConnectionEventListener.class);
+    DecoderStatistics statistics = new DecoderStatistics();
+    VehicleTelegramDecoder decoder
+        = new VehicleTelegramDecoder(responseListener,
+                                     statistics,
+                                     new ResponseTypeRegistry(types));
+
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(new byte[]{STX, 3, CUSTOM_TYPE, 0, 5, CUSTOM_TYPE ^ 5, ETX});
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    Assert.assertEquals(1, decodedIds.size());
+    Assert.assertEquals(5, (int) decodedIds.get(0));
+    Assert.assertEquals(0, statistics.getUnknownTypeCount());
+    verify(responseListener, never()).onIncomingTelegram(any());
+  }
+
+  private ResponseType createCustomType(byte typeByte) {
+    ResponseType type = mock(ResponseType.class);
+    when(type.getType()).thenReturn(typeByte);
+    when(type.getTelegramLength()).thenReturn(CUSTOM_TELEGRAM_LENGTH);
+    when(type.getMaxTelegramLength()).thenReturn(CUSTOM_TELEGRAM_LENGTH);
+    when(type.createDecoder()).thenReturn((in, start, telegramLength, responseHandler)
+        -> decodedIds.add(in.getUnsignedShort(start + 3)));
+    return type;
+  }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse;
+import com.sxj.common.telegrams.Telegram;
+import static com.google.common.base.Ascii.ETX;
+import static com.google.common.base.Ascii.STX;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates valid and corrupted byte streams of telegrams sent by a vehicle, for property-based
+ * tests of the decoding pipeline.
+ * <p>
+ * All generated data is derived from the given seed, so a failing test can be reproduced by
+ * running it with the seed it reports.
+ * </p>
+ */
+public class TelegramStreamGenerator {
+
+  /**
+   * The operation states of a state response.
+   */
+  private static final char[] OPERATION_STATES = {'A', 'I', 'M', 'C', 'E', 'U'};
+  /**
+   * The load states of a state response.
+   */
+  private static final char[] LOAD_STATES = {'E', 'F', 'U'};
+  /**
+   * The source of all randomness.
+   */
+  private final Random random;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param seed The seed for all generated data.
+   */
+  public TelegramStreamGenerator(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Returns the source of all randomness, for tests that need to make further random choices.
+   *
+   * @return The source of all randomness.
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * Generates a valid state response with random content.
+   *
+   * @return The raw content of the state response.
+   */
+  public byte[] stateResponse() {
+    byte[] telegramData = new byte[StateResponse.TELEGRAM_LENGTH];
+    telegramData[0] = STX;
+    telegramData[1] = (byte) StateResponse.PAYLOAD_LENGTH;
+    telegramData[2] = StateResponse.TYPE;
+    putUint16(telegramData, 3, random.nextInt(0x10000));
+    putUint16(telegramData, 5, random.nextInt(0x10000));
+    telegramData[7] = (byte) OPERATION_STATES[random.nextInt(OPERATION_STATES.length)];
+    telegramData[8] = (byte) LOAD_STATES[random.nextInt(LOAD_STATES.length)];
+    putUint16(telegramData, 9, random.nextInt(0x10000));
+    putUint16(telegramData, 11, random.nextInt(0x10000));
+    putUint16(telegramData, 13, random.nextInt(0x10000));
+    telegramData[StateResponse.CHECKSUM_POS] = Telegram.getCheckSum(telegramData);
+    telegramData[StateResponse.TELEGRAM_LENGTH - 1] = ETX;
+    return telegramData;
+  }
+
+  /**
+   * Generates a valid order response with random content.
+   *
+   * @return The raw content of the order response.
+   */
+  public byte[] orderResponse() {
+    byte[] telegramData = new byte[OrderResponse.TELEGRAM_LENGTH];
+    telegramData[0] = STX;
+    telegramData[1] = (byte) OrderResponse.PAYLOAD_LENGTH;
+    telegramData[2] = OrderResponse.TYPE;
+    putUint16(telegramData, 3, random.nextInt(0x10000));
+    putUint16(telegramData, 5, random.nextInt(0x10000));
+    telegramData[OrderResponse.CHECKSUM_POS] = Telegram.getCheckSum(telegramData);
+    telegramData[OrderResponse.TELEGRAM_LENGTH - 1] = ETX;
+    return telegramData;
+  }
+
+  /**
+   * Generates a valid response of a random type.
+   *
+   * @return The raw content of the response.
+   */
+  public byte[] response() {
+    return random.nextBoolean() ? stateResponse() : orderResponse();
+  }
+
+  /**
+   * Generates the given number of valid responses of random types.
+   *
+   * @param count The number of responses.
+   * @return The raw contents of the responses.
+   */
+  public List<byte[]> responses(int count) {
+    List<byte[]> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(response());
+    }
+    return result;
+  }
+
+  /**
+   * Returns a copy of the given telegram with a wrong checksum.
+   *
+   * @param telegramData The raw content of a valid telegram.
+   * @return A copy of the given telegram with a wrong checksum.
+   */
+  public byte[] withBadChecksum(byte[] telegramData) {
+    byte[] result = telegramData.clone();
+    result[result.length - 2] ^= (byte) (1 + random.nextInt(0xFF));
+    return result;
+  }
+
+  /**
+   * Returns a copy of the given telegram with one random payload byte changed, leaving the
+   * checksum as it is.
+   *
+   * @param telegramData The raw content of a valid telegram.
+   * @return A copy of the given telegram with one random payload byte changed.
+   */
+  public byte[] withFlippedPayloadByte(byte[] telegramData) {
+    byte[] result = telegramData.clone();
+    int index = 3 + random.nextInt(result.length - 5);
+    result[index] ^= (byte) (1 + random.nextInt(0xFF));
+    return result;
+  }
+
+  /**
+   * Generates random bytes that may or may not resemble telegrams.
+   *
+   * @param maxLength The maximum number of bytes.
+   * @return Between 1 and {@code maxLength} random bytes.
+   */
+  public byte[] garbage(int maxLength) {
+    byte[] result = new byte[1 + random.nextInt(maxLength)];
+    random.nextBytes(result);
+    return result;
+  }
+
+  /**
+   * Concatenates the given byte arrays into a single stream.
+   *
+   * @param parts The byte arrays.
+   * @return The stream.
+   */
+  public static byte[] concatenate(List<byte[]> parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.write(part, 0, part.length);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Splits the given stream into chunks of random sizes, as they may be read from a TCP
+   * connection.
+   *
+   * @param stream The stream.
+   * @param maxChunkLength The maximum length of a chunk.
+   * @return The chunks, which concatenated are the given stream.
+   */
+  public List<byte[]> split(byte[] stream, int maxChunkLength) {
+    List<byte[]> result = new ArrayList<>();
+    int offset = 0;
+    while (offset < stream.length) {
+      int length = Math.min(1 + random.nextInt(maxChunkLength), stream.length - offset);
+      byte[] chunk = new byte[length];
+      System.arraycopy(stream, offset, chunk, 0, length);
+      result.add(chunk);
+      offset += length;
+    }
+    return result;
+  }
+
+  private static void putUint16(byte[] telegramData, int index, int value) {
+    telegramData[index] = (byte) (value >> 8);
+    telegramData[index + 1] = (byte) value;
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncRequest;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link VehicleClock}.
+ */
+public class VehicleClockTest {
+
+  private VehicleClock clock;
+
+  @Before
+  public void setUp() {
+    clock = new VehicleClock();
+  }
+
+  @Test
+  public void shouldEstimateOffsetFromSymmetricExchange() {
+    // 100 us each way, 50 us processing, vehicle clock 5000 us ahead
+    clock.addSample(1000, 6100, 6150, 1250);
+
+    Assert.assertTrue(clock.isSynchronized());
+    Assert.assertEquals(5000, clock.getOffsetMicros());
+    Assert.assertEquals(200, clock.getRoundTripMicros());
+    Assert.assertEquals(100, clock.getLastUplinkMicros());
+    Assert.assertEquals(50, clock.getLastProcessingMicros());
+    Assert.assertEquals(100, clock.getLastDownlinkMicros());
+  }
+
+  @Test
+  public void shouldBaseEstimatesOnFastestRecentSample() {
+    clock.addSample(1000, 6100, 6150, 1250);
+    // Delayed on the way to the vehicle
+    clock.addSample(2000, 9000, 9050, 4150);
+
+    Assert.assertEquals(5000, clock.getOffsetMicros());
+    Assert.assertEquals(200, clock.getRoundTripMicros());
+    Assert.assertEquals(2000, clock.getLastUplinkMicros());
+    Assert.assertEquals(100, clock.getLastDownlinkMicros());
+  }
+
+  @Test
+  public void shouldHandleWrappingTimestamps() {
+    // The vehicle's clock is behind, and the control system's timestamps wrap during the exchange.
+    long destinationMicros = 0x1_0000_0010L;
+    clock.addSample(0xFFFF_FFF0, 0x8000_0000, 0x8000_0010, destinationMicros);
+
+    Assert.assertEquals(16, clock.getRoundTripMicros());
+    Assert.assertEquals(0x8000_0000 - 0xFFFF_FFF0 - 8, clock.getOffsetMicros());
+  }
+
+  @Test
+  public void shouldEstimateDrift() {
+    clock.addSample(0, 5100, 5100, 200);
+    // 20 s later, the vehicle's clock has gained another 200 us.
+    clock.addSample(20_000_000, 20_005_300, 20_005_300, 20_000_200);
+
+    Assert.assertEquals(10.0, clock.getDriftPpm(), 0.001);
+  }
+
+  @Test
+  public void shouldConvertVehicleTimestampsToLocalTime() {
+    int offset = -987_654_321;
+    long now = TimeSyncRequest.currentMicros();
+    clock.addSample((int) (now - 200), (int) (now - 100 + offset), (int) (now - 100 + offset), now);
+
+    Assert.assertEquals(now - 5000, clock.toLocalMicros((int) (now - 5000 + offset)));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldNotConvertBeforeSynchronization() {
+    clock.toLocalMicros(0);
+  }
+
+  @Test
+  public void shouldDiscardEstimatesOnReset() {
+    clock.addSample(1000, 6100, 6150, 1250);
+    clock.reset();
+
+    Assert.assertFalse(clock.isSynchronized());
+    Assert.assertEquals(0, clock.getSampleCount());
+  }
+}
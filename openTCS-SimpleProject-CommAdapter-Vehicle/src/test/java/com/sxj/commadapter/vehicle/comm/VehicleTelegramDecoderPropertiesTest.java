@@ -0,0 +1,326 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse;
+import com.sxj.common.telegrams.Response;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+import org.opentcs.contrib.communication.tcp.ConnectionEventListener;
+
+/**
+ * Property-based test cases for the decoding pipeline of the {@link VehicleTelegramDecoder}.
+ * <p>
+ * Every property is checked with a number of streams generated from fixed seeds.
+ * A failure reports the seed, so it can be reproduced with a {@link TelegramStreamGenerator}
+ * created with that seed.
+ * </p>
+ */
+public class VehicleTelegramDecoderPropertiesTest {
+
+  /**
+   * The number of streams generated per property.
+   */
+  private static final int TRIALS = 200;
+  /**
+   * The maximum length of a telegram.
+   */
+  private static final int MAX_TELEGRAM_LENGTH
+      = Math.max(OrderResponse.TELEGRAM_LENGTH, StateResponse.TELEGRAM_LENGTH);
+
+  /**
+   * The upper bound for the bytes allocated per decoded state response (measured at about
+   * 60 bytes, including the buffers of the channel).
+   */
+  private static final long MAX_ALLOCATED_BYTES_PER_TELEGRAM = 128;
+
+  private RecordingListener listener;
+
+  private EmbeddedChannel channel;
+
+  private DecoderStatistics statistics;
+
+  @Before
+  public void setUp() {
+    listener = new RecordingListener();
+    statistics = new DecoderStatistics();
+    channel = new EmbeddedChannel(new VehicleTelegramDecoder(listener, statistics));
+  }
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void shouldDecodeEveryTelegramOfArbitrarilySplitStream() {
+    for (int seed = 0; seed < TRIALS; seed++) {
+      setUp();
+      TelegramStreamGenerator generator = new TelegramStreamGenerator(seed);
+      List<byte[]> telegrams = generator.responses(1 + generator.getRandom().nextInt(20));
+
+      feed(generator.split(TelegramStreamGenerator.concatenate(telegrams), 40));
+
+      assertDecoded(seed, telegrams);
+    }
+  }
+
+  @Test
+  public void shouldDecodeEveryTelegramOfConcatenatedStream() {
+    for (int seed = 0; seed < TRIALS; seed++) {
+      setUp();
+      TelegramStreamGenerator generator = new TelegramStreamGenerator(seed);
+      List<byte[]> telegrams = generator.responses(1 + generator.getRandom().nextInt(20));
+
+      feed(Arrays.asList(TelegramStreamGenerator.concatenate(telegrams)));
+
+      assertDecoded(seed, telegrams);
+    }
+  }
+
+  @Test
+  public void shouldDecodeTelegramsSplitIntoSingleBytes() {
+    TelegramStreamGenerator generator = new TelegramStreamGenerator(0);
+    List<byte[]> telegrams = generator.responses(20);
+
+    feed(generator.split(TelegramStreamGenerator.concatenate(telegrams), 1));
+
+    assertDecoded(0, telegrams);
+  }
+
+  @Test
+  public void shouldNeverDeliverCorruptedTelegrams() {
+    for (int seed = 0; seed < TRIALS; seed++) {
+      setUp();
+      TelegramStreamGenerator generator = new TelegramStreamGenerator(seed);
+      List<byte[]> parts = new ArrayList<>();
+      List<byte[]> validTelegrams = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        byte[] telegram = generator.response();
+        switch (generator.getRandom().nextInt(4)) {
+          case 0:
+            parts.add(generator.withBadChecksum(telegram));
+            break;
+          case 1:
+            parts.add(generator.withFlippedPayloadByte(telegram));
+            break;
+          case 2:
+            parts.add(generator.garbage(2 * MAX_TELEGRAM_LENGTH));
+            break;
+          default:
+            parts.add(telegram);
+            validTelegrams.add(telegram);
+        }
+      }
+
+      feed(generator.split(TelegramStreamGenerator.concatenate(parts), 40));
+
+      for (byte[] decoded : listener.decoded) {
+        Assert.assertTrue("Corrupted telegram delivered for seed " + seed + ": "
+            + Arrays.toString(decoded),
+                          containsTelegram(validTelegrams, decoded));
+      }
+      Assert.assertTrue("More telegrams delivered than sent for seed " + seed,
+                        listener.decoded.size() <= validTelegrams.size());
+    }
+  }
+
+  @Test
+  public void shouldResynchronizeWithinOneTelegramAfterCorruption() {
+    for (int seed = 0; seed < TRIALS; seed++) {
+      setUp();
+      TelegramStreamGenerator generator = new TelegramStreamGenerator(seed);
+      List<byte[]> parts = new ArrayList<>();
+      List<byte[]> validTelegrams = new ArrayList<>();
+      int badCheckSums = 0;
+      for (int i = 0; i < 20; i++) {
+        switch (generator.getRandom().nextInt(3)) {
+          case 0:
+            parts.add(generator.withBadChecksum(generator.response()));
+            badCheckSums++;
+            break;
+          case 1:
+            parts.add(generator.garbage(2 * MAX_TELEGRAM_LENGTH));
+            break;
+          default:
+            // Valid telegrams only, so no telegram is lost with the corrupted data.
+        }
+        byte[] telegram = generator.response();
+        parts.add(telegram);
+        validTelegrams.add(telegram);
+      }
+      // Complete any candidate telegram started by the corrupted data at the end of the stream.
+      parts.add(new byte[MAX_TELEGRAM_LENGTH]);
+
+      feed(generator.split(TelegramStreamGenerator.concatenate(parts), 40));
+
+      Assert.assertEquals("Telegrams decoded for seed " + seed,
+                          validTelegrams.size(),
+                          listener.decoded.size());
+      for (int i = 0; i < validTelegrams.size(); i++) {
+        Assert.assertArrayEquals("Telegram " + i + " for seed " + seed,
+                                 validTelegrams.get(i),
+                                 listener.decoded.get(i));
+      }
+      Assert.assertEquals("Decoded telegrams for seed " + seed,
+                          validTelegrams.size(),
+                          statistics.getDecodedTelegramCount());
+      Assert.assertTrue("Bad checksums for seed " + seed,
+                        statistics.getBadCheckSumCount() >= badCheckSums);
+    }
+  }
+
+  @Test
+  public void shouldDecodeStateResponsesQuicklyWithFewAllocations() {
+    Assume.assumeTrue(isThreadAllocationMeasurable());
+    TelegramStreamGenerator generator = new TelegramStreamGenerator(0);
+    byte[] stream = TelegramStreamGenerator.concatenate(Arrays.asList(generator.stateResponse(),
+                                                                      generator.stateResponse(),
+                                                                      generator.stateResponse(),
+                                                                      generator.stateResponse()));
+    listener.recording = false;
+    // Warm up.
+    for (int i = 0; i < 20_000; i++) {
+      channel.writeInbound(Unpooled.wrappedBuffer(stream));
+    }
+
+    int iterations = 50_000;
+    long allocatedBefore = getAllocatedBytes();
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      channel.writeInbound(Unpooled.wrappedBuffer(stream));
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    long allocatedBytesPerTelegram = (getAllocatedBytes() - allocatedBefore) / (4L * iterations);
+    double telegramsPerSecond = 4.0 * iterations / elapsedNanos * TimeUnit.SECONDS.toNanos(1);
+
+    Assert.assertEquals(4L * iterations + 4L * 20_000, listener.count);
+    Assert.assertTrue("Too slow: " + telegramsPerSecond + " telegrams/s",
+                      telegramsPerSecond > 50_000);
+    Assert.assertTrue("Too many allocations: " + allocatedBytesPerTelegram + " bytes/telegram",
+                      allocatedBytesPerTelegram < MAX_ALLOCATED_BYTES_PER_TELEGRAM);
+  }
+
+  @Test
+  public void shouldDecodeTelegramsWithoutAllocating() {
+    Assume.assumeTrue(isThreadAllocationMeasurable());
+    TelegramStreamGenerator generator = new TelegramStreamGenerator(0);
+    ByteBuf buffer = Unpooled.wrappedBuffer(
+        TelegramStreamGenerator.concatenate(Arrays.asList(generator.stateResponse(),
+                                                          generator.stateResponse(),
+                                                          generator.stateResponse(),
+                                                          generator.stateResponse()))
+    );
+    VehicleTelegramDecoder decoder = new VehicleTelegramDecoder(listener);
+    listener.recording = false;
+    // Warm up.
+    decodeRepeatedly(decoder, buffer, 20_000);
+
+    int iterations = 50_000;
+    long allocatedBefore = getAllocatedBytes();
+    decodeRepeatedly(decoder, buffer, iterations);
+    long allocatedBytes = getAllocatedBytes() - allocatedBefore;
+
+    Assert.assertEquals(4L * iterations + 4L * 20_000, listener.count);
+    // Even a single small object per telegram would amount to at least 16 bytes per telegram, while
+    // this allows for a few allocations not caused by decoding, e.g. by the JIT compiler.
+    Assert.assertTrue("Decoding allocated " + allocatedBytes + " bytes",
+                      allocatedBytes < 4L * iterations);
+  }
+
+  private void decodeRepeatedly(VehicleTelegramDecoder decoder, ByteBuf buffer, int iterations) {
+    for (int i = 0; i < iterations; i++) {
+      buffer.readerIndex(0);
+      while (buffer.isReadable()) {
+        decoder.decode(null, buffer, null);
+      }
+    }
+  }
+
+  private void feed(List<byte[]> chunks) {
+    for (byte[] chunk : chunks) {
+      channel.writeInbound(Unpooled.wrappedBuffer(chunk));
+    }
+  }
+
+  private void assertDecoded(int seed, List<byte[]> expected) {
+    Assert.assertEquals("Bytes skipped for seed " + seed, 0, statistics.getSkippedByteCount());
+    Assert.assertEquals("Telegrams decoded for seed " + seed,
+                        expected.size(),
+                        listener.decoded.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertArrayEquals("Telegram " + i + " for seed " + seed,
+                               expected.get(i),
+                               listener.decoded.get(i));
+    }
+  }
+
+  private static boolean containsTelegram(List<byte[]> telegrams, byte[] telegram) {
+    return telegrams.stream().anyMatch(candidate -> Arrays.equals(candidate, telegram));
+  }
+
+  private static boolean isThreadAllocationMeasurable() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    return threadBean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()
+        && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemoryEnabled();
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Records the raw contents of decoded responses and recycles the responses, as the comm adapter
+   * does.
+   */
+  private static class RecordingListener
+      implements ConnectionEventListener<Response> {
+
+    private final List<byte[]> decoded = new ArrayList<>();
+
+    private long count;
+
+    private boolean recording = true;
+
+    @Override
+    public void onIncomingTelegram(Response response) {
+      count++;
+      if (recording) {
+        decoded.add(response.getRawContent().clone());
+      }
+      response.recycle();
+    }
+
+    @Override
+    public void onConnect() {
+    }
+
+    @Override
+    public void onFailedConnectionAttempt() {
+    }
+
+    @Override
+    public void onDisconnect() {
+    }
+
+    @Override
+    public void onIdle() {
+    }
+  }
+}
@@ -7,19 +7,40 @@
  */
 package com.sxj.commadapter.vehicle.comm;
 
+import com.sxj.commadapter.vehicle.telegrams.CancelResponse;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeRequest;
+import com.sxj.commadapter.vehicle.telegrams.HandshakeResponse;
 import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
+import com.sxj.commadapter.vehicle.telegrams.OrderResponseView;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolCapabilities;
+import com.sxj.commadapter.vehicle.telegrams.ProtocolFeature;
+import com.sxj.commadapter.vehicle.telegrams.StateDeltaResponse;
 import com.sxj.commadapter.vehicle.telegrams.StateResponse;
+import com.sxj.commadapter.vehicle.telegrams.TimeSyncResponse;
+import com.sxj.commadapter.vehicle.telegrams.StateResponseView;
+import com.sxj.commadapter.vehicle.telegrams.StateRequest;
+import com.sxj.common.telegrams.RequestResponseMatcher;
+import com.sxj.common.telegrams.RequestTimeoutPolicy;
 import com.sxj.common.telegrams.Response;
 import com.sxj.common.telegrams.Telegram;
+import com.sxj.common.telegrams.TelegramSender;
 import static com.google.common.base.Ascii.ETX;
 import static com.google.common.base.Ascii.STX;
 import com.google.common.primitives.Ints;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Timer;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.junit.*;
+import org.mockito.ArgumentCaptor;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -37,11 +58,14 @@ public class VehicleTelegramDecoderTest {
 
   private ConnectionEventListener<Response> responseListener;
 
+  private DecoderStatistics statistics;
+
   @Before
   @SuppressWarnings("unchecked")
   public void setUp() {
     responseListener = mock(ConnectionEventListener.class);
-    decoder = new VehicleTelegramDecoder(responseListener);
+    statistics = new DecoderStatistics();
+    decoder = new VehicleTelegramDecoder(responseListener, statistics);
   }
 
   @Test
@@ -82,6 +106,264 @@ public class VehicleTelegramDecoderTest {
     verify(responseListener, times(0)).onIncomingTelegram(any());
   }
 
+  @Test
+  public void shouldWaitForRestOfTelegram() {
+    byte[] telegramData = createStateResponse(0, 0, 'M', 'E', 0, 0, 0).getRawContent();
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(telegramData, 0, StateResponse.TELEGRAM_LENGTH - 1);
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+    verify(responseListener, never()).onIncomingTelegram(any());
+    Assert.assertEquals(StateResponse.TELEGRAM_LENGTH - 1, buffer.readableBytes());
+
+    buffer.writeByte(telegramData[StateResponse.TELEGRAM_LENGTH - 1]);
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+    verify(responseListener, times(1)).onIncomingTelegram(any(StateResponseView.class));
+  }
+
+  @Test
+  public void shouldCompleteFutureWithCopyOfStateResponseView() {
+    RequestResponseMatcher matcher = new RequestResponseMatcher(mock(TelegramSender.class),
+                                                                mock(Timer.class),
+                                                                new RequestTimeoutPolicy(1000,
+                                                                                         2,
+                                                                                         2.0,
+                                                                                         5000));
+    doAnswer(invocation -> matcher.tryMatchWithCurrentRequest(invocation.getArgument(0)))
+        .when(responseListener).onIncomingTelegram(any());
+    CompletableFuture<StateResponse> future = matcher.request(new StateRequest(1),
+                                                              StateResponse.class);
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(createStateResponse(1, 7089, 'M', 'E', 0, 0, 0).getRawContent());
+    buffer.writeBytes(createStateResponse(2, 7090, 'I', 'E', 0, 0, 0).getRawContent());
+
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    // The view has been pointed at the next telegram in the meantime.
+    StateResponse response = future.getNow(null);
+    Assert.assertNotNull(response);
+    Assert.assertEquals(1, response.getId());
+    Assert.assertEquals(7089, response.getPositionId());
+  }
+
+  @Test
+  public void shouldResynchronizeAfterOrderResponseWithBadChecksum() {
+    byte[] telegramData = createOrderResponse(0, 0).getRawContent();
+    telegramData[OrderResponse.CHECKSUM_POS]++;
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(telegramData);
+    buffer.writeBytes(createStateResponse(1, 0, 'M', 'E', 0, 0, 0).getRawContent());
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+    Assert.assertFalse(buffer.isReadable());
+
+    verify(responseListener, times(1)).onIncomingTelegram(any(StateResponseView.class));
+    verify(responseListener, never()).onIncomingTelegram(any(OrderResponseView.class));
+    Assert.assertEquals(1, statistics.getBadCheckSumCount());
+    Assert.assertEquals(OrderResponse.TELEGRAM_LENGTH, statistics.getSkippedByteCount());
+  }
+
+  @Test
+  public void shouldFindTelegramAfterGarbageContainingStx() {
+    ByteBuf buffer = Unpooled.buffer();
+    // A false STX followed by a state response's size and type, but not by a state response.
+    buffer.writeBytes(new byte[]{0x55, STX, (byte) StateResponse.PAYLOAD_LENGTH, StateResponse.TYPE, 0x13});
+    buffer.writeBytes(createOrderResponse(1, 5).getRawContent());
+    buffer.writeBytes(createStateResponse(2, 0, 'M', 'E', 0, 0, 0).getRawContent());
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    verify(responseListener, times(1)).onIncomingTelegram(any(OrderResponseView.class));
+    verify(responseListener, times(1)).onIncomingTelegram(any(StateResponseView.class));
+    Assert.assertEquals(5, statistics.getSkippedByteCount());
+    Assert.assertEquals(2, statistics.getDecodedTelegramCount());
+  }
+
+  @Test
+  public void shouldSkipTelegramOfUnknownType() {
+    byte[] telegramData = createOrderResponse(0, 0).getRawContent();
+    telegramData[2] = 0x7F;
+    telegramData[OrderResponse.CHECKSUM_POS] = Telegram.getCheckSum(telegramData);
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(telegramData);
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    Assert.assertFalse(buffer.isReadable());
+    verify(responseListener, never()).onIncomingTelegram(any());
+    Assert.assertEquals(1, statistics.getUnknownTypeCount());
+    Assert.assertEquals(0, statistics.getBadCheckSumCount());
+  }
+
+  @Test
+  public void shouldUnpackBatchFrame() {
+    byte[] orderResponse = createOrderResponse(1, 5).getRawContent();
+    byte[] stateResponse = createStateResponse(2, 0, 'M', 'E', 0, 0, 0).getRawContent();
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(createBatchFrame(orderResponse, stateResponse));
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    Assert.assertFalse(buffer.isReadable());
+    verify(responseListener, times(1)).onIncomingTelegram(any(OrderResponseView.class));
+    verify(responseListener, times(1)).onIncomingTelegram(any(StateResponseView.class));
+    Assert.assertEquals(1, statistics.getBatchFrameCount());
+    Assert.assertEquals(2, statistics.getDecodedTelegramCount());
+  }
+
+  @Test
+  public void shouldSkipBatchFrameEntryOfUnknownType() {
+    byte[] unknownTelegram = createOrderResponse(1, 5).getRawContent();
+    unknownTelegram[2] = 0x7F;
+    byte[] stateResponse = createStateResponse(2, 0, 'M', 'E', 0, 0, 0).getRawContent();
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(createBatchFrame(unknownTelegram, stateResponse));
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    verify(responseListener, never()).onIncomingTelegram(any(OrderResponseView.class));
+    verify(responseListener, times(1)).onIncomingTelegram(any(StateResponseView.class));
+    Assert.assertEquals(1, statistics.getUnknownTypeCount());
+  }
+
+  @Test
+  public void shouldReadHandshakeResponse() {
+    ProtocolCapabilities capabilities
+        = new ProtocolCapabilities(2, 4, 259, EnumSet.of(ProtocolFeature.BATCH_FRAMES));
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(new HandshakeRequest(7, capabilities).getRawContent());
+    // Responses use the same layout and type as requests.
+    buffer.setByte(2, HandshakeResponse.TYPE);
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+    verify(responseListener, times(1)).onIncomingTelegram(captor.capture());
+    Assert.assertEquals(7, captor.getValue().getId());
+    Assert.assertEquals(capabilities, ((HandshakeResponse) captor.getValue()).getCapabilities());
+  }
+
+  @Test
+  public void shouldReadTimeSyncResponse() {
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(TimeSyncResponse.createTelegram(9, 0xFFFF_0000, 42, 43));
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+    verify(responseListener, times(1)).onIncomingTelegram(captor.capture());
+    TimeSyncResponse response = (TimeSyncResponse) captor.getValue();
+    Assert.assertEquals(9, response.getId());
+    Assert.assertEquals(0xFFFF_0000, response.getOriginateTimestamp());
+    Assert.assertEquals(42, response.getReceiveTimestamp());
+    Assert.assertEquals(43, response.getTransmitTimestamp());
+  }
+
+  @Test
+  public void shouldReadCancelResponse() {
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(CancelResponse.createTelegram(11, 0xABCD));
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+    verify(responseListener, times(1)).onIncomingTelegram(captor.capture());
+    CancelResponse response = (CancelResponse) captor.getValue();
+    Assert.assertEquals(11, response.getId());
+    Assert.assertEquals(0xABCD, response.getFirstOrderId());
+  }
+
+  @Test
+  public void shouldReadStateDeltaResponse() {
+    byte[] base = createStateResponse(1, 0, 'M', 'E', 0, 0, 0).getRawContent();
+    byte[] current = createStateResponse(2, 5, 'M', 'E', 0, 0, 0).getRawContent();
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(StateDeltaResponse.createTelegram(2, base, current));
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+    verify(responseListener, times(1)).onIncomingTelegram(captor.capture());
+    Assert.assertEquals(1, ((StateDeltaResponse) captor.getValue()).getBaseId());
+    Assert.assertFalse(buffer.isReadable());
+  }
+
+  @Test
+  public void shouldResynchronizeAfterStateDeltaResponseWithInconsistentLength() {
+    byte[] base = createStateResponse(1, 0, 'M', 'E', 0, 0, 0).getRawContent();
+    byte[] current = createStateResponse(2, 5, 'M', 'E', 0, 0, 0).getRawContent();
+    byte[] telegramData = StateDeltaResponse.createTelegram(2, base, current);
+    telegramData[StateDeltaResponse.BITMAP_POS] = 0;
+    telegramData[telegramData.length - 2] = Telegram.getCheckSum(telegramData);
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(telegramData);
+    buffer.writeBytes(createOrderResponse(3, 5).getRawContent());
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+
+    verify(responseListener, never()).onIncomingTelegram(any(StateDeltaResponse.class));
+    verify(responseListener, times(1)).onIncomingTelegram(any(OrderResponseView.class));
+    Assert.assertEquals(telegramData.length, statistics.getSkippedByteCount());
+  }
+
+  @Test
+  public void shouldDecodeStateResponseFieldsOnAccess() {
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(createStateResponse(42, 7, 'M', 'F', 1, 2, 3).getRawContent());
+    List<StateResponse> copies = new ArrayList<>();
+    doAnswer(invocation -> {
+      StateResponseView view = invocation.getArgument(0);
+      Assert.assertEquals(42, view.getId());
+      Assert.assertEquals(7, view.getPositionId());
+      Assert.assertEquals(StateResponse.OperationState.MOVING, view.getOperationState());
+      Assert.assertEquals(StateResponse.LoadState.FULL, view.getLoadState());
+      Assert.assertEquals(1, view.getLastReceivedOrderId());
+      Assert.assertEquals(2, view.getCurrentOrderId());
+      Assert.assertEquals(3, view.getLastFinishedOrderId());
+      copies.add(view.copy());
+      return null;
+    }).when(responseListener).onIncomingTelegram(any());
+
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+    Assert.assertEquals(1, copies.size());
+    Assert.assertEquals(3, copies.get(0).getLastFinishedOrderId());
+  }
+
+  @Test
+  public void shouldDetachViewAfterDelivery() {
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeBytes(createOrderResponse(1, 5).getRawContent());
+    List<OrderResponseView> views = new ArrayList<>();
+    doAnswer(invocation -> {
+      OrderResponseView view = invocation.getArgument(0);
+      Assert.assertEquals(5, view.getOrderId());
+      views.add(view);
+      return null;
+    }).when(responseListener).onIncomingTelegram(any());
+
+    decoder.decode(mock(ChannelHandlerContext.class), buffer, new LinkedList<>());
+    Assert.assertEquals(1, views.size());
+    try {
+      views.get(0).getOrderId();
+      Assert.fail("View still usable after delivery.");
+    }
+    catch (IllegalStateException exc) {
+      // Expected
+    }
+  }
+
+  /**
+   * Packs the given telegrams into a batch frame.
+   *
+   * @param telegrams The telegrams' raw content
+   * @return The batch frame
+   */
+  private byte[] createBatchFrame(byte[]... telegrams) {
+    ByteBuf frame = Unpooled.buffer();
+    frame.writeByte(STX);
+    frame.writeZero(1);
+    frame.writeByte(BatchFrames.TYPE);
+    for (byte[] telegram : telegrams) {
+      frame.writeBytes(telegram, 1, telegram.length - 3);
+    }
+    frame.setByte(1, frame.writerIndex() - 2);
+    frame.writeZero(1);
+    frame.writeByte(ETX);
+    byte[] frameData = ByteBufUtil.getBytes(frame);
+    frameData[frameData.length - 2] = Telegram.getCheckSum(frameData);
+    return frameData;
+  }
+
   /**
    * Creates an order response with it's byte contents.
    *
@@ -93,7 +375,7 @@ public class VehicleTelegramDecoderTest {
     byte[] telegramData = new byte[OrderResponse.TELEGRAM_LENGTH];
 
     telegramData[0] = STX;
-    telegramData[1] = OrderResponse.PAYLOAD_LENGTH;
+    telegramData[1] = (byte) OrderResponse.PAYLOAD_LENGTH;
     telegramData[2] = OrderResponse.TYPE;
     // set telegram counter
     byte[] tmp = Ints.toByteArray(telegramCounter);
@@ -132,7 +414,7 @@ public class VehicleTelegramDecoderTest {
     byte[] telegramData = new byte[StateResponse.TELEGRAM_LENGTH];
 
     telegramData[0] = STX;
-    telegramData[1] = StateResponse.PAYLOAD_LENGTH;
+    telegramData[1] = (byte) StateResponse.PAYLOAD_LENGTH;
     telegramData[2] = StateResponse.TYPE;
     // set telegram counter
     byte[] tmp = Ints.toByteArray(telegramCounter);
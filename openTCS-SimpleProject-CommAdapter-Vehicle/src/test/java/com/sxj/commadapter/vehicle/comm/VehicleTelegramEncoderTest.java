@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.comm;
+
+import com.sxj.commadapter.vehicle.simulation.TelegramDecoder;
+import com.sxj.commadapter.vehicle.telegrams.OrderRequest;
+import com.sxj.commadapter.vehicle.telegrams.OrderRequest.OrderAction;
+import com.sxj.commadapter.vehicle.telegrams.StateRequest;
+import com.sxj.common.telegrams.Request;
+import com.sxj.common.telegrams.Telegram;
+import com.sxj.common.telegrams.TelegramPool;
+import static com.google.common.base.Ascii.ETX;
+import static com.google.common.base.Ascii.STX;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link VehicleTelegramEncoder}.
+ */
+public class VehicleTelegramEncoderTest {
+
+  private VehicleTelegramEncoder encoder;
+
+  private EmbeddedChannel channel;
+
+  @Before
+  public void setUp() {
+    encoder = new VehicleTelegramEncoder();
+    channel = new EmbeddedChannel(encoder);
+  }
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+    TelegramPool.setRecycleChecksEnabled(false);
+  }
+
+  @Test
+  public void shouldEncodeStateRequest() {
+    byte[] expected = new byte[]{STX, 3, StateRequest.TYPE, 0x12, 0x34, 0, ETX};
+    expected[StateRequest.CHECKSUM_POS] = Telegram.getCheckSum(expected);
+
+    Assert.assertArrayEquals(expected, writeAndRead(new StateRequest(0x1234)));
+  }
+
+  @Test
+  public void shouldReleaseRetainedRequestOnceEncoded() {
+    TelegramPool.setRecycleChecksEnabled(true);
+    StateRequest request = StateRequest.newInstance(0x1234);
+    request.retain();
+    // The request is answered, and thus recycled by the matcher, before its write is encoded.
+    request.recycle();
+
+    byte[] encoded = writeAndRead(request);
+
+    Assert.assertEquals(0x34, encoded[4]);
+    try {
+      request.getId();
+      Assert.fail("Request not released by the encoder");
+    }
+    catch (IllegalStateException exc) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void shouldEncodeOrderRequest() {
+    byte[] expected = new byte[]{STX, 8, OrderRequest.TYPE, 0, 7, 0x01, 0x02, (byte) 0xAB, 0x0C,
+                                 'L', 0, ETX};
+    expected[OrderRequest.CHECKSUM_POS] = Telegram.getCheckSum(expected);
+
+    Assert.assertArrayEquals(expected,
+                             writeAndRead(new OrderRequest(7, 0x0102, 0xAB0C, OrderAction.LOAD)));
+  }
+
+  @Test
+  public void shouldEncodeIdSetAtSendTime() {
+    OrderRequest request = new OrderRequest(0, 42, 13, OrderAction.UNLOAD);
+    request.updateRequestContent(0xFFFE);
+
+    byte[] encoded = writeAndRead(request);
+
+    Assert.assertEquals((byte) 0xFF, encoded[3]);
+    Assert.assertEquals((byte) 0xFE, encoded[4]);
+    Assert.assertEquals(Telegram.getCheckSum(encoded), encoded[OrderRequest.CHECKSUM_POS]);
+    Assert.assertArrayEquals(request.getRawContent(), encoded);
+  }
+
+  @Test
+  public void shouldPackRequestsWrittenBeforeFlushIntoBatchFrame() {
+    StateRequest stateRequest = new StateRequest(1);
+    OrderRequest orderRequest = new OrderRequest(2, 0x0102, 0xAB0C, OrderAction.LOAD);
+    StateRequest secondStateRequest = new StateRequest(3);
+    encoder.setBatchFramesEnabled(true);
+
+    Assert.assertTrue(channel.writeOutbound(stateRequest, orderRequest, secondStateRequest));
+    ByteBuf encoded = channel.readOutbound();
+    Assert.assertNull(channel.readOutbound());
+    int batchFrameLength = encoded.readableBytes();
+    Assert.assertEquals(STX, encoded.getByte(0));
+    Assert.assertEquals(BatchFrames.TYPE, encoded.getByte(2));
+    Assert.assertEquals(2 * StateRequest.TELEGRAM_LENGTH + OrderRequest.TELEGRAM_LENGTH
+        - 3 * 3 + 5,
+                        batchFrameLength);
+
+    // The vehicle's decoder unpacks the batch frame into the original telegrams.
+    EmbeddedChannel vehicleChannel
+        = new EmbeddedChannel(new TelegramDecoder(new DecoderStatistics()));
+    try {
+      Assert.assertTrue(vehicleChannel.writeInbound(encoded));
+      Assert.assertArrayEquals(stateRequest.getRawContent(), vehicleChannel.readInbound());
+      Assert.assertArrayEquals(orderRequest.getRawContent(), vehicleChannel.readInbound());
+      Assert.assertArrayEquals(secondStateRequest.getRawContent(), vehicleChannel.readInbound());
+      Assert.assertNull(vehicleChannel.readInbound());
+    }
+    finally {
+      vehicleChannel.finishAndReleaseAll();
+    }
+  }
+
+  @Test
+  public void shouldWriteSingleRequestAsPlainTelegramWithBatchFramesEnabled() {
+    StateRequest request = new StateRequest(1);
+    encoder.setBatchFramesEnabled(true);
+
+    Assert.assertTrue(channel.writeOutbound(request));
+    ByteBuf encoded = channel.readOutbound();
+    try {
+      Assert.assertArrayEquals(request.getRawContent(), ByteBufUtil.getBytes(encoded));
+    }
+    finally {
+      encoded.release();
+    }
+  }
+
+  @Test
+  public void shouldStartNewBatchFrameWhenFull() {
+    encoder.setBatchFramesEnabled(true);
+    int requestCount = 2 * BatchFrames.MAX_PAYLOAD_LENGTH / (StateRequest.TELEGRAM_LENGTH - 3);
+    for (int i = 0; i < requestCount; i++) {
+      channel.write(new StateRequest(i));
+    }
+    channel.flush();
+
+    int frameCount = 0;
+    int decodedCount = 0;
+    EmbeddedChannel vehicleChannel
+        = new EmbeddedChannel(new TelegramDecoder(new DecoderStatistics()));
+    try {
+      for (ByteBuf encoded = channel.readOutbound();
+           encoded != null;
+           encoded = channel.readOutbound()) {
+        Assert.assertTrue(encoded.readableBytes() <= BatchFrames.MAX_FRAME_LENGTH);
+        frameCount++;
+        vehicleChannel.writeInbound(encoded);
+      }
+      while (vehicleChannel.readInbound() != null) {
+        decodedCount++;
+      }
+    }
+    finally {
+      vehicleChannel.finishAndReleaseAll();
+    }
+    Assert.assertEquals(3, frameCount);
+    Assert.assertEquals(requestCount, decodedCount);
+  }
+
+  @Test
+  public void shouldEncodeRequestsWithoutAllocating() {
+    Assume.assumeTrue(isThreadAllocationMeasurable());
+    StateRequest stateRequest = new StateRequest(0);
+    OrderRequest orderRequest = new OrderRequest(0, 42, 13, OrderAction.NONE);
+    ByteBuf buffer = Unpooled.buffer(StateRequest.TELEGRAM_LENGTH + OrderRequest.TELEGRAM_LENGTH);
+    // Warm up.
+    encodeRepeatedly(stateRequest, orderRequest, buffer, 20_000);
+
+    int iterations = 50_000;
+    long allocatedBefore = getAllocatedBytes();
+    encodeRepeatedly(stateRequest, orderRequest, buffer, iterations);
+    long allocatedBytes = getAllocatedBytes() - allocatedBefore;
+
+    // Even a single small array per request would amount to at least 16 bytes per request, while
+    // this allows for a few allocations not caused by encoding, e.g. by the JIT compiler.
+    Assert.assertTrue("Encoding allocated " + allocatedBytes + " bytes",
+                      allocatedBytes < 2L * iterations);
+  }
+
+  private byte[] writeAndRead(Request request) {
+    Assert.assertTrue(channel.writeOutbound(request));
+    ByteBuf encoded = channel.readOutbound();
+    try {
+      Assert.assertEquals(request.getTelegramLength(), encoded.capacity());
+      return ByteBufUtil.getBytes(encoded);
+    }
+    finally {
+      encoded.release();
+    }
+  }
+
+  private static void encodeRepeatedly(StateRequest stateRequest,
+                                       OrderRequest orderRequest,
+                                       ByteBuf buffer,
+                                       int iterations) {
+    for (int i = 0; i < iterations; i++) {
+      buffer.clear();
+      stateRequest.updateRequestContent(i & 0xFFFF);
+      stateRequest.encode(buffer);
+      orderRequest.updateRequestContent(i & 0xFFFF);
+      orderRequest.encode(buffer);
+    }
+  }
+
+  private static boolean isThreadAllocationMeasurable() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    return threadBean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()
+        && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemoryEnabled();
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.simulation;
+
+import com.sxj.commadapter.vehicle.telegrams.CancelRequest;
+import com.sxj.commadapter.vehicle.telegrams.CancelResponse;
+import com.sxj.commadapter.vehicle.telegrams.OrderRequest;
+import com.sxj.commadapter.vehicle.telegrams.OrderRequest.OrderAction;
+import com.sxj.commadapter.vehicle.telegrams.OrderResponse;
+import com.sxj.commadapter.vehicle.telegrams.RouteSegmentRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link VehicleSimulator}.
+ */
+public class VehicleSimulatorTest {
+
+  private VehicleState vehicleState;
+
+  private List<byte[]> sentTelegrams;
+
+  private VehicleSimulator simulator;
+
+  @Before
+  public void setUp() {
+    vehicleState = new VehicleState();
+    sentTelegrams = new ArrayList<>();
+    simulator = new VehicleSimulator(vehicleState, sentTelegrams::add);
+  }
+
+  @Test
+  public void shouldRevokeCurrentOrderIfCancelled() {
+    vehicleState.setLastFinishedOrderId(4);
+    vehicleState.setCurrOrderId(5);
+
+    simulator.onIncomingTelegram(new CancelRequest(3, 5).getRawContent());
+
+    Assert.assertEquals(0, vehicleState.getCurrOrderId());
+    CancelResponse response = lastCancelResponse();
+    Assert.assertEquals(3, response.getId());
+    Assert.assertEquals(5, response.getFirstOrderId());
+  }
+
+  @Test
+  public void shouldEchoCurrentOrderIfOrdersBeforeItHaveBeenFinished() {
+    vehicleState.setLastFinishedOrderId(6);
+    vehicleState.setCurrOrderId(7);
+
+    simulator.onIncomingTelegram(new CancelRequest(3, 5).getRawContent());
+
+    Assert.assertEquals(0, vehicleState.getCurrOrderId());
+    Assert.assertEquals(7, lastCancelResponse().getFirstOrderId());
+  }
+
+  @Test
+  public void shouldNotRevokeAnythingIfCancelArrivesAfterOrderFinished() {
+    vehicleState.setLastFinishedOrderId(5);
+    vehicleState.setCurrOrderId(0);
+
+    simulator.onIncomingTelegram(new CancelRequest(3, 5).getRawContent());
+
+    Assert.assertEquals(5, vehicleState.getLastFinishedOrderId());
+    CancelResponse response = lastCancelResponse();
+    Assert.assertEquals(3, response.getId());
+    Assert.assertEquals(0, response.getFirstOrderId());
+  }
+
+  @Test
+  public void shouldNotRevokeOrderStartedBeforeFirstRevokedOrder() {
+    vehicleState.setCurrOrderId(4);
+
+    simulator.onIncomingTelegram(new CancelRequest(3, 5).getRawContent());
+
+    Assert.assertEquals(4, vehicleState.getCurrOrderId());
+    Assert.assertEquals(0, lastCancelResponse().getFirstOrderId());
+  }
+
+  @Test
+  public void shouldAcknowledgeRouteSegmentWithLastOrderId() {
+    RouteSegmentRequest request
+        = new RouteSegmentRequest(0,
+                                  Arrays.asList(new OrderRequest(0, 11, 7089, OrderAction.NONE),
+                                                new OrderRequest(0, 12, 7090, OrderAction.NONE)));
+    request.updateRequestContent(42);
+
+    simulator.onIncomingTelegram(request.getRawContent());
+
+    Assert.assertFalse(sentTelegrams.isEmpty());
+    byte[] telegram = sentTelegrams.get(sentTelegrams.size() - 1);
+    Assert.assertEquals(OrderResponse.TYPE, telegram[2]);
+    OrderResponse response = new OrderResponse(telegram);
+    Assert.assertEquals(42, response.getId());
+    Assert.assertEquals(12, response.getOrderId());
+  }
+
+  private CancelResponse lastCancelResponse() {
+    Assert.assertFalse(sentTelegrams.isEmpty());
+    byte[] telegram = sentTelegrams.get(sentTelegrams.size() - 1);
+    Assert.assertEquals(CancelResponse.TYPE, telegram[2]);
+    return new CancelResponse(telegram);
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.commadapter.vehicle.telegrams.OrderRequest.OrderAction;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link OrderRequest}.
+ */
+public class OrderRequestTest {
+
+  @Test
+  public void shouldEncodeRawContentOnlyOnceForTheSameId() {
+    OrderRequest request = new OrderRequest(17, 5, 7090, OrderAction.UNLOAD);
+
+    Assert.assertSame(request.getRawContent(), request.getRawContent());
+  }
+
+  @Test
+  public void shouldEncodeRawContentAgainOnceIdHasChanged() {
+    OrderRequest request = new OrderRequest(17, 5, 7090, OrderAction.UNLOAD);
+    request.getRawContent();
+
+    request.updateRequestContent(18);
+    byte[] telegramData = request.getRawContent();
+
+    Assert.assertEquals(18, OrderRequest.LAYOUT.getId(telegramData));
+    Assert.assertTrue(OrderRequest.LAYOUT.isValid(telegramData));
+  }
+
+  @Test
+  public void shouldEncodeRawContentLikeItIsSent() {
+    OrderRequest request = new OrderRequest(17, 5, 7090, OrderAction.UNLOAD);
+    ByteBuf out = Unpooled.buffer();
+
+    request.encode(out);
+
+    Assert.assertEquals(OrderRequest.TELEGRAM_LENGTH, request.getTelegramLength());
+    Assert.assertArrayEquals(ByteBufUtil.getBytes(out), request.getRawContent());
+  }
+}
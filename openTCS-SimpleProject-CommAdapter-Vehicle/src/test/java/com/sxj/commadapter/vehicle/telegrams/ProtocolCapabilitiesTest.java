@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import java.util.EnumSet;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link ProtocolCapabilities} and the handshake telegrams carrying them.
+ */
+public class ProtocolCapabilitiesTest {
+
+  @Test
+  public void shouldAgreeOnCapabilitiesSupportedByBothSides() {
+    ProtocolCapabilities controlSystem
+        = new ProtocolCapabilities(2, 8, 259, EnumSet.of(ProtocolFeature.BATCH_FRAMES));
+    ProtocolCapabilities vehicle
+        = new ProtocolCapabilities(3, 4, 300, EnumSet.noneOf(ProtocolFeature.class));
+
+    ProtocolCapabilities agreed = controlSystem.negotiate(vehicle);
+
+    Assert.assertEquals(2, agreed.getProtocolVersion());
+    Assert.assertEquals(4, agreed.getMaxWindow());
+    Assert.assertEquals(259, agreed.getMaxFrameLength());
+    Assert.assertFalse(agreed.supports(ProtocolFeature.BATCH_FRAMES));
+    Assert.assertEquals(agreed, vehicle.negotiate(controlSystem));
+  }
+
+  @Test
+  public void shouldNotAgreeOnMoreThanVersion1WithVersion1Vehicle() {
+    ProtocolCapabilities controlSystem
+        = new ProtocolCapabilities(2, 8, 259, EnumSet.of(ProtocolFeature.BATCH_FRAMES));
+
+    Assert.assertEquals(ProtocolCapabilities.VERSION_1,
+                        controlSystem.negotiate(ProtocolCapabilities.VERSION_1));
+  }
+
+  @Test
+  public void shouldIgnoreUnknownFeatureBits() {
+    ProtocolCapabilities capabilities
+        = ProtocolCapabilities.fromTelegramFields(2, 0, 259, 0x8000
+                                                  | ProtocolFeature.BATCH_FRAMES.getBit());
+
+    Assert.assertEquals(EnumSet.of(ProtocolFeature.BATCH_FRAMES), capabilities.getFeatures());
+    Assert.assertEquals(1, capabilities.getMaxWindow());
+  }
+
+  @Test
+  public void shouldTransferCapabilitiesInHandshakeTelegrams() {
+    ProtocolCapabilities capabilities
+        = new ProtocolCapabilities(2, 8, 259, EnumSet.of(ProtocolFeature.BATCH_FRAMES));
+    HandshakeRequest request = new HandshakeRequest(0x1234, capabilities);
+
+    byte[] telegramData = request.getRawContent();
+    Assert.assertTrue(HandshakeRequest.LAYOUT.isValid(telegramData));
+    Assert.assertEquals(capabilities, HandshakeRequest.readCapabilities(telegramData));
+
+    // Requests and responses share their layout.
+    HandshakeResponse response = new HandshakeResponse(telegramData);
+    Assert.assertEquals(0x1234, response.getId());
+    Assert.assertEquals(capabilities, response.getCapabilities());
+    Assert.assertTrue(response.isResponseTo(request));
+  }
+}
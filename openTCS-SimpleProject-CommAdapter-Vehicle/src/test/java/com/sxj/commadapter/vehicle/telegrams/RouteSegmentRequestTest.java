@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.commadapter.vehicle.telegrams.OrderRequest.OrderAction;
+import com.sxj.common.telegrams.Telegram;
+import com.sxj.common.telegrams.TelegramLayout;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link RouteSegmentRequest}.
+ */
+public class RouteSegmentRequestTest {
+
+  @Test
+  public void shouldEncodeWaypointsLikeOrderRequests() {
+    OrderRequest first = new OrderRequest(0, 11, 7089, OrderAction.NONE);
+    OrderRequest second = new OrderRequest(0, 12, 7090, OrderAction.LOAD);
+    RouteSegmentRequest request = new RouteSegmentRequest(0, Arrays.asList(first, second));
+    request.updateRequestContent(42);
+
+    byte[] telegramData = request.getRawContent();
+
+    Assert.assertEquals(RouteSegmentRequest.getTelegramLength(2), telegramData.length);
+    Assert.assertEquals(telegramData.length - TelegramLayout.FRAME_OVERHEAD, telegramData[1]);
+    Assert.assertEquals(RouteSegmentRequest.TYPE, telegramData[TelegramLayout.TYPE_POS]);
+    Assert.assertEquals(42, RouteSegmentRequest.LAYOUT.getId(telegramData));
+    Assert.assertEquals(2, telegramData[RouteSegmentRequest.WAYPOINT_COUNT_POS]);
+    // Every waypoint is the payload of the corresponding order request.
+    byte[] secondData = second.getRawContent();
+    Assert.assertArrayEquals(
+        Arrays.copyOfRange(secondData,
+                           TelegramLayout.HEADER_LENGTH,
+                           TelegramLayout.HEADER_LENGTH + RouteSegmentRequest.WAYPOINT_LENGTH),
+        Arrays.copyOfRange(telegramData,
+                           RouteSegmentRequest.WAYPOINTS_POS + RouteSegmentRequest.WAYPOINT_LENGTH,
+                           RouteSegmentRequest.WAYPOINTS_POS
+                           + 2 * RouteSegmentRequest.WAYPOINT_LENGTH)
+    );
+    Assert.assertEquals(Telegram.getCheckSum(telegramData), telegramData[telegramData.length - 2]);
+    Assert.assertEquals(TelegramLayout.ETX, telegramData[telegramData.length - 1]);
+    Assert.assertEquals(12, RouteSegmentRequest.readLastOrderId(telegramData));
+  }
+
+  @Test
+  public void shouldCheckLengthAgainstNumberOfWaypoints() {
+    OrderRequest order = new OrderRequest(0, 11, 7089, OrderAction.NONE);
+    byte[] telegramData
+        = new RouteSegmentRequest(0, Arrays.asList(order, order, order)).getRawContent();
+
+    Assert.assertTrue(RouteSegmentRequest.hasConsistentLength(Unpooled.wrappedBuffer(telegramData),
+                                                              0,
+                                                              telegramData.length));
+
+    telegramData[RouteSegmentRequest.WAYPOINT_COUNT_POS] = 2;
+    Assert.assertFalse(RouteSegmentRequest.hasConsistentLength(Unpooled.wrappedBuffer(telegramData),
+                                                               0,
+                                                               telegramData.length));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotAcceptEmptySegment() {
+    new RouteSegmentRequest(0, Collections.emptyList());
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.Field;
+import io.netty.buffer.Unpooled;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link StateDeltaResponse}.
+ */
+public class StateDeltaResponseTest {
+
+  @Test
+  public void shouldRestoreStateByApplyingDeltaToBase() {
+    byte[] base = createStateResponse(1, 7089, 'M', 'E', 3, 3, 2);
+    byte[] current = createStateResponse(2, 7090, 'M', 'E', 3, 3, 3);
+
+    StateDeltaResponse delta
+        = new StateDeltaResponse(StateDeltaResponse.createTelegram(2, base, current));
+
+    Assert.assertEquals(2, delta.getId());
+    Assert.assertEquals(1, delta.getBaseId());
+    Assert.assertTrue(delta.isChanged(Field.POSITION_ID));
+    Assert.assertTrue(delta.isChanged(Field.LAST_FINISHED_ORDER_ID));
+    Assert.assertFalse(delta.isChanged(Field.OPERATION_STATE));
+    Assert.assertEquals(StateDeltaResponse.MIN_TELEGRAM_LENGTH + 4,
+                        delta.getRawContent().length);
+    Assert.assertArrayEquals(current,
+                             delta.applyTo(new StateResponse(base)).getRawContent());
+  }
+
+  @Test
+  public void shouldCarryNoFieldsIfNothingChanged() {
+    byte[] base = createStateResponse(1, 7089, 'C', 'E', 3, 0, 3);
+    byte[] current = createStateResponse(2, 7089, 'C', 'E', 3, 0, 3);
+
+    byte[] telegramData = StateDeltaResponse.createTelegram(2, base, current);
+
+    Assert.assertEquals(StateDeltaResponse.MIN_TELEGRAM_LENGTH, telegramData.length);
+    Assert.assertTrue(StateDeltaResponse.hasConsistentLength(Unpooled.wrappedBuffer(telegramData),
+                                                             0,
+                                                             telegramData.length));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotApplyDeltaToOtherState() {
+    byte[] base = createStateResponse(1, 7089, 'M', 'E', 3, 3, 2);
+    byte[] current = createStateResponse(2, 7090, 'M', 'E', 3, 3, 3);
+    StateDeltaResponse delta
+        = new StateDeltaResponse(StateDeltaResponse.createTelegram(2, base, current));
+
+    delta.applyTo(new StateResponse(createStateResponse(5, 7089, 'M', 'E', 3, 3, 2)));
+  }
+
+  @Test
+  public void shouldFoldConsecutiveDeltas() {
+    byte[] base = createStateResponse(1, 7089, 'I', 'E', 2, 0, 2);
+    byte[] middle = createStateResponse(2, 7090, 'M', 'E', 3, 3, 2);
+    byte[] current = createStateResponse(3, 7090, 'I', 'E', 3, 0, 3);
+    StateDeltaResponse first
+        = new StateDeltaResponse(StateDeltaResponse.createTelegram(2, base, middle));
+    StateDeltaResponse second
+        = new StateDeltaResponse(StateDeltaResponse.createTelegram(3, middle, current));
+
+    StateDeltaResponse folded = first.followedBy(second);
+
+    Assert.assertEquals(3, folded.getId());
+    Assert.assertEquals(1, folded.getBaseId());
+    // Changed and changed back, but still carried, with the latest value.
+    Assert.assertTrue(folded.isChanged(Field.OPERATION_STATE));
+    Assert.assertFalse(folded.isChanged(Field.LOAD_STATE));
+    Assert.assertArrayEquals(current,
+                             folded.applyTo(new StateResponse(base)).getRawContent());
+  }
+
+  @Test
+  public void shouldDetectInconsistentLength() {
+    byte[] base = createStateResponse(1, 7089, 'M', 'E', 3, 3, 2);
+    byte[] current = createStateResponse(2, 7090, 'M', 'E', 3, 3, 2);
+    byte[] telegramData = StateDeltaResponse.createTelegram(2, base, current);
+    // Claim that the operation state has changed, too.
+    telegramData[StateDeltaResponse.BITMAP_POS] |= 1 << Field.OPERATION_STATE.ordinal();
+
+    Assert.assertFalse(StateDeltaResponse.hasConsistentLength(Unpooled.wrappedBuffer(telegramData),
+                                                              0,
+                                                              telegramData.length));
+  }
+
+  private static byte[] createStateResponse(int id,
+                                            int positionId,
+                                            char operationState,
+                                            char loadState,
+                                            int lastReceivedOrderId,
+                                            int currentOrderId,
+                                            int lastFinishedOrderId) {
+    byte[] telegramData = new byte[StateResponse.TELEGRAM_LENGTH];
+    StateResponse.LAYOUT.writeFrame(telegramData, id);
+    StateResponse.LAYOUT.set(telegramData, Field.POSITION_ID, positionId);
+    StateResponse.LAYOUT.set(telegramData, Field.OPERATION_STATE, operationState);
+    StateResponse.LAYOUT.set(telegramData, Field.LOAD_STATE, loadState);
+    StateResponse.LAYOUT.set(telegramData, Field.LAST_RECEIVED_ORDER_ID, lastReceivedOrderId);
+    StateResponse.LAYOUT.set(telegramData, Field.CURRENT_ORDER_ID, currentOrderId);
+    StateResponse.LAYOUT.set(telegramData, Field.LAST_FINISHED_ORDER_ID, lastFinishedOrderId);
+    StateResponse.LAYOUT.seal(telegramData);
+    return telegramData;
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.commadapter.vehicle.telegrams;
+
+import com.sxj.commadapter.vehicle.telegrams.OrderRequest.OrderAction;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.Field;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.LoadState;
+import com.sxj.commadapter.vehicle.telegrams.StateResponse.OperationState;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import org.junit.*;
+
+/**
+ * Test cases for the compact serialized form of telegrams.
+ */
+public class TelegramSerializationTest {
+
+  @Test
+  public void shouldRestoreStateResponseFromRawContent()
+      throws Exception {
+    byte[] telegramData = new byte[StateResponse.TELEGRAM_LENGTH];
+    StateResponse.LAYOUT.writeFrame(telegramData, 42);
+    StateResponse.LAYOUT.set(telegramData, Field.POSITION_ID, 7089);
+    StateResponse.LAYOUT.set(telegramData, Field.OPERATION_STATE, 'M');
+    StateResponse.LAYOUT.set(telegramData, Field.LOAD_STATE, 'F');
+    StateResponse.LAYOUT.set(telegramData, Field.LAST_RECEIVED_ORDER_ID, 3);
+    StateResponse.LAYOUT.set(telegramData, Field.CURRENT_ORDER_ID, 3);
+    StateResponse.LAYOUT.set(telegramData, Field.LAST_FINISHED_ORDER_ID, 2);
+    StateResponse.LAYOUT.seal(telegramData);
+
+    StateResponse response
+        = (StateResponse) deserialize(serialize(new StateResponse(telegramData)));
+
+    Assert.assertArrayEquals(telegramData, response.getRawContent());
+    Assert.assertEquals(42, response.getId());
+    Assert.assertEquals(7089, response.getPositionId());
+    Assert.assertEquals(OperationState.MOVING, response.getOperationState());
+    Assert.assertEquals(LoadState.FULL, response.getLoadState());
+    Assert.assertEquals(3, response.getCurrentOrderId());
+    Assert.assertEquals(2, response.getLastFinishedOrderId());
+  }
+
+  @Test
+  public void shouldRestoreOrderRequestFromRawContent()
+      throws Exception {
+    OrderRequest request = new OrderRequest(17, 5, 7090, OrderAction.UNLOAD);
+
+    OrderRequest restored = (OrderRequest) deserialize(serialize(request));
+
+    Assert.assertEquals(17, restored.getId());
+    Assert.assertEquals(5, restored.getOrderId());
+    Assert.assertEquals(7090, restored.getDestinationId());
+    Assert.assertEquals(OrderAction.UNLOAD, restored.getDestinationAction());
+  }
+
+  private static byte[] serialize(Object object)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialize(byte[] data)
+      throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+      return in.readObject();
+    }
+  }
+}
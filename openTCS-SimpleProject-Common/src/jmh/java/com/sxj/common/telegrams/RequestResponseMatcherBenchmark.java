@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of {@link RequestResponseMatcher} under contention with the lock-based
+ * baseline {@link SynchronizedRequestResponseMatcher}.
+ * <p>
+ * Several threads keep enqueuing state requests, as periodic and manual state requesting does,
+ * while a single thread answers the sent requests, as the I/O thread does.
+ * </p>
+ * <p>
+ * Run with {@code gradlew :openTCS-SimpleProject-Common:jmh}.
+ * Select one implementation with e.g. {@code -PjmhArgs="-p implementation=synchronized"}.
+ * To compare with another revision of the matcher, run this benchmark on both revisions on the
+ * same machine, e.g. with {@code -PjmhArgs="-rf json -rff <revision>.json"}, adapting
+ * {@code MatcherState.createMatcher()} to that revision's constructor.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestResponseMatcherBenchmark {
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(3)
+  public void enqueue(MatcherState state) {
+    state.matcher.enqueueRequest(new BenchmarkRequest());
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(1)
+  public boolean respond(MatcherState state) {
+    Request request = state.sender.lastSentRequest;
+    if (request == null || request.getId() == state.lastAnsweredId) {
+      return false;
+    }
+    state.lastAnsweredId = request.getId();
+    Response response = new Response(7) {
+    };
+    response.id = request.getId();
+    boolean matched = state.matcher.tryMatchWithCurrentRequest(response);
+    state.matcher.checkForSendingNextRequest();
+    return matched;
+  }
+
+  /**
+   * The matcher shared by all threads of a benchmark group.
+   */
+  @State(Scope.Group)
+  public static class MatcherState {
+
+    /**
+     * The matcher implementation to benchmark.
+     */
+    @Param({"lockFree", "synchronized"})
+    public String implementation;
+    /**
+     * Records the sent requests.
+     */
+    private BenchmarkSender sender;
+    /**
+     * The matcher.
+     */
+    private Matcher matcher;
+    /**
+     * The id of the last request answered.
+     */
+    private int lastAnsweredId;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      sender = new BenchmarkSender();
+      lastAnsweredId = -1;
+      if ("lockFree".equals(implementation)) {
+        matcher = new LockFreeMatcher(createMatcher(sender));
+      }
+      else {
+        matcher = new SynchronizedMatcher(new SynchronizedRequestResponseMatcher(sender));
+      }
+    }
+
+    /**
+     * Creates the matcher to benchmark.
+     *
+     * @param sender The sender the matcher sends requests with.
+     * @return The matcher.
+     */
+    private static RequestResponseMatcher createMatcher(TelegramSender sender) {
+      return new RequestResponseMatcher(sender,
+                                        new NoOpTimer(),
+                                        new RequestTimeoutPolicy(1000, 3, 2.0, 8000));
+    }
+  }
+
+  /**
+   * The matcher operations used in the benchmark.
+   */
+  private interface Matcher {
+
+    void enqueueRequest(Request request);
+
+    boolean tryMatchWithCurrentRequest(Response response);
+
+    void checkForSendingNextRequest();
+  }
+
+  /**
+   * Delegates to a {@link RequestResponseMatcher}.
+   */
+  private static class LockFreeMatcher
+      implements Matcher {
+
+    private final RequestResponseMatcher matcher;
+
+    LockFreeMatcher(RequestResponseMatcher matcher) {
+      this.matcher = matcher;
+    }
+
+    @Override
+    public void enqueueRequest(Request request) {
+      matcher.enqueueRequest(request);
+    }
+
+    @Override
+    public boolean tryMatchWithCurrentRequest(Response response) {
+      return matcher.tryMatchWithCurrentRequest(response);
+    }
+
+    @Override
+    public void checkForSendingNextRequest() {
+      matcher.checkForSendingNextRequest();
+    }
+  }
+
+  /**
+   * Delegates to a {@link SynchronizedRequestResponseMatcher}.
+   */
+  private static class SynchronizedMatcher
+      implements Matcher {
+
+    private final SynchronizedRequestResponseMatcher matcher;
+
+    SynchronizedMatcher(SynchronizedRequestResponseMatcher matcher) {
+      this.matcher = matcher;
+    }
+
+    @Override
+    public void enqueueRequest(Request request) {
+      matcher.enqueueRequest(request);
+    }
+
+    @Override
+    public boolean tryMatchWithCurrentRequest(Response response) {
+      return matcher.tryMatchWithCurrentRequest(response);
+    }
+
+    @Override
+    public void checkForSendingNextRequest() {
+      matcher.checkForSendingNextRequest();
+    }
+  }
+
+  /**
+   * A state request stand-in.
+   */
+  private static class BenchmarkRequest
+      extends Request {
+
+    BenchmarkRequest() {
+      super(7);
+    }
+
+    @Override
+    public void updateRequestContent(int telegramId) {
+      this.id = telegramId;
+    }
+
+    @Override
+    public Priority getPriority() {
+      return Priority.TELEMETRY;
+    }
+
+    @Override
+    public boolean isCoalescableWith(Request request) {
+      return request instanceof BenchmarkRequest;
+    }
+  }
+
+  /**
+   * Assigns ids to sent requests and remembers the last one, like the comm adapter does.
+   */
+  private static class BenchmarkSender
+      implements TelegramSender {
+
+    private final AtomicInteger requestCounter = new AtomicInteger();
+
+    private volatile Request lastSentRequest;
+
+    @Override
+    public void sendTelegram(Request telegram) {
+      telegram.updateRequestContent(requestCounter.getAndIncrement() & 0xFFFF);
+      lastSentRequest = telegram;
+    }
+
+    @Override
+    public void onRequestFailed(Request request) {
+    }
+
+    @Override
+    public void onRequestStalled(Request request, long outstandingMillis) {
+    }
+  }
+
+  /**
+   * A timer that never expires any timeouts.
+   */
+  private static class NoOpTimer
+      implements Timer {
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+      return new NoOpTimeout(this, task);
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+      return Collections.emptySet();
+    }
+  }
+
+  /**
+   * A timeout that never expires.
+   */
+  private static class NoOpTimeout
+      implements Timeout {
+
+    private final Timer timer;
+
+    private final TimerTask task;
+
+    private volatile boolean cancelled;
+
+    NoOpTimeout(Timer timer, TimerTask task) {
+      this.timer = timer;
+      this.task = task;
+    }
+
+    @Override
+    public Timer timer() {
+      return timer;
+    }
+
+    @Override
+    public TimerTask task() {
+      return task;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    @Override
+    public boolean cancel() {
+      cancelled = true;
+      return true;
+    }
+  }
+}
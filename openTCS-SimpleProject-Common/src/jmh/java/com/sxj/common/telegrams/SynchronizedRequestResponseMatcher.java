@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import static java.util.Objects.requireNonNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A lock-based baseline for {@link RequestResponseMatcherBenchmark}.
+ * <p>
+ * This is the queue of the matcher before it was made lock-free, guarded by this instance's
+ * monitor. Like {@link RequestResponseMatcher}, it does not enqueue requests made redundant by a
+ * pending one, so its queue does not grow without bounds while the benchmark runs. It does not
+ * track response deadlines, which the benchmark never lets expire.
+ * </p>
+ */
+class SynchronizedRequestResponseMatcher {
+
+  /**
+   * The queue of requests. Its head is the request waiting for a response.
+   */
+  private final Queue<Request> requests = new ArrayDeque<>();
+  /**
+   * Sends the queued {@link Request}s.
+   */
+  private final TelegramSender telegramSender;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param telegramSender Sends the queued {@link Request}s.
+   */
+  SynchronizedRequestResponseMatcher(TelegramSender telegramSender) {
+    this.telegramSender = requireNonNull(telegramSender, "telegramSender");
+  }
+
+  /**
+   * Enqueues the given request and sends it if no other request is waiting for a response.
+   *
+   * @param request The request.
+   */
+  public synchronized void enqueueRequest(@Nonnull Request request) {
+    requireNonNull(request, "request");
+    if (isMadeRedundant(request)) {
+      return;
+    }
+    boolean emptyQueueBeforeEnqueue = requests.isEmpty();
+    requests.add(request);
+
+    if (emptyQueueBeforeEnqueue) {
+      checkForSendingNextRequest();
+    }
+  }
+
+  /**
+   * Sends the request at the head of the queue, if any.
+   */
+  public synchronized void checkForSendingNextRequest() {
+    Request request = requests.peek();
+    if (request != null) {
+      telegramSender.sendTelegram(request);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the response matches the request at the head of the queue.
+   * If it matches, the request is removed.
+   *
+   * @param response The response to match.
+   * @return {@code true} if the response matches the request at the head of the queue.
+   */
+  public synchronized boolean tryMatchWithCurrentRequest(@Nonnull Response response) {
+    requireNonNull(response, "response");
+
+    Request currentRequest = requests.peek();
+    if (currentRequest != null && response.isResponseTo(currentRequest)) {
+      requests.remove();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether the given request is made redundant by one that has not been sent, yet.
+   *
+   * @param request The request.
+   * @return {@code true} if, and only if, a queued request that has not been sent makes the given
+   * one redundant.
+   */
+  private boolean isMadeRedundant(Request request) {
+    Iterator<Request> iterator = requests.iterator();
+    if (iterator.hasNext()) {
+      // Skip the request waiting for a response.
+      iterator.next();
+    }
+    while (iterator.hasNext()) {
+      if (request.isCoalescableWith(iterator.next())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import static org.opentcs.util.Assertions.checkArgument;
+
+/**
+ * A histogram of durations with buckets growing in powers of two.
+ * <p>
+ * Bucket <em>i</em> counts durations of less than 2<sup><em>i</em></sup> microseconds (and at
+ * least 2<sup><em>i</em>-1</sup> microseconds), so percentiles are reported with a precision of
+ * a factor of two at most. Recording is lock-free and may be done from any thread.
+ * </p>
+ */
+public class LatencyHistogram {
+
+  /**
+   * The number of buckets, enough for durations of up to 2^40 microseconds (about 12 days).
+   */
+  private static final int BUCKET_COUNT = 41;
+  /**
+   * The number of recorded durations per bucket.
+   */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  /**
+   * The number of recorded durations.
+   */
+  private final AtomicLong count = new AtomicLong();
+  /**
+   * The sum of all recorded durations (in microseconds).
+   */
+  private final AtomicLong sum = new AtomicLong();
+  /**
+   * The longest recorded duration (in microseconds).
+   */
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Creates a new instance.
+   */
+  public LatencyHistogram() {
+  }
+
+  /**
+   * Records the given duration.
+   *
+   * @param duration The duration.
+   * @param unit The duration's unit.
+   */
+  public void record(long duration, TimeUnit unit) {
+    long micros = Math.max(0, unit.toMicros(duration));
+    buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1));
+    count.incrementAndGet();
+    sum.addAndGet(micros);
+    max.accumulateAndGet(micros, Math::max);
+  }
+
+  /**
+   * Returns the number of recorded durations.
+   *
+   * @return The number of recorded durations.
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the mean of the recorded durations (in ms).
+   *
+   * @return The mean of the recorded durations (in ms), or 0, if none have been recorded.
+   */
+  public double getMeanMillis() {
+    long currentCount = count.get();
+    return currentCount == 0 ? 0 : sum.get() / 1000.0 / currentCount;
+  }
+
+  /**
+   * Returns the longest recorded duration (in ms).
+   *
+   * @return The longest recorded duration (in ms), or 0, if none have been recorded.
+   */
+  public double getMaxMillis() {
+    return max.get() / 1000.0;
+  }
+
+  /**
+   * Returns an upper bound for the given percentile of the recorded durations (in ms).
+   *
+   * @param percentile The percentile, between 0 and 100.
+   * @return An upper bound for the given percentile of the recorded durations (in ms), or 0, if
+   * none have been recorded.
+   */
+  public double getPercentileMillis(double percentile) {
+    checkArgument(percentile >= 0 && percentile <= 100,
+                  "percentile not between 0 and 100: %s",
+                  percentile);
+    long total = 0;
+    long[] counts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0) {
+        // The bucket's upper bound, but never more than the longest duration actually recorded.
+        return Math.min((1L << i) - 1, max.get()) / 1000.0;
+      }
+    }
+    return getMaxMillis();
+  }
+
+  /**
+   * Discards all recorded durations.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogram{"
+        + "count=" + getCount() + ", "
+        + "meanMillis=" + getMeanMillis() + ", "
+        + "p50Millis=" + getPercentileMillis(50) + ", "
+        + "p99Millis=" + getPercentileMillis(99) + ", "
+        + "maxMillis=" + getMaxMillis() + '}';
+  }
+}
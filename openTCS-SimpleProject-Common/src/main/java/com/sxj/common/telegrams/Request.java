@@ -7,6 +7,9 @@
  */
 package com.sxj.common.telegrams;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
 /**
  * A request represents a telegram sent from the control system to vehicle control and expects
  * a response with the same id to match.
@@ -25,10 +28,102 @@ public abstract class Request
     super(telegramLength);
   }
 
+  /**
+   * Creates a new instance that does not keep its raw content, for requests that write their
+   * fields to the buffer directly (see {@link #encode(ByteBuf)}).
+   * Subclasses using this constructor have to override {@link #getTelegramLength()} and
+   * {@link #getRawContent()}.
+   */
+  protected Request() {
+  }
+
   /**
    * Updates the content of the request to include the given id.
    *
    * @param telegramId The request's new id.
    */
   public abstract void updateRequestContent(int telegramId);
+
+  /**
+   * Returns the number of bytes this request takes up when encoded.
+   *
+   * @return The number of bytes this request takes up when encoded.
+   */
+  public int getTelegramLength() {
+    return rawContent.length;
+  }
+
+  /**
+   * Writes this request, as sent via the network, to the given buffer.
+   * <p>
+   * This implementation writes the request's raw content.
+   * Subclasses may want to override this to write their fields to the buffer directly.
+   * </p>
+   *
+   * @param out The buffer to write to.
+   */
+  public void encode(ByteBuf out) {
+    out.writeBytes(getRawContent());
+  }
+
+  /**
+   * Encodes this request to a new array.
+   * Meant for subclasses that override {@link #encode(ByteBuf)} to write their fields directly
+   * and do not keep their raw content up to date, so that reading it has no side effects.
+   *
+   * @return A new array containing this request as sent via the network.
+   */
+  protected byte[] encodeToArray() {
+    byte[] content = new byte[getTelegramLength()];
+    encode(Unpooled.wrappedBuffer(content).writerIndex(0));
+    return content;
+  }
+
+  /**
+   * Returns this request's priority.
+   * <p>
+   * This implementation returns {@link Priority#CONTROL}.
+   * Subclasses may want to override this.
+   * </p>
+   *
+   * @return This request's priority.
+   */
+  public Priority getPriority() {
+    return Priority.CONTROL;
+  }
+
+  /**
+   * Checks whether this request is made redundant by the given one, i.e. whether it is sufficient
+   * to send only the given request instead of both.
+   * <p>
+   * This implementation returns {@code false}.
+   * Subclasses may want to override this.
+   * </p>
+   *
+   * @param request The request to check with.
+   * @return {@code true} if, and only if, this request is made redundant by the given one.
+   */
+  public boolean isCoalescableWith(Request request) {
+    return false;
+  }
+
+  /**
+   * Defines the priorities with which requests are sent.
+   * Requests with a higher priority are sent before requests with a lower priority, regardless
+   * of the order in which they were enqueued.
+   */
+  public enum Priority {
+    /**
+     * Requests that have to take effect as soon as possible, e.g. revoking orders sent before.
+     */
+    URGENT,
+    /**
+     * Requests that control the vehicle.
+     */
+    CONTROL,
+    /**
+     * Requests that only retrieve information from the vehicle.
+     */
+    TELEMETRY
+  }
 }
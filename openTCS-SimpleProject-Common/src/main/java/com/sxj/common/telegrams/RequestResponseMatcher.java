@@ -8,98 +8,353 @@
 package com.sxj.common.telegrams;
 
 import com.google.inject.assistedinject.Assisted;
-import java.util.LinkedList;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import static java.util.Objects.requireNonNull;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
+import static org.opentcs.util.Assertions.checkArgument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Keeps {@link Request}s in a queue and matches them with incoming {@link Response}s.
+ * <p>
+ * Pending requests are kept in one lane per {@link Request.Priority}.
+ * Whenever a request has been answered, the next one is taken from the lane with the
+ * highest priority, so control requests do not have to wait for pending telemetry requests.
+ * A request that is made redundant by a pending one (see {@link Request#isCoalescableWith}) is
+ * not enqueued at all.
+ * </p>
+ * <p>
+ * Once a request has been sent, a response to it is expected within
+ * the timeout given by the {@link RequestTimeoutPolicy}.
+ * If no response arrives in time, the request is retransmitted.
+ * If there is still no response after the maximum number of retransmissions, the request is
+ * removed from the queue, the {@link TelegramSender} is notified and the next request is sent.
+ * </p>
+ * <p>
+ * By default, only one request is sent at a time, and the next one is sent once it has been
+ * answered.
+ * For vehicles that can process several requests at once, more requests may be sent without
+ * waiting for responses (see {@link #setMaxRequestsInFlight(int)}).
+ * A response that is a cumulative acknowledgement (see
+ * {@link Response#isCumulativeAcknowledgement()}) then answers the request it matches along with
+ * the requests sent before it that it acknowledges (see
+ * {@link Response#isCumulativeAcknowledgementOf(Request)}), while any other response only answers
+ * the request it matches.
+ * </p>
+ * <p>
+ * Requests are recycled (see {@link Telegram#recycle()}) once they are answered, given up on,
+ * made redundant or cleared, so they must not be used by anyone else after being enqueued.
+ * A {@link TelegramSender} that writes requests asynchronously must {@link Telegram#retain()
+ * retain} them until they are written, as this may happen while a write is still pending.
+ * </p>
+ * <p>
+ * For every request, the times of its enqueuing, its transmissions and its response are tracked
+ * and summarized in histograms (see {@link RequestResponseMatcherMXBean}).
+ * If the {@link RequestTimeoutPolicy} defines a stall threshold, the {@link TelegramSender} is
+ * notified about requests that have been waiting for a response for longer than that.
+ * </p>
+ * <p>
+ * Requests may also be enqueued via {@link TelegramClient}, in which case the returned future is
+ * completed with the matching response.
+ * Such requests are never dropped as redundant, as their future has to be completed.
+ * Once the future is completed exceptionally by anyone else, e.g. by cancelling it, the request is
+ * withdrawn from the queue.
+ * </p>
+ * <p>
+ * All methods of this class may be called from any thread and do not block.
+ * The lanes are lock-free queues that any thread may add requests to, while the next request is
+ * taken from them by a single thread at a time - whichever thread finds no other thread doing so.
+ * The requests waiting for a response are only ever replaced atomically, so a response is matched
+ * with each of them at most once.
+ * A request about to be sent is added to the requests waiting for a response before it is removed
+ * from its lane, so it can be found and withdrawn at any time; it is only sent if it has not been
+ * withdrawn once it has been removed from its lane.
+ * </p>
  *
  * @author Stefan Walter (Fraunhofer IML)
  */
-public class RequestResponseMatcher {
+public class RequestResponseMatcher
+    implements TelegramClient,
+               RequestResponseMatcherMXBean {
 
   /**
    * This class's logger.
    */
   private static final Logger LOG = LoggerFactory.getLogger(RequestResponseMatcher.class);
   /**
-   * The actual queue of requests.
+   * An empty array of transmissions.
    */
-  private final Queue<Request> requests = new LinkedList<>();
+  private static final Transmission[] NO_TRANSMISSIONS = new Transmission[0];
+  /**
+   * The number of times it has to be checked whether the next request can be sent.
+   * Whoever increments this from zero does these checks until it drops back to zero.
+   */
+  private final AtomicInteger pendingSendChecks = new AtomicInteger();
+  /**
+   * The queues of pending requests, one per priority.
+   */
+  private final Map<Request.Priority, Queue<PendingRequest>> lanes
+      = new EnumMap<>(Request.Priority.class);
+  /**
+   * The transmissions of the requests that are currently waiting for a response, in the order
+   * they were sent in.
+   * The array is never modified but only ever replaced atomically.
+   */
+  private final AtomicReference<Transmission[]> inFlight
+      = new AtomicReference<>(NO_TRANSMISSIONS);
+  /**
+   * The maximum number of requests waiting for a response at the same time.
+   */
+  private volatile int maxRequestsInFlight = 1;
   /**
    * Sends the queued {@link Request}s.
    */
   private final TelegramSender telegramSender;
+  /**
+   * Tracks the response deadlines of sent requests.
+   */
+  private final Timer timer;
+  /**
+   * Describes how long to wait for responses and how often to retransmit requests.
+   */
+  private final RequestTimeoutPolicy timeoutPolicy;
+  /**
+   * The number of times a response to a request did not arrive in time.
+   */
+  private final AtomicLong timeoutCount = new AtomicLong();
+  /**
+   * The number of times a request has been retransmitted.
+   */
+  private final AtomicLong retransmissionCount = new AtomicLong();
+  /**
+   * The number of times a request has been given up on.
+   */
+  private final AtomicLong failureCount = new AtomicLong();
+  /**
+   * The number of requests that were not enqueued because a pending request made them redundant.
+   */
+  private final AtomicLong coalescedCount = new AtomicLong();
+  /**
+   * The number of times a request has been reported as stalled.
+   */
+  private final AtomicLong stallCount = new AtomicLong();
+  /**
+   * The times from the requests' enqueuing to their first transmission.
+   */
+  private final LatencyHistogram queueWaitHistogram = new LatencyHistogram();
+  /**
+   * The times from the requests' last transmission to the matching response.
+   */
+  private final LatencyHistogram responseTimeHistogram = new LatencyHistogram();
 
   /**
    * Creates a new instance.
    *
    * @param telegramSender Sends the queued {@link Request}s.
+   * @param timer Tracks the response deadlines of sent requests.
+   * @param timeoutPolicy Describes how long to wait for responses and how often to retransmit
+   * requests.
    */
   @Inject
-  public RequestResponseMatcher(@Assisted TelegramSender telegramSender) {
+  public RequestResponseMatcher(@Assisted TelegramSender telegramSender,
+                                Timer timer,
+                                RequestTimeoutPolicy timeoutPolicy) {
     this.telegramSender = requireNonNull(telegramSender, "telegramSender");
+    this.timer = requireNonNull(timer, "timer");
+    this.timeoutPolicy = requireNonNull(timeoutPolicy, "timeoutPolicy");
+    for (Request.Priority priority : Request.Priority.values()) {
+      lanes.put(priority, new ConcurrentLinkedQueue<>());
+    }
   }
 
+  /**
+   * Enqueues the given request and sends it right away if no other request is waiting for a
+   * response.
+   *
+   * @param request The request to enqueue.
+   */
   public void enqueueRequest(@Nonnull Request request) {
     requireNonNull(request, "request");
-    boolean emptyQueueBeforeEnqueue = requests.isEmpty();
 
+    if (isMadeRedundant(request)) {
+      LOG.debug("Not enqueuing request made redundant by a pending one: {}", request);
+      coalescedCount.incrementAndGet();
+      request.recycle();
+      return;
+    }
+
+    PendingRequest pendingRequest = new PendingRequest(request, System.nanoTime(), null);
+    Queue<PendingRequest> lane = lanes.get(request.getPriority());
     LOG.debug("Enqueuing request: {}", request);
-    requests.add(request);
+    lane.add(pendingRequest);
+    // Another thread may have enqueued a request making this one redundant at the same time.
+    if (isPrecededByCoalescableRequest(pendingRequest, lane) && lane.remove(pendingRequest)) {
+      LOG.debug("Not enqueuing request made redundant by a pending one: {}", request);
+      coalescedCount.incrementAndGet();
+      request.recycle();
+      return;
+    }
+
+    if (hasCapacityForRequests()) {
+      sendNextRequest();
+    }
+  }
+
+  @Override
+  public <R extends Response> CompletableFuture<R> request(@Nonnull Request request,
+                                                           @Nonnull Class<R> responseType) {
+    requireNonNull(request, "request");
+    requireNonNull(responseType, "responseType");
+
+    ResponseFuture<R> future = new ResponseFuture<>(responseType);
+    PendingRequest pendingRequest = new PendingRequest(request, System.nanoTime(), future);
+    future.whenComplete((response, exc) -> {
+      if (exc != null && withdraw(pendingRequest)) {
+        sendNextRequest();
+      }
+    });
 
-    if (emptyQueueBeforeEnqueue) {
-      checkForSendingNextRequest();
+    LOG.debug("Enqueuing request: {}", request);
+    lanes.get(request.getPriority()).add(pendingRequest);
+    if (hasCapacityForRequests()) {
+      sendNextRequest();
     }
+    return future;
+  }
+
+  @Override
+  public <R extends Response> CompletableFuture<R> request(@Nonnull Request request,
+                                                           @Nonnull Class<R> responseType,
+                                                           long timeout,
+                                                           @Nonnull TimeUnit unit) {
+    requireNonNull(unit, "unit");
+
+    CompletableFuture<R> future = request(request, responseType);
+    Timeout clientTimeout = timer.newTimeout(
+        t -> future.completeExceptionally(
+            new TimeoutException("No response within " + timeout + " " + unit)
+        ),
+        timeout,
+        unit
+    );
+    future.whenComplete((response, exc) -> clientTimeout.cancel());
+    return future;
   }
 
   /**
-   * Checks if a telegram is enqueued and sends it.
+   * Sends pending requests, unless the maximum number of requests is already waiting for a
+   * response.
    */
   public void checkForSendingNextRequest() {
     LOG.debug("Check for sending next request.");
-    if (peekCurrentRequest().isPresent()) {
-      telegramSender.sendTelegram(peekCurrentRequest().get());
+    sendNextRequest();
+  }
+
+  /**
+   * Sends the requests that are waiting for a response again, e.g. because the connection they
+   * were sent on has been lost.
+   */
+  public void retransmitCurrentRequest() {
+    Transmission[] transmissions = inFlight.get();
+    if (transmissions.length == 0) {
+      LOG.debug("No request to be sent again.");
+      return;
     }
-    else {
-      LOG.debug("No requests to be sent.");
+
+    for (Transmission current : transmissions) {
+      if (current.getTimeout() == null) {
+        // Not sent for the first time, yet.
+        continue;
+      }
+      Transmission transmission = new Transmission(current.getPendingRequest(), 0);
+      // Requests answered in the meantime are not sent again.
+      if (replaceInFlight(current, transmission)) {
+        LOG.debug("Sending request again: {}", current.getRequest());
+        cancelTimeout(current);
+        transmit(transmission);
+      }
     }
   }
 
   /**
-   * Returns the next request in the queue or an {@link Optional#EMPTY} if none is present.
+   * Returns the oldest request waiting for a response or, if there is none, the next request in
+   * the queue, or an {@link Optional#EMPTY} if none is present.
    *
-   * @return The next request in the queue or an {@link Optional#EMPTY} if none is present
+   * @return The oldest request waiting for a response or, if there is none, the next request in
+   * the queue, or an {@link Optional#EMPTY} if none is present.
    */
   public Optional<Request> peekCurrentRequest() {
-    return Optional.ofNullable(requests.peek());
+    Transmission[] transmissions = inFlight.get();
+    if (transmissions.length > 0) {
+      return Optional.of(transmissions[0].getRequest());
+    }
+    PendingRequest next = peekNextPendingRequest();
+    return Optional.ofNullable(next != null ? next.getRequest() : null);
   }
 
   /**
-   * Returns <code>true</code> if the response matches to the first request in the queue.
-   * If it matches, the request will be removed.
+   * Returns <code>true</code> if the response matches a request waiting for a response.
+   * If it matches, the request - and, if the response is a cumulative acknowledgement, every
+   * request sent before it - will be removed and recycled.
    *
    * @param response The response to match
-   * @return <code>true</code> if the response matches to the first request in the queue.
+   * @return <code>true</code> if the response matches a request waiting for a response.
    */
   public boolean tryMatchWithCurrentRequest(@Nonnull Response response) {
     requireNonNull(response, "response");
 
-    Request currentRequest = requests.peek();
-    if (currentRequest != null && response.isResponseTo(currentRequest)) {
-      requests.remove();
-      return true;
+    Transmission[] transmissions = inFlight.get();
+    int index = indexOfMatch(transmissions, response);
+    while (index >= 0) {
+      Transmission[] answered;
+      Transmission[] remaining;
+      if (response.isCumulativeAcknowledgement()) {
+        answered = acknowledgedBy(response, transmissions, index);
+        remaining = without(transmissions, answered);
+      }
+      else {
+        answered = new Transmission[]{transmissions[index]};
+        remaining = without(transmissions, index);
+      }
+      if (inFlight.compareAndSet(transmissions, remaining)) {
+        long now = System.nanoTime();
+        for (Transmission transmission : answered) {
+          responseTimeHistogram.record(now - transmission.getSentNanos(), TimeUnit.NANOSECONDS);
+          cancelTimeout(transmission);
+          cancelStallTimeout(transmission.getPendingRequest());
+          transmission.getPendingRequest().completeWith(response);
+          transmission.getRequest().recycle();
+        }
+        return true;
+      }
+      // A request has been retransmitted or answered in the meantime - try again.
+      transmissions = inFlight.get();
+      index = indexOfMatch(transmissions, response);
     }
 
-    if (currentRequest != null) {
+    if (transmissions.length > 0) {
       LOG.info("No request matching response with counter {}. Latest request counter is {}.",
-               response.getId(), currentRequest.getId());
+               response.getId(), transmissions[transmissions.length - 1].getRequest().getId());
     }
     else {
       LOG.info("Received response with counter {}, but no request is waiting for a response.",
@@ -111,8 +366,855 @@ public class RequestResponseMatcher {
 
   /**
    * Clears all requests stored in the queue.
+   * <p>
+   * Requests enqueued concurrently with this call may or may not be cleared.
+   * </p>
    */
   public void clear() {
-    requests.clear();
+    for (Queue<PendingRequest> lane : lanes.values()) {
+      PendingRequest pendingRequest;
+      while ((pendingRequest = lane.poll()) != null) {
+        // Skip requests withdrawn concurrently, which their withdrawer takes care of.
+        if (pendingRequest.markWithdrawn()) {
+          pendingRequest.discard();
+          pendingRequest.getRequest().recycle();
+        }
+      }
+    }
+    for (Transmission current : inFlight.getAndSet(NO_TRANSMISSIONS)) {
+      cancelTimeout(current);
+      cancelStallTimeout(current.getPendingRequest());
+      // Also skips requests that were about to be sent and have been cleared from their lane.
+      if (current.getPendingRequest().markWithdrawn()) {
+        current.getPendingRequest().discard();
+        current.getRequest().recycle();
+      }
+    }
+  }
+
+  /**
+   * Withdraws the requests accepted by the given filter that have neither been answered nor given
+   * up on yet, whether they are still pending or already waiting for a response.
+   * Withdrawn requests are neither sent nor retransmitted any more, responses to them are not
+   * matched, and they are not reported as failed.
+   * <p>
+   * Requests enqueued concurrently with this call may or may not be withdrawn.
+   * </p>
+   *
+   * @param filter Accepts the requests to withdraw.
+   * @return The number of requests withdrawn.
+   */
+  public int withdrawRequests(@Nonnull Predicate<Request> filter) {
+    requireNonNull(filter, "filter");
+
+    int withdrawnCount = 0;
+    for (Queue<PendingRequest> lane : lanes.values()) {
+      for (PendingRequest pendingRequest : lane) {
+        if (filter.test(pendingRequest.getRequest()) && withdraw(pendingRequest)) {
+          withdrawnCount++;
+        }
+      }
+    }
+    // A request taken from its lane for sending in the meantime is waiting for a response already.
+    for (Transmission current : inFlight.get()) {
+      if (filter.test(current.getRequest()) && withdraw(current.getPendingRequest())) {
+        withdrawnCount++;
+      }
+    }
+    if (withdrawnCount > 0) {
+      sendNextRequest();
+    }
+    return withdrawnCount;
+  }
+
+  /**
+   * Returns the policy describing how long to wait for responses and how often to retransmit
+   * requests.
+   *
+   * @return The policy describing how long to wait for responses and how often to retransmit
+   * requests.
+   */
+  @Nonnull
+  public RequestTimeoutPolicy getTimeoutPolicy() {
+    return timeoutPolicy;
+  }
+
+  /**
+   * Returns the maximum number of requests waiting for a response at the same time.
+   *
+   * @return The maximum number of requests waiting for a response at the same time.
+   */
+  public int getMaxRequestsInFlight() {
+    return maxRequestsInFlight;
+  }
+
+  /**
+   * Sets the maximum number of requests waiting for a response at the same time.
+   * <p>
+   * The default is 1, i.e. a request is only sent once the previous one has been answered.
+   * Values greater than 1 require a vehicle that processes several requests at once, ideally
+   * answering them with cumulative acknowledgements.
+   * </p>
+   *
+   * @param maxRequestsInFlight The maximum number of requests waiting for a response at the same
+   * time.
+   */
+  public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+    checkArgument(maxRequestsInFlight > 0,
+                  "maxRequestsInFlight must be positive: %s",
+                  maxRequestsInFlight);
+    this.maxRequestsInFlight = maxRequestsInFlight;
+    sendNextRequest();
+  }
+
+  @Override
+  public long getTimeoutCount() {
+    return timeoutCount.get();
+  }
+
+  @Override
+  public long getRetransmissionCount() {
+    return retransmissionCount.get();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  @Override
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  @Override
+  public long getStallCount() {
+    return stallCount.get();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    int depth = inFlight.get().length;
+    for (Queue<PendingRequest> lane : lanes.values()) {
+      depth += lane.size();
+    }
+    return depth;
+  }
+
+  @Override
+  public long getOldestPendingAgeMillis() {
+    long now = System.nanoTime();
+    long oldestAge = 0;
+    for (Transmission current : inFlight.get()) {
+      oldestAge = Math.max(oldestAge, now - current.getPendingRequest().getEnqueuedNanos());
+    }
+    for (Queue<PendingRequest> lane : lanes.values()) {
+      PendingRequest head = lane.peek();
+      if (head != null) {
+        oldestAge = Math.max(oldestAge, now - head.getEnqueuedNanos());
+      }
+    }
+    return TimeUnit.NANOSECONDS.toMillis(oldestAge);
+  }
+
+  @Override
+  public double getQueueWaitMeanMillis() {
+    return queueWaitHistogram.getMeanMillis();
+  }
+
+  @Override
+  public double getQueueWait99thPercentileMillis() {
+    return queueWaitHistogram.getPercentileMillis(99);
+  }
+
+  @Override
+  public double getQueueWaitMaxMillis() {
+    return queueWaitHistogram.getMaxMillis();
+  }
+
+  @Override
+  public double getResponseTimeMeanMillis() {
+    return responseTimeHistogram.getMeanMillis();
+  }
+
+  @Override
+  public double getResponseTime99thPercentileMillis() {
+    return responseTimeHistogram.getPercentileMillis(99);
+  }
+
+  @Override
+  public double getResponseTimeMaxMillis() {
+    return responseTimeHistogram.getMaxMillis();
+  }
+
+  @Override
+  public void resetStatistics() {
+    queueWaitHistogram.reset();
+    responseTimeHistogram.reset();
+  }
+
+  /**
+   * Returns the times from the requests' enqueuing to their first transmission.
+   *
+   * @return The times from the requests' enqueuing to their first transmission.
+   */
+  public LatencyHistogram getQueueWaitHistogram() {
+    return queueWaitHistogram;
+  }
+
+  /**
+   * Returns the times from the requests' last transmission to the matching response.
+   *
+   * @return The times from the requests' last transmission to the matching response.
+   */
+  public LatencyHistogram getResponseTimeHistogram() {
+    return responseTimeHistogram;
+  }
+
+  /**
+   * Sends pending requests while fewer than the maximum number of requests are waiting for a
+   * response.
+   * <p>
+   * If another thread is already doing this, that thread is made to check once more instead, so
+   * requests are only ever taken from the lanes by one thread at a time.
+   * </p>
+   */
+  private void sendNextRequest() {
+    if (pendingSendChecks.getAndIncrement() != 0) {
+      return;
+    }
+
+    int sendChecks = 1;
+    do {
+      if (hasCapacityForRequests()) {
+        for (Queue<PendingRequest> lane : lanes.values()) {
+          PendingRequest pendingRequest = lane.peek();
+          if (pendingRequest == null) {
+            continue;
+          }
+          Transmission transmission = new Transmission(pendingRequest, 0);
+          // Only this thread ever adds transmissions, so there is still capacity for it.
+          // Adding the transmission before removing the request from its lane keeps the request
+          // visible to anyone withdrawing it in the meantime.
+          addInFlight(transmission);
+          if (!lane.remove(pendingRequest)) {
+            // Withdrawn or cleared concurrently, by someone who also takes care of recycling it.
+            removeInFlight(transmission);
+          }
+          else if (pendingRequest.isWithdrawn()) {
+            // Withdrawn after being taken from its lane, by someone who also removes it from the
+            // requests waiting for a response and recycles it.
+            LOG.debug("Not sending withdrawn request: {}", pendingRequest.getRequest());
+          }
+          else {
+            pendingRequest.setFirstSentNanos(transmission.getSentNanos());
+            queueWaitHistogram.record(
+                transmission.getSentNanos() - pendingRequest.getEnqueuedNanos(),
+                TimeUnit.NANOSECONDS
+            );
+            scheduleStallTimeout(pendingRequest);
+            transmit(transmission);
+          }
+          // Check again for sending further requests or because the request has been removed
+          // concurrently.
+          pendingSendChecks.incrementAndGet();
+          break;
+        }
+      }
+
+      sendChecks = pendingSendChecks.addAndGet(-sendChecks);
+    }
+    while (sendChecks != 0);
+  }
+
+  /**
+   * Handles a response deadline that has passed.
+   *
+   * @param transmission The transmission the deadline was scheduled for.
+   */
+  private void onResponseTimeout(Transmission transmission) {
+    Request request = transmission.getRequest();
+
+    if (transmission.getNumber() < timeoutPolicy.getMaxRetransmissions()) {
+      Transmission retransmission = new Transmission(transmission.getPendingRequest(),
+                                                     transmission.getNumber() + 1);
+      if (!replaceInFlight(transmission, retransmission)) {
+        // The request has been answered, given up on or sent again in the meantime.
+        return;
+      }
+      timeoutCount.incrementAndGet();
+      LOG.debug("No response to {}, retransmitting (retransmission {} of {}).",
+                request,
+                retransmission.getNumber(),
+                timeoutPolicy.getMaxRetransmissions());
+      retransmissionCount.incrementAndGet();
+      transmit(retransmission);
+    }
+    else {
+      if (!removeInFlight(transmission)) {
+        return;
+      }
+      timeoutCount.incrementAndGet();
+      LOG.warn("No response to {} after {} retransmission(s), giving up.",
+               request,
+               transmission.getNumber());
+      failureCount.incrementAndGet();
+      cancelStallTimeout(transmission.getPendingRequest());
+      telegramSender.onRequestFailed(request);
+      transmission.getPendingRequest().fail(
+          new TimeoutException("No response after " + transmission.getNumber()
+              + " retransmission(s)")
+      );
+      request.recycle();
+      sendNextRequest();
+    }
+  }
+
+  /**
+   * Removes the given request from the queue, if it has neither been answered, given up on nor
+   * withdrawn yet.
+   * The caller is expected to send the next request afterwards.
+   *
+   * @param pendingRequest The request to withdraw.
+   * @return {@code true} if, and only if, the request has been withdrawn by this call.
+   */
+  private boolean withdraw(PendingRequest pendingRequest) {
+    if (!pendingRequest.markWithdrawn()) {
+      // Withdrawn or cleared by someone else already.
+      return false;
+    }
+
+    // A request that is about to be sent may be both in its lane and waiting for a response, so
+    // the lane is checked first.
+    if (lanes.get(pendingRequest.getRequest().getPriority()).remove(pendingRequest)) {
+      LOG.debug("Withdrawing pending request: {}", pendingRequest.getRequest());
+      pendingRequest.discard();
+      pendingRequest.getRequest().recycle();
+      return true;
+    }
+
+    Transmission current = findInFlight(pendingRequest);
+    if (current != null && removeInFlight(current)) {
+      LOG.debug("Withdrawing request waiting for a response: {}", pendingRequest.getRequest());
+      cancelTimeout(current);
+      cancelStallTimeout(pendingRequest);
+      pendingRequest.discard();
+      pendingRequest.getRequest().recycle();
+      return true;
+    }
+    // Otherwise, the request has already been answered or given up on.
+    return false;
+  }
+
+  /**
+   * Checks whether the given request is made redundant by the current or a pending request.
+   *
+   * @param request The request to check.
+   * @return {@code true} if, and only if, the given request is made redundant.
+   */
+  private boolean isMadeRedundant(Request request) {
+    for (Transmission current : inFlight.get()) {
+      if (request.isCoalescableWith(current.getRequest())) {
+        return true;
+      }
+    }
+    for (Queue<PendingRequest> lane : lanes.values()) {
+      for (PendingRequest pendingRequest : lane) {
+        if (request.isCoalescableWith(pendingRequest.getRequest())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the pending request with the highest priority without removing it.
+   *
+   * @return The pending request with the highest priority, or {@code null}, if there is none.
+   */
+  private PendingRequest peekNextPendingRequest() {
+    for (Queue<PendingRequest> lane : lanes.values()) {
+      PendingRequest pendingRequest = lane.peek();
+      if (pendingRequest != null) {
+        return pendingRequest;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks whether the given request is made redundant by a request waiting for a response or by
+   * a request enqueued before it in the given lane.
+   *
+   * @param request The request to check.
+   * @param lane The lane the request has been added to.
+   * @return {@code true} if, and only if, the given request is made redundant.
+   */
+  private boolean isPrecededByCoalescableRequest(PendingRequest request,
+                                                 Queue<PendingRequest> lane) {
+    for (Transmission current : inFlight.get()) {
+      if (current.getPendingRequest() != request
+          && request.getRequest().isCoalescableWith(current.getRequest())) {
+        return true;
+      }
+    }
+    for (PendingRequest pendingRequest : lane) {
+      if (pendingRequest == request) {
+        return false;
+      }
+      if (request.getRequest().isCoalescableWith(pendingRequest.getRequest())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether fewer than the maximum number of requests are waiting for a response.
+   *
+   * @return {@code true} if, and only if, another request may be sent.
+   */
+  private boolean hasCapacityForRequests() {
+    return inFlight.get().length < maxRequestsInFlight;
+  }
+
+  /**
+   * Adds the given transmission to the ones waiting for a response.
+   *
+   * @param transmission The transmission.
+   */
+  private void addInFlight(Transmission transmission) {
+    Transmission[] transmissions;
+    Transmission[] updated;
+    do {
+      transmissions = inFlight.get();
+      updated = Arrays.copyOf(transmissions, transmissions.length + 1);
+      updated[transmissions.length] = transmission;
+    }
+    while (!inFlight.compareAndSet(transmissions, updated));
+  }
+
+  /**
+   * Replaces the given transmission with a new transmission of the same request, which is then
+   * the most recently sent one.
+   *
+   * @param transmission The transmission to replace.
+   * @param replacement The new transmission.
+   * @return {@code true} if the transmission has been replaced, {@code false} if it is no longer
+   * waiting for a response.
+   */
+  private boolean replaceInFlight(Transmission transmission, Transmission replacement) {
+    Transmission[] transmissions;
+    Transmission[] updated;
+    do {
+      transmissions = inFlight.get();
+      int index = Arrays.asList(transmissions).indexOf(transmission);
+      if (index < 0) {
+        return false;
+      }
+      updated = without(transmissions, index);
+      updated = Arrays.copyOf(updated, transmissions.length);
+      updated[transmissions.length - 1] = replacement;
+    }
+    while (!inFlight.compareAndSet(transmissions, updated));
+    return true;
+  }
+
+  /**
+   * Removes the given transmission from the ones waiting for a response.
+   *
+   * @param transmission The transmission to remove.
+   * @return {@code true} if the transmission has been removed, {@code false} if it is no longer
+   * waiting for a response.
+   */
+  private boolean removeInFlight(Transmission transmission) {
+    Transmission[] transmissions;
+    Transmission[] updated;
+    do {
+      transmissions = inFlight.get();
+      int index = Arrays.asList(transmissions).indexOf(transmission);
+      if (index < 0) {
+        return false;
+      }
+      updated = without(transmissions, index);
+    }
+    while (!inFlight.compareAndSet(transmissions, updated));
+    return true;
+  }
+
+  /**
+   * Returns the transmission of the given request that is waiting for a response.
+   *
+   * @param pendingRequest The request.
+   * @return The transmission, or {@code null}, if the request is not waiting for a response.
+   */
+  private Transmission findInFlight(PendingRequest pendingRequest) {
+    for (Transmission transmission : inFlight.get()) {
+      if (transmission.getPendingRequest() == pendingRequest) {
+        return transmission;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the index of the transmission the given response answers.
+   *
+   * @param transmissions The transmissions waiting for a response.
+   * @param response The response.
+   * @return The index of the transmission, or -1, if the response answers none of them.
+   */
+  private static int indexOfMatch(Transmission[] transmissions, Response response) {
+    for (int i = 0; i < transmissions.length; i++) {
+      if (response.isResponseTo(transmissions[i].getRequest())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the transmissions answered by the given cumulative acknowledgement.
+   *
+   * @param response The cumulative acknowledgement.
+   * @param transmissions The transmissions waiting for a response.
+   * @param index The index of the transmission the response is a response to.
+   * @return The transmission at the given index and the ones before it the response acknowledges,
+   * in the order they have been sent in.
+   */
+  private static Transmission[] acknowledgedBy(Response response,
+                                               Transmission[] transmissions,
+                                               int index) {
+    List<Transmission> answered = new ArrayList<>(index + 1);
+    for (int i = 0; i < index; i++) {
+      if (response.isCumulativeAcknowledgementOf(transmissions[i].getRequest())) {
+        answered.add(transmissions[i]);
+      }
+    }
+    answered.add(transmissions[index]);
+    return answered.toArray(new Transmission[answered.size()]);
+  }
+
+  /**
+   * Returns a copy of the given transmissions without the given ones.
+   *
+   * @param transmissions The transmissions.
+   * @param left The transmissions to leave out.
+   * @return A copy of the given transmissions without the given ones.
+   */
+  private static Transmission[] without(Transmission[] transmissions, Transmission[] left) {
+    List<Transmission> remaining = new ArrayList<>(Arrays.asList(transmissions));
+    remaining.removeAll(Arrays.asList(left));
+    return remaining.toArray(new Transmission[remaining.size()]);
+  }
+
+  /**
+   * Returns a copy of the given transmissions without the one at the given index.
+   *
+   * @param transmissions The transmissions.
+   * @param index The index of the transmission to leave out.
+   * @return A copy of the given transmissions without the one at the given index.
+   */
+  private static Transmission[] without(Transmission[] transmissions, int index) {
+    Transmission[] result = new Transmission[transmissions.length - 1];
+    System.arraycopy(transmissions, 0, result, 0, index);
+    System.arraycopy(transmissions, index + 1, result, index, transmissions.length - index - 1);
+    return result;
+  }
+
+  /**
+   * Schedules the response deadline for the given transmission and sends its request.
+   *
+   * @param transmission The transmission.
+   */
+  private void transmit(Transmission transmission) {
+    transmission.setTimeout(
+        timer.newTimeout(timeout -> onResponseTimeout(transmission),
+                         timeoutPolicy.getResponseTimeout(transmission.getNumber()),
+                         TimeUnit.MILLISECONDS)
+    );
+    telegramSender.sendTelegram(transmission.getRequest());
+  }
+
+  /**
+   * Cancels the response deadline of the given transmission, if any.
+   * A deadline that expires anyway is ignored, as its transmission is no longer the current one.
+   *
+   * @param transmission The transmission.
+   */
+  private void cancelTimeout(Transmission transmission) {
+    Timeout timeout = transmission.getTimeout();
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  /**
+   * Schedules the stall check for the given request, if the timeout policy defines a stall
+   * threshold.
+   *
+   * @param pendingRequest The request that is being sent for the first time.
+   */
+  private void scheduleStallTimeout(PendingRequest pendingRequest) {
+    if (timeoutPolicy.getStallThreshold() == 0) {
+      return;
+    }
+    pendingRequest.setStallTimeout(
+        timer.newTimeout(timeout -> onStallTimeout(pendingRequest),
+                         timeoutPolicy.getStallThreshold(),
+                         TimeUnit.MILLISECONDS)
+    );
+  }
+
+  /**
+   * Cancels the stall check of the given request, if any.
+   *
+   * @param pendingRequest The request.
+   */
+  private void cancelStallTimeout(PendingRequest pendingRequest) {
+    Timeout timeout = pendingRequest.getStallTimeout();
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  /**
+   * Reports the given request as stalled if it is still waiting for a response.
+   *
+   * @param pendingRequest The request.
+   */
+  private void onStallTimeout(PendingRequest pendingRequest) {
+    if (findInFlight(pendingRequest) == null) {
+      // The request has been answered, given up on or cleared in the meantime.
+      return;
+    }
+
+    long outstandingMillis
+        = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pendingRequest.getFirstSentNanos());
+    stallCount.incrementAndGet();
+    LOG.debug("No response to {} for {} ms, request is stalled.",
+              pendingRequest.getRequest(),
+              outstandingMillis);
+    telegramSender.onRequestStalled(pendingRequest.getRequest(), outstandingMillis);
+  }
+
+  /**
+   * A request that has been enqueued, along with the times relevant for statistics.
+   */
+  private static class PendingRequest {
+
+    /**
+     * The request.
+     */
+    private final Request request;
+    /**
+     * The time (from {@link System#nanoTime()}) the request has been enqueued at.
+     */
+    private final long enqueuedNanos;
+    /**
+     * The time (from {@link System#nanoTime()}) the request has first been sent at.
+     */
+    private volatile long firstSentNanos;
+    /**
+     * The future to complete with the response, or {@code null}.
+     */
+    private final ResponseFuture<?> responseFuture;
+    /**
+     * The check for the request being stalled.
+     */
+    private volatile Timeout stallTimeout;
+    /**
+     * Whether the request has been withdrawn or cleared.
+     */
+    private final AtomicBoolean withdrawn = new AtomicBoolean();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param request The request.
+     * @param enqueuedNanos The time (from {@link System#nanoTime()}) the request has been enqueued
+     * at.
+     * @param responseFuture The future to complete with the response, or {@code null}.
+     */
+    PendingRequest(Request request, long enqueuedNanos, ResponseFuture<?> responseFuture) {
+      this.request = request;
+      this.enqueuedNanos = enqueuedNanos;
+      this.responseFuture = responseFuture;
+    }
+
+    public Request getRequest() {
+      return request;
+    }
+
+    public long getEnqueuedNanos() {
+      return enqueuedNanos;
+    }
+
+    public long getFirstSentNanos() {
+      return firstSentNanos;
+    }
+
+    public void setFirstSentNanos(long firstSentNanos) {
+      this.firstSentNanos = firstSentNanos;
+    }
+
+    public Timeout getStallTimeout() {
+      return stallTimeout;
+    }
+
+    public void setStallTimeout(Timeout stallTimeout) {
+      this.stallTimeout = stallTimeout;
+    }
+
+    /**
+     * Marks the request as withdrawn.
+     *
+     * @return {@code true} if, and only if, the request had not been marked as withdrawn before,
+     * in which case the caller is responsible for removing and recycling it.
+     */
+    public boolean markWithdrawn() {
+      return withdrawn.compareAndSet(false, true);
+    }
+
+    /**
+     * Indicates whether the request has been withdrawn, either explicitly or by its future being
+     * completed before the request has been sent.
+     *
+     * @return Whether the request has been withdrawn.
+     */
+    public boolean isWithdrawn() {
+      return withdrawn.get() || (responseFuture != null && responseFuture.isDone());
+    }
+
+    /**
+     * Completes the request's future, if any, with the given response.
+     * As the future's dependent actions may keep the response, they get one they own (see
+     * {@link Response#toOwned()}) rather than the given one, which may be pooled or reused.
+     *
+     * @param response The response.
+     */
+    public void completeWith(Response response) {
+      if (responseFuture != null && !responseFuture.isDone()) {
+        responseFuture.completeWith(response.toOwned());
+      }
+    }
+
+    /**
+     * Completes the request's future, if any, with the given exception.
+     *
+     * @param exc The exception.
+     */
+    public void fail(Throwable exc) {
+      if (responseFuture != null) {
+        responseFuture.completeExceptionally(exc);
+      }
+    }
+
+    /**
+     * Completes the request's future, if any, with a {@link CancellationException}.
+     */
+    public void discard() {
+      fail(new CancellationException("Request discarded: " + request));
+    }
+  }
+
+  /**
+   * A future for a response of a specific type.
+   *
+   * @param <R> The type of the response.
+   */
+  private static class ResponseFuture<R extends Response>
+      extends CompletableFuture<R> {
+
+    /**
+     * The type of the response.
+     */
+    private final Class<R> responseType;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param responseType The type of the response.
+     */
+    ResponseFuture(Class<R> responseType) {
+      this.responseType = responseType;
+    }
+
+    /**
+     * Completes this future with the given response, if it is of the expected type, or with a
+     * {@link ClassCastException}, otherwise.
+     *
+     * @param response The response.
+     */
+    public void completeWith(Response response) {
+      if (responseType.isInstance(response)) {
+        complete(responseType.cast(response));
+      }
+      else {
+        completeExceptionally(
+            new ClassCastException("Expected a " + responseType.getSimpleName()
+                + " but received: " + response)
+        );
+      }
+    }
+  }
+
+  /**
+   * A single transmission of a request.
+   */
+  private static class Transmission {
+
+    /**
+     * The transmitted request.
+     */
+    private final PendingRequest pendingRequest;
+    /**
+     * The transmission's number, with 0 being the initial transmission.
+     */
+    private final int number;
+    /**
+     * The time (from {@link System#nanoTime()}) of this transmission.
+     */
+    private final long sentNanos = System.nanoTime();
+    /**
+     * The transmission's response deadline.
+     */
+    private volatile Timeout timeout;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pendingRequest The transmitted request.
+     * @param number The transmission's number, with 0 being the initial transmission.
+     */
+    Transmission(PendingRequest pendingRequest, int number) {
+      this.pendingRequest = pendingRequest;
+      this.number = number;
+    }
+
+    public PendingRequest getPendingRequest() {
+      return pendingRequest;
+    }
+
+    public Request getRequest() {
+      return pendingRequest.getRequest();
+    }
+
+    public long getSentNanos() {
+      return sentNanos;
+    }
+
+    public int getNumber() {
+      return number;
+    }
+
+    public Timeout getTimeout() {
+      return timeout;
+    }
+
+    public void setTimeout(Timeout timeout) {
+      this.timeout = timeout;
+    }
   }
 }
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+/**
+ * Exposes the state and statistics of a {@link RequestResponseMatcher} via JMX.
+ * <p>
+ * Queue wait is the time from a request's enqueuing to its first transmission.
+ * Response time is the time from a request's last transmission to the matching response.
+ * </p>
+ */
+public interface RequestResponseMatcherMXBean {
+
+  /**
+   * Returns the number of requests in the matcher, including the one waiting for a response.
+   *
+   * @return The number of requests in the matcher.
+   */
+  int getQueueDepth();
+
+  /**
+   * Returns the time (in ms) since the oldest request in the matcher has been enqueued.
+   *
+   * @return The time (in ms) since the oldest request in the matcher has been enqueued, or 0, if
+   * there are no requests in the matcher.
+   */
+  long getOldestPendingAgeMillis();
+
+  /**
+   * Returns the number of times a response to a request did not arrive in time.
+   *
+   * @return The number of times a response to a request did not arrive in time.
+   */
+  long getTimeoutCount();
+
+  /**
+   * Returns the number of times a request has been retransmitted.
+   *
+   * @return The number of times a request has been retransmitted.
+   */
+  long getRetransmissionCount();
+
+  /**
+   * Returns the number of times a request has been given up on.
+   *
+   * @return The number of times a request has been given up on.
+   */
+  long getFailureCount();
+
+  /**
+   * Returns the number of requests that were not enqueued because a pending request made them
+   * redundant.
+   *
+   * @return The number of requests that were not enqueued because a pending request made them
+   * redundant.
+   */
+  long getCoalescedCount();
+
+  /**
+   * Returns the number of times a request has been reported as stalled.
+   *
+   * @return The number of times a request has been reported as stalled.
+   */
+  long getStallCount();
+
+  /**
+   * Returns the mean queue wait (in ms).
+   *
+   * @return The mean queue wait (in ms).
+   */
+  double getQueueWaitMeanMillis();
+
+  /**
+   * Returns an upper bound for the 99th percentile of the queue wait (in ms).
+   *
+   * @return An upper bound for the 99th percentile of the queue wait (in ms).
+   */
+  double getQueueWait99thPercentileMillis();
+
+  /**
+   * Returns the longest queue wait (in ms).
+   *
+   * @return The longest queue wait (in ms).
+   */
+  double getQueueWaitMaxMillis();
+
+  /**
+   * Returns the mean response time (in ms).
+   *
+   * @return The mean response time (in ms).
+   */
+  double getResponseTimeMeanMillis();
+
+  /**
+   * Returns an upper bound for the 99th percentile of the response time (in ms).
+   *
+   * @return An upper bound for the 99th percentile of the response time (in ms).
+   */
+  double getResponseTime99thPercentileMillis();
+
+  /**
+   * Returns the longest response time (in ms).
+   *
+   * @return The longest response time (in ms).
+   */
+  double getResponseTimeMaxMillis();
+
+  /**
+   * Discards the recorded queue waits and response times.
+   */
+  void resetStatistics();
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import static org.opentcs.util.Assertions.checkArgument;
+
+/**
+ * Describes how long to wait for responses to {@link Request}s and how often to retransmit a
+ * request for which no response has been received.
+ * Optionally also describes after how long an unanswered request is considered stalled.
+ */
+public class RequestTimeoutPolicy {
+
+  /**
+   * The time (in ms) to wait for a response to the first transmission of a request.
+   */
+  private final long responseTimeout;
+  /**
+   * The maximum number of retransmissions before a request is considered failed.
+   */
+  private final int maxRetransmissions;
+  /**
+   * The factor by which the response timeout grows with every retransmission.
+   */
+  private final double backoffFactor;
+  /**
+   * The upper bound (in ms) for the response timeout.
+   */
+  private final long maxResponseTimeout;
+  /**
+   * The time (in ms) after which a request that has been sent but not answered is considered
+   * stalled, or 0, if requests are never considered stalled.
+   */
+  private final long stallThreshold;
+
+  /**
+   * Creates a new instance that never considers requests stalled.
+   *
+   * @param responseTimeout The time (in ms) to wait for a response to the first transmission of a
+   * request.
+   * @param maxRetransmissions The maximum number of retransmissions before a request is considered
+   * failed.
+   * @param backoffFactor The factor by which the response timeout grows with every
+   * retransmission.
+   * @param maxResponseTimeout The upper bound (in ms) for the response timeout.
+   */
+  public RequestTimeoutPolicy(long responseTimeout,
+                              int maxRetransmissions,
+                              double backoffFactor,
+                              long maxResponseTimeout) {
+    this(responseTimeout, maxRetransmissions, backoffFactor, maxResponseTimeout, 0);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param responseTimeout The time (in ms) to wait for a response to the first transmission of a
+   * request.
+   * @param maxRetransmissions The maximum number of retransmissions before a request is considered
+   * failed.
+   * @param backoffFactor The factor by which the response timeout grows with every
+   * retransmission.
+   * @param maxResponseTimeout The upper bound (in ms) for the response timeout.
+   * @param stallThreshold The time (in ms) after which a request that has been sent but not
+   * answered is considered stalled, or 0, if requests are never to be considered stalled.
+   */
+  public RequestTimeoutPolicy(long responseTimeout,
+                              int maxRetransmissions,
+                              double backoffFactor,
+                              long maxResponseTimeout,
+                              long stallThreshold) {
+    checkArgument(responseTimeout > 0, "responseTimeout must be positive: %d", responseTimeout);
+    checkArgument(maxRetransmissions >= 0,
+                  "maxRetransmissions must not be negative: %d",
+                  maxRetransmissions);
+    checkArgument(backoffFactor >= 1.0, "backoffFactor must be at least 1: %s", backoffFactor);
+    checkArgument(maxResponseTimeout >= responseTimeout,
+                  "maxResponseTimeout must not be lower than responseTimeout: %d < %d",
+                  maxResponseTimeout,
+                  responseTimeout);
+    checkArgument(stallThreshold >= 0, "stallThreshold must not be negative: %d", stallThreshold);
+    this.responseTimeout = responseTimeout;
+    this.maxRetransmissions = maxRetransmissions;
+    this.backoffFactor = backoffFactor;
+    this.maxResponseTimeout = maxResponseTimeout;
+    this.stallThreshold = stallThreshold;
+  }
+
+  /**
+   * Returns the time (in ms) to wait for a response to the first transmission of a request.
+   *
+   * @return The time (in ms) to wait for a response to the first transmission of a request.
+   */
+  public long getResponseTimeout() {
+    return responseTimeout;
+  }
+
+  /**
+   * Returns the maximum number of retransmissions before a request is considered failed.
+   *
+   * @return The maximum number of retransmissions before a request is considered failed.
+   */
+  public int getMaxRetransmissions() {
+    return maxRetransmissions;
+  }
+
+  /**
+   * Returns the factor by which the response timeout grows with every retransmission.
+   *
+   * @return The factor by which the response timeout grows with every retransmission.
+   */
+  public double getBackoffFactor() {
+    return backoffFactor;
+  }
+
+  /**
+   * Returns the upper bound (in ms) for the response timeout.
+   *
+   * @return The upper bound (in ms) for the response timeout.
+   */
+  public long getMaxResponseTimeout() {
+    return maxResponseTimeout;
+  }
+
+  /**
+   * Returns the time (in ms) after which a request that has been sent but not answered is
+   * considered stalled.
+   *
+   * @return The time (in ms) after which a request that has been sent but not answered is
+   * considered stalled, or 0, if requests are never considered stalled.
+   */
+  public long getStallThreshold() {
+    return stallThreshold;
+  }
+
+  /**
+   * Returns the time (in ms) to wait for a response to the given transmission of a request.
+   *
+   * @param transmission The transmission, with 0 being the initial transmission and every
+   * following number being a retransmission.
+   * @return The time (in ms) to wait for a response.
+   */
+  public long getResponseTimeout(int transmission) {
+    double timeout = responseTimeout * Math.pow(backoffFactor, transmission);
+    return (long) Math.min(timeout, maxResponseTimeout);
+  }
+
+  @Override
+  public String toString() {
+    return "RequestTimeoutPolicy{"
+        + "responseTimeout=" + responseTimeout + ", "
+        + "maxRetransmissions=" + maxRetransmissions + ", "
+        + "backoffFactor=" + backoffFactor + ", "
+        + "maxResponseTimeout=" + maxResponseTimeout + ", "
+        + "stallThreshold=" + stallThreshold + '}';
+  }
+}
@@ -9,6 +9,7 @@ package com.sxj.common.telegrams;
 
 import static java.util.Objects.requireNonNull;
 import javax.annotation.Nonnull;
+import static org.opentcs.util.Assertions.checkState;
 
 /**
  * A response represents an answer of a vehicle control to a request sent by the control system.
@@ -41,4 +42,57 @@ public abstract class Response
     requireNonNull(request, "request");
     return request.getId() == getId();
   }
+
+  /**
+   * Returns a response with this response's content that its receiver owns, i.e. that is neither
+   * reused for other telegrams nor returned to a pool, so it may be kept and read at any time.
+   * <p>
+   * This implementation returns this response, unless it was taken from a pool.
+   * Subclasses whose instances are pooled or reused, e.g. views of a buffer, must override this
+   * and return a copy.
+   * </p>
+   *
+   * @return A response with this response's content that its receiver owns.
+   * @throws IllegalStateException If this response was taken from a pool and the subclass does not
+   * override this method.
+   */
+  @Nonnull
+  public Response toOwned()
+      throws IllegalStateException {
+    checkState(!isPooled(),
+               "Pooled %s cannot be handed out: toOwned() not overridden",
+               getClass().getSimpleName());
+    return this;
+  }
+
+  /**
+   * Checks whether this response is a cumulative acknowledgement, i.e. whether it does not only
+   * answer the request it is a response to, but also every request sent before that one.
+   * <p>
+   * This implementation returns {@code false}.
+   * Subclasses may want to override this.
+   * </p>
+   *
+   * @return {@code true} if, and only if, this response is a cumulative acknowledgement.
+   */
+  public boolean isCumulativeAcknowledgement() {
+    return false;
+  }
+
+  /**
+   * Checks whether this response, being a cumulative acknowledgement, also answers the given
+   * request, which has been sent before the request this response is a response to.
+   * <p>
+   * This implementation returns the result of {@link #isCumulativeAcknowledgement()}, i.e. a
+   * cumulative acknowledgement answers all requests sent before.
+   * Subclasses may want to restrict this to the kinds of requests they acknowledge.
+   * </p>
+   *
+   * @param request The request sent before the request this response is a response to.
+   * @return {@code true} if, and only if, this response also answers the given request.
+   */
+  public boolean isCumulativeAcknowledgementOf(@Nonnull Request request) {
+    requireNonNull(request, "request");
+    return isCumulativeAcknowledgement();
+  }
 }
@@ -7,7 +7,9 @@
  */
 package com.sxj.common.telegrams;
 
+import io.netty.util.Recycler;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -22,6 +24,15 @@ public abstract class Telegram
    * The default value for a telegram's id.
    */
   public static final int ID_DEFAULT = 0;
+  /**
+   * Updates the reference count of pooled telegrams.
+   */
+  private static final AtomicIntegerFieldUpdater<Telegram> REFERENCE_COUNT
+      = AtomicIntegerFieldUpdater.newUpdater(Telegram.class, "referenceCount");
+  /**
+   * The raw content shared by all telegrams that do not keep their raw content.
+   */
+  private static final byte[] NO_RAW_CONTENT = new byte[0];
   /**
    * The telegram's raw content as sent via the network.
    */
@@ -30,6 +41,21 @@ public abstract class Telegram
    * The identifier for a specific telegram instance.
    */
   protected int id;
+  /**
+   * The handle for returning this telegram to the pool it was taken from, or {@code null}, if it
+   * was not taken from a pool.
+   */
+  private transient Recycler.Handle<Telegram> recyclerHandle;
+  /**
+   * Whether this telegram has been recycled and must not be used any more.
+   * Only set while recycle checks are enabled.
+   */
+  private transient volatile boolean recycled;
+  /**
+   * The number of references to this telegram that have not been released via {@link #recycle()},
+   * yet. Only maintained for telegrams taken from a pool.
+   */
+  private transient volatile int referenceCount;
 
   /**
    * Creates a new instance.
@@ -40,12 +66,21 @@ public abstract class Telegram
     this.rawContent = new byte[telegramLength];
   }
 
+  /**
+   * Creates a new instance that does not keep its raw content.
+   * Subclasses using this constructor have to override {@link #getRawContent()}.
+   */
+  protected Telegram() {
+    this.rawContent = NO_RAW_CONTENT;
+  }
+
   /**
    * Returns this telegram's actual raw content.
    *
    * @return This telegram's actual raw content.
    */
   public byte[] getRawContent() {
+    checkNotRecycled();
     return rawContent;
   }
 
@@ -55,9 +90,100 @@ public abstract class Telegram
    * @return The identifier for this specific telegram instance.
    */
   public int getId() {
+    checkNotRecycled();
     return id;
   }
 
+  /**
+   * Adds a reference to this telegram, which keeps it from being returned to its pool until it is
+   * released by another call to {@link #recycle()}.
+   * Meant for components that keep using a telegram after the one that took it from the pool may
+   * have recycled it, e.g. to encode it asynchronously.
+   * Does nothing if this telegram was not taken from a pool.
+   */
+  public void retain() {
+    checkNotRecycled();
+    if (recyclerHandle == null) {
+      return;
+    }
+    REFERENCE_COUNT.incrementAndGet(this);
+  }
+
+  /**
+   * Releases a reference to this telegram and returns it to the {@link TelegramPool} it was taken
+   * from once no references are left (see {@link #retain()}).
+   * The caller must not use the telegram any more after this.
+   * Does nothing if this telegram was not taken from a pool, or if all references to it have been
+   * released already, so a telegram released twice is not returned to its pool twice.
+   *
+   * @throws IllegalStateException If all references to this telegram have been released already
+   * and recycle checks are enabled.
+   */
+  public void recycle()
+      throws IllegalStateException {
+    if (recyclerHandle == null) {
+      return;
+    }
+    int references;
+    do {
+      references = referenceCount;
+      if (references <= 0) {
+        // Released more often than retained. Without recycle checks, this goes unnoticed.
+        checkNotRecycled();
+        return;
+      }
+    }
+    while (!REFERENCE_COUNT.compareAndSet(this, references, references - 1));
+    if (references > 1) {
+      return;
+    }
+    if (TelegramPool.isRecycleChecksEnabled()) {
+      // Keep the telegram out of the pool so any further use of it can be detected.
+      recycled = true;
+      return;
+    }
+    recyclerHandle.recycle(this);
+  }
+
+  /**
+   * Ensures this telegram has not been recycled, yet.
+   *
+   * @throws IllegalStateException If this telegram has been recycled while recycle checks were
+   * enabled.
+   */
+  protected final void checkNotRecycled()
+      throws IllegalStateException {
+    if (recycled) {
+      throw new IllegalStateException("Telegram used after being recycled: "
+          + getClass().getSimpleName());
+    }
+  }
+
+  /**
+   * Indicates whether this telegram was taken from a pool and is returned to it once recycled.
+   *
+   * @return Whether this telegram was taken from a pool.
+   */
+  protected final boolean isPooled() {
+    return recyclerHandle != null;
+  }
+
+  /**
+   * Sets the handle for returning this telegram to the pool it was taken from.
+   *
+   * @param recyclerHandle The handle.
+   */
+  void setRecyclerHandle(Recycler.Handle<Telegram> recyclerHandle) {
+    this.recyclerHandle = recyclerHandle;
+  }
+
+  /**
+   * Resets the reference count when this telegram is taken from its pool.
+   */
+  void onTakenFromPool() {
+    referenceCount = 1;
+  }
+
   // tag::documentation_checksumComp[]
   /**
    * Computes a checksum for the given raw content of a telegram.
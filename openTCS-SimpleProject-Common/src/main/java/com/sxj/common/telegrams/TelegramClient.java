@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+
+/**
+ * Sends {@link Request}s and provides their {@link Response}s asynchronously.
+ * <p>
+ * The returned futures complete with the matching response, or exceptionally with a
+ * {@link java.util.concurrent.TimeoutException} if no response arrived in time, or with a
+ * {@link java.util.concurrent.CancellationException} if the request was discarded before being
+ * answered.
+ * Cancelling a returned future withdraws the request if it has not been answered yet.
+ * </p>
+ * <p>
+ * The futures may be completed on any thread, usually the one processing incoming telegrams.
+ * Dependent actions should therefore not block.
+ * The futures are completed with responses owned by the caller (see {@link Response#toOwned()}),
+ * which are neither pooled nor reused for other telegrams, so they may be kept and read at any
+ * time.
+ * </p>
+ */
+public interface TelegramClient {
+
+  /**
+   * Sends the given request.
+   *
+   * @param <R> The type of the expected response.
+   * @param request The request to send. It must not be used by the caller afterwards.
+   * @param responseType The type of the expected response.
+   * @return A future completed with the response to the given request.
+   * If the response is not of the expected type, the future is completed exceptionally with a
+   * {@link ClassCastException}.
+   */
+  @Nonnull
+  <R extends Response> CompletableFuture<R> request(@Nonnull Request request,
+                                                    @Nonnull Class<R> responseType);
+
+  /**
+   * Sends the given request, giving up on it if it is not answered within the given time.
+   *
+   * @param <R> The type of the expected response.
+   * @param request The request to send. It must not be used by the caller afterwards.
+   * @param responseType The type of the expected response.
+   * @param timeout The maximum time to wait for the response, including the time the request is
+   * waiting to be sent.
+   * @param unit The timeout's unit.
+   * @return A future completed with the response to the given request.
+   * If the response is not of the expected type, the future is completed exceptionally with a
+   * {@link ClassCastException}.
+   */
+  @Nonnull
+  <R extends Response> CompletableFuture<R> request(@Nonnull Request request,
+                                                    @Nonnull Class<R> responseType,
+                                                    long timeout,
+                                                    @Nonnull TimeUnit unit);
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+/**
+ * A field in the payload of a telegram, as declared for a {@link TelegramLayout}.
+ * <p>
+ * Fields are declared as the constants of an enum, in the order in which they appear in the
+ * telegram.
+ * </p>
+ */
+public interface TelegramField {
+
+  /**
+   * The width of a field holding an unsigned byte.
+   */
+  int UINT8 = 1;
+  /**
+   * The width of a field holding an unsigned 16 bit integer (big-endian).
+   */
+  int UINT16 = 2;
+  /**
+   * The width of a field holding an unsigned 32 bit integer (big-endian).
+   * As its value does not fit into an {@code int}, it is read as the {@code int} with the same
+   * bits, which {@link Integer#toUnsignedLong(int)} converts to the unsigned value.
+   */
+  int UINT32 = 4;
+
+  /**
+   * Returns the number of bytes this field takes up in a telegram, i.e. {@link #UINT8},
+   * {@link #UINT16} or {@link #UINT32}.
+   *
+   * @return The number of bytes this field takes up in a telegram.
+   */
+  int getWidth();
+}
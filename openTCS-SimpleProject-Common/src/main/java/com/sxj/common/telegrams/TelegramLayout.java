@@ -0,0 +1,412 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import io.netty.buffer.ByteBuf;
+import static java.util.Objects.requireNonNull;
+import static org.opentcs.util.Assertions.checkArgument;
+
+/**
+ * Describes the byte layout of a telegram type and encodes, decodes and validates telegrams of
+ * that type.
+ * <p>
+ * Every telegram starts with a header (STX, SIZE, TYPE and a 16 bit id) and ends with a trailer
+ * (CHECKSUM and ETX).
+ * The payload between them is declared by the constants of an enum implementing
+ * {@link TelegramField}, in the order in which the fields appear in the telegram.
+ * The fields' offsets, the telegram's size and the checksum's position are derived from this
+ * declaration when the layout is created, so adding a field only means adding an enum constant.
+ * </p>
+ * <p>
+ * Fields are read and written in place, both in byte arrays and in buffers, without allocating.
+ * Reading from or writing to a buffer does not modify its reader or writer index, unless stated
+ * otherwise.
+ * </p>
+ *
+ * @param <F> The enum declaring the telegram's fields.
+ */
+public final class TelegramLayout<F extends Enum<F> & TelegramField> {
+
+  /**
+   * The byte starting every telegram (ASCII STX).
+   */
+  public static final byte STX = 0x02;
+  /**
+   * The byte ending every telegram (ASCII ETX).
+   */
+  public static final byte ETX = 0x03;
+  /**
+   * The length of the header (STX, SIZE, TYPE and the 16 bit id).
+   */
+  public static final int HEADER_LENGTH = 5;
+  /**
+   * The number of bytes in a telegram in addition to its payload (STX, SIZE, CHECKSUM and ETX).
+   */
+  public static final int FRAME_OVERHEAD = 4;
+  /**
+   * The offset of the type byte.
+   */
+  public static final int TYPE_POS = 2;
+  /**
+   * The offset of the id.
+   */
+  public static final int ID_POS = 3;
+  /**
+   * The telegram type.
+   */
+  private final byte type;
+  /**
+   * The telegram's length.
+   */
+  private final int telegramLength;
+  /**
+   * The offset of each field, indexed by the field's ordinal.
+   */
+  private final int[] offsets;
+  /**
+   * The width of each field, indexed by the field's ordinal.
+   */
+  private final int[] widths;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param type The telegram type.
+   * @param fields The fields, in the order in which they appear in the telegram.
+   */
+  private TelegramLayout(byte type, F[] fields) {
+    this.type = type;
+    this.offsets = new int[fields.length];
+    this.widths = new int[fields.length];
+    int offset = HEADER_LENGTH;
+    for (F field : fields) {
+      checkArgument(field.getWidth() == TelegramField.UINT8
+          || field.getWidth() == TelegramField.UINT16
+          || field.getWidth() == TelegramField.UINT32,
+                    "Unsupported width of field %s: %s",
+                    field,
+                    field.getWidth());
+      offsets[field.ordinal()] = offset;
+      widths[field.ordinal()] = field.getWidth();
+      offset += field.getWidth();
+    }
+    this.telegramLength = offset + 2;
+    checkArgument(telegramLength - FRAME_OVERHEAD <= 0xFF,
+                  "Payload too long for telegram type %s",
+                  type);
+  }
+
+  /**
+   * Creates a layout for the given telegram type, with the fields declared by the given enum.
+   *
+   * @param <F> The enum declaring the telegram's fields.
+   * @param type The telegram type.
+   * @param fields The enum declaring the telegram's fields.
+   * @return The layout.
+   */
+  public static <F extends Enum<F> & TelegramField> TelegramLayout<F> of(byte type,
+                                                                         Class<F> fields) {
+    requireNonNull(fields, "fields");
+    return new TelegramLayout<>(type, fields.getEnumConstants());
+  }
+
+  /**
+   * Returns the telegram type.
+   *
+   * @return The telegram type.
+   */
+  public byte getType() {
+    return type;
+  }
+
+  /**
+   * Returns the telegram's length.
+   *
+   * @return The telegram's length.
+   */
+  public int getTelegramLength() {
+    return telegramLength;
+  }
+
+  /**
+   * Returns the size of the payload (the raw content, without STX, SIZE, CHECKSUM and ETX).
+   *
+   * @return The size of the payload.
+   */
+  public int getPayloadLength() {
+    return telegramLength - FRAME_OVERHEAD;
+  }
+
+  /**
+   * Returns the position of the checksum byte.
+   *
+   * @return The position of the checksum byte.
+   */
+  public int getCheckSumPos() {
+    return telegramLength - 2;
+  }
+
+  /**
+   * Returns the offset of the given field in the telegram.
+   *
+   * @param field The field.
+   * @return The offset of the given field in the telegram.
+   */
+  public int getOffset(F field) {
+    return offsets[field.ordinal()];
+  }
+
+  /**
+   * Reads the id of the given telegram.
+   *
+   * @param telegramData The telegram's raw content.
+   * @return The id.
+   */
+  public int getId(byte[] telegramData) {
+    return readUnsignedShort(telegramData, ID_POS);
+  }
+
+  /**
+   * Reads the id of the telegram at the given index of the given buffer.
+   *
+   * @param in The buffer.
+   * @param index The index of the telegram's first byte.
+   * @return The id.
+   */
+  public int getId(ByteBuf in, int index) {
+    return in.getUnsignedShort(index + ID_POS);
+  }
+
+  /**
+   * Writes the id of the given telegram.
+   * Unlike {@link #writeFrame(byte[], int)}, this does not require the telegram to have the
+   * layout's length, so it also applies to telegrams whose declared fields are followed by data of
+   * variable length.
+   *
+   * @param telegramData The telegram's raw content.
+   * @param id The id.
+   */
+  public void setId(byte[] telegramData, int id) {
+    writeShort(telegramData, ID_POS, id);
+  }
+
+  /**
+   * Reads a field of the given telegram.
+   *
+   * @param telegramData The telegram's raw content.
+   * @param field The field.
+   * @return The field's (unsigned) value, or, for a {@link TelegramField#UINT32} field, the
+   * {@code int} with the same bits.
+   */
+  public int get(byte[] telegramData, F field) {
+    int offset = offsets[field.ordinal()];
+    switch (widths[field.ordinal()]) {
+      case TelegramField.UINT8:
+        return telegramData[offset] & 0xFF;
+      case TelegramField.UINT16:
+        return readUnsignedShort(telegramData, offset);
+      default:
+        return readUnsignedShort(telegramData, offset) << 16
+            | readUnsignedShort(telegramData, offset + 2);
+    }
+  }
+
+  /**
+   * Reads a field of the telegram at the given index of the given buffer.
+   *
+   * @param in The buffer.
+   * @param index The index of the telegram's first byte.
+   * @param field The field.
+   * @return The field's (unsigned) value, or, for a {@link TelegramField#UINT32} field, the
+   * {@code int} with the same bits.
+   */
+  public int get(ByteBuf in, int index, F field) {
+    int offset = index + offsets[field.ordinal()];
+    switch (widths[field.ordinal()]) {
+      case TelegramField.UINT8:
+        return in.getUnsignedByte(offset);
+      case TelegramField.UINT16:
+        return in.getUnsignedShort(offset);
+      default:
+        return in.getInt(offset);
+    }
+  }
+
+  /**
+   * Writes a field of the given telegram.
+   * Only as many of the value's lowest bits as the field is wide are written.
+   *
+   * @param telegramData The telegram's raw content.
+   * @param field The field.
+   * @param value The value.
+   */
+  public void set(byte[] telegramData, F field, int value) {
+    int offset = offsets[field.ordinal()];
+    switch (widths[field.ordinal()]) {
+      case TelegramField.UINT8:
+        telegramData[offset] = (byte) value;
+        break;
+      case TelegramField.UINT16:
+        writeShort(telegramData, offset, value);
+        break;
+      default:
+        writeShort(telegramData, offset, value >> 16);
+        writeShort(telegramData, offset + 2, value);
+    }
+  }
+
+  /**
+   * Writes a field of the telegram at the given index of the given buffer.
+   * Only as many of the value's lowest bits as the field is wide are written.
+   *
+   * @param out The buffer.
+   * @param index The index of the telegram's first byte.
+   * @param field The field.
+   * @param value The value.
+   */
+  public void set(ByteBuf out, int index, F field, int value) {
+    int offset = index + offsets[field.ordinal()];
+    switch (widths[field.ordinal()]) {
+      case TelegramField.UINT8:
+        out.setByte(offset, value);
+        break;
+      case TelegramField.UINT16:
+        out.setShort(offset, value);
+        break;
+      default:
+        out.setInt(offset, value);
+    }
+  }
+
+  /**
+   * Writes the header and ETX of a telegram with the given id to the given array, which must have
+   * the telegram's length.
+   * The fields are to be set afterwards, followed by {@link #seal(byte[])}.
+   *
+   * @param telegramData The array to write to.
+   * @param id The telegram's id.
+   */
+  public void writeFrame(byte[] telegramData, int id) {
+    checkArgument(telegramData.length == telegramLength,
+                  "Expected %s bytes, got %s",
+                  telegramLength,
+                  telegramData.length);
+    telegramData[0] = STX;
+    telegramData[1] = (byte) getPayloadLength();
+    telegramData[TYPE_POS] = type;
+    setId(telegramData, id);
+    telegramData[telegramLength - 1] = ETX;
+  }
+
+  /**
+   * Appends a telegram with the given id and all fields set to 0 to the given buffer, advancing
+   * its writer index.
+   * The fields are to be set afterwards, followed by {@link #seal(ByteBuf, int)}.
+   *
+   * @param out The buffer to write to.
+   * @param id The telegram's id.
+   * @return The index of the telegram's first byte in the buffer.
+   */
+  public int writeFrame(ByteBuf out, int id) {
+    int index = out.writerIndex();
+    out.writeByte(STX);
+    out.writeByte(getPayloadLength());
+    out.writeByte(type);
+    out.writeShort(id);
+    // The fields and the checksum
+    out.writeZero(telegramLength - HEADER_LENGTH - 1);
+    out.writeByte(ETX);
+    return index;
+  }
+
+  /**
+   * Computes and writes the checksum of the given telegram.
+   *
+   * @param telegramData The telegram's raw content.
+   */
+  public void seal(byte[] telegramData) {
+    telegramData[getCheckSumPos()] = Telegram.getCheckSum(telegramData);
+  }
+
+  /**
+   * Computes and writes the checksum of the telegram at the given index of the given buffer.
+   *
+   * @param out The buffer.
+   * @param index The index of the telegram's first byte.
+   */
+  public void seal(ByteBuf out, int index) {
+    out.setByte(index + getCheckSumPos(), computeCheckSum(out, index));
+  }
+
+  /**
+   * Checks whether the given data is a telegram of this layout, i.e. whether it has the right
+   * length, delimiters, size, type and checksum.
+   *
+   * @param telegramData The data to check.
+   * @return {@code true} if, and only if, the given data is a telegram of this layout.
+   */
+  public boolean isValid(byte[] telegramData) {
+    requireNonNull(telegramData, "telegramData");
+
+    return telegramData.length == telegramLength
+        && telegramData[0] == STX
+        && telegramData[1] == (byte) getPayloadLength()
+        && telegramData[TYPE_POS] == type
+        && telegramData[telegramLength - 1] == ETX
+        && telegramData[getCheckSumPos()] == Telegram.getCheckSum(telegramData);
+  }
+
+  /**
+   * Checks whether the given buffer contains a telegram of this layout at the given index, i.e.
+   * whether its delimiters, size, type and checksum are correct.
+   *
+   * @param in The buffer.
+   * @param index The index of the telegram's first byte.
+   * @return {@code true} if, and only if, the buffer contains a telegram of this layout at the
+   * given index.
+   */
+  public boolean isValid(ByteBuf in, int index) {
+    return index + telegramLength <= in.writerIndex()
+        && in.getByte(index) == STX
+        && in.getByte(index + 1) == (byte) getPayloadLength()
+        && in.getByte(index + TYPE_POS) == type
+        && in.getByte(index + telegramLength - 1) == ETX
+        && in.getByte(index + getCheckSumPos()) == computeCheckSum(in, index);
+  }
+
+  private byte computeCheckSum(ByteBuf in, int index) {
+    // The checksum covers the type, id and payload, i.e. all bytes between SIZE and CHECKSUM.
+    int checkSum = 0;
+    for (int i = index + TYPE_POS; i < index + getCheckSumPos(); i++) {
+      checkSum ^= in.getByte(i);
+    }
+    return (byte) checkSum;
+  }
+
+  private static int readUnsignedShort(byte[] data, int offset) {
+    return (data[offset] & 0xFF) << 8 | data[offset + 1] & 0xFF;
+  }
+
+  private static void writeShort(byte[] data, int offset, int value) {
+    data[offset] = (byte) (value >> 8);
+    data[offset + 1] = (byte) value;
+  }
+
+  /**
+   * Declares an empty payload, for telegrams that consist of the header and trailer only.
+   */
+  public enum NoFields
+      implements TelegramField {
+    ;
+
+    @Override
+    public int getWidth() {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import io.netty.util.Recycler;
+import static java.util.Objects.requireNonNull;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+/**
+ * A pool of reusable telegrams of one type.
+ * <p>
+ * Telegrams taken from a pool via {@link #get()} are returned to it via {@link Telegram#recycle()}
+ * once they are no longer used. A telegram that is {@link Telegram#retain() retained} is only
+ * returned once it has been recycled by every holder of a reference. Whoever takes a telegram
+ * from the pool must reset all of its content before using it.
+ * </p>
+ * <p>
+ * With recycle checks enabled (see {@link #setRecycleChecksEnabled(boolean)}), recycled telegrams
+ * are not reused but marked, so that any further use of them results in an
+ * {@link IllegalStateException}. This is meant for tests, where it reveals telegrams that are
+ * used after being recycled.
+ * </p>
+ *
+ * @param <T> The type of telegrams in this pool.
+ */
+public class TelegramPool<T extends Telegram> {
+
+  /**
+   * The name of the system property that enables recycle checks at startup.
+   */
+  public static final String PROPERTY_RECYCLE_CHECKS = "com.sxj.common.telegrams.recycleChecks";
+  /**
+   * Whether recycled telegrams are marked instead of being reused.
+   */
+  private static volatile boolean recycleChecksEnabled
+      = Boolean.getBoolean(PROPERTY_RECYCLE_CHECKS);
+  /**
+   * The actual pool.
+   */
+  private final Recycler<Telegram> recycler;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param telegramFactory Creates new telegrams if the pool is empty.
+   */
+  public TelegramPool(@Nonnull Supplier<T> telegramFactory) {
+    requireNonNull(telegramFactory, "telegramFactory");
+    this.recycler = new Recycler<Telegram>() {
+      @Override
+      protected Telegram newObject(Handle<Telegram> handle) {
+        Telegram telegram = telegramFactory.get();
+        telegram.setRecyclerHandle(handle);
+        return telegram;
+      }
+    };
+  }
+
+  /**
+   * Returns a telegram from this pool, or a new one if the pool is empty.
+   *
+   * @return A telegram from this pool, or a new one if the pool is empty.
+   */
+  @Nonnull
+  @SuppressWarnings("unchecked")
+  public T get() {
+    Telegram telegram = recycler.get();
+    telegram.onTakenFromPool();
+    return (T) telegram;
+  }
+
+  /**
+   * Indicates whether recycled telegrams are marked instead of being reused.
+   *
+   * @return Whether recycled telegrams are marked instead of being reused.
+   */
+  public static boolean isRecycleChecksEnabled() {
+    return recycleChecksEnabled;
+  }
+
+  /**
+   * Sets whether recycled telegrams are marked instead of being reused.
+   *
+   * @param recycleChecksEnabled Whether recycled telegrams are marked instead of being reused.
+   */
+  public static void setRecycleChecksEnabled(boolean recycleChecksEnabled) {
+    TelegramPool.recycleChecksEnabled = recycleChecksEnabled;
+  }
+}
@@ -16,8 +16,29 @@ public interface TelegramSender {
 
   /**
    * Sends the given {@link Request}.
+   * The request may be recycled as soon as this method returns, so an implementation that writes
+   * it asynchronously must {@link Telegram#retain() retain} it and recycle it once written.
    *
    * @param request The {@link Request} to be sent.
    */
   void sendTelegram(Request request);
+
+  /**
+   * Called when no response has been received for the given {@link Request}, even after it has
+   * been retransmitted as often as permitted.
+   * The request is recycled once this method returns, so it must not be retained.
+   *
+   * @param request The {@link Request} that failed.
+   */
+  void onRequestFailed(Request request);
+
+  /**
+   * Called when the given {@link Request} has been sent but not answered for longer than the
+   * stall threshold of the {@link RequestTimeoutPolicy}.
+   * The request may still be answered or retransmitted afterwards.
+   *
+   * @param request The stalled {@link Request}.
+   * @param outstandingMillis The time (in ms) since the request has first been sent.
+   */
+  void onRequestStalled(Request request, long outstandingMillis);
 }
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+  private LatencyHistogram histogram;
+
+  @Before
+  public void setUp() {
+    histogram = new LatencyHistogram();
+  }
+
+  @Test
+  public void shouldReportZeroWhenEmpty() {
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMeanMillis(), 0);
+    Assert.assertEquals(0, histogram.getPercentileMillis(99), 0);
+  }
+
+  @Test
+  public void shouldReportMeanAndMax() {
+    histogram.record(10, TimeUnit.MILLISECONDS);
+    histogram.record(30, TimeUnit.MILLISECONDS);
+
+    Assert.assertEquals(2, histogram.getCount());
+    Assert.assertEquals(20, histogram.getMeanMillis(), 0.001);
+    Assert.assertEquals(30, histogram.getMaxMillis(), 0.001);
+  }
+
+  @Test
+  public void shouldReportPercentilesWithinFactorOfTwo() {
+    for (int i = 0; i < 99; i++) {
+      histogram.record(1, TimeUnit.MILLISECONDS);
+    }
+    histogram.record(1, TimeUnit.SECONDS);
+
+    double p50 = histogram.getPercentileMillis(50);
+    Assert.assertTrue("p50 too low: " + p50, p50 >= 1);
+    Assert.assertTrue("p50 too high: " + p50, p50 <= 2);
+    Assert.assertEquals(1000, histogram.getPercentileMillis(100), 0.001);
+  }
+
+  @Test
+  public void shouldDiscardRecordedDurationsOnReset() {
+    histogram.record(10, TimeUnit.MILLISECONDS);
+    histogram.reset();
+
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMaxMillis(), 0);
+  }
+}
@@ -0,0 +1,565 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.*;
+
+/**
+ * Property-based test cases for the {@link RequestResponseMatcher}.
+ * <p>
+ * Every property is checked with a number of random operation sequences generated from fixed
+ * seeds, with requests being enqueued, answered (correctly, cumulatively or with unknown ids),
+ * timed out, retransmitted, withdrawn and cleared in arbitrary order.
+ * A failure reports the seed, so it can be reproduced.
+ * Withdrawing requests while they are being sent is checked with requests enqueued and withdrawn
+ * by several threads, which cannot be reproduced by a seed.
+ * </p>
+ */
+public class RequestResponseMatcherPropertiesTest {
+
+  /**
+   * The number of operation sequences generated per property.
+   */
+  private static final int TRIALS = 200;
+  /**
+   * The number of operations per sequence.
+   */
+  private static final int OPERATIONS = 500;
+  /**
+   * The number of runs with requests enqueued and withdrawn concurrently.
+   */
+  private static final int CONCURRENT_TRIALS = 50;
+  /**
+   * The number of threads enqueueing requests while others are withdrawn.
+   */
+  private static final int CONCURRENT_PRODUCERS = 3;
+
+  private ManualTimer timer;
+
+  private RecordingSender sender;
+
+  private List<TrackedRequest> requests;
+
+  @Test
+  public void shouldResolveEveryRequestExactlyOnce() {
+    for (int seed = 0; seed < TRIALS; seed++) {
+      Random random = new Random(seed);
+      RequestResponseMatcher matcher = createMatcher(random);
+
+      for (int i = 0; i < OPERATIONS; i++) {
+        performRandomOperation(matcher, random);
+        assertInvariants(seed, matcher);
+      }
+      matcher.clear();
+
+      Assert.assertEquals("Queue depth for seed " + seed, 0, matcher.getQueueDepth());
+      for (TrackedRequest request : requests) {
+        Assert.assertEquals("Recycling of " + request + " for seed " + seed,
+                            1,
+                            request.recycleCount.get());
+      }
+    }
+  }
+
+  @Test
+  public void shouldEventuallySendOrGiveUpOnEveryRequestWithoutClearing() {
+    for (int seed = 0; seed < TRIALS; seed++) {
+      Random random = new Random(seed);
+      RequestResponseMatcher matcher = createMatcher(random);
+
+      for (int i = 0; i < OPERATIONS; i++) {
+        enqueueRandomRequest(matcher, random);
+        if (random.nextBoolean()) {
+          answerRandomSentRequest(matcher, random);
+        }
+        assertInvariants(seed, matcher);
+      }
+      // Let every remaining request time out until none is left.
+      while (timer.expireNext()) {
+        assertInvariants(seed, matcher);
+      }
+
+      Assert.assertEquals("Queue depth for seed " + seed, 0, matcher.getQueueDepth());
+      for (TrackedRequest request : requests) {
+        Assert.assertEquals("Recycling of " + request + " for seed " + seed,
+                            1,
+                            request.recycleCount.get());
+      }
+    }
+  }
+
+  @Test
+  public void shouldResolveEveryRequestExactlyOnceWhenWithdrawnWhileBeingSent() {
+    for (int seed = 0; seed < TRIALS; seed++) {
+      Random random = new Random(seed);
+      RequestResponseMatcher matcher = createMatcher(random);
+      List<CompletableFuture<TestResponse>> futures = new ArrayList<>();
+      // Requests are also withdrawn while others are being sent, as if by another thread.
+      sender.onSend = () -> {
+        if (random.nextInt(4) == 0) {
+          withdrawRandomRequests(matcher, random, futures);
+        }
+      };
+
+      for (int i = 0; i < OPERATIONS; i++) {
+        int operation = random.nextInt(100);
+        if (operation < 15) {
+          TrackedRequest request = new TrackedRequest(false);
+          requests.add(request);
+          futures.add(matcher.request(request, TestResponse.class));
+        }
+        else if (operation < 25) {
+          withdrawRandomRequests(matcher, random, futures);
+        }
+        else {
+          performRandomOperation(matcher, random);
+        }
+        assertInvariants(seed, matcher);
+      }
+      matcher.clear();
+
+      Assert.assertEquals("Queue depth for seed " + seed, 0, matcher.getQueueDepth());
+      for (TrackedRequest request : requests) {
+        Assert.assertEquals("Recycling of " + request + " for seed " + seed,
+                            1,
+                            request.recycleCount.get());
+      }
+      for (CompletableFuture<TestResponse> future : futures) {
+        Assert.assertTrue("Future not completed for seed " + seed, future.isDone());
+      }
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void shouldNotMissRequestsWithdrawnWhileBeingSent()
+      throws InterruptedException {
+    for (int trial = 0; trial < CONCURRENT_TRIALS; trial++) {
+      Random random = new Random(trial);
+      setUpFixtures();
+      // Requests are never answered and never time out, so they are only ever sent once the ones
+      // waiting for a response have been withdrawn.
+      RequestResponseMatcher matcher
+          = new RequestResponseMatcher(sender, timer, new RequestTimeoutPolicy(100, 0, 2.0, 400));
+      matcher.setMaxRequestsInFlight(1 + random.nextInt(3));
+      Queue<TrackedRequest> enqueued = new ConcurrentLinkedQueue<>();
+      List<Thread> producers = new ArrayList<>();
+      for (int i = 0; i < CONCURRENT_PRODUCERS; i++) {
+        producers.add(new Thread(() -> {
+          for (int j = 0; j < OPERATIONS; j++) {
+            TrackedRequest request = new TrackedRequest(false);
+            matcher.enqueueRequest(request);
+            enqueued.add(request);
+          }
+        }));
+      }
+
+      producers.forEach(Thread::start);
+      while (producers.stream().anyMatch(Thread::isAlive)) {
+        withdrawRandomRequestsConcurrently(trial, matcher, random, enqueued);
+      }
+      for (Thread producer : producers) {
+        producer.join();
+      }
+      matcher.clear();
+
+      Assert.assertEquals("Queue depth in trial " + trial, 0, matcher.getQueueDepth());
+      for (TrackedRequest request : enqueued) {
+        Assert.assertEquals("Recycling of " + request + " in trial " + trial,
+                            1,
+                            request.recycleCount.get());
+      }
+    }
+  }
+
+  @Test
+  public void shouldMatchRequestsQuickly() {
+    setUpFixtures();
+    RequestResponseMatcher matcher
+        = new RequestResponseMatcher(sender, timer, new RequestTimeoutPolicy(100, 2, 2.0, 400));
+    sender.recording = false;
+
+    int iterations = 200_000;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      TrackedRequest request = new TrackedRequest(false);
+      matcher.enqueueRequest(request);
+      matcher.tryMatchWithCurrentRequest(new TestResponse(request.getId(), false));
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    double matchesPerSecond = (double) iterations / elapsedNanos * TimeUnit.SECONDS.toNanos(1);
+
+    Assert.assertEquals(0, matcher.getQueueDepth());
+    Assert.assertEquals(iterations, matcher.getResponseTimeHistogram().getCount());
+    Assert.assertTrue("Too slow: " + matchesPerSecond + " matches/s", matchesPerSecond > 50_000);
+  }
+
+  private RequestResponseMatcher createMatcher(Random random) {
+    setUpFixtures();
+    RequestResponseMatcher matcher
+        = new RequestResponseMatcher(sender,
+                                     timer,
+                                     new RequestTimeoutPolicy(100, random.nextInt(3), 2.0, 400));
+    matcher.setMaxRequestsInFlight(1 + random.nextInt(3));
+    return matcher;
+  }
+
+  private void setUpFixtures() {
+    timer = new ManualTimer();
+    sender = new RecordingSender();
+    requests = new ArrayList<>();
+  }
+
+  private void performRandomOperation(RequestResponseMatcher matcher, Random random) {
+    int operation = random.nextInt(100);
+    if (operation < 40) {
+      enqueueRandomRequest(matcher, random);
+    }
+    else if (operation < 70) {
+      answerRandomSentRequest(matcher, random);
+    }
+    else if (operation < 75) {
+      Assert.assertFalse(matcher.tryMatchWithCurrentRequest(
+          new TestResponse(-1 - random.nextInt(100), random.nextBoolean())
+      ));
+    }
+    else if (operation < 90) {
+      timer.expireRandom(random);
+    }
+    else if (operation < 95) {
+      matcher.retransmitCurrentRequest();
+    }
+    else if (operation < 98) {
+      matcher.checkForSendingNextRequest();
+    }
+    else {
+      matcher.clear();
+    }
+  }
+
+  private void enqueueRandomRequest(RequestResponseMatcher matcher, Random random) {
+    TrackedRequest request = new TrackedRequest(random.nextInt(3) == 0);
+    requests.add(request);
+    matcher.enqueueRequest(request);
+  }
+
+  private void answerRandomSentRequest(RequestResponseMatcher matcher, Random random) {
+    List<TrackedRequest> candidates = new ArrayList<>(sender.awaitingResponse());
+    if (candidates.isEmpty()) {
+      return;
+    }
+    TrackedRequest request = candidates.get(random.nextInt(candidates.size()));
+    // Answer with the id the request has been sent with most recently - or, sometimes, an older
+    // one, as if the response to an earlier transmission arrived late.
+    List<Integer> ids = sender.sentIds.get(request);
+    int id = random.nextInt(4) == 0 ? ids.get(random.nextInt(ids.size())) : ids.get(ids.size() - 1);
+    boolean matched = matcher.tryMatchWithCurrentRequest(
+        new TestResponse(id, random.nextInt(4) == 0)
+    );
+    if (id == request.getId()) {
+      Assert.assertTrue("Response to current id not matched", matched);
+    }
+    matcher.checkForSendingNextRequest();
+  }
+
+  private void withdrawRandomRequests(RequestResponseMatcher matcher,
+                                      Random random,
+                                      List<CompletableFuture<TestResponse>> futures) {
+    if (random.nextBoolean() || futures.isEmpty()) {
+      int divisor = 1 + random.nextInt(3);
+      matcher.withdrawRequests(request -> requests.indexOf(request) % divisor == 0);
+    }
+    else {
+      futures.get(random.nextInt(futures.size())).cancel(false);
+    }
+  }
+
+  private void withdrawRandomRequestsConcurrently(int trial,
+                                                  RequestResponseMatcher matcher,
+                                                  Random random,
+                                                  Queue<TrackedRequest> enqueued) {
+    List<TrackedRequest> enqueuedBefore = new ArrayList<>(enqueued);
+    Set<Request> tested = ConcurrentHashMap.newKeySet();
+    Set<Request> accepted = ConcurrentHashMap.newKeySet();
+    int parity = random.nextInt(2);
+    matcher.withdrawRequests(request -> {
+      tested.add(request);
+      if (System.identityHashCode(request) % 2 != parity) {
+        return false;
+      }
+      accepted.add(request);
+      return true;
+    });
+
+    // Any request enqueued before must have been found by the withdrawal and, if accepted, been
+    // withdrawn, whether it was pending or being sent by another thread at the time.
+    for (TrackedRequest request : enqueuedBefore) {
+      if (request.recycleCount.get() == 0) {
+        Assert.assertTrue("Request missed by withdrawal in trial " + trial,
+                          tested.contains(request));
+        Assert.assertFalse("Request accepted but not withdrawn in trial " + trial,
+                           accepted.contains(request));
+      }
+    }
+  }
+
+  private void assertInvariants(int seed, RequestResponseMatcher matcher) {
+    int unresolved = 0;
+    int awaitingResponse = 0;
+    for (TrackedRequest request : requests) {
+      Assert.assertTrue("Request recycled more than once for seed " + seed,
+                        request.recycleCount.get() <= 1);
+      if (request.recycleCount.get() == 0) {
+        unresolved++;
+        if (sender.sentIds.containsKey(request)) {
+          awaitingResponse++;
+        }
+      }
+    }
+    Assert.assertEquals("Queue depth for seed " + seed, unresolved, matcher.getQueueDepth());
+    Assert.assertTrue("Too many requests in flight for seed " + seed,
+                      awaitingResponse <= matcher.getMaxRequestsInFlight());
+    Assert.assertTrue("Recycled request sent for seed " + seed, !sender.sentRecycledRequest);
+  }
+
+  /**
+   * A request that counts how often it has been recycled.
+   */
+  private static class TrackedRequest
+      extends Request {
+
+    private final boolean telemetry;
+
+    private final AtomicInteger recycleCount = new AtomicInteger();
+
+    TrackedRequest(boolean telemetry) {
+      super(7);
+      this.telemetry = telemetry;
+    }
+
+    @Override
+    public void updateRequestContent(int telegramId) {
+      this.id = telegramId;
+    }
+
+    @Override
+    public Priority getPriority() {
+      return telemetry ? Priority.TELEMETRY : Priority.CONTROL;
+    }
+
+    @Override
+    public boolean isCoalescableWith(Request request) {
+      return telemetry && request instanceof TrackedRequest && ((TrackedRequest) request).telemetry;
+    }
+
+    @Override
+    public void recycle() {
+      recycleCount.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+      return "TrackedRequest{" + "id=" + id + ", telemetry=" + telemetry + '}';
+    }
+  }
+
+  /**
+   * A response with a given id.
+   */
+  private static class TestResponse
+      extends Response {
+
+    private final boolean cumulative;
+
+    TestResponse(int id, boolean cumulative) {
+      super(7);
+      this.id = id;
+      this.cumulative = cumulative;
+    }
+
+    @Override
+    public boolean isCumulativeAcknowledgement() {
+      return cumulative;
+    }
+  }
+
+  /**
+   * Assigns ids to sent requests, like the comm adapter does, and remembers them.
+   */
+  private static class RecordingSender
+      implements TelegramSender {
+
+    private final Map<TrackedRequest, List<Integer>> sentIds = new HashMap<>();
+
+    private int nextId;
+
+    private boolean sentRecycledRequest;
+
+    private boolean recording = true;
+
+    private Runnable onSend = () -> {
+    };
+
+    @Override
+    public synchronized void sendTelegram(Request request) {
+      request.updateRequestContent(nextId++);
+      TrackedRequest trackedRequest = (TrackedRequest) request;
+      if (trackedRequest.recycleCount.get() > 0) {
+        sentRecycledRequest = true;
+      }
+      if (recording) {
+        sentIds.computeIfAbsent(trackedRequest, key -> new ArrayList<>()).add(request.getId());
+      }
+      onSend.run();
+    }
+
+    @Override
+    public void onRequestFailed(Request request) {
+    }
+
+    @Override
+    public void onRequestStalled(Request request, long outstandingMillis) {
+    }
+
+    public List<TrackedRequest> awaitingResponse() {
+      List<TrackedRequest> result = new ArrayList<>();
+      for (TrackedRequest request : sentIds.keySet()) {
+        if (request.recycleCount.get() == 0) {
+          result.add(request);
+        }
+      }
+      // Keep the order independent of hash codes, so a seed always leads to the same sequence.
+      result.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+      return result;
+    }
+  }
+
+  /**
+   * A timer whose timeouts only expire when told to.
+   */
+  private static class ManualTimer
+      implements Timer {
+
+    private final List<ManualTimeout> timeouts = new ArrayList<>();
+
+    @Override
+    public synchronized Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+      ManualTimeout timeout = new ManualTimeout(this, task);
+      timeouts.add(timeout);
+      return timeout;
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+      return Collections.emptySet();
+    }
+
+    /**
+     * Lets a random pending timeout expire.
+     *
+     * @param random The source of randomness.
+     */
+    public void expireRandom(Random random) {
+      if (!timeouts.isEmpty()) {
+        timeouts.remove(random.nextInt(timeouts.size())).expire();
+      }
+    }
+
+    /**
+     * Lets the oldest pending timeout expire.
+     *
+     * @return {@code true} if a timeout expired, {@code false} if there is none.
+     */
+    public boolean expireNext() {
+      if (timeouts.isEmpty()) {
+        return false;
+      }
+      timeouts.remove(0).expire();
+      return true;
+    }
+
+    private synchronized void remove(ManualTimeout timeout) {
+      timeouts.remove(timeout);
+    }
+  }
+
+  /**
+   * A timeout of a {@link ManualTimer}.
+   */
+  private static class ManualTimeout
+      implements Timeout {
+
+    private final ManualTimer timer;
+
+    private final TimerTask task;
+
+    private boolean expired;
+
+    private boolean cancelled;
+
+    ManualTimeout(ManualTimer timer, TimerTask task) {
+      this.timer = timer;
+      this.task = task;
+    }
+
+    @Override
+    public Timer timer() {
+      return timer;
+    }
+
+    @Override
+    public TimerTask task() {
+      return task;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return expired;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (expired || cancelled) {
+        return false;
+      }
+      cancelled = true;
+      timer.remove(this);
+      return true;
+    }
+
+    private void expire() {
+      expired = true;
+      try {
+        task.run(this);
+      }
+      catch (Exception exc) {
+        throw new IllegalStateException(exc);
+      }
+    }
+  }
+}
@@ -10,11 +10,30 @@ package com.sxj.common.telegrams;
 import static com.google.common.base.Ascii.ETX;
 import static com.google.common.base.Ascii.STX;
 import com.google.common.primitives.Ints;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.junit.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Test cases for the {@link RequestResponseMatcher}.
@@ -27,10 +46,28 @@ public class RequestResponseMatcherTest {
 
   private TelegramSender sender;
 
+  private Timer timer;
+
+  private List<Timeout> scheduledTimeouts;
+
+  private List<Long> scheduledDelays;
+
   @Before
   public void setUp() {
     sender = mock(TelegramSender.class);
-    matcher = new RequestResponseMatcher(sender);
+    timer = mock(Timer.class);
+    scheduledTimeouts = Collections.synchronizedList(new ArrayList<>());
+    scheduledDelays = Collections.synchronizedList(new ArrayList<>());
+    when(timer.newTimeout(any(), anyLong(), any())).thenAnswer(invocation -> {
+      Timeout timeout = mock(Timeout.class);
+      when(timeout.task()).thenReturn(invocation.getArgument(0, TimerTask.class));
+      scheduledTimeouts.add(timeout);
+      scheduledDelays.add(invocation.getArgument(1, Long.class));
+      return timeout;
+    });
+    matcher = new RequestResponseMatcher(sender,
+                                         timer,
+                                         new RequestTimeoutPolicy(100, 2, 2.0, 300));
   }
 
   @Test
@@ -73,6 +110,536 @@ public class RequestResponseMatcherTest {
     verify(sender, times(2)).sendTelegram(any());
   }
 
+  @Test
+  public void shouldRetransmitRequestOnTimeout() {
+    Request request = createRequest(1);
+    matcher.enqueueRequest(request);
+    verify(sender, times(1)).sendTelegram(request);
+
+    expireLatestTimeout(1, 100);
+    verify(sender, times(2)).sendTelegram(request);
+    expireLatestTimeout(2, 200);
+    verify(sender, times(3)).sendTelegram(request);
+    Assert.assertEquals(2, matcher.getTimeoutCount());
+    Assert.assertEquals(2, matcher.getRetransmissionCount());
+    verify(sender, times(0)).onRequestFailed(any());
+  }
+
+  @Test
+  public void shouldGiveUpAndSendNextRequestAfterMaxRetransmissions() {
+    Request request1 = createRequest(1);
+    Request request2 = createRequest(2);
+    matcher.enqueueRequest(request1);
+    matcher.enqueueRequest(request2);
+
+    expireLatestTimeout(1, 100);
+    expireLatestTimeout(2, 200);
+    expireLatestTimeout(3, 300);
+
+    verify(sender, times(1)).onRequestFailed(request1);
+    verify(sender, times(1)).sendTelegram(request2);
+    Assert.assertEquals(request2, matcher.peekCurrentRequest().get());
+    Assert.assertEquals(1, matcher.getFailureCount());
+  }
+
+  @Test
+  public void shouldIgnoreTimeoutOfAnsweredRequest() {
+    matcher.enqueueRequest(createRequest(1));
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+
+    expireLatestTimeout(1, 100);
+    verify(sender, times(1)).sendTelegram(any());
+    Assert.assertEquals(0, matcher.getTimeoutCount());
+  }
+
+  @Test
+  public void shouldSendControlRequestsBeforeTelemetryRequests() {
+    Request request1 = createRequest(1);
+    Request telemetryRequest = createTelemetryRequest(2);
+    Request controlRequest = createRequest(3);
+    matcher.enqueueRequest(request1);
+    matcher.enqueueRequest(telemetryRequest);
+    matcher.enqueueRequest(controlRequest);
+
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+    matcher.checkForSendingNextRequest();
+    verify(sender, times(1)).sendTelegram(controlRequest);
+    verify(sender, times(0)).sendTelegram(telemetryRequest);
+
+    matcher.tryMatchWithCurrentRequest(createResponse(3));
+    matcher.checkForSendingNextRequest();
+    verify(sender, times(1)).sendTelegram(telemetryRequest);
+  }
+
+  @Test
+  public void shouldCoalesceRedundantRequests() {
+    Request request1 = createRequest(1);
+    matcher.enqueueRequest(request1);
+    matcher.enqueueRequest(createTelemetryRequest(2));
+    matcher.enqueueRequest(createTelemetryRequest(3));
+    matcher.enqueueRequest(createTelemetryRequest(4));
+    Assert.assertEquals(2, matcher.getCoalescedCount());
+
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+    matcher.checkForSendingNextRequest();
+    matcher.tryMatchWithCurrentRequest(createResponse(2));
+    matcher.checkForSendingNextRequest();
+    verify(sender, times(2)).sendTelegram(any());
+    Assert.assertFalse(matcher.peekCurrentRequest().isPresent());
+  }
+
+  @Test
+  public void shouldCoalesceWithRequestWaitingForResponse() {
+    matcher.enqueueRequest(createTelemetryRequest(1));
+    matcher.enqueueRequest(createTelemetryRequest(2));
+    verify(sender, times(1)).sendTelegram(any());
+    Assert.assertEquals(1, matcher.getCoalescedCount());
+
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+    matcher.enqueueRequest(createTelemetryRequest(3));
+    verify(sender, times(2)).sendTelegram(any());
+    Assert.assertEquals(1, matcher.getCoalescedCount());
+  }
+
+  @Test
+  public void shouldRetransmitCurrentRequestOnDemand() {
+    Request request1 = createRequest(1);
+    matcher.enqueueRequest(request1);
+    matcher.enqueueRequest(createRequest(2));
+
+    matcher.retransmitCurrentRequest();
+    verify(sender, times(2)).sendTelegram(request1);
+    verify(sender, times(2)).sendTelegram(any());
+    Assert.assertEquals(0, matcher.getRetransmissionCount());
+  }
+
+  @Test
+  public void shouldSendEveryRequestExactlyOnceWhenEnqueuedConcurrently()
+      throws InterruptedException {
+    int producerCount = 4;
+    int requestsPerProducer = 250;
+    Queue<Request> sentRequests = new ConcurrentLinkedQueue<>();
+    TelegramSender recordingSender = mock(TelegramSender.class);
+    doAnswer(invocation -> sentRequests.add(invocation.getArgument(0)))
+        .when(recordingSender).sendTelegram(any());
+    matcher = new RequestResponseMatcher(recordingSender,
+                                         timer,
+                                         new RequestTimeoutPolicy(100, 2, 2.0, 300));
+
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < producerCount; i++) {
+      int firstCounter = i * requestsPerProducer;
+      Thread producer = new Thread(() -> {
+        try {
+          start.await();
+        }
+        catch (InterruptedException exc) {
+          throw new IllegalStateException(exc);
+        }
+        for (int counter = firstCounter; counter < firstCounter + requestsPerProducer; counter++) {
+          matcher.enqueueRequest(createRequest(counter));
+        }
+      });
+      producer.start();
+      producers.add(producer);
+    }
+    start.countDown();
+
+    // Answer every sent request while the producers are still enqueuing.
+    Set<Integer> answeredCounters = new HashSet<>();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (answeredCounters.size() < producerCount * requestsPerProducer
+        && System.nanoTime() < deadline) {
+      Request request = sentRequests.poll();
+      if (request == null) {
+        Thread.yield();
+        continue;
+      }
+      Assert.assertTrue("Request sent more than once: " + request,
+                        answeredCounters.add(request.getId()));
+      Assert.assertTrue(matcher.tryMatchWithCurrentRequest(createResponse(request.getId())));
+      matcher.checkForSendingNextRequest();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    Assert.assertEquals(producerCount * requestsPerProducer, answeredCounters.size());
+    Assert.assertTrue(sentRequests.isEmpty());
+    Assert.assertFalse(matcher.peekCurrentRequest().isPresent());
+  }
+
+  @Test
+  public void shouldKeepOneTelemetryRequestWhenEnqueuedConcurrently()
+      throws InterruptedException {
+    int producerCount = 4;
+    int requestsPerProducer = 250;
+    matcher.enqueueRequest(createRequest(-1));
+
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < producerCount; i++) {
+      Thread producer = new Thread(() -> {
+        try {
+          start.await();
+        }
+        catch (InterruptedException exc) {
+          throw new IllegalStateException(exc);
+        }
+        for (int counter = 0; counter < requestsPerProducer; counter++) {
+          matcher.enqueueRequest(createTelemetryRequest(counter));
+        }
+      });
+      producer.start();
+      producers.add(producer);
+    }
+    start.countDown();
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    Assert.assertEquals(producerCount * requestsPerProducer - 1, matcher.getCoalescedCount());
+    Assert.assertTrue(matcher.tryMatchWithCurrentRequest(createResponse(-1)));
+    Assert.assertTrue(matcher.peekCurrentRequest().isPresent());
+    matcher.checkForSendingNextRequest();
+    Assert.assertTrue(matcher.tryMatchWithCurrentRequest(
+        createResponse(matcher.peekCurrentRequest().get().getId())
+    ));
+    Assert.assertFalse(matcher.peekCurrentRequest().isPresent());
+  }
+
+  @Test
+  public void shouldRecycleAnsweredAndRedundantRequests() {
+    TelegramPool.setRecycleChecksEnabled(true);
+    try {
+      TelegramPool<Request> pool = new TelegramPool<>(() -> createTelemetryRequest(1));
+      Request request1 = pool.get();
+      Request request2 = pool.get();
+      matcher.enqueueRequest(request1);
+      matcher.enqueueRequest(request2);
+
+      Assert.assertTrue(matcher.tryMatchWithCurrentRequest(createResponse(1)));
+      Assert.assertEquals(1, matcher.getCoalescedCount());
+      assertRecycled(request1);
+      assertRecycled(request2);
+    }
+    finally {
+      TelegramPool.setRecycleChecksEnabled(false);
+    }
+  }
+
+  @Test
+  public void shouldReportStalledRequest() {
+    matcher = new RequestResponseMatcher(sender,
+                                         timer,
+                                         new RequestTimeoutPolicy(100, 2, 2.0, 300, 250));
+    Request request = createRequest(1);
+    matcher.enqueueRequest(request);
+    Assert.assertEquals(2, scheduledTimeouts.size());
+    Assert.assertEquals(250, (long) scheduledDelays.get(0));
+
+    expireTimeout(0);
+    verify(sender, times(1)).onRequestStalled(eq(request), anyLong());
+    Assert.assertEquals(1, matcher.getStallCount());
+  }
+
+  @Test
+  public void shouldNotReportAnsweredRequestAsStalled() {
+    matcher = new RequestResponseMatcher(sender,
+                                         timer,
+                                         new RequestTimeoutPolicy(100, 2, 2.0, 300, 250));
+    matcher.enqueueRequest(createRequest(1));
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+
+    expireTimeout(0);
+    verify(sender, times(0)).onRequestStalled(any(), anyLong());
+    Assert.assertEquals(0, matcher.getStallCount());
+  }
+
+  @Test
+  public void shouldTrackQueueDepthAndLatencies() {
+    matcher.enqueueRequest(createRequest(1));
+    matcher.enqueueRequest(createRequest(2));
+    matcher.enqueueRequest(createRequest(3));
+    Assert.assertEquals(3, matcher.getQueueDepth());
+    Assert.assertEquals(1, matcher.getQueueWaitHistogram().getCount());
+
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+    matcher.checkForSendingNextRequest();
+    Assert.assertEquals(2, matcher.getQueueDepth());
+    Assert.assertEquals(2, matcher.getQueueWaitHistogram().getCount());
+    Assert.assertEquals(1, matcher.getResponseTimeHistogram().getCount());
+
+    matcher.clear();
+    Assert.assertEquals(0, matcher.getQueueDepth());
+    Assert.assertEquals(0, matcher.getOldestPendingAgeMillis());
+  }
+
+  @Test
+  public void shouldCompleteFutureWithMatchingResponse() {
+    CompletableFuture<Response> future = matcher.request(createRequest(1), Response.class);
+    verify(sender, times(1)).sendTelegram(any());
+    Assert.assertFalse(future.isDone());
+
+    Response response = createResponse(1);
+    matcher.tryMatchWithCurrentRequest(response);
+    Assert.assertSame(response, future.getNow(null));
+  }
+
+  @Test
+  public void shouldCompleteFutureWithResponseOwnedByCaller() {
+    CompletableFuture<Response> future = matcher.request(createRequest(1), Response.class);
+    ReusedResponse reusedResponse = new ReusedResponse();
+
+    matcher.tryMatchWithCurrentRequest(reusedResponse.reuseFor(1));
+    // The next telegram is decoded into the same instance.
+    reusedResponse.reuseFor(2);
+
+    Response response = future.getNow(null);
+    Assert.assertNotSame(reusedResponse, response);
+    Assert.assertEquals(1, response.getId());
+  }
+
+  @Test
+  public void shouldCompleteFutureExceptionallyForUnexpectedResponseType() {
+    CompletableFuture<TestResponse> future = matcher.request(createRequest(1), TestResponse.class);
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+
+    Assert.assertTrue(future.isCompletedExceptionally());
+  }
+
+  @Test
+  public void shouldCompleteFutureExceptionallyAfterMaxRetransmissions() {
+    CompletableFuture<Response> future = matcher.request(createRequest(1), Response.class);
+
+    expireLatestTimeout(1, 100);
+    expireLatestTimeout(2, 200);
+    Assert.assertFalse(future.isDone());
+    expireLatestTimeout(3, 300);
+
+    try {
+      future.join();
+      Assert.fail("Future has not been completed exceptionally.");
+    }
+    catch (CompletionException exc) {
+      Assert.assertTrue(exc.getCause() instanceof TimeoutException);
+    }
+  }
+
+  @Test
+  public void shouldNotCoalesceRequestWithFuture() {
+    matcher.enqueueRequest(createTelemetryRequest(1));
+    CompletableFuture<Response> future = matcher.request(createTelemetryRequest(2),
+                                                         Response.class);
+    Assert.assertEquals(0, matcher.getCoalescedCount());
+
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+    matcher.checkForSendingNextRequest();
+    matcher.tryMatchWithCurrentRequest(createResponse(2));
+    Assert.assertTrue(future.isDone());
+  }
+
+  @Test
+  public void shouldWithdrawPendingRequestWhenFutureIsCancelled() {
+    Request request1 = createRequest(1);
+    Request request2 = createRequest(2);
+    matcher.enqueueRequest(request1);
+    CompletableFuture<Response> future = matcher.request(request2, Response.class);
+
+    future.cancel(false);
+    Assert.assertEquals(1, matcher.getQueueDepth());
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+    matcher.checkForSendingNextRequest();
+    verify(sender, times(0)).sendTelegram(request2);
+  }
+
+  @Test
+  public void shouldWithdrawSentRequestWhenFutureIsCancelled() {
+    Request request1 = createRequest(1);
+    Request request2 = createRequest(2);
+    CompletableFuture<Response> future = matcher.request(request1, Response.class);
+    matcher.enqueueRequest(request2);
+
+    future.cancel(false);
+    verify(sender, times(1)).sendTelegram(request2);
+    Assert.assertFalse(matcher.tryMatchWithCurrentRequest(createResponse(1)));
+  }
+
+  @Test
+  public void shouldWithdrawPendingAndSentRequestsAcceptedByFilter() {
+    Request request1 = createRequest(1);
+    Request request2 = createRequest(2);
+    Request request3 = createTelemetryRequest(3);
+    matcher.enqueueRequest(request1);
+    matcher.enqueueRequest(request2);
+    matcher.enqueueRequest(request3);
+
+    int withdrawnCount
+        = matcher.withdrawRequests(request -> request.getPriority() == Request.Priority.CONTROL);
+    Assert.assertEquals(2, withdrawnCount);
+    verify(sender, times(1)).sendTelegram(request3);
+    verify(sender, times(0)).sendTelegram(request2);
+    Assert.assertFalse(matcher.tryMatchWithCurrentRequest(createResponse(1)));
+    Assert.assertEquals(1, matcher.getQueueDepth());
+  }
+
+  @Test
+  public void shouldCompleteFutureExceptionallyOnClientTimeout() {
+    CompletableFuture<Response> future = matcher.request(createRequest(1),
+                                                         Response.class,
+                                                         50,
+                                                         TimeUnit.MILLISECONDS);
+    // The client timeout is scheduled after the response deadline of the first transmission.
+    Assert.assertEquals(50, (long) scheduledDelays.get(1));
+    expireTimeout(1);
+
+    Assert.assertTrue(future.isCompletedExceptionally());
+    Assert.assertFalse(matcher.peekCurrentRequest().isPresent());
+  }
+
+  @Test
+  public void shouldCancelFutureOnClear() {
+    CompletableFuture<Response> future1 = matcher.request(createRequest(1), Response.class);
+    CompletableFuture<Response> future2 = matcher.request(createRequest(2), Response.class);
+
+    matcher.clear();
+    Assert.assertTrue(future1.isCompletedExceptionally());
+    Assert.assertTrue(future2.isCompletedExceptionally());
+  }
+
+  @Test
+  public void shouldSendComposedRequestAfterResponse() {
+    Request request2 = createRequest(2);
+    CompletableFuture<Response> future
+        = matcher.request(createRequest(1), Response.class)
+            .thenCompose(response -> matcher.request(request2, Response.class));
+    verify(sender, times(0)).sendTelegram(request2);
+
+    matcher.tryMatchWithCurrentRequest(createResponse(1));
+    verify(sender, times(1)).sendTelegram(request2);
+    Response response2 = createResponse(2);
+    matcher.tryMatchWithCurrentRequest(response2);
+    Assert.assertSame(response2, future.getNow(null));
+  }
+
+  @Test
+  public void shouldSendUpToMaxRequestsInFlight() {
+    matcher.setMaxRequestsInFlight(3);
+    Request request4 = createRequest(4);
+    matcher.enqueueRequest(createRequest(1));
+    matcher.enqueueRequest(createRequest(2));
+    matcher.enqueueRequest(createRequest(3));
+    matcher.enqueueRequest(request4);
+    verify(sender, times(3)).sendTelegram(any());
+    verify(sender, times(0)).sendTelegram(request4);
+
+    Assert.assertTrue(matcher.tryMatchWithCurrentRequest(createResponse(2)));
+    matcher.checkForSendingNextRequest();
+    verify(sender, times(1)).sendTelegram(request4);
+    Assert.assertEquals(3, matcher.getQueueDepth());
+  }
+
+  @Test
+  public void shouldRetireAllEarlierRequestsOnCumulativeAcknowledgement() {
+    matcher.setMaxRequestsInFlight(3);
+    Request request1 = createRequest(1);
+    Request request2 = createRequest(2);
+    Request request3 = createRequest(3);
+    matcher.enqueueRequest(request1);
+    matcher.enqueueRequest(request2);
+    matcher.enqueueRequest(request3);
+
+    Assert.assertTrue(matcher.tryMatchWithCurrentRequest(createCumulativeAcknowledgement(2)));
+    Assert.assertEquals(1, matcher.getQueueDepth());
+    Assert.assertEquals(request3, matcher.peekCurrentRequest().get());
+    Assert.assertEquals(2, matcher.getResponseTimeHistogram().getCount());
+  }
+
+  @Test
+  public void shouldOnlyRetireMatchingRequestOnPerRequestResponse() {
+    matcher.setMaxRequestsInFlight(3);
+    Request request1 = createRequest(1);
+    matcher.enqueueRequest(request1);
+    matcher.enqueueRequest(createRequest(2));
+    matcher.enqueueRequest(createRequest(3));
+
+    Assert.assertTrue(matcher.tryMatchWithCurrentRequest(createResponse(2)));
+    Assert.assertEquals(2, matcher.getQueueDepth());
+    Assert.assertEquals(request1, matcher.peekCurrentRequest().get());
+  }
+
+  @Test
+  public void shouldCompleteFuturesOfAcknowledgedRequests() {
+    matcher.setMaxRequestsInFlight(2);
+    CompletableFuture<Response> future1 = matcher.request(createRequest(1), Response.class);
+    CompletableFuture<Response> future2 = matcher.request(createRequest(2), Response.class);
+
+    Response acknowledgement = createCumulativeAcknowledgement(2);
+    matcher.tryMatchWithCurrentRequest(acknowledgement);
+    Assert.assertSame(acknowledgement, future1.getNow(null));
+    Assert.assertSame(acknowledgement, future2.getNow(null));
+  }
+
+  @Test
+  public void shouldRetransmitOnlyTimedOutRequestInFlight() {
+    matcher.setMaxRequestsInFlight(2);
+    Request request1 = createRequest(1);
+    Request request2 = createRequest(2);
+    matcher.enqueueRequest(request1);
+    matcher.enqueueRequest(request2);
+
+    // The response deadline of the first request
+    expireTimeout(0);
+    verify(sender, times(2)).sendTelegram(request1);
+    verify(sender, times(1)).sendTelegram(request2);
+    // The retransmitted request is now the most recently sent one.
+    Assert.assertEquals(request2, matcher.peekCurrentRequest().get());
+  }
+
+  private void assertRecycled(Request request) {
+    try {
+      request.getId();
+      Assert.fail("Request has not been recycled: " + request);
+    }
+    catch (IllegalStateException exc) {
+      // Expected
+    }
+  }
+
+  /**
+   * Lets the given scheduled timeout expire.
+   *
+   * @param index The index of the timeout in the order of scheduling
+   */
+  private void expireTimeout(int index) {
+    Timeout timeout = scheduledTimeouts.get(index);
+    try {
+      timeout.task().run(timeout);
+    }
+    catch (Exception exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  /**
+   * Lets the most recently scheduled response deadline expire.
+   *
+   * @param scheduledTimeouts The number of deadlines scheduled so far
+   * @param expectedDelay The expected delay of the most recent deadline
+   */
+  private void expireLatestTimeout(int scheduledTimeouts, long expectedDelay) {
+    Assert.assertEquals(scheduledTimeouts, this.scheduledTimeouts.size());
+    Assert.assertEquals(expectedDelay, (long) scheduledDelays.get(scheduledTimeouts - 1));
+    Timeout timeout = this.scheduledTimeouts.get(scheduledTimeouts - 1);
+    try {
+      timeout.task().run(timeout);
+    }
+    catch (Exception exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+
   /**
    * Creates an response with it's byte contents.
    *
@@ -100,6 +667,33 @@ public class RequestResponseMatcherTest {
     return request;
   }
 
+  /**
+   * Creates a telemetry request that is made redundant by any other telemetry request.
+   *
+   * @param telegramCounter The telegram counter in the request
+   * @return The request
+   */
+  private Request createTelemetryRequest(int telegramCounter) {
+    Request request = new Request(7) {
+      @Override
+      public void updateRequestContent(int telegramId) {
+        this.id = telegramId;
+      }
+
+      @Override
+      public Priority getPriority() {
+        return Priority.TELEMETRY;
+      }
+
+      @Override
+      public boolean isCoalescableWith(Request request) {
+        return request.getPriority() == Priority.TELEMETRY;
+      }
+    };
+    request.updateRequestContent(telegramCounter);
+    return request;
+  }
+
   /**
    * Creates a response with the given content.
    *
@@ -127,4 +721,53 @@ public class RequestResponseMatcherTest {
     System.arraycopy(telegramData, 0, response.rawContent, 0, telegramSize);
     return response;
   }
+
+  /**
+   * Creates a cumulative acknowledgement with the given telegram counter.
+   *
+   * @param telegramCounter The telegram counter
+   * @return The response
+   */
+  private Response createCumulativeAcknowledgement(int telegramCounter) {
+    Response response = new Response(7) {
+      @Override
+      public boolean isCumulativeAcknowledgement() {
+        return true;
+      }
+    };
+    response.id = telegramCounter;
+    return response;
+  }
+
+  /**
+   * A response type other than the ones created by {@link #createResponse(int)}.
+   */
+  private static class TestResponse
+      extends Response {
+
+    TestResponse() {
+      super(7);
+    }
+  }
+
+  /**
+   * A response that is reused for every telegram, like a view of a decoder's buffer.
+   */
+  private class ReusedResponse
+      extends Response {
+
+    ReusedResponse() {
+      super(7);
+    }
+
+    ReusedResponse reuseFor(int telegramCounter) {
+      id = telegramCounter;
+      return this;
+    }
+
+    @Override
+    public Response toOwned() {
+      return createResponse(id);
+    }
+  }
 }
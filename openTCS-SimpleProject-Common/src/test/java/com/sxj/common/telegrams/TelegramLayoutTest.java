@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.*;
+
+/**
+ * Test cases for the {@link TelegramLayout}.
+ */
+public class TelegramLayoutTest {
+
+  private static final byte TYPE = 9;
+
+  private TelegramLayout<TestField> layout;
+
+  @Before
+  public void setUp() {
+    layout = TelegramLayout.of(TYPE, TestField.class);
+  }
+
+  @Test
+  public void shouldDeriveOffsetsAndLengthFromFields() {
+    Assert.assertEquals(5, layout.getOffset(TestField.FIRST));
+    Assert.assertEquals(7, layout.getOffset(TestField.SECOND));
+    Assert.assertEquals(8, layout.getOffset(TestField.THIRD));
+    Assert.assertEquals(10, layout.getCheckSumPos());
+    Assert.assertEquals(12, layout.getTelegramLength());
+    Assert.assertEquals(8, layout.getPayloadLength());
+  }
+
+  @Test
+  public void shouldDeriveLengthWithoutFields() {
+    TelegramLayout<TelegramLayout.NoFields> emptyLayout
+        = TelegramLayout.of(TYPE, TelegramLayout.NoFields.class);
+
+    Assert.assertEquals(7, emptyLayout.getTelegramLength());
+    Assert.assertEquals(3, emptyLayout.getPayloadLength());
+  }
+
+  @Test
+  public void shouldEncodeSameTelegramIntoArrayAndBuffer() {
+    byte[] telegramData = new byte[layout.getTelegramLength()];
+    layout.writeFrame(telegramData, 0xBEEF);
+    layout.set(telegramData, TestField.FIRST, 0x1234);
+    layout.set(telegramData, TestField.SECOND, 'X');
+    layout.set(telegramData, TestField.THIRD, 0xFFFF);
+    layout.seal(telegramData);
+
+    ByteBuf buffer = Unpooled.buffer();
+    buffer.writeByte(0x55);
+    int index = layout.writeFrame(buffer, 0xBEEF);
+    layout.set(buffer, index, TestField.FIRST, 0x1234);
+    layout.set(buffer, index, TestField.SECOND, 'X');
+    layout.set(buffer, index, TestField.THIRD, 0xFFFF);
+    layout.seal(buffer, index);
+
+    Assert.assertEquals(1, index);
+    Assert.assertEquals(1 + layout.getTelegramLength(), buffer.writerIndex());
+    byte[] encoded = new byte[layout.getTelegramLength()];
+    buffer.getBytes(index, encoded);
+    Assert.assertArrayEquals(telegramData, encoded);
+    Assert.assertEquals(Telegram.getCheckSum(telegramData),
+                        telegramData[layout.getCheckSumPos()]);
+  }
+
+  @Test
+  public void shouldDecodeFieldsAsUnsignedValues() {
+    byte[] telegramData = new byte[layout.getTelegramLength()];
+    layout.writeFrame(telegramData, 0xFFFE);
+    layout.set(telegramData, TestField.FIRST, 0xABCD);
+    layout.set(telegramData, TestField.SECOND, 0xF0);
+    layout.seal(telegramData);
+    ByteBuf buffer = Unpooled.wrappedBuffer(telegramData);
+
+    Assert.assertEquals(0xFFFE, layout.getId(telegramData));
+    Assert.assertEquals(0xABCD, layout.get(telegramData, TestField.FIRST));
+    Assert.assertEquals(0xF0, layout.get(telegramData, TestField.SECOND));
+    Assert.assertEquals(0xFFFE, layout.getId(buffer, 0));
+    Assert.assertEquals(0xABCD, layout.get(buffer, 0, TestField.FIRST));
+    Assert.assertEquals(0xF0, layout.get(buffer, 0, TestField.SECOND));
+  }
+
+  @Test
+  public void shouldAccessFieldsOfTelegramsLongerThanLayout() {
+    // E.g. a telegram whose declared fields are followed by data of variable length
+    byte[] telegramData = new byte[layout.getTelegramLength() + 3];
+    layout.setId(telegramData, 0xFFFE);
+    layout.set(telegramData, TestField.FIRST, 0xABCD);
+
+    Assert.assertEquals(0xFFFE, layout.getId(telegramData));
+    Assert.assertEquals(0xABCD, layout.get(telegramData, TestField.FIRST));
+  }
+
+  @Test
+  public void shouldEncodeUnsigned32BitFields() {
+    TelegramLayout<WideField> wideLayout = TelegramLayout.of(TYPE, WideField.class);
+    byte[] telegramData = new byte[wideLayout.getTelegramLength()];
+    wideLayout.writeFrame(telegramData, 1);
+    wideLayout.set(telegramData, WideField.TIMESTAMP, 0xFEDCBA98);
+    wideLayout.set(telegramData, WideField.FLAGS, 0x7F);
+    wideLayout.seal(telegramData);
+    ByteBuf buffer = Unpooled.buffer();
+    int index = wideLayout.writeFrame(buffer, 1);
+    wideLayout.set(buffer, index, WideField.TIMESTAMP, 0xFEDCBA98);
+    wideLayout.set(buffer, index, WideField.FLAGS, 0x7F);
+    wideLayout.seal(buffer, index);
+
+    Assert.assertEquals(12, wideLayout.getTelegramLength());
+    Assert.assertEquals(9, wideLayout.getOffset(WideField.FLAGS));
+    Assert.assertEquals(0xFEDCBA98L,
+                        Integer.toUnsignedLong(wideLayout.get(telegramData, WideField.TIMESTAMP)));
+    Assert.assertEquals(0xFEDCBA98, wideLayout.get(buffer, 0, WideField.TIMESTAMP));
+    Assert.assertEquals(0x7F, wideLayout.get(buffer, 0, WideField.FLAGS));
+    Assert.assertTrue(wideLayout.isValid(telegramData));
+    Assert.assertTrue(wideLayout.isValid(buffer, 0));
+  }
+
+  @Test
+  public void shouldValidateTelegrams() {
+    byte[] telegramData = new byte[layout.getTelegramLength()];
+    layout.writeFrame(telegramData, 1);
+    layout.set(telegramData, TestField.THIRD, 42);
+    layout.seal(telegramData);
+    Assert.assertTrue(layout.isValid(telegramData));
+    Assert.assertTrue(layout.isValid(Unpooled.wrappedBuffer(telegramData), 0));
+
+    telegramData[layout.getOffset(TestField.THIRD)]++;
+    Assert.assertFalse(layout.isValid(telegramData));
+    Assert.assertFalse(layout.isValid(Unpooled.wrappedBuffer(telegramData), 0));
+
+    layout.seal(telegramData);
+    telegramData[TelegramLayout.TYPE_POS]++;
+    layout.seal(telegramData);
+    Assert.assertFalse(layout.isValid(telegramData));
+  }
+
+  @Test
+  public void shouldNotValidateIncompleteTelegramInBuffer() {
+    byte[] telegramData = new byte[layout.getTelegramLength()];
+    layout.writeFrame(telegramData, 1);
+    layout.seal(telegramData);
+
+    Assert.assertFalse(
+        layout.isValid(Unpooled.wrappedBuffer(telegramData, 0, telegramData.length - 1), 0)
+    );
+  }
+
+  /**
+   * The fields of a test telegram.
+   */
+  private enum TestField
+      implements TelegramField {
+    FIRST(UINT16),
+    SECOND(UINT8),
+    THIRD(UINT16);
+
+    private final int width;
+
+    TestField(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+
+  /**
+   * The fields of a test telegram with a 32 bit field.
+   */
+  private enum WideField
+      implements TelegramField {
+    TIMESTAMP(UINT32),
+    FLAGS(UINT8);
+
+    private final int width;
+
+    WideField(int width) {
+      this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) The openTCS Authors.
+ *
+ * This program is free software and subject to the MIT license. (For details,
+ * see the licensing information (LICENSE.txt) you should have received with
+ * this copy of the software.)
+ */
+package com.sxj.common.telegrams;
+
+import org.junit.*;
+
+/**
+ * Test cases for the {@link TelegramPool}.
+ */
+public class TelegramPoolTest {
+
+  private TelegramPool<TestResponse> pool;
+
+  @Before
+  public void setUp() {
+    pool = new TelegramPool<>(TestResponse::new);
+  }
+
+  @After
+  public void tearDown() {
+    TelegramPool.setRecycleChecksEnabled(false);
+  }
+
+  @Test
+  public void shouldReuseRecycledTelegram() {
+    TestResponse response = pool.get();
+    response.recycle();
+
+    Assert.assertSame(response, pool.get());
+  }
+
+  @Test
+  public void shouldIgnoreRecyclingOfUnpooledTelegram() {
+    TestResponse response = new TestResponse();
+    response.recycle();
+
+    Assert.assertEquals(Telegram.ID_DEFAULT, response.getId());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldDetectUseAfterRecycleWithChecksEnabled() {
+    TelegramPool.setRecycleChecksEnabled(true);
+    TestResponse response = pool.get();
+    response.recycle();
+
+    response.getId();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldDetectDoubleRecycleWithChecksEnabled() {
+    TelegramPool.setRecycleChecksEnabled(true);
+    TestResponse response = pool.get();
+    response.recycle();
+
+    response.recycle();
+  }
+
+  @Test
+  public void shouldNotReuseRecycledTelegramWithChecksEnabled() {
+    TelegramPool.setRecycleChecksEnabled(true);
+    TestResponse response = pool.get();
+    response.recycle();
+
+    Assert.assertNotSame(response, pool.get());
+  }
+
+  @Test
+  public void shouldReturnRetainedTelegramOnlyOnceAllReferencesAreReleased() {
+    TelegramPool.setRecycleChecksEnabled(true);
+    TestResponse response = pool.get();
+    response.retain();
+
+    response.recycle();
+    Assert.assertEquals(Telegram.ID_DEFAULT, response.getId());
+    response.recycle();
+    try {
+      response.getId();
+      Assert.fail("Telegram still usable after all references were released");
+    }
+    catch (IllegalStateException exc) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void shouldResetReferencesOfReusedTelegram() {
+    TestResponse response = pool.get();
+    response.retain();
+    response.recycle();
+    response.recycle();
+
+    TestResponse reused = pool.get();
+    Assert.assertSame(response, reused);
+    reused.recycle();
+    Assert.assertSame(response, pool.get());
+  }
+
+  @Test
+  public void shouldReturnTelegramReleasedTwiceToPoolOnlyOnce() {
+    TestResponse response = pool.get();
+    response.recycle();
+    response.recycle();
+
+    Assert.assertSame(response, pool.get());
+    Assert.assertNotSame(response, pool.get());
+  }
+
+  /**
+   * A minimal response for testing.
+   */
+  private static class TestResponse
+      extends Response {
+
+    TestResponse() {
+      super(7);
+    }
+  }
+}